@@ -0,0 +1,31 @@
+package com.reactnativecommunity.cameraroll;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the ISO 6709 location MediaMetadataRetriever reports for videos.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GeoTagBenchmark {
+
+  @Param({"+37.4219-122.0840/", "+48.8584+002.2945+035.000/"})
+  public String geoTag;
+
+  private final double[] mLatLong = new double[2];
+
+  @Benchmark
+  public double parseGeoTag() {
+    MediaRowCodec.parseGeoTag(geoTag, mLatLong);
+    return mLatLong[0] + mLatLong[1];
+  }
+}
@@ -0,0 +1,41 @@
+package com.reactnativecommunity.cameraroll;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Utils} lookups, done once per saved file and once per row that includes the extension.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MimeTypeBenchmark {
+
+  @State(Scope.Thread)
+  public static class Url {
+    @Param({"file:///storage/emulated/0/DCIM/Camera/IMG_20240101_120000.jpg", "file:///data/user/0/app/cache/clip.mp4"})
+    public String url;
+  }
+
+  @State(Scope.Thread)
+  public static class MimeType {
+    @Param({"image/jpeg", "video/mp4"})
+    public String mimeType;
+  }
+
+  @Benchmark
+  public String getMimeType(Url state) {
+    return Utils.getMimeType(state.url);
+  }
+
+  @Benchmark
+  public String getExtension(MimeType state) {
+    return Utils.getExtension(state.mimeType);
+  }
+}
@@ -0,0 +1,68 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.database.MatrixCursor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting cursor rows into {@code getPhotos} edges. {@link #convertRow} handles one row per
+ * operation, so that gc.alloc.rate.norm reads as bytes allocated per row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RowConversionBenchmark {
+
+  @Param({"2000", "100000"})
+  public int rows;
+
+  @Param({SyntheticMedia.INCLUDE_NONE, SyntheticMedia.INCLUDE_COLUMNS})
+  public String include;
+
+  @Param({SyntheticMedia.MIX_IMAGES, SyntheticMedia.MIX_CAMERA_ROLL})
+  public String mix;
+
+  private MatrixCursor mMedia;
+  private Set<String> mInclude;
+  private MediaRowCodec mCodec;
+
+  @Setup
+  public void setUp() {
+    mMedia = SyntheticMedia.createCursor(rows, mix);
+    mInclude = SyntheticMedia.createInclude(include);
+    mCodec = new MediaRowCodec(null, mMedia, mInclude, SyntheticMedia.SDK_INT);
+    mMedia.moveToFirst();
+  }
+
+  @TearDown
+  public void tearDown() {
+    mMedia.close();
+  }
+
+  @Benchmark
+  public Object convertRow() {
+    if (!mMedia.moveToNext()) {
+      mMedia.moveToFirst();
+    }
+    return mCodec.convert(mMedia);
+  }
+
+  /**
+   * Building the codec, which happens once per page.
+   */
+  @Benchmark
+  public Object createCodec() {
+    return new MediaRowCodec(null, mMedia, mInclude, SyntheticMedia.SDK_INT);
+  }
+}
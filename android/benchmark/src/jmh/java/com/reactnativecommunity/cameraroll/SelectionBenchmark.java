@@ -0,0 +1,70 @@
+package com.reactnativecommunity.cameraroll;
+
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.WritableNativeArray;
+import com.facebook.react.bridge.WritableNativeMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Translating {@code getPhotos} params into a MediaStore selection, done once per page.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SelectionBenchmark {
+
+  /** Only the page size. */
+  private static final String FILTERS_NONE = "none";
+  /** An album and a time range on a single column. */
+  private static final String FILTERS_ALBUM = "album";
+  /** Every filter getPhotos accepts, with a few values each. */
+  private static final String FILTERS_ALL = "all";
+
+  @Param({FILTERS_NONE, FILTERS_ALBUM, FILTERS_ALL})
+  public String filters;
+
+  private WritableMap mParams;
+
+  @Setup
+  public void setUp() {
+    mParams = new WritableNativeMap();
+    mParams.putInt("first", 100);
+    if (FILTERS_NONE.equals(filters)) {
+      return;
+    }
+    mParams.putArray("albumIds", createArray("-1739773001"));
+    mParams.putDouble("fromTime", 1_600_000_000_000d);
+    mParams.putDouble("toTime", 1_700_000_000_000d);
+    mParams.putString("timeColumn", "dateTaken");
+    if (FILTERS_ALL.equals(filters)) {
+      mParams.putString("groupName", "Camera");
+      mParams.putString("assetType", MediaQuery.ASSET_TYPE_ALL);
+      mParams.putArray("excludeAlbumIds", createArray("540528482", "1028075469"));
+      mParams.putArray("mimeTypes", createArray("image/jpeg", "image/heic", "video/mp4"));
+    }
+  }
+
+  private static WritableArray createArray(String... values) {
+    WritableArray array = new WritableNativeArray();
+    for (String value : values) {
+      array.pushString(value);
+    }
+    return array;
+  }
+
+  @Benchmark
+  public MediaQuery fromParams() {
+    return MediaQuery.fromParams(mParams, MediaQuery.ASSET_TYPE_PHOTOS);
+  }
+}
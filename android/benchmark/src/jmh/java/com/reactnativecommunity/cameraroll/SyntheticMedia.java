@@ -0,0 +1,92 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.database.MatrixCursor;
+import android.os.Build;
+import android.provider.MediaStore;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Cursors and include sets shaped like what MediaStore returns for {@code getPhotos}.
+ */
+final class SyntheticMedia {
+
+  /** No optional fields. */
+  static final String INCLUDE_NONE = "none";
+  /** Every optional field MediaStore answers from its columns, without opening the files. */
+  static final String INCLUDE_COLUMNS = "columns";
+
+  /** Only jpegs. */
+  static final String MIX_IMAGES = "images";
+  /** A camera roll: mostly jpegs, with some heics, pngs and videos, in a few albums. */
+  static final String MIX_CAMERA_ROLL = "cameraRoll";
+
+  private static final String[] ALBUMS = {"Camera", "Screenshots", "WhatsApp Images", "Download"};
+
+  /** The API level of the android-all jar, whose Build can't initialize on a plain JVM. */
+  static final int SDK_INT = Build.VERSION_CODES.UPSIDE_DOWN_CAKE;
+
+  private SyntheticMedia() {
+  }
+
+  static MatrixCursor createCursor(int rows, String mix) {
+    MatrixCursor media = new MatrixCursor(MediaRowCodec.getProjection(SDK_INT), rows);
+    Random random = new Random(42);
+    long now = 1_700_000_000_000L;
+    for (int i = 0; i < rows; i++) {
+      long taken = now - (long) (random.nextDouble() * 730 * 24 * 60 * 60 * 1000);
+      String mimeType = "image/jpeg";
+      String extension = ".jpg";
+      String album = ALBUMS[0];
+      if (MIX_CAMERA_ROLL.equals(mix)) {
+        int kind = random.nextInt(20);
+        if (kind < 2) {
+          mimeType = "video/mp4";
+          extension = ".mp4";
+        } else if (kind < 4) {
+          mimeType = "image/heic";
+          extension = ".heic";
+        } else if (kind < 6) {
+          mimeType = "image/png";
+          extension = ".png";
+          album = ALBUMS[1];
+        }
+        if (random.nextInt(4) == 0) {
+          album = ALBUMS[2 + random.nextInt(2)];
+        }
+      }
+      // By name, since the projection depends on the API level; columns left out stay null
+      media.newRow()
+              .add(MediaStore.MediaColumns._ID, (long) (i + 1))
+              .add(MediaStore.MediaColumns.MIME_TYPE, mimeType)
+              .add(MediaStore.MediaColumns.BUCKET_DISPLAY_NAME, album)
+              .add(MediaStore.MediaColumns.DATE_TAKEN, random.nextInt(20) == 0 ? null : taken)
+              .add(MediaStore.MediaColumns.DATE_ADDED, taken / 1000)
+              .add(MediaStore.MediaColumns.DATE_MODIFIED, taken / 1000)
+              .add(MediaStore.MediaColumns.WIDTH, 4032)
+              .add(MediaStore.MediaColumns.HEIGHT, 3024)
+              .add(MediaStore.MediaColumns.SIZE, 500_000 + random.nextInt(5_000_000))
+              .add(MediaStore.MediaColumns.DATA, "/storage/emulated/0/DCIM/" + album + "/IMG_" + i + extension)
+              .add(MediaStore.MediaColumns.ORIENTATION, random.nextInt(4) * 90)
+              .add(MetadataColumns.DURATION, mimeType.startsWith("video") ? 15_000L : null);
+    }
+    return media;
+  }
+
+  static Set<String> createInclude(String include) {
+    if (INCLUDE_NONE.equals(include)) {
+      return new HashSet<>();
+    }
+    return new HashSet<>(Arrays.asList(
+            MediaRowCodec.INCLUDE_FILENAME,
+            MediaRowCodec.INCLUDE_FILE_SIZE,
+            MediaRowCodec.INCLUDE_FILE_EXTENSION,
+            MediaRowCodec.INCLUDE_IMAGE_SIZE,
+            MediaRowCodec.INCLUDE_ORIENTATION,
+            MediaRowCodec.INCLUDE_ALBUMS,
+            MediaRowCodec.INCLUDE_SOURCE_TYPE));
+  }
+}
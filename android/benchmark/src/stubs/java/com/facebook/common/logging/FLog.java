@@ -0,0 +1,16 @@
+package com.facebook.common.logging;
+
+/**
+ * Drops everything, so that failure paths cost what they do on a device with logging filtered.
+ */
+public class FLog {
+
+  public static void w(String tag, String msg, Throwable tr) {
+  }
+
+  public static void e(String tag, String msg) {
+  }
+
+  public static void e(String tag, String msg, Throwable tr) {
+  }
+}
@@ -0,0 +1,12 @@
+package com.facebook.react.bridge;
+
+public class Arguments {
+
+  public static WritableArray createArray() {
+    return new WritableNativeArray();
+  }
+
+  public static WritableMap createMap() {
+    return new WritableNativeMap();
+  }
+}
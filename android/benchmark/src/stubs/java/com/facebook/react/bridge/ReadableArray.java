@@ -0,0 +1,19 @@
+package com.facebook.react.bridge;
+
+import javax.annotation.Nullable;
+
+/**
+ * The subset of React Native's ReadableArray the benchmarked code uses.
+ */
+public interface ReadableArray {
+
+  int size();
+
+  boolean isNull(int index);
+
+  double getDouble(int index);
+
+  int getInt(int index);
+
+  @Nullable String getString(int index);
+}
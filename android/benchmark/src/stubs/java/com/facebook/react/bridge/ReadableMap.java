@@ -0,0 +1,25 @@
+package com.facebook.react.bridge;
+
+import javax.annotation.Nullable;
+
+/**
+ * The subset of React Native's ReadableMap the benchmarked code uses.
+ */
+public interface ReadableMap {
+
+  boolean hasKey(String name);
+
+  boolean isNull(String name);
+
+  boolean getBoolean(String name);
+
+  double getDouble(String name);
+
+  int getInt(String name);
+
+  @Nullable String getString(String name);
+
+  @Nullable ReadableArray getArray(String name);
+
+  @Nullable ReadableMap getMap(String name);
+}
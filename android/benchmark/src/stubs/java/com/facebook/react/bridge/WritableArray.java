@@ -0,0 +1,20 @@
+package com.facebook.react.bridge;
+
+import javax.annotation.Nullable;
+
+public interface WritableArray extends ReadableArray {
+
+  void pushNull();
+
+  void pushBoolean(boolean value);
+
+  void pushDouble(double value);
+
+  void pushInt(int value);
+
+  void pushString(@Nullable String value);
+
+  void pushArray(@Nullable ReadableArray array);
+
+  void pushMap(@Nullable ReadableMap map);
+}
@@ -0,0 +1,20 @@
+package com.facebook.react.bridge;
+
+import javax.annotation.Nullable;
+
+public interface WritableMap extends ReadableMap {
+
+  void putNull(String key);
+
+  void putBoolean(String key, boolean value);
+
+  void putDouble(String key, double value);
+
+  void putInt(String key, int value);
+
+  void putString(String key, @Nullable String value);
+
+  void putArray(String key, @Nullable ReadableArray value);
+
+  void putMap(String key, @Nullable ReadableMap value);
+}
@@ -0,0 +1,74 @@
+package com.facebook.react.bridge;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * Stands in for the JNI backed array, like React Native's JavaOnlyArray.
+ */
+public class WritableNativeArray implements WritableArray {
+
+  private final List<Object> mBackingList = new ArrayList<>();
+
+  @Override
+  public int size() {
+    return mBackingList.size();
+  }
+
+  @Override
+  public boolean isNull(int index) {
+    return mBackingList.get(index) == null;
+  }
+
+  @Override
+  public double getDouble(int index) {
+    return ((Number) mBackingList.get(index)).doubleValue();
+  }
+
+  @Override
+  public int getInt(int index) {
+    return ((Number) mBackingList.get(index)).intValue();
+  }
+
+  @Override
+  public @Nullable String getString(int index) {
+    return (String) mBackingList.get(index);
+  }
+
+  @Override
+  public void pushNull() {
+    mBackingList.add(null);
+  }
+
+  @Override
+  public void pushBoolean(boolean value) {
+    mBackingList.add(value);
+  }
+
+  @Override
+  public void pushDouble(double value) {
+    mBackingList.add(value);
+  }
+
+  @Override
+  public void pushInt(int value) {
+    mBackingList.add(value);
+  }
+
+  @Override
+  public void pushString(@Nullable String value) {
+    mBackingList.add(value);
+  }
+
+  @Override
+  public void pushArray(@Nullable ReadableArray array) {
+    mBackingList.add(array);
+  }
+
+  @Override
+  public void pushMap(@Nullable ReadableMap map) {
+    mBackingList.add(map);
+  }
+}
@@ -0,0 +1,90 @@
+package com.facebook.react.bridge;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Stands in for the JNI backed map, like React Native's JavaOnlyMap. Benchmarks measure the Java
+ * side of the conversion only: on a device every put also crosses into native code.
+ */
+public class WritableNativeMap implements WritableMap {
+
+  private final Map<String, Object> mBackingMap = new HashMap<>();
+
+  @Override
+  public boolean hasKey(String name) {
+    return mBackingMap.containsKey(name);
+  }
+
+  @Override
+  public boolean isNull(String name) {
+    return mBackingMap.get(name) == null;
+  }
+
+  @Override
+  public boolean getBoolean(String name) {
+    return (Boolean) mBackingMap.get(name);
+  }
+
+  @Override
+  public double getDouble(String name) {
+    return ((Number) mBackingMap.get(name)).doubleValue();
+  }
+
+  @Override
+  public int getInt(String name) {
+    return ((Number) mBackingMap.get(name)).intValue();
+  }
+
+  @Override
+  public @Nullable String getString(String name) {
+    return (String) mBackingMap.get(name);
+  }
+
+  @Override
+  public @Nullable ReadableArray getArray(String name) {
+    return (ReadableArray) mBackingMap.get(name);
+  }
+
+  @Override
+  public @Nullable ReadableMap getMap(String name) {
+    return (ReadableMap) mBackingMap.get(name);
+  }
+
+  @Override
+  public void putNull(String key) {
+    mBackingMap.put(key, null);
+  }
+
+  @Override
+  public void putBoolean(String key, boolean value) {
+    mBackingMap.put(key, value);
+  }
+
+  @Override
+  public void putDouble(String key, double value) {
+    mBackingMap.put(key, value);
+  }
+
+  @Override
+  public void putInt(String key, int value) {
+    mBackingMap.put(key, value);
+  }
+
+  @Override
+  public void putString(String key, @Nullable String value) {
+    mBackingMap.put(key, value);
+  }
+
+  @Override
+  public void putArray(String key, @Nullable ReadableArray value) {
+    mBackingMap.put(key, value);
+  }
+
+  @Override
+  public void putMap(String key, @Nullable ReadableMap value) {
+    mBackingMap.put(key, value);
+  }
+}
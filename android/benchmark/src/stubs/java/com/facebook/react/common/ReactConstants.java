@@ -0,0 +1,6 @@
+package com.facebook.react.common;
+
+public class ReactConstants {
+
+  public static final String TAG = "ReactNative";
+}
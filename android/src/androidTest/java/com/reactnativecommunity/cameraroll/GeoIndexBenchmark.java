@@ -0,0 +1,92 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Times building a {@link GeoIndex} of a library shot mostly around a few places, and querying it
+ * for boxes from a city block to a continent, against scanning every asset.
+ *
+ * Run with {@code ./gradlew connectedAndroidTest} and read the results from logcat
+ * (tag {@value #TAG}).
+ */
+@RunWith(AndroidJUnit4.class)
+public class GeoIndexBenchmark {
+
+  private static final String TAG = "GeoIndexBenchmark";
+  private static final int ASSETS = 100_000;
+  private static final int WARMUP_RUNS = 10;
+  private static final int MEASURED_RUNS = 101;
+  /** Box sizes in degrees, each centered on the first place. */
+  private static final double[] SIZES = {0.01, 0.1, 1, 10, 60};
+
+  @Test
+  public void compareQueryAndScan() {
+    Random random = new Random(42);
+    long[] ids = new long[ASSETS];
+    double[] latitudes = new double[ASSETS];
+    double[] longitudes = new double[ASSETS];
+    long[] times = new long[ASSETS];
+    for (int i = 0; i < ASSETS; i++) {
+      ids[i] = i;
+      // Most assets around home and a few trips, the others anywhere
+      if (random.nextInt(10) > 0) {
+        int place = random.nextInt(5);
+        latitudes[i] = 48.85 - place * 7 + random.nextGaussian() * 0.05;
+        longitudes[i] = 2.35 + place * 11 + random.nextGaussian() * 0.05;
+      } else {
+        latitudes[i] = -90 + random.nextDouble() * 180;
+        longitudes[i] = -180 + random.nextDouble() * 360;
+      }
+      times[i] = i;
+    }
+
+    long buildStart = System.nanoTime();
+    GeoIndex index = new GeoIndex(ids, latitudes, longitudes, times, new boolean[ASSETS], ASSETS);
+    Log.i(TAG, "build " + ASSETS + " assets: " + (System.nanoTime() - buildStart) / 1_000_000 + "ms");
+
+    for (double size : SIZES) {
+      double minLat = 48.85 - size / 2;
+      double maxLat = 48.85 + size / 2;
+      double minLng = 2.35 - size / 2;
+      double maxLng = 2.35 + size / 2;
+      long[] queries = new long[MEASURED_RUNS];
+      long[] scans = new long[MEASURED_RUNS];
+      int count = 0;
+      for (int i = 0; i < WARMUP_RUNS + MEASURED_RUNS; i++) {
+        long start = System.nanoTime();
+        count = index.query(minLat, maxLat, minLng, maxLng).length;
+        long query = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int matches = 0;
+        for (int asset = 0; asset < ASSETS; asset++) {
+          if (latitudes[asset] >= minLat && latitudes[asset] <= maxLat
+                  && longitudes[asset] >= minLng && longitudes[asset] <= maxLng) {
+            matches++;
+          }
+        }
+        long scan = System.nanoTime() - start;
+        if (matches != count) {
+          throw new AssertionError(size + " degrees: " + count + " assets, scan found " + matches);
+        }
+        if (i >= WARMUP_RUNS) {
+          queries[i - WARMUP_RUNS] = query;
+          scans[i - WARMUP_RUNS] = scan;
+        }
+      }
+      Arrays.sort(queries);
+      Arrays.sort(scans);
+      Log.i(TAG, size + " degree box (" + count + " assets): query "
+              + queries[MEASURED_RUNS / 2] / 1000 + "us, scan " + scans[MEASURED_RUNS / 2] / 1000
+              + "us (median of " + MEASURED_RUNS + ")");
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares reading image sizes with {@link ImageSizeSniffer} against the
+ * {@code inJustDecodeBounds} decode it falls back to, on camera sized JPEG, PNG and WebP files
+ * encoded on the device.
+ *
+ * Run with {@code ./gradlew connectedAndroidTest} and read the results from logcat
+ * (tag {@value #TAG}).
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImageSizeSnifferBenchmark {
+
+  private static final String TAG = "ImageSizeSnifferBenchmark";
+  private static final int WIDTH = 4032;
+  private static final int HEIGHT = 3024;
+  private static final int WARMUP_RUNS = 10;
+  private static final int MEASURED_RUNS = 101;
+
+  @Test
+  public void compareSizeReads() throws IOException {
+    File dir = new File(
+            InstrumentationRegistry.getInstrumentation().getTargetContext().getCacheDir(), TAG);
+    assertTrue(dir.isDirectory() || dir.mkdirs());
+    Bitmap bitmap = noise();
+    try {
+      for (Bitmap.CompressFormat format : new Bitmap.CompressFormat[]{
+              Bitmap.CompressFormat.JPEG,
+              Bitmap.CompressFormat.PNG,
+              Bitmap.CompressFormat.WEBP}) {
+        File file = new File(dir, "image." + format.name().toLowerCase());
+        try (FileOutputStream output = new FileOutputStream(file)) {
+          bitmap.compress(format, 90, output);
+        }
+        try (FileInputStream input = new FileInputStream(file)) {
+          long decode = measure(input, false);
+          long sniff = measure(input, true);
+          Log.i(TAG, format + " " + file.length() / 1024 + "KB: decodeBounds " + decode / 1000
+                  + "us, sniff " + sniff / 1000 + "us (median of " + MEASURED_RUNS + ")");
+        } finally {
+          file.delete();
+        }
+      }
+    } finally {
+      bitmap.recycle();
+    }
+  }
+
+  private static Bitmap noise() {
+    Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+    int[] row = new int[WIDTH];
+    Random random = new Random(42);
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        row[x] = 0xFF000000 | random.nextInt(0x1000000);
+      }
+      bitmap.setPixels(row, 0, WIDTH, 0, y, WIDTH, 1);
+    }
+    return bitmap;
+  }
+
+  /**
+   * @return the median time to read the size in nanoseconds
+   */
+  private static long measure(FileInputStream input, boolean sniff) throws IOException {
+    FileChannel channel = input.getChannel();
+    ImageSizeSniffer sniffer = new ImageSizeSniffer();
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inJustDecodeBounds = true;
+    int[] size = new int[2];
+    long[] times = new long[MEASURED_RUNS];
+    for (int i = 0; i < WARMUP_RUNS + MEASURED_RUNS; i++) {
+      long start = System.nanoTime();
+      if (sniff) {
+        assertTrue(sniffer.sniff(channel, 0, size));
+      } else {
+        channel.position(0);
+        BitmapFactory.decodeFileDescriptor(input.getFD(), null, options);
+        size[0] = options.outWidth;
+        size[1] = options.outHeight;
+      }
+      long elapsed = System.nanoTime() - start;
+      assertArrayEquals(new int[]{WIDTH, HEIGHT}, size);
+      if (i >= WARMUP_RUNS) {
+        times[i - WARMUP_RUNS] = elapsed;
+      }
+    }
+    Arrays.sort(times);
+    return times[MEASURED_RUNS / 2];
+  }
+}
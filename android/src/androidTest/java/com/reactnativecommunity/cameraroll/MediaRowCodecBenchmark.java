@@ -0,0 +1,266 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.MediaStore;
+import android.provider.MediaStore.Images;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.WritableNativeMap;
+import com.facebook.soloader.SoLoader;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Compares converting a 2,000 row page with {@link MediaRowCodec} against the per row column
+ * lookups, include checks, {@code Uri} and {@code File} allocations it replaced. Only fields that
+ * don't read the media files are included, so that the conversion itself is measured.
+ *
+ * Run with {@code ./gradlew connectedAndroidTest} and read the results from logcat
+ * (tag {@value #TAG}).
+ */
+@RunWith(AndroidJUnit4.class)
+public class MediaRowCodecBenchmark {
+
+  private static final String TAG = "MediaRowCodecBenchmark";
+  private static final int PAGE_SIZE = 2_000;
+  private static final int WARMUP_RUNS = 5;
+  private static final int MEASURED_RUNS = 25;
+
+  private static final Set<String> INCLUDE = new HashSet<>(Arrays.asList(
+          MediaRowCodec.INCLUDE_FILENAME,
+          MediaRowCodec.INCLUDE_FILE_SIZE,
+          MediaRowCodec.INCLUDE_FILE_EXTENSION,
+          MediaRowCodec.INCLUDE_IMAGE_SIZE,
+          MediaRowCodec.INCLUDE_ORIENTATION,
+          MediaRowCodec.INCLUDE_ALBUMS,
+          MediaRowCodec.INCLUDE_SOURCE_TYPE));
+
+  @Before
+  public void loadNativeMaps() {
+    SoLoader.init(InstrumentationRegistry.getInstrumentation().getTargetContext(), false);
+  }
+
+  @Test
+  public void compareRowConversion() {
+    Cursor media = seed();
+    try {
+      long lookups = measure(media, false);
+      long codec = measure(media, true);
+      Log.i(TAG, PAGE_SIZE + " rows: per row lookups " + lookups / PAGE_SIZE + "ns/row, codec "
+              + codec / PAGE_SIZE + "ns/row (median of " + MEASURED_RUNS + ")");
+    } finally {
+      media.close();
+    }
+  }
+
+  /**
+   * Compares building a page as edges with building it as {@link MediaPageColumns}. Each page is
+   * read back into Java collections, standing in for the conversion into JS objects.
+   */
+  @Test
+  public void compareEdgesAndColumns() {
+    Cursor media = seed();
+    try {
+      long edges = measurePage(media, false);
+      long columns = measurePage(media, true);
+      Log.i(TAG, PAGE_SIZE + " rows: edges " + edges / PAGE_SIZE + "ns/row, columns "
+              + columns / PAGE_SIZE + "ns/row (median of " + MEASURED_RUNS + ")");
+    } finally {
+      media.close();
+    }
+  }
+
+  private static long measurePage(Cursor media, boolean useColumns) {
+    long[] runs = new long[MEASURED_RUNS];
+    for (int i = -WARMUP_RUNS; i < MEASURED_RUNS; i++) {
+      long start = System.nanoTime();
+      MediaRowCodec codec = new MediaRowCodec(null, media, INCLUDE);
+      WritableArray edges = useColumns ? null : Arguments.createArray();
+      MediaPageColumns columns = useColumns ? new MediaPageColumns(INCLUDE) : null;
+      media.moveToPosition(-1);
+      while (media.moveToNext()) {
+        if (columns != null) {
+          columns.add(codec.read(media));
+        } else {
+          edges.pushMap(codec.convert(media));
+        }
+      }
+      WritableMap page = Arguments.createMap();
+      if (columns != null) {
+        page.putMap("columns", columns.toMap());
+      } else {
+        page.putArray("edges", edges);
+      }
+      assertNotNull(page.toHashMap());
+      if (i >= 0) {
+        runs[i] = System.nanoTime() - start;
+      }
+    }
+    Arrays.sort(runs);
+    return runs[MEASURED_RUNS / 2];
+  }
+
+  private static Cursor seed() {
+    MatrixCursor media = new MatrixCursor(MediaRowCodec.getProjection(Build.VERSION.SDK_INT), PAGE_SIZE);
+    Random random = new Random(42);
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < PAGE_SIZE; i++) {
+      long taken = now - random.nextInt(Integer.MAX_VALUE);
+      // By name, since the projection depends on the API level
+      media.newRow()
+              .add(MediaStore.MediaColumns._ID, (long) (i + 1))
+              .add(MediaStore.MediaColumns.MIME_TYPE, "image/jpeg")
+              .add(MediaStore.MediaColumns.BUCKET_DISPLAY_NAME, "Camera")
+              .add(MediaStore.MediaColumns.DATE_TAKEN, taken)
+              .add(MediaStore.MediaColumns.DATE_ADDED, taken / 1000)
+              .add(MediaStore.MediaColumns.DATE_MODIFIED, taken / 1000)
+              .add(MediaStore.MediaColumns.WIDTH, 4032)
+              .add(MediaStore.MediaColumns.HEIGHT, 3024)
+              .add(MediaStore.MediaColumns.SIZE, 2_000_000 + random.nextInt(3_000_000))
+              .add(MediaStore.MediaColumns.DATA, "/storage/emulated/0/DCIM/Camera/IMG_" + i + ".jpg")
+              .add(MediaStore.MediaColumns.ORIENTATION, random.nextInt(4) * 90);
+    }
+    return media;
+  }
+
+  private static long measure(Cursor media, boolean useCodec) {
+    long[] runs = new long[MEASURED_RUNS];
+    for (int i = -WARMUP_RUNS; i < MEASURED_RUNS; i++) {
+      long start = System.nanoTime();
+      MediaRowCodec codec = useCodec ? new MediaRowCodec(null, media, INCLUDE) : null;
+      media.moveToPosition(-1);
+      while (media.moveToNext()) {
+        assertNotNull(codec != null ? codec.convert(media) : convertWithLookups(media, INCLUDE));
+      }
+      if (i >= 0) {
+        runs[i] = System.nanoTime() - start;
+      }
+    }
+    Arrays.sort(runs);
+    return runs[MEASURED_RUNS / 2];
+  }
+
+  /**
+   * The conversion as it was done before {@link MediaRowCodec}, for the fields included here.
+   */
+  private static WritableMap convertWithLookups(Cursor media, Set<String> include) {
+    int idIndex = media.getColumnIndex(Images.Media._ID);
+    int mimeTypeIndex = media.getColumnIndex(Images.Media.MIME_TYPE);
+    int groupNameIndex = media.getColumnIndex(Images.Media.BUCKET_DISPLAY_NAME);
+    int dateTakenIndex = media.getColumnIndex(Images.Media.DATE_TAKEN);
+    int dateAddedIndex = media.getColumnIndex(MediaStore.MediaColumns.DATE_ADDED);
+    int dateModifiedIndex = media.getColumnIndex(MediaStore.MediaColumns.DATE_MODIFIED);
+    int widthIndex = media.getColumnIndex(MediaStore.MediaColumns.WIDTH);
+    int heightIndex = media.getColumnIndex(MediaStore.MediaColumns.HEIGHT);
+    int sizeIndex = media.getColumnIndex(MediaStore.MediaColumns.SIZE);
+    int dataIndex = media.getColumnIndex(MediaStore.MediaColumns.DATA);
+    int orientationIndex = media.getColumnIndex(MediaStore.MediaColumns.ORIENTATION);
+
+    boolean includeLocation = include.contains(MediaRowCodec.INCLUDE_LOCATION);
+    boolean includeFilename = include.contains(MediaRowCodec.INCLUDE_FILENAME);
+    boolean includeFileSize = include.contains(MediaRowCodec.INCLUDE_FILE_SIZE);
+    boolean includeFileExtension = include.contains(MediaRowCodec.INCLUDE_FILE_EXTENSION);
+    boolean includeImageSize = include.contains(MediaRowCodec.INCLUDE_IMAGE_SIZE);
+    boolean includePlayableDuration = include.contains(MediaRowCodec.INCLUDE_PLAYABLE_DURATION);
+    boolean includeOrientation = include.contains(MediaRowCodec.INCLUDE_ORIENTATION);
+    boolean includeAlbums = include.contains(MediaRowCodec.INCLUDE_ALBUMS);
+    boolean includeSourceType = include.contains(MediaRowCodec.INCLUDE_SOURCE_TYPE);
+
+    WritableMap map = new WritableNativeMap();
+    WritableMap node = new WritableNativeMap();
+    WritableMap image = new WritableNativeMap();
+    long id = media.getLong(media.getColumnIndex(Images.Media._ID));
+    String mimeType = media.getString(mimeTypeIndex);
+    boolean isVideo = mimeType != null && mimeType.startsWith("video");
+    Uri photoUri = ContentUris.withAppendedId(
+            isVideo ? MediaStore.Video.Media.EXTERNAL_CONTENT_URI : Images.Media.EXTERNAL_CONTENT_URI,
+            id);
+    image.putString("uri", photoUri.toString());
+
+    image.putNull("width");
+    image.putNull("height");
+    if (includeImageSize) {
+      int width = media.getInt(widthIndex);
+      int height = media.getInt(heightIndex);
+      if (!media.isNull(orientationIndex) && media.getInt(orientationIndex) % 180 != 0) {
+        int temp = width;
+        width = height;
+        height = temp;
+      }
+      image.putInt("width", width);
+      image.putInt("height", height);
+    }
+    image.putNull("playableDuration");
+    if (includePlayableDuration && isVideo) {
+      throw new IllegalStateException("not measured");
+    }
+    if (includeFilename) {
+      image.putString("filename", new File(media.getString(dataIndex)).getName());
+    } else {
+      image.putNull("filename");
+    }
+    if (includeFileSize) {
+      image.putDouble("fileSize", media.getLong(sizeIndex));
+    } else {
+      image.putNull("fileSize");
+    }
+    if (includeFileExtension) {
+      image.putString("extension", Utils.getExtension(mimeType));
+    } else {
+      image.putNull("extension");
+    }
+    if (includeOrientation) {
+      image.putInt("orientation", media.isNull(orientationIndex) ? 0 : media.getInt(orientationIndex));
+    } else {
+      image.putNull("orientation");
+    }
+    node.putMap("image", image);
+
+    node.putString("id", Long.toString(media.getLong(idIndex)));
+    node.putString("type", media.getString(mimeTypeIndex));
+    node.putArray("subTypes", Arguments.createArray());
+    if (includeSourceType) {
+      node.putString("sourceType", "UserLibrary");
+    } else {
+      node.putNull("sourceType");
+    }
+    WritableArray groupName = Arguments.createArray();
+    if (includeAlbums) {
+      groupName.pushString(media.getString(groupNameIndex));
+    }
+    node.putArray("group_name", groupName);
+    long dateTaken = media.getLong(dateTakenIndex);
+    if (dateTaken == 0L) {
+      dateTaken = media.getLong(dateAddedIndex) * 1000;
+    }
+    node.putDouble("timestamp", dateTaken / 1000d);
+    node.putDouble("modificationTimestamp", media.getLong(dateModifiedIndex));
+    node.putNull("location");
+    if (includeLocation) {
+      throw new IllegalStateException("not measured");
+    }
+
+    map.putMap("node", node);
+    return map;
+  }
+}
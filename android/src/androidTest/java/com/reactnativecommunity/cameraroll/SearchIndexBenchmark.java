@@ -0,0 +1,88 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Times building a {@link SearchIndex} of a library of camera, screenshot and messaging app names,
+ * and searching it for queries of various lengths, against scanning every name.
+ *
+ * Run with {@code ./gradlew connectedAndroidTest} and read the results from logcat
+ * (tag {@value #TAG}).
+ */
+@RunWith(AndroidJUnit4.class)
+public class SearchIndexBenchmark {
+
+  private static final String TAG = "SearchIndexBenchmark";
+  private static final int ASSETS = 100_000;
+  private static final int PAGE_SIZE = 50;
+  private static final int WARMUP_RUNS = 10;
+  private static final int MEASURED_RUNS = 101;
+  private static final String[] PREFIXES = {"IMG_", "PXL_", "VID_", "Screenshot_", "IMG-", "DSC"};
+  private static final String[] ALBUMS = {
+          "Camera", "Screenshots", "WhatsApp Images", "WhatsApp Video", "Download", "Receipts",
+  };
+  private static final String[] QUERIES = {"IMG_2023", "whatsapp", "receipt", "0714", "jp", "x"};
+
+  @Test
+  public void compareSearchAndScan() {
+    Random random = new Random(42);
+    String[] names = new String[ASSETS];
+    String[] albums = new String[ASSETS];
+    for (int i = 0; i < ASSETS; i++) {
+      names[i] = PREFIXES[random.nextInt(PREFIXES.length)] + (2015 + random.nextInt(10))
+              + String.format(Locale.ROOT, "%02d%02d_%06d", 1 + random.nextInt(12),
+              1 + random.nextInt(28), random.nextInt(1000000)) + (random.nextInt(10) > 0 ? ".jpg" : ".mp4");
+      albums[i] = ALBUMS[random.nextInt(ALBUMS.length)];
+    }
+
+    long buildStart = System.nanoTime();
+    SearchIndex index = new SearchIndex();
+    for (int i = 0; i < ASSETS; i++) {
+      index.put(i, names[i], albums[i], i);
+    }
+    Log.i(TAG, "build " + ASSETS + " assets: " + (System.nanoTime() - buildStart) / 1_000_000 + "ms");
+
+    for (String query : QUERIES) {
+      long[] searches = new long[MEASURED_RUNS];
+      long[] scans = new long[MEASURED_RUNS];
+      int total = 0;
+      for (int i = 0; i < WARMUP_RUNS + MEASURED_RUNS; i++) {
+        long start = System.nanoTime();
+        total = index.search(query, 0, PAGE_SIZE).total;
+        long search = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        String normalized = SearchIndex.normalize(query);
+        int matches = 0;
+        for (int asset = 0; asset < ASSETS; asset++) {
+          if (names[asset].toLowerCase(Locale.ROOT).contains(normalized)
+                  || albums[asset].toLowerCase(Locale.ROOT).contains(normalized)) {
+            matches++;
+          }
+        }
+        long scan = System.nanoTime() - start;
+        if (matches != total) {
+          throw new AssertionError(query + ": " + total + " matches, scan found " + matches);
+        }
+        if (i >= WARMUP_RUNS) {
+          searches[i - WARMUP_RUNS] = search;
+          scans[i - WARMUP_RUNS] = scan;
+        }
+      }
+      Arrays.sort(searches);
+      Arrays.sort(scans);
+      Log.i(TAG, "\"" + query + "\" (" + total + " matches): search "
+              + searches[MEASURED_RUNS / 2] / 1000 + "us, scan " + scans[MEASURED_RUNS / 2] / 1000
+              + "us (median of " + MEASURED_RUNS + ")");
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.provider.MediaStore;
+import android.provider.MediaStore.Images;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the latency of the legacy fromTime/toTime clause against the single column
+ * {@code timeColumn} mode on a SQLite table shaped like the MediaStore files table.
+ *
+ * Run with {@code ./gradlew connectedAndroidTest} and read the results from logcat
+ * (tag {@value #TAG}).
+ */
+@RunWith(AndroidJUnit4.class)
+public class TimeRangeQueryBenchmark {
+
+  private static final String TAG = "TimeRangeQueryBenchmark";
+  private static final String TABLE = "files";
+  private static final int[] ROW_COUNTS = {10_000, 50_000, 100_000};
+  private static final int PAGE_SIZE = 100;
+  private static final int WARMUP_RUNS = 3;
+  private static final int MEASURED_RUNS = 15;
+  private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+  @Test
+  public void compareTimeRangeModes() {
+    for (int rowCount : ROW_COUNTS) {
+      SQLiteDatabase db = SQLiteDatabase.create(null);
+      try {
+        long now = seed(db, rowCount);
+        long fromTime = now - 7 * DAY_MILLIS;
+
+        long legacy = measure(db, null, fromTime, now);
+        long indexed = measure(db, Images.Media.DATE_ADDED, fromTime, now);
+        Log.i(TAG, rowCount + " rows: legacy " + legacy / 1000 + "us, dateAdded "
+                + indexed / 1000 + "us (median of " + MEASURED_RUNS + ")");
+        Log.i(TAG, "legacy plan: " + explain(db, null, fromTime, now));
+        Log.i(TAG, "dateAdded plan: " + explain(db, Images.Media.DATE_ADDED, fromTime, now));
+      } finally {
+        db.close();
+      }
+    }
+  }
+
+  /**
+   * Fills the table with two years of media, with the indexes MediaStore keeps on the date columns.
+   *
+   * @return the most recent timestamp in milliseconds
+   */
+  private static long seed(SQLiteDatabase db, int rowCount) {
+    db.execSQL("CREATE TABLE " + TABLE + " ("
+            + Images.Media._ID + " INTEGER PRIMARY KEY,"
+            + MediaStore.Files.FileColumns.MEDIA_TYPE + " INTEGER,"
+            + Images.Media.MIME_TYPE + " TEXT,"
+            + Images.Media.BUCKET_DISPLAY_NAME + " TEXT,"
+            + Images.Media.DATE_TAKEN + " INTEGER,"
+            + Images.Media.DATE_ADDED + " INTEGER,"
+            + Images.Media.DATE_MODIFIED + " INTEGER)");
+    db.execSQL("CREATE INDEX date_added_index ON " + TABLE + "(" + Images.Media.DATE_ADDED + ")");
+    db.execSQL("CREATE INDEX date_modified_index ON " + TABLE + "(" + Images.Media.DATE_MODIFIED + ")");
+    db.execSQL("CREATE INDEX datetaken_index ON " + TABLE + "(" + Images.Media.DATE_TAKEN + ")");
+
+    long now = System.currentTimeMillis();
+    Random random = new Random(42);
+    ContentValues values = new ContentValues();
+    db.beginTransaction();
+    try {
+      for (int i = 0; i < rowCount; i++) {
+        long taken = now - (long) (random.nextDouble() * 730 * DAY_MILLIS);
+        values.clear();
+        values.put(MediaStore.Files.FileColumns.MEDIA_TYPE, MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE);
+        values.put(Images.Media.MIME_TYPE, "image/jpeg");
+        values.put(Images.Media.BUCKET_DISPLAY_NAME, "Camera");
+        // a few assets never get a date taken, which is what the legacy clause works around
+        if (random.nextInt(20) == 0) {
+          values.putNull(Images.Media.DATE_TAKEN);
+        } else {
+          values.put(Images.Media.DATE_TAKEN, taken);
+        }
+        values.put(Images.Media.DATE_ADDED, taken / 1000);
+        values.put(Images.Media.DATE_MODIFIED, taken / 1000);
+        db.insert(TABLE, null, values);
+      }
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+    db.execSQL("ANALYZE");
+    return now;
+  }
+
+  private static long measure(SQLiteDatabase db, String timeColumn, long fromTime, long toTime) {
+    long[] runs = new long[MEASURED_RUNS];
+    for (int i = -WARMUP_RUNS; i < MEASURED_RUNS; i++) {
+      long start = System.nanoTime();
+      Cursor cursor = query(db, "", timeColumn, fromTime, toTime);
+      try {
+        while (cursor.moveToNext()) {
+          cursor.getLong(0);
+        }
+      } finally {
+        cursor.close();
+      }
+      if (i >= 0) {
+        runs[i] = System.nanoTime() - start;
+      }
+    }
+    Arrays.sort(runs);
+    return runs[MEASURED_RUNS / 2];
+  }
+
+  private static String explain(SQLiteDatabase db, String timeColumn, long fromTime, long toTime) {
+    StringBuilder plan = new StringBuilder();
+    Cursor cursor = query(db, "EXPLAIN QUERY PLAN ", timeColumn, fromTime, toTime);
+    try {
+      int detailIndex = cursor.getColumnIndex("detail");
+      while (cursor.moveToNext()) {
+        plan.append(cursor.getString(detailIndex)).append("; ");
+      }
+    } finally {
+      cursor.close();
+    }
+    return plan.toString();
+  }
+
+  private static Cursor query(
+          SQLiteDatabase db,
+          String prefix,
+          String timeColumn,
+          long fromTime,
+          long toTime) {
+    StringBuilder selection = new StringBuilder("1");
+    List<String> selectionArgs = new ArrayList<>();
+    selection.append(" AND " + MediaStore.Files.FileColumns.MEDIA_TYPE + " = "
+            + MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE);
+    MediaQuery.appendTimeRange(selection, selectionArgs, timeColumn, fromTime, toTime);
+    return db.rawQuery(
+            prefix + "SELECT " + Images.Media._ID + " FROM " + TABLE
+                    + " WHERE " + selection
+                    + " ORDER BY " + MediaQuery.getSortOrder(timeColumn)
+                    + " LIMIT " + (PAGE_SIZE + 1),
+            selectionArgs.toArray(new String[selectionArgs.size()]));
+  }
+}
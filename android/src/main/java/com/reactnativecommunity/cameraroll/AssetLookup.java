@@ -0,0 +1,131 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.MediaStore;
+
+import com.facebook.react.bridge.ReadableArray;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * The MediaStore rows of assets given by id, for methods that take a list of ids rather than
+ * filters. Ids are deduplicated, so that each asset is read and processed once however often it
+ * was passed, and looked up a few hundred at a time.
+ */
+class AssetLookup {
+
+  /** Stays well below SQLite's limit on the number of bound arguments. */
+  private static final int IDS_PER_QUERY = 500;
+  private static final String[] PROJECTION = {
+          MediaStore.Files.FileColumns._ID,
+          MediaStore.Files.FileColumns.MEDIA_TYPE,
+          MediaStore.MediaColumns.DATE_MODIFIED,
+          MediaStore.MediaColumns.SIZE,
+          MediaStore.MediaColumns.DISPLAY_NAME,
+  };
+
+  /** The distinct ids, in the order they were first passed. */
+  final long[] ids;
+  final int count;
+  /** For every id passed, its index in {@link #ids}. */
+  final int[] inputIndexes;
+  /** The content URIs of the assets, null for ids that MediaStore doesn't know. */
+  final Uri[] uris;
+  /** MediaStore.Files.FileColumns.MEDIA_TYPE of each asset. */
+  final int[] mediaTypes;
+  final long[] modified;
+  final long[] sizes;
+  final String[] names;
+  private final Map<Long, Integer> mIndexes = new HashMap<>();
+
+  private AssetLookup(long[] inputIds) {
+    inputIndexes = new int[inputIds.length];
+    long[] distinct = new long[inputIds.length];
+    int size = 0;
+    for (int i = 0; i < inputIds.length; i++) {
+      Integer index = mIndexes.get(inputIds[i]);
+      if (index == null) {
+        index = size;
+        mIndexes.put(inputIds[i], index);
+        distinct[size++] = inputIds[i];
+      }
+      inputIndexes[i] = index;
+    }
+    ids = distinct;
+    count = size;
+    uris = new Uri[size];
+    mediaTypes = new int[size];
+    modified = new long[size];
+    sizes = new long[size];
+    names = new String[size];
+  }
+
+  /**
+   * @param ids the ids of assets, as returned by {@code getPhotos}
+   * @throws IllegalArgumentException if one of the ids is not a MediaStore id
+   */
+  static long[] parseIds(ReadableArray ids) {
+    long[] result = new long[ids.size()];
+    for (int i = 0; i < result.length; i++) {
+      String id = ids.getString(i);
+      try {
+        result[i] = Long.parseLong(id);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid asset id: '" + id + "'.");
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the rows of the assets, or null if MediaStore could not be queried
+   * @throws SecurityException if the app may not read media
+   */
+  static @Nullable AssetLookup query(ContentResolver resolver, long[] inputIds) {
+    AssetLookup lookup = new AssetLookup(inputIds);
+    for (int from = 0; from < lookup.count; from += IDS_PER_QUERY) {
+      int to = Math.min(lookup.count, from + IDS_PER_QUERY);
+      String[] selectionArgs = new String[to - from];
+      StringBuilder selection = new StringBuilder(MediaStore.Files.FileColumns._ID + " IN (");
+      for (int i = from; i < to; i++) {
+        selection.append(i > from ? ",?" : "?");
+        selectionArgs[i - from] = Long.toString(lookup.ids[i]);
+      }
+      selection.append(")");
+      Cursor media = resolver.query(
+              MediaStore.Files.getContentUri("external"),
+              PROJECTION,
+              selection.toString(),
+              selectionArgs,
+              null);
+      if (media == null) {
+        return null;
+      }
+      try {
+        while (media.moveToNext()) {
+          int i = lookup.mIndexes.get(media.getLong(0));
+          int mediaType = media.getInt(1);
+          Uri collection = mediaType == MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO
+                  ? MediaStore.Video.Media.EXTERNAL_CONTENT_URI
+                  : mediaType == MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE
+                  ? MediaStore.Images.Media.EXTERNAL_CONTENT_URI
+                  : MediaStore.Files.getContentUri("external");
+          lookup.uris[i] = ContentUris.withAppendedId(collection, lookup.ids[i]);
+          lookup.mediaTypes[i] = mediaType;
+          lookup.modified[i] = media.getLong(2);
+          lookup.sizes[i] = media.getLong(3);
+          lookup.names[i] = media.getString(4);
+        }
+      } finally {
+        media.close();
+      }
+    }
+    return lookup;
+  }
+}
@@ -0,0 +1,247 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.content.ContentResolver;
+import android.content.res.AssetFileDescriptor;
+import android.net.Uri;
+import android.os.Process;
+import android.os.SystemClock;
+
+import com.facebook.common.logging.FLog;
+import com.facebook.react.common.ReactConstants;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Open assets that JS reads a byte range at a time, e.g. to upload a large video in parts without
+ * copying it first. Reads are positional, so that the parts of one asset can be read concurrently.
+ *
+ * Opening an asset that is already open hands out the same reader, counting references. A reader
+ * is closed once every reference is closed, when it has not been read for {@link #IDLE_MS}, or
+ * when more than {@link #MAX_READERS} are open and it is the least recently used.
+ */
+class AssetReaderPool {
+
+  static final long IDLE_MS = 60_000;
+  static final int MAX_READERS = 16;
+
+  private final ContentResolver mResolver;
+  private final ScheduledExecutorService mSweeper;
+  /** By handle, least recently used first. */
+  private final LinkedHashMap<Integer, Reader> mReaders = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<Uri, Reader> mReadersByUri = new HashMap<>();
+  private int mNextHandle = 1;
+  private boolean mSweepScheduled;
+  private boolean mReleased;
+
+  static class Reader {
+    final int handle;
+    final Uri uri;
+    /** The size of the asset in bytes, or -1 if unknown. */
+    final long size;
+    private final AssetFileDescriptor mDescriptor;
+    private final FileChannel mChannel;
+    private final long mStart;
+    private int mReferences = 1;
+    private int mActiveReads;
+    private long mLastUsed = SystemClock.elapsedRealtime();
+
+    private Reader(int handle, Uri uri, AssetFileDescriptor descriptor) throws IOException {
+      this.handle = handle;
+      this.uri = uri;
+      mDescriptor = descriptor;
+      mChannel = new FileInputStream(descriptor.getFileDescriptor()).getChannel();
+      // The descriptor may cover a section of a larger file
+      mStart = descriptor.getStartOffset();
+      long length = descriptor.getDeclaredLength();
+      size = length != AssetFileDescriptor.UNKNOWN_LENGTH ? length : mChannel.size() - mStart;
+    }
+
+    private void close() {
+      try {
+        mChannel.close();
+        mDescriptor.close();
+      } catch (IOException e) {
+        FLog.w(ReactConstants.TAG, "Could not close " + uri, e);
+      }
+    }
+  }
+
+  AssetReaderPool(ContentResolver resolver) {
+    mResolver = resolver;
+    mSweeper = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(() -> {
+      Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+      runnable.run();
+    }, "CameraRollReaderSweep"));
+  }
+
+  /**
+   * @throws IOException if the asset can't be opened
+   */
+  Reader open(Uri uri) throws IOException {
+    synchronized (this) {
+      checkNotReleased();
+      Reader reader = mReadersByUri.get(uri);
+      if (reader != null) {
+        reader.mReferences++;
+        reader.mLastUsed = SystemClock.elapsedRealtime();
+        // Marks it as recently used
+        mReaders.get(reader.handle);
+        return reader;
+      }
+    }
+
+    AssetFileDescriptor descriptor = mResolver.openAssetFileDescriptor(uri, "r");
+    if (descriptor == null) {
+      throw new IOException("Could not open " + uri);
+    }
+    Reader reader;
+    synchronized (this) {
+      if (mReleased) {
+        descriptor.close();
+        checkNotReleased();
+      }
+      Reader opened = mReadersByUri.get(uri);
+      if (opened != null) {
+        // Opened concurrently by another call: keep the one in the pool
+        descriptor.close();
+        opened.mReferences++;
+        return opened;
+      }
+      try {
+        reader = new Reader(mNextHandle++, uri, descriptor);
+      } catch (IOException e) {
+        descriptor.close();
+        throw e;
+      }
+      mReaders.put(reader.handle, reader);
+      mReadersByUri.put(uri, reader);
+      evictLeastRecentlyUsed();
+      scheduleSweep();
+    }
+    return reader;
+  }
+
+  /**
+   * Reads up to length bytes at offset, fewer only at the end of the asset.
+   *
+   * @return the bytes read, from position 0 to the limit
+   * @throws IOException if the handle is unknown or closed, or the asset can't be read
+   */
+  ByteBuffer read(int handle, long offset, int length) throws IOException {
+    Reader reader;
+    synchronized (this) {
+      reader = mReaders.get(handle);
+      if (reader == null) {
+        throw new IOException("Unknown or closed asset reader: " + handle);
+      }
+      reader.mActiveReads++;
+      reader.mLastUsed = SystemClock.elapsedRealtime();
+    }
+    try {
+      // Stop at the end of the section the descriptor covers, which may not be the end of file
+      int capacity = reader.size >= 0
+              ? (int) Math.max(0, Math.min(length, reader.size - offset))
+              : length;
+      ByteBuffer buffer = ByteBuffer.allocate(capacity);
+      long position = reader.mStart + offset;
+      while (buffer.hasRemaining()
+              && reader.mChannel.read(buffer, position + buffer.position()) >= 0) {
+        // a positional read may return fewer bytes than asked for
+      }
+      buffer.flip();
+      return buffer;
+    } finally {
+      synchronized (this) {
+        reader.mActiveReads--;
+        reader.mLastUsed = SystemClock.elapsedRealtime();
+      }
+    }
+  }
+
+  /**
+   * Drops a reference to the reader, closing it if it was the last.
+   *
+   * @return whether the handle was open
+   */
+  synchronized boolean close(int handle) {
+    Reader reader = mReaders.get(handle);
+    if (reader == null) {
+      return false;
+    }
+    if (--reader.mReferences == 0) {
+      remove(reader);
+    }
+    return true;
+  }
+
+  private void remove(Reader reader) {
+    mReaders.remove(reader.handle);
+    mReadersByUri.remove(reader.uri);
+    reader.close();
+  }
+
+  private void evictLeastRecentlyUsed() {
+    Iterator<Reader> readers = mReaders.values().iterator();
+    while (mReaders.size() > MAX_READERS && readers.hasNext()) {
+      Reader reader = readers.next();
+      if (reader.mActiveReads == 0) {
+        readers.remove();
+        mReadersByUri.remove(reader.uri);
+        reader.close();
+      }
+    }
+  }
+
+  private void scheduleSweep() {
+    if (!mSweepScheduled) {
+      mSweepScheduled = true;
+      mSweeper.schedule(this::sweep, IDLE_MS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Closes the readers that were not used for {@link #IDLE_MS}, and runs again while any is open.
+   */
+  private synchronized void sweep() {
+    mSweepScheduled = false;
+    long idleSince = SystemClock.elapsedRealtime() - IDLE_MS;
+    Iterator<Reader> readers = mReaders.values().iterator();
+    while (readers.hasNext()) {
+      Reader reader = readers.next();
+      if (reader.mActiveReads == 0 && reader.mLastUsed <= idleSince) {
+        readers.remove();
+        mReadersByUri.remove(reader.uri);
+        reader.close();
+      }
+    }
+    if (!mReaders.isEmpty() && !mReleased) {
+      scheduleSweep();
+    }
+  }
+
+  private void checkNotReleased() throws IOException {
+    if (mReleased) {
+      throw new IOException("Asset readers were released");
+    }
+  }
+
+  synchronized void release() {
+    mReleased = true;
+    for (Reader reader : mReaders.values()) {
+      reader.close();
+    }
+    mReaders.clear();
+    mReadersByUri.clear();
+    mSweeper.shutdownNow();
+  }
+}
@@ -13,24 +13,24 @@ import android.content.IntentSender;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
-import android.content.res.AssetFileDescriptor;
 import android.database.Cursor;
-import android.graphics.BitmapFactory;
-import android.media.MediaMetadataRetriever;
+import android.media.ExifInterface;
 import android.media.MediaScannerConnection;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Build;
-import android.os.Bundle;
 import android.os.Environment;
 import android.os.FileUtils;
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
 import android.provider.MediaStore;
 import android.app.Activity;
 import android.provider.MediaStore.Images;
 import android.text.TextUtils;
-import android.media.ExifInterface;
+import android.util.Base64;
 
 import com.facebook.common.logging.FLog;
+import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.GuardedAsyncTask;
 import com.facebook.react.bridge.NativeModule;
 import com.facebook.react.bridge.Promise;
@@ -41,25 +41,42 @@ import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
-import com.facebook.react.bridge.WritableNativeArray;
-import com.facebook.react.bridge.WritableNativeMap;
-import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.BaseActivityEventListener;
 import com.facebook.react.common.ReactConstants;
 import com.facebook.react.module.annotations.ReactModule;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nullable;
 
@@ -77,39 +94,45 @@ public class CameraRollModule extends NativeCameraRollModuleSpec {
   private static final String ERROR_UNABLE_TO_SAVE = "E_UNABLE_TO_SAVE";
   private static final String ERROR_UNABLE_TO_DELETE = "E_UNABLE_TO_DELETE";
   private static final String ERROR_UNABLE_TO_FILTER = "E_UNABLE_TO_FILTER";
-
-  private static final String ASSET_TYPE_PHOTOS = "Photos";
-  private static final String ASSET_TYPE_VIDEOS = "Videos";
-  private static final String ASSET_TYPE_ALL = "All";
-
-  private static final String INCLUDE_FILENAME = "filename";
-  private static final String INCLUDE_FILE_SIZE = "fileSize";
-  private static final String INCLUDE_FILE_EXTENSION = "fileExtension";
-  private static final String INCLUDE_LOCATION = "location";
-  private static final String INCLUDE_IMAGE_SIZE = "imageSize";
-  private static final String INCLUDE_PLAYABLE_DURATION = "playableDuration";
-  private static final String INCLUDE_ORIENTATION = "orientation";
-  private static final String INCLUDE_ALBUMS = "albums";
-  private static final String INCLUDE_SOURCE_TYPE = "sourceType";
+  private static final String ERROR_CANCELLED = "E_CANCELLED";
+
+  private static final String GRANULARITY_DAY = "day";
+  private static final String GRANULARITY_MONTH = "month";
+  private static final String GRANULARITY_YEAR = "year";
+
+  private static final String EVENT_DUPLICATES_PROGRESS = "onDuplicatesProgress";
+  private static final String EVENT_DUPLICATE_GROUPS = "onDuplicateGroups";
+  private static final int DEFAULT_DUPLICATE_DISTANCE = 6;
+  private static final int MAX_DUPLICATE_DISTANCE = 32;
+  private static final int MAX_HASH_WORKERS = 4;
+  private static final String EVENT_ASSET_HASHED = "onAssetHashed";
+  private static final int MAX_CONTENT_HASH_WORKERS = 3;
+  private static final String EVENT_EXPORT_PROGRESS = "onExportProgress";
+  private static final int MAX_EXPORT_WORKERS = 3;
+  private static final int MAX_CHUNK_LENGTH = 8 * 1024 * 1024;
+  private static final int DEFAULT_FRAME_SIZE = 256;
+  private static final int MAX_FRAME_SIZE = 4096;
+  private static final int FRAME_ENCODE_WORKERS = 2;
+  private static final int DEFAULT_QUERY_CHUNK_SIZE = 1000;
+  private static final int MAX_QUERY_WORKERS = 4;
+  private static final int DEFAULT_SEARCH_PAGE_SIZE = 50;
+  private static final String EVENT_LOCATION_INDEX_PROGRESS = "onLocationIndexProgress";
+  private static final int DEFAULT_REGION_LIMIT = 500;
+  private static final int MAX_REGION_ZOOM = 30;
+  private static final String SUB_TYPE_STORE = "subtypes";
+  private static final int SUB_TYPE_SAVE_BATCH = 500;
 
   private static final int DELETE_REQUEST_CODE = 1001;
   private Promise deletePromise;
+  private volatile @Nullable PagePrefetcher mPrefetcher;
+  private volatile @Nullable AssetReaderPool mReaderPool;
+  private @Nullable ExecutorService mQueryExecutor;
+  private @Nullable MediaSearch mSearch;
+  private @Nullable LocationIndexer mLocations;
+  private final Map<String, HashStore> mHashStores = new HashMap<>();
+  private final Map<String, ExportAssetsTask> mExports = new ConcurrentHashMap<>();
+  private final FileNameAllocator mFileNames = new FileNameAllocator();
 
-  private static final String[] PROJECTION = {
-          Images.Media._ID,
-          Images.Media.MIME_TYPE,
-          Images.Media.BUCKET_DISPLAY_NAME,
-          Images.Media.DATE_TAKEN,
-          MediaStore.MediaColumns.DATE_ADDED,
-          MediaStore.MediaColumns.DATE_MODIFIED,
-          MediaStore.MediaColumns.WIDTH,
-          MediaStore.MediaColumns.HEIGHT,
-          MediaStore.MediaColumns.SIZE,
-          MediaStore.MediaColumns.DATA,
-          MediaStore.MediaColumns.ORIENTATION,
-  };
-
-  private static final String SELECTION_BUCKET = Images.Media.BUCKET_DISPLAY_NAME + " = ?";
 
   public CameraRollModule(ReactApplicationContext reactContext) {
     super(reactContext);
@@ -140,12 +163,32 @@ public class CameraRollModule extends NativeCameraRollModuleSpec {
    * from wherever it may be to the external storage pictures directory, so that it can be scanned
    * by the MediaScanner.
    *
+   * An image can instead be resized and re-encoded on the way, see {@link ImageTranscoder}, which
+   * writes far less than copying a full size image and downsizing it afterwards.
+   *
    * @param uri     the file:// URI of the image to save
+   * @param options a map that may contain album, type, and for images maxDimension (the largest
+   *                width or height to save at), format ("jpeg", "png" or "webp") and quality
+   *                (from 0 to 1, defaults to 0.9)
    * @param promise to be resolved or rejected
    */
   @ReactMethod
   public void saveToCameraRoll(String uri, ReadableMap options, Promise promise) {
-    new SaveToCameraRoll(getReactApplicationContext(), Uri.parse(uri), options, promise)
+    Uri source = Uri.parse(uri);
+    ImageTranscoder transcoder;
+    try {
+      transcoder = ImageTranscoder.fromOptions(options, Utils.getMimeType(source.toString()));
+    } catch (IllegalArgumentException e) {
+      promise.reject(ERROR_UNABLE_TO_SAVE, e.getMessage());
+      return;
+    }
+    new SaveToCameraRoll(
+            getReactApplicationContext(),
+            source,
+            options,
+            transcoder,
+            mFileNames,
+            promise)
             .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
   }
 
@@ -155,13 +198,23 @@ public class CameraRollModule extends NativeCameraRollModuleSpec {
     private final Uri mUri;
     private final Promise mPromise;
     private final ReadableMap mOptions;
+    private final @Nullable ImageTranscoder mTranscoder;
+    private final FileNameAllocator mFileNames;
 
-    public SaveToCameraRoll(ReactContext context, Uri uri, ReadableMap options, Promise promise) {
+    public SaveToCameraRoll(
+            ReactContext context,
+            Uri uri,
+            ReadableMap options,
+            @Nullable ImageTranscoder transcoder,
+            FileNameAllocator fileNames,
+            Promise promise) {
       super(context);
       mContext = context;
       mUri = uri;
       mPromise = promise;
       mOptions = options;
+      mTranscoder = transcoder;
+      mFileNames = fileNames;
     }
 
     @Override
@@ -172,6 +225,16 @@ public class CameraRollModule extends NativeCameraRollModuleSpec {
 
       String mimeType = Utils.getMimeType(mUri.toString());
       Boolean isVideo = mimeType != null && mimeType.contains("video");
+      if (isVideo && mTranscoder != null) {
+        mPromise.reject(ERROR_UNABLE_TO_SAVE, "maxDimension, format and quality only apply to images");
+        return;
+      }
+      String fileName = mTranscoder != null
+              ? mTranscoder.getFileName(source.getName())
+              : source.getName();
+      if (mTranscoder != null) {
+        mimeType = mTranscoder.getMimeType();
+      }
 
       try {
         String album = mOptions.getString("album");
@@ -185,24 +248,53 @@ public class CameraRollModule extends NativeCameraRollModuleSpec {
             mediaDetails.put(MediaStore.MediaColumns.RELATIVE_PATH, relativePath);
           }
           mediaDetails.put(MediaStore.MediaColumns.MIME_TYPE, mimeType);
-          mediaDetails.put(Images.Media.DISPLAY_NAME, source.getName());
+          mediaDetails.put(Images.Media.DISPLAY_NAME, fileName);
           mediaDetails.put(Images.Media.IS_PENDING, 1);
           ContentResolver resolver = mContext.getContentResolver();
+          long publishStart = PerformanceStats.begin(PerformanceStats.STAGE_SAVE_PUBLISH);
           Uri mediaContentUri = isVideo
                   ? resolver.insert(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, mediaDetails)
                   : resolver.insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, mediaDetails);
+          PerformanceStats.end(PerformanceStats.STAGE_SAVE_PUBLISH, publishStart);
           if (mediaContentUri == null) {
+            PerformanceStats.addFailure(PerformanceStats.STAGE_SAVE_PUBLISH);
             mPromise.reject(ERROR_UNABLE_TO_LOAD, "ContentResolver#insert() returns null, insert failed");
+            return;
+          }
+          if (mTranscoder != null) {
+            output = resolver.openOutputStream(mediaContentUri);
+            transcode(source, output);
+            output.close();
+            output = null;
+            if (mTranscoder.keepsExif()) {
+              try (ParcelFileDescriptor descriptor =
+                           resolver.openFileDescriptor(mediaContentUri, "rw")) {
+                mTranscoder.writeExif(new ExifInterface(descriptor.getFileDescriptor()));
+              } catch (IOException e) {
+                FLog.w(ReactConstants.TAG, "Could not write EXIF of " + mediaContentUri, e);
+              }
+            }
+          } else {
+            long copyStart = PerformanceStats.begin(PerformanceStats.STAGE_SAVE_COPY);
+            try {
+              output = resolver.openOutputStream(mediaContentUri);
+              input = new FileInputStream(source);
+              PerformanceStats.addBytes(PerformanceStats.STAGE_SAVE_COPY, FileUtils.copy(input, output));
+            } finally {
+              PerformanceStats.end(PerformanceStats.STAGE_SAVE_COPY, copyStart);
+            }
+          }
+          publishStart = PerformanceStats.begin(PerformanceStats.STAGE_SAVE_PUBLISH);
+          try {
+            mediaDetails.clear();
+            mediaDetails.put(Images.Media.IS_PENDING, 0);
+            resolver.update(mediaContentUri, mediaDetails, null, null);
+
+            WritableMap asset = getSingleAssetInfo(mediaContentUri);
+            mPromise.resolve(asset);
+          } finally {
+            PerformanceStats.end(PerformanceStats.STAGE_SAVE_PUBLISH, publishStart);
           }
-          output = resolver.openOutputStream(mediaContentUri);
-          input = new FileInputStream(source);
-          FileUtils.copy(input, output);
-          mediaDetails.clear();
-          mediaDetails.put(Images.Media.IS_PENDING, 0);
-          resolver.update(mediaContentUri, mediaDetails, null, null);
-
-          WritableMap asset = getSingleAssetInfo(mediaContentUri);
-          mPromise.resolve(asset);
         } else {
           final File environment;
           // Media is not saved into an album when using Environment.DIRECTORY_DCIM.
@@ -231,28 +323,34 @@ public class CameraRollModule extends NativeCameraRollModuleSpec {
             return;
           }
 
-          File dest = new File(exportDir, source.getName());
-          int n = 0;
-          String fullSourceName = source.getName();
-          String sourceName, sourceExt;
-          if (fullSourceName.indexOf('.') >= 0) {
-            sourceName = fullSourceName.substring(0, fullSourceName.lastIndexOf('.'));
-            sourceExt = fullSourceName.substring(fullSourceName.lastIndexOf('.'));
+          File dest = mFileNames.create(exportDir, fileName);
+          if (mTranscoder != null) {
+            output = new FileOutputStream(dest);
+            transcode(source, output);
+            output.close();
+            if (mTranscoder.keepsExif()) {
+              try {
+                mTranscoder.writeExif(new ExifInterface(dest.getAbsolutePath()));
+              } catch (IOException e) {
+                FLog.w(ReactConstants.TAG, "Could not write EXIF of " + dest, e);
+              }
+            }
           } else {
-            sourceName = fullSourceName;
-            sourceExt = "";
-          }
-          while (!dest.createNewFile()) {
-            dest = new File(exportDir, sourceName + "_" + (n++) + sourceExt);
+            long copyStart = PerformanceStats.begin(PerformanceStats.STAGE_SAVE_COPY);
+            try {
+              input = new FileInputStream(source);
+              output = new FileOutputStream(dest);
+              long copied = ((FileOutputStream) output).getChannel()
+                      .transferFrom(input.getChannel(), 0, input.getChannel().size());
+              PerformanceStats.addBytes(PerformanceStats.STAGE_SAVE_COPY, copied);
+              input.close();
+              output.close();
+            } finally {
+              PerformanceStats.end(PerformanceStats.STAGE_SAVE_COPY, copyStart);
+            }
           }
-          input = new FileInputStream(source);
-          output = new FileOutputStream(dest);
-          ((FileOutputStream) output).getChannel()
-                  .transferFrom(input.getChannel(), 0, input.getChannel().size());
-          input.close();
-          output.close();
-
 
+          final long scanStart = PerformanceStats.beginAsync(PerformanceStats.STAGE_SAVE_PUBLISH);
           MediaScannerConnection.scanFile(
                   mContext,
                   new String[]{dest.getAbsolutePath()},
@@ -263,11 +361,14 @@ public class CameraRollModule extends NativeCameraRollModuleSpec {
                         WritableMap asset = getSingleAssetInfo(uri);
                         mPromise.resolve(asset);
                       } catch (Exception exc) {
+                        PerformanceStats.addFailure(PerformanceStats.STAGE_SAVE_PUBLISH);
                         mPromise.reject(ERROR_UNABLE_TO_SAVE, exc.getMessage());
                       }
                     } else {
+                      PerformanceStats.addFailure(PerformanceStats.STAGE_SAVE_PUBLISH);
                       mPromise.reject(ERROR_UNABLE_TO_SAVE, "Could not add image to gallery");
                     }
+                    PerformanceStats.end(PerformanceStats.STAGE_SAVE_PUBLISH, scanStart);
                   });
         }
       } catch (IOException e) {
@@ -290,30 +391,35 @@ public class CameraRollModule extends NativeCameraRollModuleSpec {
       }
     }
 
+    private void transcode(File source, OutputStream output) throws IOException {
+      long start = PerformanceStats.begin(PerformanceStats.STAGE_SAVE_TRANSCODE);
+      try {
+        mTranscoder.transcode(source, output);
+        PerformanceStats.addRows(PerformanceStats.STAGE_SAVE_TRANSCODE, 1);
+        PerformanceStats.addBytes(PerformanceStats.STAGE_SAVE_TRANSCODE, source.length());
+      } catch (IOException | RuntimeException e) {
+        PerformanceStats.addFailure(PerformanceStats.STAGE_SAVE_TRANSCODE);
+        throw e;
+      } finally {
+        PerformanceStats.end(PerformanceStats.STAGE_SAVE_TRANSCODE, start);
+      }
+    }
+
     private WritableMap getSingleAssetInfo(Uri assetUri) {
       ContentResolver resolver = mContext.getContentResolver();
 
+      // Through the files table, which has the columns of both images and videos on every version
       Cursor cursor = resolver.query(
-              assetUri,
-              PROJECTION,
-              null,
-              null,
+              MediaStore.Files.getContentUri("external"),
+              MediaRowCodec.getProjection(Build.VERSION.SDK_INT),
+              Images.Media._ID + " = ?",
+              new String[]{Long.toString(ContentUris.parseId(assetUri))},
               null);
       if (cursor == null) {
         throw new RuntimeException("Failed to find the photo that was just saved!");
       }
       cursor.moveToFirst();
-      WritableMap asset = convertMediaToMap(resolver,
-              cursor,
-              Set.of(INCLUDE_LOCATION,
-                      INCLUDE_FILENAME,
-                      INCLUDE_FILE_SIZE,
-                      INCLUDE_FILE_EXTENSION,
-                      INCLUDE_IMAGE_SIZE,
-                      INCLUDE_PLAYABLE_DURATION,
-                      INCLUDE_ORIENTATION,
-                      INCLUDE_ALBUMS,
-                      INCLUDE_SOURCE_TYPE));
+      WritableMap asset = new MediaRowCodec(resolver, cursor, MediaRowCodec.INCLUDE_ALL).convert(cursor);
       cursor.close();
       return asset;
     }
@@ -331,6 +437,11 @@ public class CameraRollModule extends NativeCameraRollModuleSpec {
    *                  </li>
    *                  <li>groupName (optional): an album name</li>
    *                  <li>
+   *                    albumIds (optional): restrict returned media to these albums, using the ids
+   *                    returned by {@link #getAlbums}
+   *                  </li>
+   *                  <li>excludeAlbumIds (optional): album ids whose media should be left out</li>
+   *                  <li>
    *                    mimeType (optional): restrict returned images to a specific mimetype (e.g.
    *                    image/jpeg)
    *                  </li>
@@ -338,6 +449,47 @@ public class CameraRollModule extends NativeCameraRollModuleSpec {
    *                    assetType (optional): chooses between either photos or videos from the camera roll.
    *                    Valid values are "Photos" or "Videos". Defaults to photos.
    *                  </li>
+   *                  <li>
+   *                    prefetch (optional): once the page is served, fetch the next one in the
+   *                    background so that a following call for it resolves immediately
+   *                  </li>
+   *                  <li>
+   *                    timeColumn (optional): the single column used by fromTime/toTime and by the sort
+   *                    order. Valid values are "dateAdded", "dateTaken" or "dateModified". Defaults to the
+   *                    legacy behaviour, which filters on date taken and sorts on date added.
+   *                  </li>
+   *                  <li>
+   *                    exifTags (optional): when include contains "exif", the tags to read, see the
+   *                    TAG_ constants of {@link ExifHeaderReader}. Defaults to all of them.
+   *                  </li>
+   *                  <li>
+   *                    columns (optional): return the page as one array per field under
+   *                    {@code columns} rather than as {@code edges}, see {@link MediaPageColumns}.
+   *                    The JS wrapper turns them back into edges, building each node once read.
+   *                  </li>
+   *                  <li>
+   *                    chunkSize (optional): the number of rows to query from MediaStore at once
+   *                    when first is larger, the next chunk being queried while the current one
+   *                    is converted. Defaults to 1000, 0 queries the whole page at once.
+   *                  </li>
+   *                  <li>
+   *                    volumes (optional): the MediaStore volumes to read, see {@link #getVolumes}.
+   *                    Each one is queried at once and their rows are merged in order, the page
+   *                    cursor holding the position reached in each. Defaults to all of them
+   *                    through the "external" volume.
+   *                  </li>
+   *                  <li>
+   *                    timeBudgetMs (optional): stop converting rows once this much time has passed
+   *                    since the page was queried, returning the rows converted so far (at least
+   *                    one) with a cursor to the next one, and report the time taken per row under
+   *                    {@code timing} so that the next page can be sized to fit.
+   *                  </li>
+   *                  <li>
+   *                    subTypes, excludeSubTypes (optional): keep only the assets with one of
+   *                    these subtypes, or drop them, inside the query, see {@link MediaSubTypes}.
+   *                    Valid values are "PhotoScreenshot", "VideoScreenRecording", "PhotoBurst" and
+   *                    "Download".
+   *                  </li>
    *                </ul>
    * @param promise the Promise to be resolved when the photos are loaded; for a format of the
    *                parameters passed to this callback, see {@code getPhotosReturnChecker} in CameraRoll.js
@@ -346,29 +498,207 @@ public class CameraRollModule extends NativeCameraRollModuleSpec {
   public void getPhotos(final ReadableMap params, final Promise promise) {
     int first = params.getInt("first");
     String after = params.hasKey("after") ? params.getString("after") : null;
-    String groupName = params.hasKey("groupName") ? params.getString("groupName") : null;
-    String assetType = params.hasKey("assetType") ? params.getString("assetType") : ASSET_TYPE_PHOTOS;
-    long fromTime = params.hasKey("fromTime") ? (long) params.getDouble("fromTime") : 0;
-    long toTime = params.hasKey("toTime") ? (long) params.getDouble("toTime") : 0;
-    ReadableArray mimeTypes = params.hasKey("mimeTypes")
-            ? params.getArray("mimeTypes")
-            : null;
     ReadableArray include = params.hasKey("include") ? params.getArray("include") : null;
+    ReadableArray exifTags = params.hasKey("exifTags") ? params.getArray("exifTags") : null;
+    boolean prefetch = params.hasKey("prefetch") && params.getBoolean("prefetch");
+    boolean columns = params.hasKey("columns") && params.getBoolean("columns");
+    int chunkSize = params.hasKey("chunkSize") ? params.getInt("chunkSize") : DEFAULT_QUERY_CHUNK_SIZE;
+    if (chunkSize < 0) {
+      promise.reject(ERROR_UNABLE_TO_FILTER, "Invalid chunkSize: " + chunkSize + ". Expected 0 or more.");
+      return;
+    }
+    double timeBudgetMs = params.hasKey("timeBudgetMs") ? params.getDouble("timeBudgetMs") : 0;
+    if (params.hasKey("timeBudgetMs") && !(timeBudgetMs > 0)) {
+      promise.reject(
+              ERROR_UNABLE_TO_FILTER,
+              "Invalid timeBudgetMs: " + timeBudgetMs + ". Expected more than 0.");
+      return;
+    }
+    MediaQuery query;
+    @Nullable List<String> volumes;
+    try {
+      query = MediaQuery.fromParams(params, MediaQuery.ASSET_TYPE_PHOTOS);
+      ExifHeaderReader.getFields(exifTags);
+      volumes = getVolumes(params);
+      if (volumes != null) {
+        MultiVolumeQuery.parsePosition(after);
+      } else if (!TextUtils.isEmpty(after) && !TextUtils.isDigitsOnly(after)) {
+        throw new IllegalArgumentException(
+                "Invalid cursor: '" + after + "'. Expected the end_cursor of a getPhotos call without volumes.");
+      }
+    } catch (IllegalArgumentException e) {
+      promise.reject(ERROR_UNABLE_TO_FILTER, e.getMessage());
+      return;
+    }
 
     new GetMediaTask(
             getReactApplicationContext(),
             first,
             after,
-            groupName,
-            mimeTypes,
-            assetType,
-            fromTime,
-            toTime,
+            query,
+            volumes,
             include,
+            exifTags,
+            chunkSize,
+            columns,
+            (long) (timeBudgetMs * 1_000_000),
+            getHashStore(SUB_TYPE_STORE, 1),
+            prefetch ? getPrefetcher() : mPrefetcher,
+            prefetch,
+            getQueryExecutor(),
             promise)
             .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
   }
 
+  /**
+   * List the MediaStore volumes media can be read from, e.g. "external_primary" and the id of an SD
+   * card, to pass as the volumes of {@link #getPhotos} and {@link #getAlbums}. Before Android 10
+   * there is only "external".
+   */
+  @ReactMethod
+  public void getVolumes(Promise promise) {
+    WritableArray volumes = Arguments.createArray();
+    for (String volume : getExternalVolumeNames()) {
+      volumes.pushString(volume);
+    }
+    promise.resolve(volumes);
+  }
+
+  private Set<String> getExternalVolumeNames() {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+      return MediaStore.getExternalVolumeNames(getReactApplicationContext());
+    }
+    return Collections.singleton("external");
+  }
+
+  /**
+   * @return the volumes params restrict a query to, without duplicates, or null to read the
+   * "external" volume
+   * @throws IllegalArgumentException if one of them isn't attached
+   */
+  private @Nullable List<String> getVolumes(ReadableMap params) {
+    ReadableArray volumes = params.hasKey("volumes") ? params.getArray("volumes") : null;
+    if (volumes == null) {
+      return null;
+    }
+    if (volumes.size() == 0) {
+      throw new IllegalArgumentException("Invalid volumes: expected at least one volume.");
+    }
+    Set<String> attached = getExternalVolumeNames();
+    List<String> result = new ArrayList<>();
+    for (int i = 0; i < volumes.size(); i++) {
+      String volume = volumes.getString(i);
+      if (!attached.contains(volume)) {
+        throw new IllegalArgumentException(
+                "Invalid volume: '" + volume + "'. Expected one of " + attached + ".");
+      }
+      if (!result.contains(volume)) {
+        result.add(volume);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the threads that MediaStore chunks are queried on ahead of the task converting them.
+   * Those tasks run on {@link AsyncTask#THREAD_POOL_EXECUTOR} and block until their chunks are
+   * queried, so the chunks can't be queued there behind them.
+   */
+  private synchronized Executor getQueryExecutor() {
+    if (mQueryExecutor == null) {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(
+              MAX_QUERY_WORKERS,
+              MAX_QUERY_WORKERS,
+              30,
+              TimeUnit.SECONDS,
+              new LinkedBlockingQueue<>(),
+              runnable -> new Thread(runnable, "CameraRollQuery"));
+      executor.allowCoreThreadTimeOut(true);
+      mQueryExecutor = executor;
+    }
+    return mQueryExecutor;
+  }
+
+  private synchronized PagePrefetcher getPrefetcher() {
+    if (mPrefetcher == null) {
+      mPrefetcher = new PagePrefetcher(getReactApplicationContext().getContentResolver());
+    }
+    return mPrefetcher;
+  }
+
+  /**
+   * Report how often {@link #getPhotos} calls with {@code prefetch} were served from the page
+   * fetched ahead of them, to tune page sizes against the cost of prefetching.
+   */
+  @ReactMethod
+  public void getPrefetchStats(Promise promise) {
+    PagePrefetcher prefetcher = mPrefetcher;
+    promise.resolve(prefetcher != null ? prefetcher.getStats() : PagePrefetcher.getEmptyStats());
+  }
+
+  /**
+   * Start or stop recording the timings and counters reported by {@link #getPerformanceStats}.
+   *
+   * @param enabled whether to record; recording is off by default and costs next to nothing then
+   * @param trace   whether to also emit each stage as an {@link android.os.Trace} section, for
+   *                Perfetto or systrace captures
+   */
+  @ReactMethod
+  public void setPerformanceStatsEnabled(boolean enabled, boolean trace) {
+    PerformanceStats.setEnabled(enabled, trace);
+  }
+
+  /**
+   * Report the time spent in, and the rows, bytes, failures and skips of, each stage of the
+   * CameraRoll operations since recording was enabled.
+   *
+   * @param params  a map that may contain reset: whether to zero the counters once read
+   * @param promise resolved with {enabled, trace, stages}, stages being keyed by stage name
+   */
+  @ReactMethod
+  public void getPerformanceStats(ReadableMap params, Promise promise) {
+    boolean reset = params.hasKey("reset") && params.getBoolean("reset");
+    promise.resolve(PerformanceStats.getStats(reset));
+  }
+
+  @Override
+  public void invalidate() {
+    super.invalidate();
+    synchronized (this) {
+      if (mPrefetcher != null) {
+        mPrefetcher.release();
+        mPrefetcher = null;
+      }
+      if (mReaderPool != null) {
+        mReaderPool.release();
+        mReaderPool = null;
+      }
+      if (mQueryExecutor != null) {
+        // Chunks already queued are still queried, since tasks wait for them
+        mQueryExecutor.shutdown();
+        mQueryExecutor = null;
+      }
+      if (mSearch != null) {
+        mSearch.release();
+        mSearch = null;
+      }
+      if (mLocations != null) {
+        mLocations.release();
+        mLocations = null;
+      }
+      @Nullable HashStore subTypes = mHashStores.get(SUB_TYPE_STORE);
+      if (subTypes != null) {
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(() -> {
+          try {
+            subTypes.save();
+          } catch (IOException e) {
+            FLog.w(ReactConstants.TAG, "Could not save the subtypes", e);
+          }
+        });
+      }
+    }
+  }
+
     @ReactMethod
     public void deleteMediaFiles(ReadableArray uriArray, Promise promise) {
     ContentResolver contentResolver = getReactApplicationContext().getContentResolver();
@@ -381,27 +711,37 @@ public class CameraRollModule extends NativeCameraRollModuleSpec {
 
     this.deletePromise = promise;
 
+    // From Android 11 on, this only covers building the request the user is asked to confirm
+    long deleteStart = PerformanceStats.begin(PerformanceStats.STAGE_DELETE);
     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
         try {
             IntentSender intentSender = MediaStore.createDeleteRequest(contentResolver, urisToDelete).getIntentSender();
             Activity activity = getCurrentActivity();
             if (activity != null) {
                 activity.startIntentSenderForResult(intentSender, DELETE_REQUEST_CODE, null, 0, 0, 0);
+                PerformanceStats.addRows(PerformanceStats.STAGE_DELETE, urisToDelete.size());
             } else {
+                PerformanceStats.addFailure(PerformanceStats.STAGE_DELETE);
                 promise.reject("ERROR", "Activity is null");
             }
         } catch (Exception e) {
+            PerformanceStats.addFailure(PerformanceStats.STAGE_DELETE);
             promise.reject("ERROR", e.getMessage());
+        } finally {
+            PerformanceStats.end(PerformanceStats.STAGE_DELETE, deleteStart);
         }
     } else {
         // Handle pre-Android 11 deletion
         try {
             for (Uri uri : urisToDelete) {
-                contentResolver.delete(uri, null, null);
+                PerformanceStats.addRows(PerformanceStats.STAGE_DELETE, contentResolver.delete(uri, null, null));
             }
             promise.resolve("Files deleted");
         } catch (Exception e) {
+            PerformanceStats.addFailure(PerformanceStats.STAGE_DELETE);
             promise.reject("ERROR", e.getMessage());
+        } finally {
+            PerformanceStats.end(PerformanceStats.STAGE_DELETE, deleteStart);
         }
     }
 }
@@ -412,38 +752,59 @@ public class CameraRollModule extends NativeCameraRollModuleSpec {
     private final int mFirst;
     private final @Nullable
     String mAfter;
-    private final @Nullable
-    String mGroupName;
-    private final @Nullable
-    ReadableArray mMimeTypes;
+    private final MediaQuery mQuery;
+    private final @Nullable List<String> mVolumes;
     private final Promise mPromise;
-    private final String mAssetType;
-    private final long mFromTime;
-    private final long mToTime;
     private final Set<String> mInclude;
+    private final String mIncludeKey;
+    private final @Nullable
+    PagePrefetcher mPrefetcher;
+    private final boolean mPrefetch;
+    private final int mChunkSize;
+    private final boolean mColumns;
+    /** 0 for no budget. */
+    private final long mTimeBudgetNs;
+    private final @Nullable HashStore mSubTypeStore;
+    private final Executor mQueryExecutor;
 
     private GetMediaTask(
             ReactContext context,
             int first,
             @Nullable String after,
-            @Nullable String groupName,
-            @Nullable ReadableArray mimeTypes,
-            String assetType,
-            long fromTime,
-            long toTime,
+            MediaQuery query,
+            @Nullable List<String> volumes,
             @Nullable ReadableArray include,
+            @Nullable ReadableArray exifTags,
+            int chunkSize,
+            boolean columns,
+            long timeBudgetNs,
+            HashStore subTypeStore,
+            @Nullable PagePrefetcher prefetcher,
+            boolean prefetch,
+            Executor queryExecutor,
             Promise promise) {
       super(context);
       mContext = context;
       mFirst = first;
       mAfter = after;
-      mGroupName = groupName;
-      mMimeTypes = mimeTypes;
+      mQuery = query;
+      mVolumes = volumes;
       mPromise = promise;
-      mAssetType = assetType;
-      mFromTime = fromTime;
-      mToTime = toTime;
       mInclude = createSetFromIncludeArray(include);
+      if (exifTags != null && mInclude.contains(MediaRowCodec.INCLUDE_EXIF)) {
+        for (int i = 0; i < exifTags.size(); i++) {
+          mInclude.add(MediaRowCodec.INCLUDE_EXIF_TAG_PREFIX + exifTags.getString(i));
+        }
+      }
+      mIncludeKey = new TreeSet<>(mInclude).toString();
+      mPrefetcher = prefetcher;
+      mPrefetch = prefetch;
+      mChunkSize = chunkSize;
+      mColumns = columns;
+      mTimeBudgetNs = timeBudgetNs;
+      // Only read for the motion photo flag, which only subTypes asks for
+      mSubTypeStore = mInclude.contains(MediaRowCodec.INCLUDE_SUB_TYPES) ? subTypeStore : null;
+      mQueryExecutor = queryExecutor;
     }
 
     private static Set<String> createSetFromIncludeArray(@Nullable ReadableArray includeArray) {
@@ -465,151 +826,312 @@ public class CameraRollModule extends NativeCameraRollModuleSpec {
 
     @Override
     protected void doInBackgroundGuarded(Void... params) {
-      StringBuilder selection = new StringBuilder("1");
-      List<String> selectionArgs = new ArrayList<>();
-      if (!TextUtils.isEmpty(mGroupName)) {
-        selection.append(" AND " + SELECTION_BUCKET);
-        selectionArgs.add(mGroupName);
-      }
-
-      if (mAssetType.equals(ASSET_TYPE_PHOTOS)) {
-        selection.append(" AND " + MediaStore.Files.FileColumns.MEDIA_TYPE + " = "
-                + MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE);
-      } else if (mAssetType.equals(ASSET_TYPE_VIDEOS)) {
-        selection.append(" AND " + MediaStore.Files.FileColumns.MEDIA_TYPE + " = "
-                + MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO);
-      } else if (mAssetType.equals(ASSET_TYPE_ALL)) {
-        selection.append(" AND " + MediaStore.Files.FileColumns.MEDIA_TYPE + " IN ("
-                + MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO + ","
-                + MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE + ")");
-      } else {
-        mPromise.reject(
-                ERROR_UNABLE_TO_FILTER,
-                "Invalid filter option: '" + mAssetType + "'. Expected one of '"
-                        + ASSET_TYPE_PHOTOS + "', '" + ASSET_TYPE_VIDEOS + "' or '" + ASSET_TYPE_ALL + "'."
-        );
-        return;
-      }
-
+      try {
+        if (mSubTypeStore != null) {
+          mSubTypeStore.load();
+        }
+        @Nullable MediaPage page = null;
+        if (mPrefetcher != null) {
+          page = mPrefetcher.take(getPageKey(mAfter), mPrefetch);
+        }
+        if (page == null) {
+          page = queryPage(mAfter);
+        }
+        if (page == null) {
+          mPromise.reject(ERROR_UNABLE_TO_LOAD, "Could not get media");
+          return;
+        }
+        final String endCursor = page.endCursor;
+        long resolveStart = PerformanceStats.begin(PerformanceStats.STAGE_PHOTOS_RESOLVE);
+        try {
+          mPromise.resolve(page.response);
+        } finally {
+          PerformanceStats.end(PerformanceStats.STAGE_PHOTOS_RESOLVE, resolveStart);
+        }
+        saveSubTypes();
 
-      if (mMimeTypes != null && mMimeTypes.size() > 0) {
-        selection.append(" AND " + Images.Media.MIME_TYPE + " IN (");
-        for (int i = 0; i < mMimeTypes.size(); i++) {
-          selection.append("?,");
-          selectionArgs.add(mMimeTypes.getString(i));
+        if (mPrefetch && mPrefetcher != null && endCursor != null) {
+          mPrefetcher.prefetch(getPageKey(endCursor), () -> queryPage(endCursor));
         }
-        selection.replace(selection.length() - 1, selection.length(), ")");
+      } catch (SecurityException e) {
+        mPromise.reject(
+                ERROR_UNABLE_TO_LOAD_PERMISSION,
+                "Could not get media: need READ_EXTERNAL_STORAGE permission",
+                e);
       }
+    }
 
-      if (mFromTime > 0) {
-        long addedDate = mFromTime / 1000;
-        selection.append(" AND (" + Images.Media.DATE_TAKEN + " > ? OR ( " + Images.Media.DATE_TAKEN
-                + " IS NULL AND " + Images.Media.DATE_ADDED + "> ? ))");
-        selectionArgs.add(mFromTime + "");
-        selectionArgs.add(addedDate + "");
+    /**
+     * Saves the motion photo flags read so far once there are enough of them, since each save
+     * rewrites the whole store. The rest are saved when the module is invalidated.
+     */
+    private void saveSubTypes() {
+      if (mSubTypeStore == null || !mSubTypeStore.isWorthSaving(SUB_TYPE_SAVE_BATCH)) {
+        return;
       }
-      if (mToTime > 0) {
-        long addedDate = mToTime / 1000;
-        selection.append(" AND (" + Images.Media.DATE_TAKEN + " <= ? OR ( " + Images.Media.DATE_TAKEN
-                + " IS NULL AND " + Images.Media.DATE_ADDED + " <= ? ))");
-        selectionArgs.add(mToTime + "");
-        selectionArgs.add(addedDate + "");
+      try {
+        mSubTypeStore.save();
+      } catch (IOException e) {
+        FLog.w(ReactConstants.TAG, "Could not save the subtypes", e);
       }
+    }
 
-      WritableMap response = new WritableNativeMap();
-      ContentResolver resolver = mContext.getContentResolver();
+    private MediaRowCodec createCodec(ContentResolver resolver, Cursor media) {
+      MediaRowCodec codec = new MediaRowCodec(resolver, media, mInclude);
+      codec.setSubTypeStore(mSubTypeStore);
+      return codec;
+    }
 
+    /**
+     * @return the page starting at the given cursor, or null if MediaStore returned no cursor
+     */
+    private @Nullable MediaPage queryPage(@Nullable String after) {
+      if (mVolumes != null) {
+        return queryVolumesPage(mVolumes, after);
+      }
+      long startNs = System.nanoTime();
+      WritableMap response = Arguments.createMap();
+      ContentResolver resolver = mContext.getContentResolver();
+      int offset = !TextUtils.isEmpty(after) ? Integer.parseInt(after) : 0;
+
+      // Query first + 1 rows so that we know how to populate page_info
+      ChunkedMediaQuery chunks = new ChunkedMediaQuery(
+              resolver,
+              "external",
+              mQuery,
+              offset,
+              mFirst + 1,
+              mChunkSize,
+              mQueryExecutor);
       try {
-        Cursor media;
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
-          Bundle bundle = new Bundle();
-          bundle.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, selection.toString());
-          bundle.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS,
-                  selectionArgs.toArray(new String[selectionArgs.size()]));
-          bundle.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, Images.Media.DATE_ADDED + " DESC, " + Images.Media.DATE_MODIFIED + " DESC");
-          bundle.putInt(ContentResolver.QUERY_ARG_LIMIT, mFirst + 1);
-          if (!TextUtils.isEmpty(mAfter)) {
-            bundle.putInt(ContentResolver.QUERY_ARG_OFFSET, Integer.parseInt(mAfter));
+        @Nullable Cursor media = chunks.next();
+        if (media == null) {
+          return null;
+        }
+        long convertStart = PerformanceStats.begin(PerformanceStats.STAGE_PHOTOS_CONVERT);
+        try {
+          long convertStartNs = System.nanoTime();
+          long deadlineNs = mTimeBudgetNs > 0 ? startNs + mTimeBudgetNs : Long.MAX_VALUE;
+          @Nullable WritableArray edges = mColumns ? null : Arguments.createArray();
+          @Nullable MediaPageColumns columns = mColumns ? new MediaPageColumns(mInclude) : null;
+          MediaRowCodec codec = createCodec(resolver, media);
+          int edgeCount = 0;
+          int rowCount = 0;
+          int readCount = 0;
+          boolean outOfTime = false;
+          do {
+            rowCount += media.getCount();
+            edgeCount += putEdges(
+                    codec, media, edges, columns, mFirst - edgeCount, edgeCount > 0, deadlineNs);
+            readCount += Math.min(media.getPosition() + 1, media.getCount());
+            // Rows left unread before first edges were added: the budget ran out
+            outOfTime = edgeCount < mFirst && readCount < rowCount;
+          } while (!outOfTime && (media = chunks.next()) != null);
+          if (chunks.hasFailed()) {
+            return null;
           }
-          media = resolver.query(
-                  MediaStore.Files.getContentUri("external"),
-                  PROJECTION,
-                  bundle,
-                  null);
-        } else {
-          // set LIMIT to first + 1 so that we know how to populate page_info
-          String limit = "limit=" + (mFirst + 1);
-          if (!TextUtils.isEmpty(mAfter)) {
-            limit = "limit=" + mAfter + "," + (mFirst + 1);
+          if (columns != null) {
+            response.putMap("columns", columns.toMap());
+          } else {
+            response.putArray("edges", edges);
           }
-          media = resolver.query(
-                  MediaStore.Files.getContentUri("external").buildUpon().encodedQuery(limit).build(),
-                  PROJECTION,
-                  selection.toString(),
-                  selectionArgs.toArray(new String[selectionArgs.size()]),
-                  Images.Media.DATE_ADDED + " DESC, " + Images.Media.DATE_MODIFIED + " DESC");
+          if (mTimeBudgetNs > 0) {
+            putTiming(response, startNs, convertStartNs, readCount, outOfTime);
+          }
+          if (outOfTime) {
+            // Skipped rows were read too, so the next page starts after the last row read
+            putPageInfo(response, rowCount, readCount, offset);
+            return new MediaPage(response, Integer.toString(offset + readCount));
+          }
+          putPageInfo(response, rowCount, mFirst, offset);
+          return new MediaPage(
+                  response,
+                  mFirst < rowCount ? Integer.toString(offset + mFirst) : null);
+        } finally {
+          PerformanceStats.end(PerformanceStats.STAGE_PHOTOS_CONVERT, convertStart);
         }
+      } finally {
+        chunks.close();
+      }
+    }
 
-        if (media == null) {
-          mPromise.reject(ERROR_UNABLE_TO_LOAD, "Could not get media");
-        } else {
-          try {
-            putEdges(resolver, media, response, mFirst, mInclude);
-            putPageInfo(media, response, mFirst, !TextUtils.isEmpty(mAfter) ? Integer.parseInt(mAfter) : 0);
-          } finally {
-            media.close();
-            mPromise.resolve(response);
+    /**
+     * Like {@link #queryPage}, merging the rows of the given volumes.
+     */
+    private @Nullable MediaPage queryVolumesPage(List<String> volumes, @Nullable String after) {
+      long startNs = System.nanoTime();
+      WritableMap response = Arguments.createMap();
+      ContentResolver resolver = mContext.getContentResolver();
+
+      // Query first + 1 rows of each volume, since the whole page may come from any one of them
+      MultiVolumeQuery query = new MultiVolumeQuery(
+              resolver,
+              mQuery,
+              volumes,
+              MultiVolumeQuery.parsePosition(after),
+              mFirst + 1,
+              mChunkSize,
+              mQueryExecutor);
+      try {
+        long convertStart = PerformanceStats.begin(PerformanceStats.STAGE_PHOTOS_CONVERT);
+        try {
+          @Nullable WritableArray edges = mColumns ? null : Arguments.createArray();
+          @Nullable MediaPageColumns columns = mColumns ? new MediaPageColumns(mInclude) : null;
+          // All volumes are queried with the same projection, so the columns line up
+          @Nullable MediaRowCodec codec = null;
+          long convertStartNs = System.nanoTime();
+          long deadlineNs = mTimeBudgetNs > 0 ? startNs + mTimeBudgetNs : Long.MAX_VALUE;
+          int edgeCount = 0;
+          int readCount = 0;
+          boolean outOfTime = false;
+          @Nullable Cursor media;
+          while (edgeCount < mFirst) {
+            if (edgeCount > 0 && System.nanoTime() >= deadlineNs) {
+              outOfTime = true;
+              break;
+            }
+            if ((media = query.next()) == null) {
+              break;
+            }
+            if (codec == null) {
+              codec = createCodec(resolver, media);
+            }
+            readCount++;
+            if (putEdge(codec, media, edges, columns)) {
+              edgeCount++;
+            }
+          }
+          boolean hasNextPage = query.hasMore();
+          if (query.hasFailed()) {
+            return null;
+          }
+          if (columns != null) {
+            response.putMap("columns", columns.toMap());
+          } else {
+            response.putArray("edges", edges);
+          }
+          if (mTimeBudgetNs > 0) {
+            putTiming(response, startNs, convertStartNs, readCount, outOfTime && hasNextPage);
           }
+          String endCursor = hasNextPage ? query.getPosition() : null;
+          WritableMap pageInfo = Arguments.createMap();
+          pageInfo.putBoolean("has_next_page", hasNextPage);
+          if (endCursor != null) {
+            pageInfo.putString("end_cursor", endCursor);
+          }
+          response.putMap("page_info", pageInfo);
+          return new MediaPage(response, endCursor);
+        } finally {
+          PerformanceStats.end(PerformanceStats.STAGE_PHOTOS_CONVERT, convertStart);
         }
-      } catch (SecurityException e) {
-        mPromise.reject(
-                ERROR_UNABLE_TO_LOAD_PERMISSION,
-                "Could not get media: need READ_EXTERNAL_STORAGE permission",
-                e);
+      } finally {
+        query.close();
       }
     }
+
+    /**
+     * @return a key identifying the page starting at the given cursor for this exact query
+     */
+    private String getPageKey(@Nullable String after) {
+      return mQuery.key + '\u0000' + mVolumes + '\u0000' + mFirst + '\u0000' + mIncludeKey
+              + '\u0000' + mColumns + '\u0000' + mTimeBudgetNs + '\u0000' + after;
+    }
+  }
+
+  /**
+   * A {@code getPhotos} response, along with the cursor of the page that follows it.
+   */
+  static class MediaPage {
+    final WritableMap response;
+    final @Nullable String endCursor;
+
+    MediaPage(WritableMap response, @Nullable String endCursor) {
+      this.response = response;
+      this.endCursor = endCursor;
+    }
   }
 
+  /**
+   * Get the albums holding media, with the number of media in each.
+   *
+   * @param params  a map that may contain assetType (defaults to "All") and volumes: the MediaStore
+   *                volumes to read, see {@link #getVolumes}. Each one is queried at once and their
+   *                counts are added up. Defaults to all of them through the "external" volume.
+   * @param promise resolved with the albums, each with its title, count and id
+   */
   @ReactMethod
   public void getAlbums(final ReadableMap params, final Promise promise) {
-    String assetType = params.hasKey("assetType") ? params.getString("assetType") : ASSET_TYPE_ALL;
+    String assetType = params.hasKey("assetType") ? params.getString("assetType") : MediaQuery.ASSET_TYPE_ALL;
     StringBuilder selection = new StringBuilder("1");
     List<String> selectionArgs = new ArrayList<>();
-    if (assetType.equals(ASSET_TYPE_PHOTOS)) {
-      selection.append(" AND " + MediaStore.Files.FileColumns.MEDIA_TYPE + " = "
-              + MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE);
-    } else if (assetType.equals(ASSET_TYPE_VIDEOS)) {
-      selection.append(" AND " + MediaStore.Files.FileColumns.MEDIA_TYPE + " = "
-              + MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO);
-    } else if (assetType.equals(ASSET_TYPE_ALL)) {
-      selection.append(" AND " + MediaStore.Files.FileColumns.MEDIA_TYPE + " IN ("
-              + MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO + ","
-              + MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE + ")");
-    } else {
-      promise.reject(
-              ERROR_UNABLE_TO_FILTER,
-              "Invalid filter option: '" + assetType + "'. Expected one of '"
-                      + ASSET_TYPE_PHOTOS + "', '" + ASSET_TYPE_VIDEOS + "' or '" + ASSET_TYPE_ALL + "'."
-      );
+    @Nullable List<String> volumes;
+    try {
+      MediaQuery.appendAssetType(selection, assetType);
+      volumes = getVolumes(params);
+    } catch (IllegalArgumentException e) {
+      promise.reject(ERROR_UNABLE_TO_FILTER, e.getMessage());
       return;
     }
 
     final String[] projection = {MediaStore.Images.ImageColumns.BUCKET_DISPLAY_NAME, MediaStore.Images.Media.BUCKET_ID};
+    final ContentResolver resolver = getReactApplicationContext().getContentResolver();
+    final String albumSelection = selection.toString();
+    final String[] albumSelectionArgs = selectionArgs.toArray(new String[selectionArgs.size()]);
 
+    List<Cursor> cursors = new ArrayList<>();
     try {
-      Cursor media = getReactApplicationContext().getContentResolver().query(
-              MediaStore.Files.getContentUri("external"),
-              projection,
-              selection.toString(),
-              selectionArgs.toArray(new String[selectionArgs.size()]),
-              null);
-      if (media == null) {
+      long queryStart = PerformanceStats.begin(PerformanceStats.STAGE_ALBUMS_QUERY);
+      try {
+        if (volumes == null) {
+          cursors.add(resolver.query(
+                  MediaStore.Files.getContentUri("external"),
+                  projection,
+                  albumSelection,
+                  albumSelectionArgs,
+                  null));
+        } else {
+          // Query every volume at once, then wait for all of them
+          List<FutureTask<Cursor>> tasks = new ArrayList<>();
+          for (String volume : volumes) {
+            FutureTask<Cursor> task = new FutureTask<>(() -> resolver.query(
+                    MediaStore.Files.getContentUri(volume),
+                    projection,
+                    albumSelection,
+                    albumSelectionArgs,
+                    null));
+            AsyncTask.THREAD_POOL_EXECUTOR.execute(task);
+            tasks.add(task);
+          }
+          ExecutionException failure = null;
+          for (FutureTask<Cursor> task : tasks) {
+            try {
+              cursors.add(task.get());
+            } catch (ExecutionException e) {
+              failure = e;
+            }
+          }
+          if (failure != null) {
+            throw failure;
+          }
+        }
+      } finally {
+        PerformanceStats.end(PerformanceStats.STAGE_ALBUMS_QUERY, queryStart);
+      }
+      if (cursors.contains(null)) {
+        PerformanceStats.addFailure(PerformanceStats.STAGE_ALBUMS_QUERY);
         promise.reject(ERROR_UNABLE_TO_LOAD, "Could not get media");
       } else {
-        WritableArray response = new WritableNativeArray();
+        WritableArray response = Arguments.createArray();
+        long convertStart = PerformanceStats.begin(PerformanceStats.STAGE_ALBUMS_CONVERT);
         try {
-          if (media.moveToFirst()) {
-            Map<String, Map<String, Object>> albums = new HashMap<>();
+          // Albums are keyed by bucket id, so two folders sharing a name stay separate and each
+          // id can be passed back to getPhotos as an albumIds filter. Bucket ids hash the folder
+          // path, which differs between volumes.
+          Map<String, Map<String, Object>> albums = new HashMap<>();
+          for (Cursor media : cursors) {
+            if (!media.moveToFirst()) {
+              continue;
+            }
             do {
               int column = media.getColumnIndex(MediaStore.Images.ImageColumns.BUCKET_DISPLAY_NAME);
               int albumIdIndex = media.getColumnIndex(Images.ImageColumns.BUCKET_ID);
@@ -619,10 +1141,10 @@ public class CameraRollModule extends NativeCameraRollModuleSpec {
               String albumId = media.getString(albumIdIndex);
               String albumName = media.getString(column);
               if (albumName != null) {
-                Map<String, Object> albumData = albums.get(albumName);
+                Map<String, Object> albumData = albums.get(albumId);
                 if (albumData == null) {
-                  albums.put(albumName, new HashMap<String, Object>() {{
-                    put("id", albumId);
+                  albums.put(albumId, new HashMap<String, Object>() {{
+                    put("title", albumName);
                     put("count", 1);
                   }});
                 } else {
@@ -631,450 +1153,1814 @@ public class CameraRollModule extends NativeCameraRollModuleSpec {
                 }
               }
             } while (media.moveToNext());
+            PerformanceStats.addRows(PerformanceStats.STAGE_ALBUMS_CONVERT, media.getCount());
+          }
 
-            for (Map.Entry<String, Map<String, Object>> albumEntry : albums.entrySet()) {
-              WritableMap album = new WritableNativeMap();
-              Map<String, Object> albumData = albumEntry.getValue();
-              album.putString("title", albumEntry.getKey());
-              album.putInt("count", (Integer) albumData.get("count"));
-              album.putString("id", (String) albumData.get("id"));
-              response.pushMap(album);
-            }
+          for (Map.Entry<String, Map<String, Object>> albumEntry : albums.entrySet()) {
+            WritableMap album = Arguments.createMap();
+            Map<String, Object> albumData = albumEntry.getValue();
+            album.putString("title", (String) albumData.get("title"));
+            album.putInt("count", (Integer) albumData.get("count"));
+            album.putString("id", albumEntry.getKey());
+            response.pushMap(album);
           }
         } finally {
-          media.close();
+          PerformanceStats.end(PerformanceStats.STAGE_ALBUMS_CONVERT, convertStart);
           promise.resolve(response);
         }
       }
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      promise.reject(ERROR_UNABLE_TO_LOAD, "Could not get media", cause != null ? cause : e);
     } catch (Exception e) {
       promise.reject(ERROR_UNABLE_TO_LOAD, "Could not get media", e);
+    } finally {
+      for (Cursor media : cursors) {
+        if (media != null) {
+          media.close();
+        }
+      }
     }
   }
 
-  private static void putPageInfo(Cursor media, WritableMap response, int limit, int offset) {
-    WritableMap pageInfo = new WritableNativeMap();
-    pageInfo.putBoolean("has_next_page", limit < media.getCount());
-    if (limit < media.getCount()) {
-      pageInfo.putString(
-              "end_cursor",
-              Integer.toString(offset + limit)
-      );
+  /**
+   * Find the photos and videos whose file or album name contains a query, ignoring case, e.g.
+   * "IMG_2023", "whatsapp" or "receipt". Names are looked up in an index kept in memory, built on
+   * the first search and updated as MediaStore reports changes, see {@link MediaSearch}.
+   *
+   * @param query   the text to look for
+   * @param options a map that may contain
+   *                <ul>
+   *                  <li>first (optional): the number of matches to return. Defaults to 50.</li>
+   *                  <li>after (optional): the end_cursor of the previous page</li>
+   *                  <li>include (optional): the extra fields of the nodes, as in {@link #getPhotos}</li>
+   *                </ul>
+   * @param promise resolved with a page of edges like {@link #getPhotos}, plus the total number of
+   *                matches. Matches whose file name starts with the query come first, then the
+   *                ones where it starts a word of the file name, then anywhere in it, then in the
+   *                album name only; most recent first within each.
+   */
+  @ReactMethod
+  public void searchAssets(String query, ReadableMap options, Promise promise) {
+    int first = options.hasKey("first") ? options.getInt("first") : DEFAULT_SEARCH_PAGE_SIZE;
+    String after = options.hasKey("after") ? options.getString("after") : null;
+    ReadableArray include = options.hasKey("include") ? options.getArray("include") : null;
+    if (first < 0) {
+      promise.reject(ERROR_UNABLE_TO_FILTER, "Invalid first: " + first + ". Expected 0 or more.");
+      return;
+    }
+    if (!TextUtils.isEmpty(after) && !TextUtils.isDigitsOnly(after)) {
+      promise.reject(
+              ERROR_UNABLE_TO_FILTER,
+              "Invalid cursor: '" + after + "'. Expected the end_cursor of a searchAssets call.");
+      return;
     }
-    response.putMap("page_info", pageInfo);
-  }
 
-  private static @Nullable WritableMap convertMediaToMap(
-          ContentResolver resolver,
-          Cursor media,
-          Set<String> include) {
-    int idIndex = media.getColumnIndex(Images.Media._ID);
-    int mimeTypeIndex = media.getColumnIndex(Images.Media.MIME_TYPE);
-    int groupNameIndex = media.getColumnIndex(Images.Media.BUCKET_DISPLAY_NAME);
-    int dateTakenIndex = media.getColumnIndex(Images.Media.DATE_TAKEN);
-    int dateAddedIndex = media.getColumnIndex(MediaStore.MediaColumns.DATE_ADDED);
-    int dateModifiedIndex = media.getColumnIndex(MediaStore.MediaColumns.DATE_MODIFIED);
-    int widthIndex = media.getColumnIndex(MediaStore.MediaColumns.WIDTH);
-    int heightIndex = media.getColumnIndex(MediaStore.MediaColumns.HEIGHT);
-    int sizeIndex = media.getColumnIndex(MediaStore.MediaColumns.SIZE);
-    int dataIndex = media.getColumnIndex(MediaStore.MediaColumns.DATA);
-    int orientationIndex = media.getColumnIndex(MediaStore.MediaColumns.ORIENTATION);
-
-    boolean includeLocation = include.contains(INCLUDE_LOCATION);
-    boolean includeFilename = include.contains(INCLUDE_FILENAME);
-    boolean includeFileSize = include.contains(INCLUDE_FILE_SIZE);
-    boolean includeFileExtension = include.contains(INCLUDE_FILE_EXTENSION);
-    boolean includeImageSize = include.contains(INCLUDE_IMAGE_SIZE);
-    boolean includePlayableDuration = include.contains(INCLUDE_PLAYABLE_DURATION);
-    boolean includeOrientation = include.contains(INCLUDE_ORIENTATION);
-    boolean includeAlbums = include.contains(INCLUDE_ALBUMS);
-    boolean includeSourceType = include.contains(INCLUDE_SOURCE_TYPE);
-
-    WritableMap map = new WritableNativeMap();
-    WritableMap node = new WritableNativeMap();
-    boolean imageInfoSuccess =
-            putImageInfo(resolver, media, node, widthIndex, heightIndex, sizeIndex, dataIndex, orientationIndex,
-                    mimeTypeIndex, includeFilename, includeFileSize, includeFileExtension, includeImageSize,
-                    includePlayableDuration, includeOrientation);
-    if (imageInfoSuccess) {
-      putBasicNodeInfo(media, node, idIndex, mimeTypeIndex, groupNameIndex, dateTakenIndex, dateAddedIndex, dateModifiedIndex, includeAlbums, includeSourceType);
-      putLocationInfo(media, node, dataIndex, includeLocation, mimeTypeIndex, resolver);
-
-      map.putMap("node", node);
-      return map;
+    new SearchAssetsTask(
+            getReactApplicationContext(),
+            getSearch(),
+            query,
+            first,
+            !TextUtils.isEmpty(after) ? Integer.parseInt(after) : 0,
+            include,
+            promise)
+            .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+  }
+
+  private synchronized MediaSearch getSearch() {
+    if (mSearch == null) {
+      mSearch = new MediaSearch(getReactApplicationContext().getContentResolver());
+    }
+    return mSearch;
+  }
+
+  private static class SearchAssetsTask extends GuardedAsyncTask<Void, Void> {
+    /** Stays well below SQLite's limit on the number of bound arguments. */
+    private static final int IDS_PER_QUERY = 500;
+
+    private final Context mContext;
+    private final MediaSearch mSearch;
+    private final String mQuery;
+    private final int mFirst;
+    private final int mOffset;
+    private final Set<String> mInclude = new HashSet<>();
+    private final Promise mPromise;
+
+    private SearchAssetsTask(
+            ReactContext context,
+            MediaSearch search,
+            String query,
+            int first,
+            int offset,
+            @Nullable ReadableArray include,
+            Promise promise) {
+      super(context);
+      mContext = context;
+      mSearch = search;
+      mQuery = query;
+      mFirst = first;
+      mOffset = offset;
+      for (int i = 0; include != null && i < include.size(); i++) {
+        mInclude.add(include.getString(i));
+      }
+      mPromise = promise;
+    }
+
+    @Override
+    protected void doInBackgroundGuarded(Void... params) {
+      try {
+        SearchIndex.Result result = mSearch.search(mQuery, mOffset, mFirst);
+        if (result == null) {
+          mPromise.reject(ERROR_UNABLE_TO_LOAD, "Could not get media");
+          return;
+        }
+        WritableMap[] found = readEdges(result.ids);
+        if (found == null) {
+          mPromise.reject(ERROR_UNABLE_TO_LOAD, "Could not get media");
+          return;
+        }
+
+        WritableMap response = Arguments.createMap();
+        WritableArray edges = Arguments.createArray();
+        for (WritableMap edge : found) {
+          // Assets deleted since the index was updated have no edge
+          if (edge != null) {
+            edges.pushMap(edge);
+          }
+        }
+        response.putArray("edges", edges);
+        putPageInfo(response, result.total - mOffset, mFirst, mOffset);
+        response.putInt("total", result.total);
+        mPromise.resolve(response);
+      } catch (SecurityException e) {
+        mPromise.reject(
+                ERROR_UNABLE_TO_LOAD_PERMISSION,
+                "Could not get media: need READ_EXTERNAL_STORAGE permission",
+                e);
+      }
+    }
+
+    /**
+     * @return the edges of the assets, in the same order, or null if MediaStore returned no cursor
+     */
+    private @Nullable WritableMap[] readEdges(long[] ids) {
+      ContentResolver resolver = mContext.getContentResolver();
+      WritableMap[] edges = new WritableMap[ids.length];
+      Map<Long, Integer> positions = new HashMap<>();
+      for (int i = 0; i < ids.length; i++) {
+        positions.put(ids[i], i);
+      }
+      long convertStart = PerformanceStats.begin(PerformanceStats.STAGE_PHOTOS_CONVERT);
+      try {
+        for (int from = 0; from < ids.length; from += IDS_PER_QUERY) {
+          int to = Math.min(ids.length, from + IDS_PER_QUERY);
+          StringBuilder selection = new StringBuilder(Images.Media._ID + " IN (");
+          String[] selectionArgs = new String[to - from];
+          for (int i = from; i < to; i++) {
+            selection.append(i > from ? ",?" : "?");
+            selectionArgs[i - from] = Long.toString(ids[i]);
+          }
+          selection.append(")");
+          Cursor media = resolver.query(
+                  MediaStore.Files.getContentUri("external"),
+                  MediaRowCodec.getProjection(Build.VERSION.SDK_INT),
+                  selection.toString(),
+                  selectionArgs,
+                  null);
+          if (media == null) {
+            return null;
+          }
+          try {
+            MediaRowCodec codec = new MediaRowCodec(resolver, media, mInclude);
+            int idIndex = media.getColumnIndex(Images.Media._ID);
+            while (media.moveToNext()) {
+              Integer position = positions.get(media.getLong(idIndex));
+              WritableMap edge = position != null ? codec.convert(media) : null;
+              if (edge != null) {
+                edges[position] = edge;
+                PerformanceStats.addRows(PerformanceStats.STAGE_PHOTOS_CONVERT, 1);
+              } else {
+                PerformanceStats.addSkip(PerformanceStats.STAGE_PHOTOS_CONVERT);
+              }
+            }
+          } finally {
+            media.close();
+          }
+        }
+      } finally {
+        PerformanceStats.end(PerformanceStats.STAGE_PHOTOS_CONVERT, convertStart);
+      }
+      return edges;
+    }
+  }
+
+  /**
+   * Find the photos and videos taken inside a bounding box, for map views, either one by one or
+   * grouped into clusters per tile.
+   *
+   * Locations come from an index built in the background on the first call, see
+   * {@link LocationIndexer}: coordinates are read from each file once and persisted, so later
+   * sessions only read new or edited assets. Until the index is complete, calls answer from what
+   * has been indexed so far, and {@value #EVENT_LOCATION_INDEX_PROGRESS} events carrying located
+   * and pending report its progress.
+   *
+   * @param params  a map containing
+   *                <ul>
+   *                  <li>minLat, maxLat: the latitudes of the box, between -90 and 90</li>
+   *                  <li>minLng, maxLng: the longitudes of the box, between -180 and 180. A box
+   *                  whose minLng is larger than its maxLng crosses the antimeridian.</li>
+   *                  <li>zoom (optional): cluster the assets into the tiles of a 2^zoom by 2^zoom
+   *                  grid of the world, 0 to 30</li>
+   *                  <li>limit (optional): the most assets or clusters to return. Defaults to 500.</li>
+   *                </ul>
+   * @param promise resolved with {count, pending, indexing} and either assets, most recent first,
+   *                or clusters, largest first. count is the number of assets in the box.
+   */
+  @ReactMethod
+  public void getAssetsInRegion(ReadableMap params, Promise promise) {
+    for (String key : new String[]{"minLat", "maxLat", "minLng", "maxLng"}) {
+      if (!params.hasKey(key)) {
+        promise.reject(ERROR_UNABLE_TO_FILTER, "Missing " + key);
+        return;
+      }
+    }
+    double minLat = params.getDouble("minLat");
+    double maxLat = params.getDouble("maxLat");
+    double minLng = params.getDouble("minLng");
+    double maxLng = params.getDouble("maxLng");
+    int zoom = params.hasKey("zoom") ? params.getInt("zoom") : -1;
+    int limit = params.hasKey("limit") ? params.getInt("limit") : DEFAULT_REGION_LIMIT;
+    if (!(minLat >= -90 && maxLat <= 90 && minLat <= maxLat)) {
+      promise.reject(
+              ERROR_UNABLE_TO_FILTER,
+              "Invalid latitudes: " + minLat + " to " + maxLat + ". Expected -90 <= minLat <= maxLat <= 90.");
+      return;
+    }
+    if (!(minLng >= -180 && minLng <= 180 && maxLng >= -180 && maxLng <= 180)) {
+      promise.reject(
+              ERROR_UNABLE_TO_FILTER,
+              "Invalid longitudes: " + minLng + " to " + maxLng + ". Expected -180 to 180.");
+      return;
+    }
+    if (params.hasKey("zoom") && (zoom < 0 || zoom > MAX_REGION_ZOOM)) {
+      promise.reject(
+              ERROR_UNABLE_TO_FILTER,
+              "Invalid zoom: " + zoom + ". Expected 0 to " + MAX_REGION_ZOOM + ".");
+      return;
+    }
+    if (limit < 0) {
+      promise.reject(ERROR_UNABLE_TO_FILTER, "Invalid limit: " + limit + ". Expected 0 or more.");
+      return;
+    }
+
+    LocationIndexer locations = getLocationIndexer();
+    locations.update();
+    GeoIndex index = locations.getIndex();
+    WritableMap response = Arguments.createMap();
+    long start = PerformanceStats.begin(PerformanceStats.STAGE_REGION_QUERY);
+    try {
+      int[] entries = index.query(minLat, maxLat, minLng, maxLng);
+      PerformanceStats.addRows(PerformanceStats.STAGE_REGION_QUERY, entries.length);
+      if (zoom >= 0) {
+        List<GeoIndex.Cluster> clusters = index.cluster(entries, zoom);
+        WritableArray array = Arguments.createArray();
+        for (int i = 0; i < clusters.size() && i < limit; i++) {
+          GeoIndex.Cluster cluster = clusters.get(i);
+          WritableMap map = Arguments.createMap();
+          map.putDouble("latitude", cluster.latitude);
+          map.putDouble("longitude", cluster.longitude);
+          map.putInt("count", cluster.count);
+          putRegionAsset(map, index, cluster.representative);
+          array.pushMap(map);
+        }
+        response.putArray("clusters", array);
+      } else {
+        index.sortByTime(entries);
+        WritableArray array = Arguments.createArray();
+        for (int i = 0; i < entries.length && i < limit; i++) {
+          WritableMap map = Arguments.createMap();
+          putRegionAsset(map, index, entries[i]);
+          map.putDouble("latitude", index.getLatitude(entries[i]));
+          map.putDouble("longitude", index.getLongitude(entries[i]));
+          map.putDouble("timestamp", index.getTime(entries[i]));
+          array.pushMap(map);
+        }
+        response.putArray("assets", array);
+      }
+      response.putInt("count", entries.length);
+    } finally {
+      PerformanceStats.end(PerformanceStats.STAGE_REGION_QUERY, start);
+    }
+    response.putInt("pending", locations.getPending());
+    response.putBoolean("indexing", locations.isIndexing());
+    promise.resolve(response);
+  }
+
+  private static void putRegionAsset(WritableMap map, GeoIndex index, int entry) {
+    boolean isVideo = index.isVideo(entry);
+    String id = Long.toString(index.getId(entry));
+    map.putString("id", id);
+    map.putString("uri", (isVideo ? MediaRowCodec.VIDEO_URI_PREFIX : MediaRowCodec.IMAGE_URI_PREFIX) + id);
+    map.putString("mediaType", isVideo ? "video" : "photo");
+  }
+
+  private synchronized LocationIndexer getLocationIndexer() {
+    if (mLocations == null) {
+      ReactContext context = getReactApplicationContext();
+      mLocations = new LocationIndexer(
+              context.getContentResolver(),
+              getHashStore("locations", 8),
+              (located, pending) -> {
+                WritableMap progress = Arguments.createMap();
+                progress.putInt("located", located);
+                progress.putInt("pending", pending);
+                emit(context, EVENT_LOCATION_INDEX_PROGRESS, progress);
+              });
+    }
+    return mLocations;
+  }
+
+  /**
+   * Count the media matching the filters of {@link #getPhotos} per day, month or year, in the
+   * order getPhotos returns them, so that a timeline can size its sections and jump straight to a
+   * date.
+   *
+   * @param params  the filters accepted by {@link #getPhotos} (assetType defaults to "All"), plus
+   *                granularity: one of "day", "month" or "year"
+   * @param promise resolved with the buckets, most recent first. Each bucket has the timestamp (in
+   *                seconds, local time) it starts at, its count, and the cursor to pass as
+   *                {@code after} to getPhotos to start at its first asset.
+   */
+  @ReactMethod
+  public void getDateHistogram(final ReadableMap params, final Promise promise) {
+    String granularity = params.hasKey("granularity") ? params.getString("granularity") : GRANULARITY_DAY;
+    int calendarField;
+    if (GRANULARITY_DAY.equals(granularity)) {
+      calendarField = Calendar.DAY_OF_MONTH;
+    } else if (GRANULARITY_MONTH.equals(granularity)) {
+      calendarField = Calendar.MONTH;
+    } else if (GRANULARITY_YEAR.equals(granularity)) {
+      calendarField = Calendar.YEAR;
     } else {
-      return null;
+      promise.reject(
+              ERROR_UNABLE_TO_FILTER,
+              "Invalid granularity: '" + granularity + "'. Expected one of '"
+                      + GRANULARITY_DAY + "', '" + GRANULARITY_MONTH + "' or '" + GRANULARITY_YEAR + "'.");
+      return;
+    }
+    MediaQuery query;
+    try {
+      query = MediaQuery.fromParams(params, MediaQuery.ASSET_TYPE_ALL);
+    } catch (IllegalArgumentException e) {
+      promise.reject(ERROR_UNABLE_TO_FILTER, e.getMessage());
+      return;
+    }
+
+    new GetDateHistogramTask(getReactApplicationContext(), query, calendarField, promise)
+            .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+  }
+
+  private static class GetDateHistogramTask extends GuardedAsyncTask<Void, Void> {
+    private final Context mContext;
+    private final MediaQuery mQuery;
+    private final int mCalendarField;
+    private final Promise mPromise;
+
+    private GetDateHistogramTask(
+            ReactContext context,
+            MediaQuery query,
+            int calendarField,
+            Promise promise) {
+      super(context);
+      mContext = context;
+      mQuery = query;
+      mCalendarField = calendarField;
+      mPromise = promise;
+    }
+
+    @Override
+    protected void doInBackgroundGuarded(Void... params) {
+      // MediaStore rejects GROUP BY in selections from Android 10 on, so instead we walk a single
+      // column projection once, in getPhotos order. Rows come sorted most recent first, so a new
+      // bucket starts whenever a timestamp falls before the current one, and the position of that
+      // row is the offset getPhotos uses as its cursor.
+      Cursor media;
+      long queryStart = PerformanceStats.begin(PerformanceStats.STAGE_HISTOGRAM_QUERY);
+      try {
+        media = mContext.getContentResolver().query(
+                MediaStore.Files.getContentUri("external"),
+                new String[]{mQuery.sortColumn},
+                mQuery.selection,
+                mQuery.selectionArgs,
+                mQuery.sortOrder);
+      } catch (SecurityException e) {
+        PerformanceStats.addFailure(PerformanceStats.STAGE_HISTOGRAM_QUERY);
+        mPromise.reject(
+                ERROR_UNABLE_TO_LOAD_PERMISSION,
+                "Could not get media: need READ_EXTERNAL_STORAGE permission",
+                e);
+        return;
+      } finally {
+        PerformanceStats.end(PerformanceStats.STAGE_HISTOGRAM_QUERY, queryStart);
+      }
+      if (media == null) {
+        PerformanceStats.addFailure(PerformanceStats.STAGE_HISTOGRAM_QUERY);
+        mPromise.reject(ERROR_UNABLE_TO_LOAD, "Could not get media");
+        return;
+      }
+
+      long toMillis = 1000 / MediaQuery.getMillisDivisor(mQuery.sortColumn);
+      Calendar calendar = Calendar.getInstance();
+      long[] starts = new long[64];
+      int[] counts = new int[64];
+      int[] offsets = new int[64];
+      int size = 0;
+      long bucketStart = 0;
+      long bucketEnd = 0;
+      int position = 0;
+      long convertStart = PerformanceStats.begin(PerformanceStats.STAGE_HISTOGRAM_CONVERT);
+      try {
+        while (media.moveToNext()) {
+          // assets without a date taken sort last and belong to no bucket
+          if (!media.isNull(0)) {
+            long time = media.getLong(0) * toMillis;
+            if (size == 0 || time < bucketStart || time >= bucketEnd) {
+              bucketStart = getBucketStart(calendar, time, mCalendarField);
+              calendar.add(mCalendarField, 1);
+              bucketEnd = calendar.getTimeInMillis();
+              if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+              }
+              starts[size] = bucketStart;
+              offsets[size] = position;
+              size++;
+            }
+            counts[size - 1]++;
+          } else {
+            PerformanceStats.addSkip(PerformanceStats.STAGE_HISTOGRAM_CONVERT);
+          }
+          position++;
+        }
+        PerformanceStats.addRows(PerformanceStats.STAGE_HISTOGRAM_CONVERT, position);
+      } finally {
+        media.close();
+        PerformanceStats.end(PerformanceStats.STAGE_HISTOGRAM_CONVERT, convertStart);
+      }
+
+      WritableArray buckets = Arguments.createArray();
+      for (int i = 0; i < size; i++) {
+        WritableMap bucket = Arguments.createMap();
+        bucket.putDouble("timestamp", starts[i] / 1000d);
+        bucket.putInt("count", counts[i]);
+        bucket.putString("cursor", Integer.toString(offsets[i]));
+        buckets.pushMap(bucket);
+      }
+      WritableMap response = Arguments.createMap();
+      response.putArray("buckets", buckets);
+      response.putInt("count", position);
+      mPromise.resolve(response);
+    }
+
+    /**
+     * @return the start of the day, month or year containing time, leaving calendar set to it
+     */
+    private static long getBucketStart(Calendar calendar, long time, int calendarField) {
+      calendar.setTimeInMillis(time);
+      calendar.set(Calendar.HOUR_OF_DAY, 0);
+      calendar.set(Calendar.MINUTE, 0);
+      calendar.set(Calendar.SECOND, 0);
+      calendar.set(Calendar.MILLISECOND, 0);
+      if (calendarField == Calendar.MONTH) {
+        calendar.set(Calendar.DAY_OF_MONTH, 1);
+      } else if (calendarField == Calendar.YEAR) {
+        calendar.set(Calendar.DAY_OF_YEAR, 1);
+      }
+      return calendar.getTimeInMillis();
+    }
+  }
+
+  /**
+   * Find photos that look the same, such as copies, re-encoded versions and bursts, by comparing
+   * perceptual hashes of every photo matching the filters. Hashes are kept between runs, so a run
+   * only decodes photos that are new or were modified since.
+   *
+   * Progress is reported with {@value #EVENT_DUPLICATES_PROGRESS} events while hashing, and groups
+   * with {@value #EVENT_DUPLICATE_GROUPS} events once all photos are hashed, both carrying the
+   * requestId of the call.
+   *
+   * @param params  the filters accepted by {@link #getPhotos} (only photos are hashed), plus
+   *                <ul>
+   *                  <li>requestId (optional): passed back in the events of this call</li>
+   *                  <li>algorithm (optional): "dHash" or "pHash" (the default)</li>
+   *                  <li>
+   *                    maxDistance (optional): the largest number of bits, out of 64, in which
+   *                    the hashes of two photos of a group may differ. Defaults to 6.
+   *                  </li>
+   *                </ul>
+   * @param promise resolved once every group was sent, with the number of photos and groups
+   */
+  @ReactMethod
+  public void findDuplicates(final ReadableMap params, final Promise promise) {
+    String requestId = params.hasKey("requestId") ? params.getString("requestId") : null;
+    String algorithm = params.hasKey("algorithm")
+            ? params.getString("algorithm")
+            : PerceptualHash.ALGORITHM_PHASH;
+    int maxDistance = params.hasKey("maxDistance")
+            ? params.getInt("maxDistance")
+            : DEFAULT_DUPLICATE_DISTANCE;
+    if (maxDistance < 0 || maxDistance > MAX_DUPLICATE_DISTANCE) {
+      promise.reject(
+              ERROR_UNABLE_TO_FILTER,
+              "Invalid maxDistance: " + maxDistance + ". Expected a number from 0 to "
+                      + MAX_DUPLICATE_DISTANCE + ".");
+      return;
+    }
+    MediaQuery query;
+    try {
+      PerceptualHash.checkAlgorithm(algorithm);
+      query = MediaQuery.fromParams(params, MediaQuery.ASSET_TYPE_PHOTOS);
+    } catch (IllegalArgumentException e) {
+      promise.reject(ERROR_UNABLE_TO_FILTER, e.getMessage());
+      return;
+    }
+
+    new FindDuplicatesTask(
+            getReactApplicationContext(),
+            query,
+            algorithm,
+            maxDistance,
+            getHashStore("hashes-" + algorithm, 8),
+            requestId,
+            promise)
+            .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+  }
+
+  private synchronized HashStore getHashStore(String name, int hashLength) {
+    HashStore store = mHashStores.get(name);
+    if (store == null) {
+      File file = new File(
+              getReactApplicationContext().getCacheDir(),
+              "RNCCameraRoll" + File.separator + name);
+      store = new HashStore(file, hashLength);
+      mHashStores.put(name, store);
+    }
+    return store;
+  }
+
+  /**
+   * @return a pool of threads that run at background priority, so that hashing and copying don't
+   * compete with the UI
+   */
+  private static ExecutorService newBackgroundPool(int threads, String name) {
+    return Executors.newFixedThreadPool(threads, runnable -> new Thread(() -> {
+      Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+      runnable.run();
+    }, name));
+  }
+
+  private static class FindDuplicatesTask extends GuardedAsyncTask<Void, Void> {
+    private static final long PROGRESS_INTERVAL_MS = 250;
+    private static final int GROUPS_PER_EVENT = 50;
+    private static final String[] PROJECTION = {
+            Images.Media._ID,
+            Images.Media.MIME_TYPE,
+            Images.Media.DATE_TAKEN,
+            MediaStore.MediaColumns.DATE_ADDED,
+            MediaStore.MediaColumns.DATE_MODIFIED,
+            MediaStore.MediaColumns.WIDTH,
+            MediaStore.MediaColumns.HEIGHT,
+            MediaStore.MediaColumns.SIZE,
+            MediaStore.MediaColumns.ORIENTATION,
+    };
+
+    private final ReactContext mContext;
+    private final MediaQuery mQuery;
+    private final String mAlgorithm;
+    private final int mMaxDistance;
+    private final HashStore mStore;
+    private final @Nullable String mRequestId;
+    private final Promise mPromise;
+
+    private FindDuplicatesTask(
+            ReactContext context,
+            MediaQuery query,
+            String algorithm,
+            int maxDistance,
+            HashStore store,
+            @Nullable String requestId,
+            Promise promise) {
+      super(context);
+      mContext = context;
+      mQuery = query;
+      mAlgorithm = algorithm;
+      mMaxDistance = maxDistance;
+      mStore = store;
+      mRequestId = requestId;
+      mPromise = promise;
+    }
+
+    @Override
+    protected void doInBackgroundGuarded(Void... params) {
+      ContentResolver resolver = mContext.getContentResolver();
+      Cursor media;
+      try {
+        media = resolver.query(
+                MediaStore.Files.getContentUri("external"),
+                PROJECTION,
+                mQuery.selection,
+                mQuery.selectionArgs,
+                mQuery.sortOrder);
+      } catch (SecurityException e) {
+        mPromise.reject(
+                ERROR_UNABLE_TO_LOAD_PERMISSION,
+                "Could not get media: need READ_EXTERNAL_STORAGE permission",
+                e);
+        return;
+      }
+      if (media == null) {
+        mPromise.reject(ERROR_UNABLE_TO_LOAD, "Could not get media");
+        return;
+      }
+
+      int count = media.getCount();
+      long[] ids = new long[count];
+      long[] modified = new long[count];
+      int[] widths = new int[count];
+      int[] heights = new int[count];
+      int[] orientations = new int[count];
+      long[] sizes = new long[count];
+      long[] timestamps = new long[count];
+      int skipped = 0;
+      int size = 0;
+      try {
+        while (media.moveToNext()) {
+          String mimeType = media.getString(1);
+          if (mimeType != null && mimeType.startsWith("video")) {
+            skipped++;
+            continue;
+          }
+          ids[size] = media.getLong(0);
+          long dateTaken = media.isNull(2) ? 0 : media.getLong(2);
+          timestamps[size] = dateTaken != 0 ? dateTaken : media.getLong(3) * 1000;
+          modified[size] = media.getLong(4);
+          widths[size] = media.getInt(5);
+          heights[size] = media.getInt(6);
+          sizes[size] = media.getLong(7);
+          orientations[size] = media.isNull(8) ? 0 : media.getInt(8);
+          size++;
+        }
+      } finally {
+        media.close();
+      }
+
+      // Look up what earlier runs hashed, and hash the rest on a pool of workers
+      mStore.load();
+      long[] hashes = new long[size];
+      boolean[] hashed = new boolean[size];
+      int[] pending = new int[size];
+      int pendingCount = 0;
+      long[] cached = new long[1];
+      byte[] scratch = new byte[8];
+      for (int i = 0; i < size; i++) {
+        if (mStore.getLong(ids[i], modified[i], sizes[i], cached, scratch)) {
+          hashes[i] = cached[0];
+          hashed[i] = true;
+        } else {
+          pending[pendingCount++] = i;
+        }
+      }
+      int cachedCount = size - pendingCount;
+
+      AtomicInteger next = new AtomicInteger();
+      AtomicInteger done = new AtomicInteger();
+      AtomicInteger failed = new AtomicInteger();
+      int workers = Math.max(1, Math.min(MAX_HASH_WORKERS, Runtime.getRuntime().availableProcessors() - 1));
+      CountDownLatch finished = new CountDownLatch(workers);
+      ExecutorService executor = newBackgroundPool(workers, "CameraRollHash");
+      final int total = pendingCount;
+      for (int w = 0; w < workers; w++) {
+        executor.execute(() -> {
+          try {
+            PerceptualHash hasher = new PerceptualHash(mAlgorithm);
+            for (int p = next.getAndIncrement(); p < total; p = next.getAndIncrement()) {
+              int i = pending[p];
+              long start = PerformanceStats.begin(PerformanceStats.STAGE_DUPLICATES_HASH);
+              try {
+                hashes[i] = hasher.hash(
+                        resolver,
+                        ContentUris.withAppendedId(Images.Media.EXTERNAL_CONTENT_URI, ids[i]),
+                        widths[i],
+                        heights[i],
+                        orientations[i]);
+                hashed[i] = true;
+                mStore.putLong(ids[i], modified[i], sizes[i], hashes[i]);
+                PerformanceStats.addRows(PerformanceStats.STAGE_DUPLICATES_HASH, 1);
+              } catch (IOException | RuntimeException e) {
+                failed.incrementAndGet();
+                PerformanceStats.addFailure(PerformanceStats.STAGE_DUPLICATES_HASH);
+              } finally {
+                PerformanceStats.end(PerformanceStats.STAGE_DUPLICATES_HASH, start);
+              }
+              done.incrementAndGet();
+            }
+          } finally {
+            finished.countDown();
+          }
+        });
+      }
+      executor.shutdown();
+      try {
+        while (!finished.await(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+          emitDuplicatesProgress(cachedCount + done.get(), size);
+        }
+      } catch (InterruptedException e) {
+        executor.shutdownNow();
+        Thread.currentThread().interrupt();
+        mPromise.reject(ERROR_UNABLE_TO_LOAD, "Interrupted while finding duplicates", e);
+        return;
+      }
+      emitDuplicatesProgress(size, size);
+      try {
+        mStore.save();
+      } catch (IOException e) {
+        FLog.w(ReactConstants.TAG, "Could not save perceptual hashes", e);
+      }
+
+      // hashed[] and hashes[] were written by the workers, which the latch makes visible here
+      int[] members = new int[size];
+      long[] memberHashes = new long[size];
+      int memberCount = 0;
+      for (int i = 0; i < size; i++) {
+        if (hashed[i]) {
+          members[memberCount] = i;
+          memberHashes[memberCount] = hashes[i];
+          memberCount++;
+        }
+      }
+      List<int[]> groups;
+      long groupStart = PerformanceStats.begin(PerformanceStats.STAGE_DUPLICATES_GROUP);
+      try {
+        groups = DuplicateGrouper.group(memberHashes, memberCount, mMaxDistance);
+        PerformanceStats.addRows(PerformanceStats.STAGE_DUPLICATES_GROUP, memberCount);
+      } finally {
+        PerformanceStats.end(PerformanceStats.STAGE_DUPLICATES_GROUP, groupStart);
+      }
+
+      WritableArray batch = Arguments.createArray();
+      int batchSize = 0;
+      for (int[] group : groups) {
+        long first = memberHashes[group[0]];
+        WritableArray assets = Arguments.createArray();
+        for (int member : group) {
+          int i = members[member];
+          WritableMap asset = Arguments.createMap();
+          asset.putString("id", Long.toString(ids[i]));
+          asset.putString(
+                  "uri",
+                  ContentUris.withAppendedId(Images.Media.EXTERNAL_CONTENT_URI, ids[i]).toString());
+          asset.putInt("width", orientations[i] % 180 != 0 ? heights[i] : widths[i]);
+          asset.putInt("height", orientations[i] % 180 != 0 ? widths[i] : heights[i]);
+          asset.putDouble("fileSize", sizes[i]);
+          asset.putDouble("timestamp", timestamps[i] / 1000d);
+          asset.putInt("distance", PerceptualHash.distance(first, memberHashes[member]));
+          assets.pushMap(asset);
+        }
+        WritableMap entry = Arguments.createMap();
+        entry.putArray("assets", assets);
+        batch.pushMap(entry);
+        if (++batchSize == GROUPS_PER_EVENT) {
+          emitDuplicateGroups(batch);
+          batch = Arguments.createArray();
+          batchSize = 0;
+        }
+      }
+      if (batchSize > 0) {
+        emitDuplicateGroups(batch);
+      }
+
+      WritableMap response = Arguments.createMap();
+      response.putInt("total", size);
+      response.putInt("hashed", pendingCount - failed.get());
+      response.putInt("cached", cachedCount);
+      response.putInt("failed", failed.get());
+      response.putInt("skipped", skipped);
+      response.putInt("groups", groups.size());
+      mPromise.resolve(response);
+    }
+
+    private void emitDuplicatesProgress(int processed, int total) {
+      WritableMap progress = Arguments.createMap();
+      progress.putString("requestId", mRequestId);
+      progress.putInt("processed", processed);
+      progress.putInt("total", total);
+      emit(mContext, EVENT_DUPLICATES_PROGRESS, progress);
+    }
+
+    private void emitDuplicateGroups(WritableArray groups) {
+      WritableMap event = Arguments.createMap();
+      event.putString("requestId", mRequestId);
+      event.putArray("groups", groups);
+      emit(mContext, EVENT_DUPLICATE_GROUPS, event);
+    }
+  }
+
+  /**
+   * Hash the bytes of assets, for example to match them against files uploaded elsewhere. Each
+   * file is read through a memory-mapped {@link java.nio.channels.FileChannel} on a small pool of
+   * workers. Hashes are kept between calls and reused as long as an asset's {@code DATE_MODIFIED}
+   * and {@code SIZE} haven't changed.
+   *
+   * Every asset is reported with an {@value #EVENT_ASSET_HASHED} event carrying the requestId of
+   * the call as soon as its hash is known.
+   *
+   * @param ids     the ids of the assets, as returned by {@link #getPhotos}
+   * @param options
+   *                <ul>
+   *                  <li>requestId (optional): passed back in the events of this call</li>
+   *                  <li>algorithm (optional): "sha256" (the default) or "xxh64"</li>
+   *                </ul>
+   * @param promise resolved with one result per id, in the order of ids
+   */
+  @ReactMethod
+  public void hashAssets(final ReadableArray ids, final ReadableMap options, final Promise promise) {
+    String requestId = options.hasKey("requestId") ? options.getString("requestId") : null;
+    String algorithm = options.hasKey("algorithm")
+            ? options.getString("algorithm")
+            : ContentHash.ALGORITHM_SHA256;
+    long[] assetIds;
+    try {
+      ContentHash.checkAlgorithm(algorithm);
+      assetIds = AssetLookup.parseIds(ids);
+    } catch (IllegalArgumentException e) {
+      promise.reject(ERROR_UNABLE_TO_FILTER, e.getMessage());
+      return;
+    }
+
+    new HashAssetsTask(
+            getReactApplicationContext(),
+            assetIds,
+            algorithm,
+            getHashStore("hashes-" + algorithm, ContentHash.getLength(algorithm)),
+            requestId,
+            promise)
+            .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+  }
+
+  private static class HashAssetsTask extends GuardedAsyncTask<Void, Void> {
+    private final ReactContext mContext;
+    private final long[] mIds;
+    private final String mAlgorithm;
+    private final HashStore mStore;
+    private final @Nullable String mRequestId;
+    private final Promise mPromise;
+
+    private HashAssetsTask(
+            ReactContext context,
+            long[] ids,
+            String algorithm,
+            HashStore store,
+            @Nullable String requestId,
+            Promise promise) {
+      super(context);
+      mContext = context;
+      mIds = ids;
+      mAlgorithm = algorithm;
+      mStore = store;
+      mRequestId = requestId;
+      mPromise = promise;
+    }
+
+    @Override
+    protected void doInBackgroundGuarded(Void... params) {
+      ContentResolver resolver = mContext.getContentResolver();
+      AssetLookup assets;
+      try {
+        assets = AssetLookup.query(resolver, mIds);
+      } catch (SecurityException e) {
+        mPromise.reject(
+                ERROR_UNABLE_TO_LOAD_PERMISSION,
+                "Could not get media: need READ_EXTERNAL_STORAGE permission",
+                e);
+        return;
+      }
+      if (assets == null) {
+        mPromise.reject(ERROR_UNABLE_TO_LOAD, "Could not get media");
+        return;
+      }
+      final int count = assets.count;
+      long[] ids = assets.ids;
+      Uri[] uris = assets.uris;
+      long[] modified = assets.modified;
+      long[] sizes = assets.sizes;
+
+      // Look up what earlier calls hashed, and hash the rest on a pool of workers
+      mStore.load();
+      int hashLength = ContentHash.getLength(mAlgorithm);
+      byte[][] hashes = new byte[count][];
+      boolean[] cached = new boolean[count];
+      String[] errors = new String[count];
+      int[] pending = new int[count];
+      int pendingCount = 0;
+      AtomicInteger processed = new AtomicInteger();
+      for (int i = 0; i < count; i++) {
+        if (uris[i] == null) {
+          errors[i] = "Asset not found";
+          emitAssetHashed(ids[i], null, 0, false, errors[i], processed.incrementAndGet(), count);
+          continue;
+        }
+        byte[] hash = new byte[hashLength];
+        if (mStore.get(ids[i], modified[i], sizes[i], hash)) {
+          hashes[i] = hash;
+          cached[i] = true;
+          emitAssetHashed(ids[i], hash, sizes[i], true, null, processed.incrementAndGet(), count);
+        } else {
+          pending[pendingCount++] = i;
+        }
+      }
+
+      AtomicInteger next = new AtomicInteger();
+      // Reading is bound by storage more than by the CPU, so a few workers are enough
+      int workers = Math.max(1, Math.min(MAX_CONTENT_HASH_WORKERS, pendingCount));
+      CountDownLatch finished = new CountDownLatch(workers);
+      ExecutorService executor = newBackgroundPool(workers, "CameraRollContentHash");
+      final int total = pendingCount;
+      for (int w = 0; w < workers; w++) {
+        executor.execute(() -> {
+          try {
+            ContentHash hasher = new ContentHash(mAlgorithm);
+            for (int p = next.getAndIncrement(); p < total; p = next.getAndIncrement()) {
+              int i = pending[p];
+              byte[] hash = new byte[hashLength];
+              long start = PerformanceStats.begin(PerformanceStats.STAGE_CONTENT_HASH);
+              try {
+                long length = hasher.hash(resolver, uris[i], hash);
+                hashes[i] = hash;
+                PerformanceStats.addRows(PerformanceStats.STAGE_CONTENT_HASH, 1);
+                PerformanceStats.addBytes(PerformanceStats.STAGE_CONTENT_HASH, length);
+                // A file that changed since MediaStore last scanned it would be cached under the
+                // wrong key
+                if (length == sizes[i]) {
+                  mStore.put(ids[i], modified[i], sizes[i], hash);
+                } else {
+                  sizes[i] = length;
+                }
+              } catch (IOException | RuntimeException e) {
+                errors[i] = e.getMessage() != null ? e.getMessage() : e.toString();
+                PerformanceStats.addFailure(PerformanceStats.STAGE_CONTENT_HASH);
+              } finally {
+                PerformanceStats.end(PerformanceStats.STAGE_CONTENT_HASH, start);
+              }
+              emitAssetHashed(
+                      ids[i],
+                      hashes[i],
+                      sizes[i],
+                      false,
+                      errors[i],
+                      processed.incrementAndGet(),
+                      count);
+            }
+          } finally {
+            finished.countDown();
+          }
+        });
+      }
+      executor.shutdown();
+      try {
+        finished.await();
+      } catch (InterruptedException e) {
+        executor.shutdownNow();
+        Thread.currentThread().interrupt();
+        mPromise.reject(ERROR_UNABLE_TO_LOAD, "Interrupted while hashing assets", e);
+        return;
+      }
+      try {
+        mStore.save();
+      } catch (IOException e) {
+        FLog.w(ReactConstants.TAG, "Could not save content hashes", e);
+      }
+
+      // hashes[], sizes[] and errors[] were written by the workers, which the latch makes visible
+      WritableArray results = Arguments.createArray();
+      for (int inputIndex : assets.inputIndexes) {
+        results.pushMap(createHashResult(
+                ids[inputIndex],
+                hashes[inputIndex],
+                sizes[inputIndex],
+                cached[inputIndex],
+                errors[inputIndex]));
+      }
+      mPromise.resolve(results);
+    }
+
+    private void emitAssetHashed(
+            long id,
+            @Nullable byte[] hash,
+            long size,
+            boolean cached,
+            @Nullable String error,
+            int processed,
+            int total) {
+      WritableMap event = createHashResult(id, hash, size, cached, error);
+      event.putString("requestId", mRequestId);
+      event.putInt("processed", processed);
+      event.putInt("total", total);
+      emit(mContext, EVENT_ASSET_HASHED, event);
+    }
+
+    private static WritableMap createHashResult(
+            long id, @Nullable byte[] hash, long size, boolean cached, @Nullable String error) {
+      WritableMap result = Arguments.createMap();
+      result.putString("id", Long.toString(id));
+      if (hash != null) {
+        result.putString("hash", ContentHash.toHex(hash));
+      } else {
+        result.putNull("hash");
+      }
+      result.putDouble("size", size);
+      result.putBoolean("cached", cached);
+      if (error != null) {
+        result.putString("error", error);
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Copy the original files of assets into a directory, such as one in the app's own storage, for
+   * uploading or editing them as plain files. Files are copied with
+   * {@link FileChannel#transferTo} on a small pool of workers. An asset whose file already exists
+   * with the same size and modification time is skipped, so an interrupted export can simply be
+   * called again.
+   *
+   * Every asset is reported with an {@value #EVENT_EXPORT_PROGRESS} event carrying the requestId
+   * of the call, along with the bytes copied so far and the throughput.
+   *
+   * @param ids     the ids of the assets, as returned by {@link #getPhotos}
+   * @param destDir the path or file:// URI of the directory to copy into, created if missing
+   * @param options
+   *                <ul>
+   *                  <li>
+   *                    requestId (optional): passed back in the events of this call, and to
+   *                    {@link #cancelExportAssets}. Rejected while another export with the same
+   *                    requestId is running.
+   *                  </li>
+   *                </ul>
+   * @param promise resolved with one result per id, in the order of ids, and totals
+   */
+  @ReactMethod
+  public void exportAssets(
+          final ReadableArray ids,
+          final String destDir,
+          final ReadableMap options,
+          final Promise promise) {
+    String requestId = options.hasKey("requestId") ? options.getString("requestId") : null;
+    long[] assetIds;
+    try {
+      assetIds = AssetLookup.parseIds(ids);
+    } catch (IllegalArgumentException e) {
+      promise.reject(ERROR_UNABLE_TO_FILTER, e.getMessage());
+      return;
     }
-  }
-
-  private static void putEdges(
-          ContentResolver resolver,
-          Cursor media,
-          WritableMap response,
-          int limit,
-          Set<String> include) {
-    WritableArray edges = new WritableNativeArray();
-    media.moveToFirst();
+    Uri destUri = Uri.parse(destDir);
+    if (destUri.getScheme() != null && !"file".equals(destUri.getScheme())) {
+      promise.reject(
+              ERROR_UNABLE_TO_SAVE,
+              "Invalid destDir: '" + destDir + "'. Expected a path or a file:// URI.");
+      return;
+    }
+    File directory = new File(destUri.getScheme() != null ? destUri.getPath() : destDir);
 
-    for (int i = 0; i < limit && !media.isAfterLast(); i++) {
-      WritableMap map = convertMediaToMap(resolver, media, include);
-      if (map != null) {
-        edges.pushMap(map);
-      } else {
-        // we skipped an image because we couldn't get its details (e.g. width/height), so we
-        // decrement i in order to correctly reach the limit, if the cursor has enough rows
-        i--;
-      }
-      media.moveToNext();
+    ExportAssetsTask task = new ExportAssetsTask(
+            getReactApplicationContext(),
+            assetIds,
+            directory,
+            mExports,
+            requestId,
+            promise);
+    // Registered before returning, so that a cancel right after the call finds it. A second call
+    // with the same requestId would leave the first one out of reach of cancelExportAssets.
+    if (requestId != null && mExports.putIfAbsent(requestId, task) != null) {
+      promise.reject(
+              ERROR_UNABLE_TO_FILTER,
+              "Invalid requestId: '" + requestId + "'. An export with this requestId is already running.");
+      return;
     }
-    response.putArray("edges", edges);
+    task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
   }
 
-  private static void putBasicNodeInfo(
-          Cursor media,
-          WritableMap node,
-          int idIndex,
-          int mimeTypeIndex,
-          int groupNameIndex,
-          int dateTakenIndex,
-          int dateAddedIndex,
-          int dateModifiedIndex,
-          boolean includeAlbums,
-          boolean includeSourceType) {
-    node.putString("id", Long.toString(media.getLong(idIndex)));
-    node.putString("type", media.getString(mimeTypeIndex));
-
-    WritableArray subTypes = Arguments.createArray();
-    node.putArray("subTypes", subTypes);
-    
-    if (includeSourceType) {
-      node.putString("sourceType", "UserLibrary");
-    } else {
-      node.putNull("sourceType");
+  /**
+   * Stop an {@link #exportAssets} call: copies in progress are abandoned and their partial files
+   * deleted, and the call is rejected. Files that were complete are kept.
+   *
+   * @param requestId the requestId passed to exportAssets
+   */
+  @ReactMethod
+  public void cancelExportAssets(String requestId) {
+    ExportAssetsTask task = mExports.get(requestId);
+    if (task != null) {
+      task.requestCancel();
     }
+  }
 
-    WritableArray group_name = Arguments.createArray();
-  
-    if (includeAlbums) {
-      group_name.pushString(media.getString(groupNameIndex));
+  private static class ExportAssetsTask extends GuardedAsyncTask<Void, Void> {
+    /** How much is copied between checks for cancellation. */
+    private static final long TRANSFER_CHUNK = 8 * 1024 * 1024;
+    private static final String PARTIAL_SUFFIX = ".part";
+    private static final String STATUS_COPIED = "copied";
+    private static final String STATUS_SKIPPED = "skipped";
+    private static final String STATUS_FAILED = "failed";
+
+    private final ReactContext mContext;
+    private final long[] mIds;
+    private final File mDirectory;
+    private final Map<String, ExportAssetsTask> mRegistry;
+    private final @Nullable String mRequestId;
+    private final Promise mPromise;
+    private final AtomicBoolean mCancelled = new AtomicBoolean();
+    private final AtomicLong mBytes = new AtomicLong();
+    private long mStartNs;
+
+    private ExportAssetsTask(
+            ReactContext context,
+            long[] ids,
+            File directory,
+            Map<String, ExportAssetsTask> registry,
+            @Nullable String requestId,
+            Promise promise) {
+      super(context);
+      mContext = context;
+      mIds = ids;
+      mDirectory = directory;
+      mRegistry = registry;
+      mRequestId = requestId;
+      mPromise = promise;
     }
-    node.putArray("group_name", group_name);
-    long dateTaken = media.getLong(dateTakenIndex);
-    if (dateTaken == 0L) {
-      //date added is in seconds, date taken in milliseconds, thus the multiplication
-      dateTaken = media.getLong(dateAddedIndex) * 1000;
+
+    void requestCancel() {
+      mCancelled.set(true);
     }
-    node.putDouble("timestamp", dateTaken / 1000d);
-    node.putDouble("modificationTimestamp", media.getLong(dateModifiedIndex));
-  }
 
-  /**
-   * @return Whether we successfully fetched all the information about the image that we were asked
-   * to include
-   */
-  private static boolean putImageInfo(
-          ContentResolver resolver,
-          Cursor media,
-          WritableMap node,
-          int widthIndex,
-          int heightIndex,
-          int sizeIndex,
-          int dataIndex,
-          int orientationIndex,
-          int mimeTypeIndex,
-          boolean includeFilename,
-          boolean includeFileSize,
-          boolean includeFileExtension,
-          boolean includeImageSize,
-          boolean includePlayableDuration,
-          boolean includeOrientation) {
-    WritableMap image = new WritableNativeMap();
-    int index = media.getColumnIndex(Images.Media._ID);
-    long id = (index >= 0) ? media.getLong(index) : -1;
-    String mimeType = media.getString(mimeTypeIndex);
-    boolean isVideo = mimeType != null && mimeType.startsWith("video");
-    // Updating this to return content uri to fix issue with playing videos saved to SD cards as
-    // this ensures item that is picked is read-only, and masks it's real source
-    Uri photoUri;
-    if (isVideo) {
-        photoUri = ContentUris.withAppendedId(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, id);
-    } else {
-        photoUri = ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, id);
+    @Override
+    protected void doInBackgroundGuarded(Void... params) {
+      try {
+        export();
+      } finally {
+        if (mRequestId != null) {
+          mRegistry.remove(mRequestId, this);
+        }
+      }
     }
-    image.putString("uri", photoUri.toString());
 
-    boolean putImageSizeSuccess = putImageSize(resolver, media, image, widthIndex, heightIndex, orientationIndex,
-            photoUri, isVideo, includeImageSize);
-    boolean putPlayableDurationSuccess = putPlayableDuration(resolver, image, photoUri, isVideo,
-            includePlayableDuration);
+    private void export() {
+      if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+        mPromise.reject(ERROR_UNABLE_TO_SAVE, "Could not create " + mDirectory);
+        return;
+      }
+      ContentResolver resolver = mContext.getContentResolver();
+      AssetLookup assets;
+      try {
+        assets = AssetLookup.query(resolver, mIds);
+      } catch (SecurityException e) {
+        mPromise.reject(
+                ERROR_UNABLE_TO_LOAD_PERMISSION,
+                "Could not get media: need READ_EXTERNAL_STORAGE permission",
+                e);
+        return;
+      }
+      if (assets == null) {
+        mPromise.reject(ERROR_UNABLE_TO_LOAD, "Could not get media");
+        return;
+      }
+      final int count = assets.count;
+      File[] files = getFiles(assets);
+      String[] statuses = new String[count];
+      long[] sizes = new long[count];
+      String[] errors = new String[count];
+
+      mStartNs = System.nanoTime();
+      AtomicInteger next = new AtomicInteger();
+      AtomicInteger processed = new AtomicInteger();
+      int workers = Math.max(1, Math.min(MAX_EXPORT_WORKERS, count));
+      CountDownLatch finished = new CountDownLatch(workers);
+      ExecutorService executor = newBackgroundPool(workers, "CameraRollExport");
+      for (int w = 0; w < workers; w++) {
+        executor.execute(() -> {
+          try {
+            for (int i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+              if (mCancelled.get()) {
+                break;
+              }
+              if (assets.uris[i] == null) {
+                statuses[i] = STATUS_FAILED;
+                errors[i] = "Asset not found";
+              } else if (files[i].isFile()
+                      && files[i].length() == assets.sizes[i]
+                      && files[i].lastModified() / 1000 == assets.modified[i]) {
+                statuses[i] = STATUS_SKIPPED;
+                sizes[i] = assets.sizes[i];
+              } else {
+                long start = PerformanceStats.begin(PerformanceStats.STAGE_EXPORT_COPY);
+                try {
+                  sizes[i] = copy(resolver, assets.uris[i], files[i], assets.modified[i]);
+                  statuses[i] = STATUS_COPIED;
+                  PerformanceStats.addRows(PerformanceStats.STAGE_EXPORT_COPY, 1);
+                  PerformanceStats.addBytes(PerformanceStats.STAGE_EXPORT_COPY, sizes[i]);
+                } catch (CancellationException e) {
+                  break;
+                } catch (IOException | RuntimeException e) {
+                  statuses[i] = STATUS_FAILED;
+                  errors[i] = e.getMessage() != null ? e.getMessage() : e.toString();
+                  PerformanceStats.addFailure(PerformanceStats.STAGE_EXPORT_COPY);
+                } finally {
+                  PerformanceStats.end(PerformanceStats.STAGE_EXPORT_COPY, start);
+                }
+              }
+              WritableMap event = createExportResult(
+                      assets.ids[i], files[i], statuses[i], sizes[i], errors[i]);
+              event.putString("requestId", mRequestId);
+              event.putInt("processed", processed.incrementAndGet());
+              event.putInt("total", count);
+              putThroughput(event);
+              emit(mContext, EVENT_EXPORT_PROGRESS, event);
+            }
+          } finally {
+            finished.countDown();
+          }
+        });
+      }
+      executor.shutdown();
+      try {
+        finished.await();
+      } catch (InterruptedException e) {
+        mCancelled.set(true);
+        Thread.currentThread().interrupt();
+      }
+      if (mCancelled.get()) {
+        mPromise.reject(ERROR_CANCELLED, "Export was cancelled");
+        return;
+      }
+
+      // The results were written by the workers, which the latch makes visible here
+      WritableArray results = Arguments.createArray();
+      int copied = 0;
+      int skipped = 0;
+      int failed = 0;
+      for (int i = 0; i < count; i++) {
+        if (STATUS_COPIED.equals(statuses[i])) {
+          copied++;
+        } else if (STATUS_SKIPPED.equals(statuses[i])) {
+          skipped++;
+        } else {
+          failed++;
+        }
+      }
+      for (int inputIndex : assets.inputIndexes) {
+        results.pushMap(createExportResult(
+                assets.ids[inputIndex],
+                files[inputIndex],
+                statuses[inputIndex],
+                sizes[inputIndex],
+                errors[inputIndex]));
+      }
+      WritableMap response = Arguments.createMap();
+      response.putArray("assets", results);
+      response.putInt("copied", copied);
+      response.putInt("skipped", skipped);
+      response.putInt("failed", failed);
+      putThroughput(response);
+      mPromise.resolve(response);
+    }
 
-    if (includeFilename) {
-      File file = new File(media.getString(dataIndex));
-      String strFileName = file.getName();
-      image.putString("filename", strFileName);
-    } else {
-      image.putNull("filename");
+    /**
+     * @return the file of each asset, named after it. Assets sharing a name within this call get
+     * their id appended, so an asset only keeps its file from one call to the next as long as the
+     * assets exported with it share the same names.
+     */
+    private File[] getFiles(AssetLookup assets) {
+      Map<String, Integer> nameCounts = new HashMap<>();
+      String[] names = new String[assets.count];
+      for (int i = 0; i < assets.count; i++) {
+        String name = assets.names[i];
+        names[i] = TextUtils.isEmpty(name)
+                ? Long.toString(assets.ids[i])
+                : name.replace(File.separatorChar, '_');
+        Integer nameCount = nameCounts.get(names[i]);
+        nameCounts.put(names[i], nameCount == null ? 1 : nameCount + 1);
+      }
+      File[] files = new File[assets.count];
+      for (int i = 0; i < assets.count; i++) {
+        String name = names[i];
+        if (nameCounts.get(name) > 1) {
+          int dot = name.lastIndexOf('.');
+          name = dot > 0
+                  ? name.substring(0, dot) + "_" + assets.ids[i] + name.substring(dot)
+                  : name + "_" + assets.ids[i];
+        }
+        files[i] = new File(mDirectory, name);
+      }
+      return files;
     }
 
-    if (includeFileSize) {
-      image.putDouble("fileSize", media.getLong(sizeIndex));
-    } else {
-      image.putNull("fileSize");
+    /**
+     * Copies into a partial file of its own next to the destination, which is renamed once
+     * complete, so that the destination is never left half written, even by two exports of the
+     * same asset into the same directory.
+     *
+     * @return the number of bytes copied
+     * @throws CancellationException if the export was cancelled while copying
+     */
+    private long copy(ContentResolver resolver, Uri uri, File destination, long dateModified)
+            throws IOException {
+      // Hidden, so that it isn't taken for an asset while being written
+      File partial = File.createTempFile(
+              "." + destination.getName() + ".", PARTIAL_SUFFIX, destination.getParentFile());
+      boolean complete = false;
+      try (ParcelFileDescriptor descriptor = resolver.openFileDescriptor(uri, "r")) {
+        if (descriptor == null) {
+          throw new IOException("Could not open " + uri);
+        }
+        long position = 0;
+        try (FileChannel input = new FileInputStream(descriptor.getFileDescriptor()).getChannel();
+             FileChannel output = new FileOutputStream(partial).getChannel()) {
+          long size = input.size();
+          while (position < size) {
+            if (mCancelled.get()) {
+              throw new CancellationException();
+            }
+            long transferred = input.transferTo(
+                    position, Math.min(TRANSFER_CHUNK, size - position), output);
+            if (transferred <= 0) {
+              break;
+            }
+            position += transferred;
+            mBytes.addAndGet(transferred);
+          }
+          if (position < size) {
+            // Never hand out a truncated copy: the partial file is deleted below
+            throw new IOException("Copied " + position + " of " + size + " bytes of " + uri);
+          }
+        }
+        // Lets a later call recognise the file as this version of the asset
+        partial.setLastModified(dateModified * 1000);
+        if (!partial.renameTo(destination)) {
+          throw new IOException("Could not create " + destination);
+        }
+        complete = true;
+        return position;
+      } finally {
+        if (!complete && partial.exists() && !partial.delete()) {
+          FLog.w(ReactConstants.TAG, "Could not delete " + partial);
+        }
+      }
     }
 
-    if (includeFileExtension) {
-      image.putString("extension", Utils.getExtension(mimeType));
-    } else {
-      image.putNull("extension");
+    private void putThroughput(WritableMap map) {
+      long bytes = mBytes.get();
+      long elapsedNs = Math.max(1, System.nanoTime() - mStartNs);
+      map.putDouble("bytes", bytes);
+      map.putDouble("durationMs", elapsedNs / 1e6);
+      map.putDouble("bytesPerSecond", bytes * 1e9 / elapsedNs);
     }
 
-    if (includeOrientation) {
-      if(media.isNull(orientationIndex)) {
-        image.putInt("orientation", media.getInt(orientationIndex));
+    private static WritableMap createExportResult(
+            long id, File file, String status, long size, @Nullable String error) {
+      WritableMap result = Arguments.createMap();
+      result.putString("id", Long.toString(id));
+      if (STATUS_FAILED.equals(status)) {
+        result.putNull("path");
       } else {
-        image.putInt("orientation", 0);
+        result.putString("path", file.getAbsolutePath());
       }
-    } else {
-      image.putNull("orientation");
+      result.putString("status", status);
+      result.putDouble("size", size);
+      if (error != null) {
+        result.putString("error", error);
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Open an asset to read it a byte range at a time with {@link #readChunk}, e.g. to upload a
+   * large video in parts with constant memory and no temporary copy. Opening an asset that is
+   * already open returns the same handle. Readers are closed by {@link #closeAssetReader}, or
+   * automatically once idle for a minute.
+   *
+   * @param id      the id of the asset, as returned by {@link #getPhotos}
+   * @param promise resolved with {handle, size}, size being -1 if unknown
+   */
+  @ReactMethod
+  public void openAssetReader(final String id, final Promise promise) {
+    long assetId;
+    try {
+      assetId = Long.parseLong(id);
+    } catch (NumberFormatException e) {
+      promise.reject(ERROR_UNABLE_TO_FILTER, "Invalid asset id: '" + id + "'.");
+      return;
     }
+    new OpenAssetReaderTask(getReactApplicationContext(), getReaderPool(), assetId, promise)
+            .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+  }
 
-    node.putMap("image", image);
-    return putImageSizeSuccess && putPlayableDurationSuccess;
+  /**
+   * Read a byte range of an asset opened with {@link #openAssetReader}. Ranges of the same asset
+   * may be read concurrently.
+   *
+   * @param handle  the handle returned by openAssetReader
+   * @param offset  the position of the range in the asset, in bytes
+   * @param length  the length of the range, at most 8 MB
+   * @param promise resolved with {data, length, eof}, data being the bytes in base64. Fewer bytes
+   *                than asked for are returned only at the end of the asset.
+   */
+  @ReactMethod
+  public void readChunk(double handle, double offset, double length, final Promise promise) {
+    if (offset < 0 || length < 0 || length > MAX_CHUNK_LENGTH) {
+      promise.reject(
+              ERROR_UNABLE_TO_FILTER,
+              "Invalid range: offset " + (long) offset + ", length " + (long) length
+                      + ". Expected a length from 0 to " + MAX_CHUNK_LENGTH + ".");
+      return;
+    }
+    new ReadChunkTask(
+            getReactApplicationContext(),
+            getReaderPool(),
+            (int) handle,
+            (long) offset,
+            (int) length,
+            promise)
+            .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
   }
 
   /**
-   * @return Whether we succeeded in fetching and putting the playableDuration
+   * Close a reader returned by {@link #openAssetReader}. A reader opened several times stays open
+   * until each was closed.
+   *
+   * @param promise resolved with whether the handle was open
    */
-  private static boolean putPlayableDuration(
-          ContentResolver resolver,
-          WritableMap image,
-          Uri photoUri,
-          boolean isVideo,
-          boolean includePlayableDuration) {
-    image.putNull("playableDuration");
+  @ReactMethod
+  public void closeAssetReader(double handle, Promise promise) {
+    AssetReaderPool pool = mReaderPool;
+    promise.resolve(pool != null && pool.close((int) handle));
+  }
 
-    if (!includePlayableDuration || !isVideo) {
-      return true;
+  private synchronized AssetReaderPool getReaderPool() {
+    if (mReaderPool == null) {
+      mReaderPool = new AssetReaderPool(getReactApplicationContext().getContentResolver());
     }
+    return mReaderPool;
+  }
 
-    boolean success = true;
-    @Nullable Integer playableDuration = null;
-    @Nullable AssetFileDescriptor photoDescriptor = null;
-    try {
-      photoDescriptor = resolver.openAssetFileDescriptor(photoUri, "r");
-    } catch (FileNotFoundException e) {
-      success = false;
-      FLog.e(ReactConstants.TAG, "Could not open asset file " + photoUri.toString(), e);
+  private static class OpenAssetReaderTask extends GuardedAsyncTask<Void, Void> {
+    private final ReactContext mContext;
+    private final AssetReaderPool mPool;
+    private final long mId;
+    private final Promise mPromise;
+
+    private OpenAssetReaderTask(
+            ReactContext context,
+            AssetReaderPool pool,
+            long id,
+            Promise promise) {
+      super(context);
+      mContext = context;
+      mPool = pool;
+      mId = id;
+      mPromise = promise;
     }
 
-    if (photoDescriptor != null) {
-      MediaMetadataRetriever retriever = new MediaMetadataRetriever();
-      try {
-        retriever.setDataSource(photoDescriptor.getFileDescriptor());
-      } catch (RuntimeException e) {
-        // Do nothing. We can't handle this, and this is usually a system problem
-      }
+    @Override
+    protected void doInBackgroundGuarded(Void... params) {
+      AssetLookup asset;
       try {
-        int timeInMillisecond = Integer.parseInt(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION));
-        playableDuration = timeInMillisecond / 1000;
-      } catch (NumberFormatException e) {
-        success = false;
-        FLog.e(
-                ReactConstants.TAG,
-                "Number format exception occurred while trying to fetch video metadata for "
-                        + photoUri.toString(),
+        asset = AssetLookup.query(mContext.getContentResolver(), new long[]{mId});
+      } catch (SecurityException e) {
+        mPromise.reject(
+                ERROR_UNABLE_TO_LOAD_PERMISSION,
+                "Could not get media: need READ_EXTERNAL_STORAGE permission",
                 e);
+        return;
       }
+      if (asset == null) {
+        mPromise.reject(ERROR_UNABLE_TO_LOAD, "Could not get media");
+        return;
+      }
+      if (asset.uris[0] == null) {
+        mPromise.reject(ERROR_UNABLE_TO_LOAD, "Asset not found: " + mId);
+        return;
+      }
+      long start = PerformanceStats.begin(PerformanceStats.STAGE_OPEN_ASSET);
       try {
-        retriever.release();
-      } catch (Exception e) { // Use general Exception here, see: https://developer.android.com/reference/android/media/MediaMetadataRetriever#release()
-        // Do nothing. We can't handle this, and this is usually a system problem
+        AssetReaderPool.Reader reader = mPool.open(asset.uris[0]);
+        WritableMap response = Arguments.createMap();
+        response.putInt("handle", reader.handle);
+        response.putDouble("size", reader.size);
+        mPromise.resolve(response);
+      } catch (IOException | SecurityException e) {
+        PerformanceStats.addFailure(PerformanceStats.STAGE_OPEN_ASSET);
+        mPromise.reject(ERROR_UNABLE_TO_LOAD, "Could not open asset " + mId, e);
+      } finally {
+        PerformanceStats.end(PerformanceStats.STAGE_OPEN_ASSET, start);
       }
     }
+  }
+
+  private static class ReadChunkTask extends GuardedAsyncTask<Void, Void> {
+    private final AssetReaderPool mPool;
+    private final int mHandle;
+    private final long mOffset;
+    private final int mLength;
+    private final Promise mPromise;
+
+    private ReadChunkTask(
+            ReactContext context,
+            AssetReaderPool pool,
+            int handle,
+            long offset,
+            int length,
+            Promise promise) {
+      super(context);
+      mPool = pool;
+      mHandle = handle;
+      mOffset = offset;
+      mLength = length;
+      mPromise = promise;
+    }
 
-    if (photoDescriptor != null) {
+    @Override
+    protected void doInBackgroundGuarded(Void... params) {
+      ByteBuffer chunk;
+      long start = PerformanceStats.begin(PerformanceStats.STAGE_READ_CHUNK);
       try {
-        photoDescriptor.close();
+        chunk = mPool.read(mHandle, mOffset, mLength);
+        PerformanceStats.addBytes(PerformanceStats.STAGE_READ_CHUNK, chunk.remaining());
       } catch (IOException e) {
-        // Do nothing. We can't handle this, and this is usually a system problem
+        PerformanceStats.addFailure(PerformanceStats.STAGE_READ_CHUNK);
+        mPromise.reject(ERROR_UNABLE_TO_LOAD, e.getMessage(), e);
+        return;
+      } finally {
+        PerformanceStats.end(PerformanceStats.STAGE_READ_CHUNK, start);
       }
+      WritableMap response = Arguments.createMap();
+      response.putString(
+              "data",
+              Base64.encodeToString(chunk.array(), 0, chunk.remaining(), Base64.NO_WRAP));
+      response.putInt("length", chunk.remaining());
+      response.putBoolean("eof", chunk.remaining() < mLength);
+      mPromise.resolve(response);
     }
+  }
 
-    if (playableDuration != null) {
-      image.putInt("playableDuration", playableDuration);
+  /**
+   * Get frames of a video as JPEG files, e.g. for the thumbnails of a trim bar. The video is
+   * opened once for all of them, and frames already extracted by an earlier call with the same
+   * options are reused from the cache directory.
+   *
+   * @param id           the id of the video, as returned by {@link #getPhotos}
+   * @param timestampsMs the times of the frames, in milliseconds from the start of the video
+   * @param options      {maxSize, option}: the largest width or height of a frame, 256 by default,
+   *                     and which frame to take near each time, 'closestSync' by default
+   * @param promise      resolved with {time, uri, width, height, cached, error?} for each time, in
+   *                     order
+   */
+  @ReactMethod
+  public void getVideoFrames(
+          final String id,
+          final ReadableArray timestampsMs,
+          final ReadableMap options,
+          final Promise promise) {
+    long assetId;
+    try {
+      assetId = Long.parseLong(id);
+    } catch (NumberFormatException e) {
+      promise.reject(ERROR_UNABLE_TO_FILTER, "Invalid asset id: '" + id + "'.");
+      return;
+    }
+    long[] times = new long[timestampsMs.size()];
+    for (int i = 0; i < times.length; i++) {
+      double time = timestampsMs.getDouble(i);
+      if (!(time >= 0)) {
+        promise.reject(
+                ERROR_UNABLE_TO_FILTER,
+                "Invalid timestamp: " + time + ". Expected a positive number of milliseconds.");
+        return;
+      }
+      times[i] = (long) time;
+    }
+    int maxSize = options.hasKey("maxSize") && !options.isNull("maxSize")
+            ? options.getInt("maxSize")
+            : DEFAULT_FRAME_SIZE;
+    if (maxSize <= 0 || maxSize > MAX_FRAME_SIZE) {
+      promise.reject(
+              ERROR_UNABLE_TO_FILTER,
+              "Invalid maxSize: " + maxSize + ". Expected a number from 1 to " + MAX_FRAME_SIZE + ".");
+      return;
+    }
+    String option = options.hasKey("option") && !options.isNull("option")
+            ? options.getString("option")
+            : VideoFrames.OPTION_CLOSEST_SYNC;
+    try {
+      VideoFrames.getRetrieverOption(option);
+    } catch (IllegalArgumentException e) {
+      promise.reject(ERROR_UNABLE_TO_FILTER, e.getMessage());
+      return;
     }
 
-    return success;
+    new GetVideoFramesTask(getReactApplicationContext(), assetId, times, maxSize, option, promise)
+            .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
   }
 
-  private static boolean putImageSize(
-          ContentResolver resolver,
-          Cursor media,
-          WritableMap image,
-          int widthIndex,
-          int heightIndex,
-          int orientationIndex,
-          Uri photoUri,
-          boolean isVideo,
-          boolean includeImageSize) {
-    image.putNull("width");
-    image.putNull("height");
+  private static class GetVideoFramesTask extends GuardedAsyncTask<Void, Void> {
+    private final ReactContext mContext;
+    private final long mId;
+    private final long[] mTimesMs;
+    private final int mMaxSize;
+    private final String mOption;
+    private final Promise mPromise;
 
-    if (!includeImageSize) {
-      return true;
+    private GetVideoFramesTask(
+            ReactContext context,
+            long id,
+            long[] timesMs,
+            int maxSize,
+            String option,
+            Promise promise) {
+      super(context);
+      mContext = context;
+      mId = id;
+      mTimesMs = timesMs;
+      mMaxSize = maxSize;
+      mOption = option;
+      mPromise = promise;
     }
 
-    boolean success = true;
-
-    int width = media.getInt(widthIndex);
-    int height = media.getInt(heightIndex);
+    @Override
+    protected void doInBackgroundGuarded(Void... params) {
+      ContentResolver resolver = mContext.getContentResolver();
+      AssetLookup asset;
+      try {
+        asset = AssetLookup.query(resolver, new long[]{mId});
+      } catch (SecurityException e) {
+        mPromise.reject(
+                ERROR_UNABLE_TO_LOAD_PERMISSION,
+                "Could not get media: need READ_EXTERNAL_STORAGE permission",
+                e);
+        return;
+      }
+      if (asset == null) {
+        mPromise.reject(ERROR_UNABLE_TO_LOAD, "Could not get media");
+        return;
+      }
+      if (asset.uris[0] == null) {
+        mPromise.reject(ERROR_UNABLE_TO_LOAD, "Asset not found: " + mId);
+        return;
+      }
+      if (asset.mediaTypes[0] != MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO) {
+        mPromise.reject(ERROR_UNABLE_TO_FILTER, "Asset " + mId + " is not a video");
+        return;
+      }
 
-    /* If the columns don't contain the size information, read the media file */
-    if (width <= 0 || height <= 0) {
-      @Nullable AssetFileDescriptor mediaDescriptor = null;
+      VideoFrames videoFrames = new VideoFrames(
+              new File(mContext.getCacheDir(), "RNCCameraRoll" + File.separator + "frames"),
+              mId,
+              asset.modified[0],
+              mMaxSize,
+              mOption);
+      ExecutorService encoders = newBackgroundPool(FRAME_ENCODE_WORKERS, "CameraRollFrameEncode");
+      VideoFrames.Frame[] frames;
       try {
-        mediaDescriptor = resolver.openAssetFileDescriptor(photoUri, "r");
-      } catch (FileNotFoundException e) {
-        success = false;
-        FLog.e(ReactConstants.TAG, "Could not open asset file " + photoUri.toString(), e);
-      }
-      if (mediaDescriptor != null) {
-        if (isVideo) {
-          MediaMetadataRetriever retriever = new MediaMetadataRetriever();
-          try {
-            retriever.setDataSource(mediaDescriptor.getFileDescriptor());
-          } catch (RuntimeException e) {
-            // Do nothing. We can't handle this, and this is usually a system problem
-          }
-          try {
-            width = Integer.parseInt(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
-            height = Integer.parseInt(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT));
-          } catch (NumberFormatException e) {
-            success = false;
-            FLog.e(
-                    ReactConstants.TAG,
-                    "Number format exception occurred while trying to fetch video metadata for "
-                            + photoUri.toString(),
-                    e);
-          }
-          try {
-            retriever.release();
-          } catch (Exception e) { // Use general Exception here, see: https://developer.android.com/reference/android/media/MediaMetadataRetriever#release()
-            // Do nothing. We can't handle this, and this is usually a system problem
-          }
+        frames = videoFrames.get(
+                resolver, asset.uris[0], mTimesMs, encoders, FRAME_ENCODE_WORKERS);
+      } catch (IOException | SecurityException e) {
+        mPromise.reject(ERROR_UNABLE_TO_LOAD, "Could not open video " + mId, e);
+        return;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        mPromise.reject(ERROR_UNABLE_TO_LOAD, "Interrupted while getting frames of " + mId, e);
+        return;
+      } finally {
+        encoders.shutdown();
+      }
+
+      WritableArray response = Arguments.createArray();
+      for (VideoFrames.Frame frame : frames) {
+        WritableMap item = Arguments.createMap();
+        item.putDouble("time", frame.timeMs);
+        if (frame.file != null) {
+          item.putString("uri", Uri.fromFile(frame.file).toString());
         } else {
-          BitmapFactory.Options options = new BitmapFactory.Options();
-          // Set inJustDecodeBounds to true so we don't actually load the Bitmap, but only get its
-          // dimensions instead.
-          options.inJustDecodeBounds = true;
-          BitmapFactory.decodeFileDescriptor(mediaDescriptor.getFileDescriptor(), null, options);
-          width = options.outWidth;
-          height = options.outHeight;
+          item.putNull("uri");
         }
-
-        try {
-          mediaDescriptor.close();
-        } catch (IOException e) {
-          FLog.e(
-                  ReactConstants.TAG,
-                  "Can't close media descriptor "
-                          + photoUri.toString(),
-                  e);
+        item.putInt("width", frame.width);
+        item.putInt("height", frame.height);
+        item.putBoolean("cached", frame.cached);
+        if (frame.error != null) {
+          item.putString("error", frame.error);
         }
+        response.pushMap(item);
       }
-
+      mPromise.resolve(response);
     }
+  }
 
-    if(!media.isNull(orientationIndex)) {
-      int orientation = media.getInt(orientationIndex);
-      if (orientation >= 0 && orientation % 180 != 0) {
-        int temp = width;
-        width = height;
-        height = temp;
-      }
+  private static void emit(ReactContext context, String eventName, WritableMap body) {
+    if (context.hasActiveReactInstance()) {
+      context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit(eventName, body);
     }
+  }
 
-    image.putInt("width", width);
-    image.putInt("height", height);
-    return success;
+  private static void putPageInfo(WritableMap response, int rowCount, int limit, int offset) {
+    WritableMap pageInfo = Arguments.createMap();
+    pageInfo.putBoolean("has_next_page", limit < rowCount);
+    if (limit < rowCount) {
+      pageInfo.putString(
+              "end_cursor",
+              Integer.toString(offset + limit)
+      );
+    }
+    response.putMap("page_info", pageInfo);
   }
 
-  private static void putLocationInfo(
+  /**
+   * Converts the rows of media into edges, or into columns when given, until limit edges have been
+   * added, the rows run out, or {@link System#nanoTime} passes deadlineNs once the page has an
+   * edge. The cursor is left on the last row read.
+   *
+   * @param hasEdges whether earlier chunks of the page already added edges, so that the deadline
+   *                 applies from the first row of this one
+   * @return the number of edges added
+   */
+  private static int putEdges(
+          MediaRowCodec codec,
           Cursor media,
-          WritableMap node,
-          int dataIndex,
-          boolean includeLocation,
-          int mimeTypeIndex,
-          ContentResolver resolver) {
-    node.putNull("location");
-
-    if (!includeLocation) {
-      return;
+          @Nullable WritableArray edges,
+          @Nullable MediaPageColumns columns,
+          int limit,
+          boolean hasEdges,
+          long deadlineNs) {
+    int added = 0;
+    while (added < limit
+            && ((added == 0 && !hasEdges) || deadlineNs == Long.MAX_VALUE || System.nanoTime() < deadlineNs)
+            && media.moveToNext()) {
+      if (putEdge(codec, media, edges, columns)) {
+        added++;
+      }
     }
+    return added;
+  }
 
-    try {
-      String mimeType = media.getString(mimeTypeIndex);
-      boolean isVideo = mimeType != null && mimeType.startsWith("video");
-      if(isVideo){
-        Uri photoUri = Uri.parse("file://" + media.getString(dataIndex));
-        @Nullable AssetFileDescriptor photoDescriptor = null;
-        try {
-          photoDescriptor = resolver.openAssetFileDescriptor(photoUri, "r");
-        } catch (FileNotFoundException e) {
-          FLog.e(ReactConstants.TAG, "Could not open asset file " + photoUri.toString(), e);
-        }
+  /**
+   * Reports how long a getPhotos page took under {@code timing}: elapsedMs since it was queried,
+   * msPerRow converting, and whether the time budget ran out before the page was full.
+   */
+  private static void putTiming(
+          WritableMap response,
+          long startNs,
+          long convertStartNs,
+          int rowCount,
+          boolean budgetExhausted) {
+    long now = System.nanoTime();
+    WritableMap timing = Arguments.createMap();
+    timing.putDouble("elapsedMs", (now - startNs) / 1e6);
+    timing.putDouble("msPerRow", rowCount > 0 ? (now - convertStartNs) / 1e6 / rowCount : 0);
+    timing.putInt("rows", rowCount);
+    timing.putBoolean("budgetExhausted", budgetExhausted);
+    response.putMap("timing", timing);
+  }
 
-        if (photoDescriptor != null) {
-          MediaMetadataRetriever retriever = new MediaMetadataRetriever();
-          try {
-            retriever.setDataSource(photoDescriptor.getFileDescriptor());
-          } catch (RuntimeException e) {
-            // Do nothing. We can't handle this, and this is usually a system problem
-          }
-          try {
-            String videoGeoTag = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_LOCATION);
-            if (videoGeoTag!=null){
-              String filtered = videoGeoTag.replaceAll("/","");
-              WritableMap location = new WritableNativeMap();
-              location.putDouble("latitude", Double.parseDouble(filtered.split("[+]|[-]")[1]));
-              location.putDouble("longitude", Double.parseDouble(filtered.split("[+]|[-]")[2]));
-              node.putMap("location", location);
-            }
-          } catch (NumberFormatException e) {
-            FLog.e(ReactConstants.TAG,"Number format exception occurred while trying to fetch video metadata for "+ photoUri.toString(),e);
-          }
-          try {
-            retriever.release();
-          } catch (Exception e) { // Use general Exception here, see: https://developer.android.com/reference/android/media/MediaMetadataRetriever#release()
-            // Do nothing. We can't handle this, and this is usually a system problem
-          }
-        }
-        if (photoDescriptor != null) {
-          try {
-            photoDescriptor.close();
-          } catch (IOException e) {
-            // Do nothing. We can't handle this, and this is usually a system problem
-          }
-        }
+  /**
+   * Converts the row media is positioned on into an edge, or into columns when given.
+   *
+   * @return whether the row was added
+   */
+  private static boolean putEdge(
+          MediaRowCodec codec,
+          Cursor media,
+          @Nullable WritableArray edges,
+          @Nullable MediaPageColumns columns) {
+    boolean converted;
+    if (columns != null) {
+      MediaRowCodec.Row row = codec.read(media);
+      converted = row != null;
+      if (converted) {
+        columns.add(row);
       }
-      else{
-        // location details are no longer indexed for privacy reasons using string Media.LATITUDE, Media.LONGITUDE
-        // we manually obtain location metadata using ExifInterface#getLatLong(float[]).
-        // ExifInterface is added in API level 5
-        final ExifInterface exif = new ExifInterface(media.getString(dataIndex));
-        float[] imageCoordinates = new float[2];
-        boolean hasCoordinates = exif.getLatLong(imageCoordinates);
-        if (hasCoordinates) {
-          double longitude = imageCoordinates[1];
-          double latitude = imageCoordinates[0];
-          WritableMap location = new WritableNativeMap();
-          location.putDouble("longitude", longitude);
-          location.putDouble("latitude", latitude);
-          node.putMap("location", location);
-        }
+    } else {
+      WritableMap map = codec.convert(media);
+      converted = map != null;
+      if (converted) {
+        edges.pushMap(map);
       }
-    } catch (IOException e) {
-      FLog.e(ReactConstants.TAG, "Could not read the metadata", e);
     }
+    if (converted) {
+      PerformanceStats.addRows(PerformanceStats.STAGE_PHOTOS_CONVERT, 1);
+    } else {
+      // we skipped an image because we couldn't get its details (e.g. width/height), so the
+      // next row takes its place, if the cursor has enough rows
+      PerformanceStats.addSkip(PerformanceStats.STAGE_PHOTOS_CONVERT);
+    }
+    return converted;
   }
 
   /**
@@ -0,0 +1,253 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.os.Build;
+import android.os.Bundle;
+import android.provider.MediaStore;
+import android.provider.MediaStore.Images;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.annotation.Nullable;
+
+/**
+ * Reads the rows of a {@code getPhotos} page as a series of queries of at most a chunk of rows
+ * each, rather than a single cursor whose window MediaStore refills as it is walked. While the
+ * caller converts one chunk, the next one is queried on the given executor, so that the transfer
+ * of rows out of MediaStore overlaps with the conversion and at most two chunks are held at once.
+ *
+ * After the first chunk, which starts at the page offset, each chunk starts right after the last
+ * row of the one before: by its sort column value and id when the query is
+ * {@link MediaQuery#seekable}, by offset otherwise.
+ */
+class ChunkedMediaQuery implements Closeable {
+
+  private final ContentResolver mResolver;
+  private final String mVolume;
+  private final MediaQuery mQuery;
+  private final int mChunkSize;
+  private final Executor mExecutor;
+
+  private int mOffset;
+  private int mRemaining;
+  private boolean mFailed;
+  private @Nullable Cursor mCurrent;
+  private @Nullable FutureTask<Cursor> mNext;
+
+  /**
+   * @param volume    the MediaStore volume to read, e.g. "external"
+   * @param offset    the position of the first row to read
+   * @param rowCount  the number of rows to read at most
+   * @param chunkSize the number of rows to query at once, or 0 to query all of them at once
+   * @param executor  the executor to query chunks on, which must not queue them behind the thread
+   *                  reading them, since it waits for them
+   */
+  ChunkedMediaQuery(
+          ContentResolver resolver,
+          String volume,
+          MediaQuery query,
+          int offset,
+          int rowCount,
+          int chunkSize,
+          Executor executor) {
+    mResolver = resolver;
+    mVolume = volume;
+    mQuery = query;
+    mOffset = offset;
+    mRemaining = rowCount;
+    mChunkSize = chunkSize > 0 ? chunkSize : rowCount;
+    mExecutor = executor;
+  }
+
+  /**
+   * Starts querying the first chunk on the executor, rather than when {@link #next} is first
+   * called, e.g. to query several volumes at once.
+   */
+  void start() {
+    if (mNext == null && mCurrent == null && mRemaining > 0) {
+      final int offset = mOffset;
+      final int limit = Math.min(mChunkSize, mRemaining);
+      mNext = new FutureTask<>(() -> fetch(mQuery.selection, mQuery.selectionArgs, offset, limit));
+      submit(mNext);
+    }
+  }
+
+  /**
+   * Closes the chunk returned last, and returns the next one, starting to query the one after it.
+   *
+   * @return the next chunk, positioned before its first row, or null once all rows have been read
+   * or when MediaStore returned no cursor, see {@link #hasFailed}
+   */
+  @Nullable Cursor next() {
+    if (mCurrent != null) {
+      mCurrent.close();
+      mCurrent = null;
+    }
+
+    Cursor chunk;
+    if (mNext != null) {
+      chunk = await(mNext);
+      mNext = null;
+    } else if (mRemaining > 0 && !mFailed) {
+      chunk = fetch(mQuery.selection, mQuery.selectionArgs, mOffset, Math.min(mChunkSize, mRemaining));
+    } else {
+      return null;
+    }
+    if (chunk == null) {
+      mFailed = true;
+      return null;
+    }
+
+    int requested = Math.min(mChunkSize, mRemaining);
+    int count = chunk.getCount();
+    mRemaining -= count;
+    mOffset += count;
+    if (count == requested && mRemaining > 0) {
+      // A full chunk: there may be more rows, start querying them now
+      scheduleAfter(chunk, Math.min(mChunkSize, mRemaining));
+    } else {
+      mRemaining = 0;
+    }
+    mCurrent = chunk;
+    return chunk;
+  }
+
+  MediaQuery getQuery() {
+    return mQuery;
+  }
+
+  /**
+   * @return whether MediaStore returned no cursor for one of the chunks
+   */
+  boolean hasFailed() {
+    return mFailed;
+  }
+
+  /**
+   * Closes the current chunk, and the next one once it has been queried.
+   */
+  @Override
+  public void close() {
+    if (mCurrent != null) {
+      mCurrent.close();
+      mCurrent = null;
+    }
+    if (mNext != null) {
+      try {
+        Cursor next = await(mNext);
+        if (next != null) {
+          next.close();
+        }
+      } catch (RuntimeException e) {
+        // Nothing to close
+      }
+      mNext = null;
+    }
+    mRemaining = 0;
+  }
+
+  private void scheduleAfter(Cursor chunk, int limit) {
+    final String selection;
+    final String[] selectionArgs;
+    final int offset;
+    if (mQuery.seekable) {
+      chunk.moveToLast();
+      int column = chunk.getColumnIndex(mQuery.sortColumn);
+      StringBuilder seekSelection = new StringBuilder(mQuery.selection);
+      List<String> seekArgs = new ArrayList<>(Arrays.asList(mQuery.selectionArgs));
+      MediaQuery.appendSeek(
+              seekSelection,
+              seekArgs,
+              mQuery.sortColumn,
+              chunk.isNull(column) ? null : chunk.getLong(column),
+              chunk.getLong(chunk.getColumnIndex(Images.Media._ID)));
+      chunk.moveToPosition(-1);
+      selection = seekSelection.toString();
+      selectionArgs = seekArgs.toArray(new String[seekArgs.size()]);
+      offset = 0;
+    } else {
+      selection = mQuery.selection;
+      selectionArgs = mQuery.selectionArgs;
+      offset = mOffset;
+    }
+    mNext = new FutureTask<>(() -> fetch(selection, selectionArgs, offset, limit));
+    submit(mNext);
+  }
+
+  private void submit(FutureTask<Cursor> task) {
+    try {
+      mExecutor.execute(task);
+    } catch (RejectedExecutionException e) {
+      // The executor was shut down, e.g. along with the module: query on this thread instead
+      task.run();
+    }
+  }
+
+  private @Nullable Cursor fetch(String selection, String[] selectionArgs, int offset, int limit) {
+    long queryStart = PerformanceStats.begin(PerformanceStats.STAGE_PHOTOS_QUERY);
+    try {
+      Cursor cursor = query(selection, selectionArgs, offset, limit);
+      if (cursor == null) {
+        PerformanceStats.addFailure(PerformanceStats.STAGE_PHOTOS_QUERY);
+      } else {
+        // Have the first window filled here rather than on the thread converting the rows
+        cursor.getCount();
+      }
+      return cursor;
+    } finally {
+      PerformanceStats.end(PerformanceStats.STAGE_PHOTOS_QUERY, queryStart);
+    }
+  }
+
+  private @Nullable Cursor query(String selection, String[] selectionArgs, int offset, int limit) {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+      Bundle bundle = new Bundle();
+      bundle.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, selection);
+      bundle.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS, selectionArgs);
+      bundle.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, mQuery.sortOrder);
+      bundle.putInt(ContentResolver.QUERY_ARG_LIMIT, limit);
+      if (offset > 0) {
+        bundle.putInt(ContentResolver.QUERY_ARG_OFFSET, offset);
+      }
+      return mResolver.query(
+              MediaStore.Files.getContentUri(mVolume),
+              MediaRowCodec.getProjection(Build.VERSION.SDK_INT),
+              bundle,
+              null);
+    } else {
+      String limitClause = "limit=" + (offset > 0 ? offset + "," : "") + limit;
+      return mResolver.query(
+              MediaStore.Files.getContentUri(mVolume).buildUpon().encodedQuery(limitClause).build(),
+              MediaRowCodec.getProjection(Build.VERSION.SDK_INT),
+              selection,
+              selectionArgs,
+              mQuery.sortOrder);
+    }
+  }
+
+  /**
+   * @return the chunk queried by the task, rethrowing what it threw, e.g. a SecurityException
+   */
+  private static @Nullable Cursor await(FutureTask<Cursor> task) {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while querying media", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+}
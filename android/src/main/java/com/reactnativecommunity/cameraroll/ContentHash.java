@@ -0,0 +1,261 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hashes the bytes of an asset, reading it through a {@link FileChannel}: memory-mapped a window
+ * at a time when the descriptor is a regular file, so that the bytes go from the page cache to the
+ * hash without being copied, and through a reused direct buffer otherwise.
+ *
+ * <ul>
+ *   <li>sha256: SHA-256, for matching against hashes computed elsewhere.</li>
+ *   <li>xxh64: XXH64 with seed 0, several times faster, for change detection.</li>
+ * </ul>
+ *
+ * Not thread safe: use one instance per thread.
+ */
+class ContentHash {
+
+  static final String ALGORITHM_SHA256 = "sha256";
+  static final String ALGORITHM_XXH64 = "xxh64";
+
+  private static final long MAP_WINDOW = 16 * 1024 * 1024;
+  private static final int READ_BUFFER = 256 * 1024;
+
+  private final MessageDigest mDigest;
+  private final XxHash64 mXxHash;
+  private ByteBuffer mReadBuffer;
+
+  /**
+   * @throws IllegalArgumentException if algorithm is not one of the ALGORITHM_ constants
+   */
+  ContentHash(String algorithm) {
+    checkAlgorithm(algorithm);
+    if (ALGORITHM_SHA256.equals(algorithm)) {
+      try {
+        mDigest = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+        // Every Android version provides SHA-256
+        throw new IllegalStateException(e);
+      }
+      mXxHash = null;
+    } else {
+      mDigest = null;
+      mXxHash = new XxHash64();
+    }
+  }
+
+  /**
+   * @throws IllegalArgumentException if algorithm is not one of the ALGORITHM_ constants
+   */
+  static void checkAlgorithm(String algorithm) {
+    if (!ALGORITHM_SHA256.equals(algorithm) && !ALGORITHM_XXH64.equals(algorithm)) {
+      throw new IllegalArgumentException(
+              "Invalid algorithm: '" + algorithm + "'. Expected one of '"
+                      + ALGORITHM_SHA256 + "' or '" + ALGORITHM_XXH64 + "'.");
+    }
+  }
+
+  /**
+   * @return the length in bytes of the hashes of the given algorithm
+   */
+  static int getLength(String algorithm) {
+    return ALGORITHM_SHA256.equals(algorithm) ? 32 : 8;
+  }
+
+  /**
+   * @param hash receives the hash, {@link #getLength} bytes
+   * @return the number of bytes hashed
+   * @throws IOException if the asset can't be opened or read
+   */
+  long hash(ContentResolver resolver, Uri uri, byte[] hash) throws IOException {
+    reset();
+    long hashed = 0;
+    try (ParcelFileDescriptor descriptor = resolver.openFileDescriptor(uri, "r")) {
+      if (descriptor == null) {
+        throw new IOException("Could not open " + uri);
+      }
+      try (FileChannel channel = new FileInputStream(descriptor.getFileDescriptor()).getChannel()) {
+        long size = descriptor.getStatSize();
+        if (size > 0) {
+          for (long position = 0; position < size; position += MAP_WINDOW) {
+            long length = Math.min(MAP_WINDOW, size - position);
+            update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+            hashed += length;
+          }
+        } else {
+          // Pipes and sockets have no size and can't be mapped
+          if (mReadBuffer == null) {
+            mReadBuffer = ByteBuffer.allocateDirect(READ_BUFFER);
+          }
+          while (channel.read(mReadBuffer) >= 0) {
+            mReadBuffer.flip();
+            hashed += mReadBuffer.remaining();
+            update(mReadBuffer);
+            mReadBuffer.clear();
+          }
+        }
+      }
+    }
+    finish(hash);
+    return hashed;
+  }
+
+  private void reset() {
+    if (mDigest != null) {
+      mDigest.reset();
+    } else {
+      mXxHash.reset();
+    }
+  }
+
+  private void update(ByteBuffer buffer) {
+    if (mDigest != null) {
+      mDigest.update(buffer);
+    } else {
+      mXxHash.update(buffer);
+    }
+  }
+
+  private void finish(byte[] hash) {
+    if (mDigest != null) {
+      System.arraycopy(mDigest.digest(), 0, hash, 0, 32);
+    } else {
+      long value = mXxHash.digest();
+      for (int i = 7; i >= 0; i--) {
+        hash[i] = (byte) value;
+        value >>>= 8;
+      }
+    }
+  }
+
+  static String toHex(byte[] hash) {
+    char[] hex = new char[hash.length * 2];
+    for (int i = 0; i < hash.length; i++) {
+      hex[i * 2] = Character.forDigit((hash[i] >> 4) & 0xf, 16);
+      hex[i * 2 + 1] = Character.forDigit(hash[i] & 0xf, 16);
+    }
+    return new String(hex);
+  }
+
+  /**
+   * Streaming XXH64 (seed 0), as specified in https://github.com/Cyan4973/xxHash.
+   */
+  static class XxHash64 {
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private final ByteBuffer mPending = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+    private long mV1;
+    private long mV2;
+    private long mV3;
+    private long mV4;
+    private long mLength;
+
+    XxHash64() {
+      reset();
+    }
+
+    void reset() {
+      mV1 = PRIME1 + PRIME2;
+      mV2 = PRIME2;
+      mV3 = 0;
+      mV4 = -PRIME1;
+      mLength = 0;
+      mPending.clear();
+    }
+
+    void update(ByteBuffer input) {
+      ByteOrder order = input.order();
+      input.order(ByteOrder.LITTLE_ENDIAN);
+      mLength += input.remaining();
+      if (mPending.position() > 0) {
+        while (mPending.hasRemaining() && input.hasRemaining()) {
+          mPending.put(input.get());
+        }
+        if (mPending.hasRemaining()) {
+          input.order(order);
+          return;
+        }
+        mPending.flip();
+        stripe(mPending);
+        mPending.clear();
+      }
+      while (input.remaining() >= 32) {
+        stripe(input);
+      }
+      while (input.hasRemaining()) {
+        mPending.put(input.get());
+      }
+      input.order(order);
+    }
+
+    private void stripe(ByteBuffer input) {
+      mV1 = round(mV1, input.getLong());
+      mV2 = round(mV2, input.getLong());
+      mV3 = round(mV3, input.getLong());
+      mV4 = round(mV4, input.getLong());
+    }
+
+    long digest() {
+      long hash;
+      if (mLength >= 32) {
+        hash = Long.rotateLeft(mV1, 1) + Long.rotateLeft(mV2, 7)
+                + Long.rotateLeft(mV3, 12) + Long.rotateLeft(mV4, 18);
+        hash = merge(hash, mV1);
+        hash = merge(hash, mV2);
+        hash = merge(hash, mV3);
+        hash = merge(hash, mV4);
+      } else {
+        hash = PRIME5;
+      }
+      hash += mLength;
+
+      ByteBuffer tail = mPending.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+      tail.flip();
+      while (tail.remaining() >= 8) {
+        hash ^= round(0, tail.getLong());
+        hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+      }
+      if (tail.remaining() >= 4) {
+        hash ^= (tail.getInt() & 0xFFFFFFFFL) * PRIME1;
+        hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+      }
+      while (tail.hasRemaining()) {
+        hash ^= (tail.get() & 0xFFL) * PRIME5;
+        hash = Long.rotateLeft(hash, 11) * PRIME1;
+      }
+
+      hash ^= hash >>> 33;
+      hash *= PRIME2;
+      hash ^= hash >>> 29;
+      hash *= PRIME3;
+      hash ^= hash >>> 32;
+      return hash;
+    }
+
+    private static long round(long accumulator, long input) {
+      accumulator += input * PRIME2;
+      accumulator = Long.rotateLeft(accumulator, 31);
+      return accumulator * PRIME1;
+    }
+
+    private static long merge(long hash, long value) {
+      hash ^= round(0, value);
+      return hash * PRIME1 + PRIME4;
+    }
+  }
+}
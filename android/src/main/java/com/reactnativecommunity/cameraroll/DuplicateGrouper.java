@@ -0,0 +1,121 @@
+package com.reactnativecommunity.cameraroll;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups assets whose perceptual hashes are within a Hamming distance of each other. Groups are
+ * transitive: when a is close to b and b to c, all three form one group.
+ *
+ * Identical hashes are merged first. Neighbours are then found with multi-index hashing: the 64
+ * bits are split into maxDistance + 1 chunks, and two hashes within maxDistance of each other
+ * must agree exactly on at least one of them. Only hashes sharing a chunk are compared, which at
+ * the small distances that mean "same picture" is a small fraction of all pairs. (A BK-tree
+ * degrades to comparing nearly every pair here, as 64 bit hashes are mostly about 32 bits apart.)
+ */
+class DuplicateGrouper {
+
+  private DuplicateGrouper() {
+  }
+
+  /**
+   * @param hashes      the hashes of the assets, the first count of which are used
+   * @param maxDistance the largest number of differing bits between two assets of a group
+   * @return the groups of two or more assets, as indexes into hashes in increasing order, ordered
+   * by their first asset
+   */
+  static List<int[]> group(long[] hashes, int count, int maxDistance) {
+    int[] parents = new int[count];
+    for (int i = 0; i < count; i++) {
+      parents[i] = i;
+    }
+
+    // Index of the first asset with each distinct hash
+    Map<Long, Integer> distinct = new HashMap<>();
+    List<Integer> representatives = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      Integer first = distinct.get(hashes[i]);
+      if (first == null) {
+        distinct.put(hashes[i], i);
+        representatives.add(i);
+      } else {
+        union(parents, first, i);
+      }
+    }
+
+    int distinctCount = representatives.size();
+    if (maxDistance > 0 && distinctCount > 1) {
+      int chunks = Math.min(maxDistance + 1, Long.SIZE);
+      long[] keys = new long[distinctCount];
+      for (int chunk = 0; chunk < chunks; chunk++) {
+        int from = chunk * Long.SIZE / chunks;
+        int to = (chunk + 1) * Long.SIZE / chunks;
+        long mask = to - from == Long.SIZE ? -1L : ((1L << (to - from)) - 1) << from;
+        // Sort by the chunk's bits, then compare within each run of equal bits
+        for (int i = 0; i < distinctCount; i++) {
+          keys[i] = ((hashes[representatives.get(i)] & mask) >>> from) << 32 | i;
+        }
+        Arrays.sort(keys);
+        int runStart = 0;
+        for (int end = 1; end <= distinctCount; end++) {
+          if (end < distinctCount && keys[end] >>> 32 == keys[runStart] >>> 32) {
+            continue;
+          }
+          for (int a = runStart; a < end; a++) {
+            int first = representatives.get((int) keys[a]);
+            for (int b = a + 1; b < end; b++) {
+              int second = representatives.get((int) keys[b]);
+              if (PerceptualHash.distance(hashes[first], hashes[second]) <= maxDistance) {
+                union(parents, first, second);
+              }
+            }
+          }
+          runStart = end;
+        }
+      }
+    }
+
+    // Roots are the first asset of their group, so groups come out in order
+    int[] sizes = new int[count];
+    for (int i = 0; i < count; i++) {
+      sizes[find(parents, i)]++;
+    }
+    int[][] members = new int[count][];
+    int[] filled = new int[count];
+    List<int[]> result = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      int root = find(parents, i);
+      if (sizes[root] < 2) {
+        continue;
+      }
+      if (members[root] == null) {
+        members[root] = new int[sizes[root]];
+        result.add(members[root]);
+      }
+      members[root][filled[root]++] = i;
+    }
+    return result;
+  }
+
+  private static int find(int[] parents, int i) {
+    while (parents[i] != i) {
+      parents[i] = parents[parents[i]];
+      i = parents[i];
+    }
+    return i;
+  }
+
+  private static void union(int[] parents, int a, int b) {
+    int rootA = find(parents, a);
+    int rootB = find(parents, b);
+    // The smaller index becomes the root, so that groups are named by their first asset
+    if (rootA < rootB) {
+      parents[rootB] = rootA;
+    } else if (rootB < rootA) {
+      parents[rootA] = rootB;
+    }
+  }
+}
@@ -0,0 +1,538 @@
+package com.reactnativecommunity.cameraroll;
+
+import com.facebook.react.bridge.ReadableArray;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.annotation.Nullable;
+
+/**
+ * Reads a few EXIF tags of a JPEG from a stream, without reading past its EXIF segment. The
+ * segments before it are skipped, the segment itself is at most 64 KB, and only the tags asked
+ * for are decoded out of it, so that the location or the camera details of a page of photos cost
+ * a few kilobytes of reads per photo instead of a full {@code ExifInterface} parse of the file.
+ *
+ * Only JPEG is handled: {@link #read} returns false for anything else, to be read some other way.
+ * Not thread safe: it reuses its segment buffer between reads.
+ */
+class ExifHeaderReader {
+
+  static final String TAG_MAKE = "make";
+  static final String TAG_MODEL = "model";
+  static final String TAG_EXPOSURE_TIME = "exposureTime";
+  static final String TAG_F_NUMBER = "fNumber";
+  static final String TAG_ISO = "iso";
+  static final String TAG_FOCAL_LENGTH = "focalLength";
+  static final String TAG_DATE_TIME_ORIGINAL = "dateTimeOriginal";
+  static final String TAG_LOCATION = "location";
+
+  /** The tag names, in the order of their field bits. */
+  private static final String[] TAGS = {
+          TAG_MAKE,
+          TAG_MODEL,
+          TAG_EXPOSURE_TIME,
+          TAG_F_NUMBER,
+          TAG_ISO,
+          TAG_FOCAL_LENGTH,
+          TAG_DATE_TIME_ORIGINAL,
+          TAG_LOCATION,
+  };
+
+  static final int FIELD_MAKE = 1;
+  static final int FIELD_MODEL = 1 << 1;
+  static final int FIELD_EXPOSURE_TIME = 1 << 2;
+  static final int FIELD_F_NUMBER = 1 << 3;
+  static final int FIELD_ISO = 1 << 4;
+  static final int FIELD_FOCAL_LENGTH = 1 << 5;
+  static final int FIELD_DATE_TIME_ORIGINAL = 1 << 6;
+  static final int FIELD_LOCATION = 1 << 7;
+  static final int ALL_FIELDS = (1 << TAGS.length) - 1;
+
+  /** Segments before the EXIF one are skipped up to this many bytes, e.g. a JFIF thumbnail. */
+  private static final int MAX_SKIPPED_BYTES = 256 * 1024;
+  private static final int MAX_SEGMENT_LENGTH = 0xFFFF;
+
+  private static final int MARKER_SOI = 0xD8;
+  private static final int MARKER_EOI = 0xD9;
+  private static final int MARKER_SOS = 0xDA;
+  private static final int MARKER_APP1 = 0xE1;
+
+  private static final int TAG_IFD0_MAKE = 0x010F;
+  private static final int TAG_IFD0_MODEL = 0x0110;
+  private static final int TAG_IFD0_EXIF_POINTER = 0x8769;
+  private static final int TAG_IFD0_GPS_POINTER = 0x8825;
+  private static final int TAG_EXIF_EXPOSURE_TIME = 0x829A;
+  private static final int TAG_EXIF_F_NUMBER = 0x829D;
+  private static final int TAG_EXIF_ISO = 0x8827;
+  private static final int TAG_EXIF_DATE_TIME_ORIGINAL = 0x9003;
+  private static final int TAG_EXIF_OFFSET_TIME_ORIGINAL = 0x9011;
+  private static final int TAG_EXIF_FOCAL_LENGTH = 0x920A;
+  private static final int TAG_GPS_LATITUDE_REF = 1;
+  private static final int TAG_GPS_LATITUDE = 2;
+  private static final int TAG_GPS_LONGITUDE_REF = 3;
+  private static final int TAG_GPS_LONGITUDE = 4;
+  private static final int TAG_GPS_ALTITUDE_REF = 5;
+  private static final int TAG_GPS_ALTITUDE = 6;
+
+  private static final int TYPE_BYTE = 1;
+  private static final int TYPE_ASCII = 2;
+  private static final int TYPE_SHORT = 3;
+  private static final int TYPE_LONG = 4;
+  private static final int TYPE_RATIONAL = 5;
+  private static final int TYPE_UNDEFINED = 7;
+  private static final int TYPE_SLONG = 9;
+  private static final int TYPE_SRATIONAL = 10;
+
+  /** The tags read, cleared by every {@link #read}. */
+  static class Result {
+    @Nullable String make;
+    @Nullable String model;
+    /** In seconds, NaN if unknown, as are the other numbers. */
+    double exposureTime;
+    double fNumber;
+    /** -1 if unknown. */
+    int iso;
+    /** In millimeters. */
+    double focalLength;
+    /** As written, e.g. "2023:05:01 12:34:56". */
+    @Nullable String dateTimeOriginal;
+    /** The time zone of dateTimeOriginal, e.g. "+02:00". */
+    @Nullable String offsetTimeOriginal;
+    double latitude;
+    double longitude;
+    /** In meters above sea level. */
+    double altitude;
+
+    Result() {
+      clear();
+    }
+
+    void clear() {
+      make = null;
+      model = null;
+      exposureTime = Double.NaN;
+      fNumber = Double.NaN;
+      iso = -1;
+      focalLength = Double.NaN;
+      dateTimeOriginal = null;
+      offsetTimeOriginal = null;
+      latitude = Double.NaN;
+      longitude = Double.NaN;
+      altitude = Double.NaN;
+    }
+
+    boolean hasLocation() {
+      return !Double.isNaN(latitude) && !Double.isNaN(longitude);
+    }
+
+    /**
+     * @return dateTimeOriginal in ISO 8601, with its offset if known, e.g.
+     * "2023-05-01T12:34:56+02:00", or null if missing or malformed
+     */
+    @Nullable String getCaptureTime() {
+      String time = dateTimeOriginal;
+      if (time == null || time.length() != 19 || time.charAt(4) != ':' || time.charAt(7) != ':'
+              || time.charAt(10) != ' ') {
+        return null;
+      }
+      StringBuilder iso8601 = new StringBuilder(25)
+              .append(time, 0, 4).append('-')
+              .append(time, 5, 7).append('-')
+              .append(time, 8, 10).append('T')
+              .append(time, 11, 19);
+      String offset = offsetTimeOriginal;
+      if (offset != null && offset.length() == 6
+              && (offset.charAt(0) == '+' || offset.charAt(0) == '-') && offset.charAt(3) == ':') {
+        iso8601.append(offset);
+      }
+      return iso8601.toString();
+    }
+  }
+
+  private final byte[] mSegment = new byte[MAX_SEGMENT_LENGTH];
+  private final byte[] mHeader = new byte[4];
+  private int mFields;
+  private int mTiffStart;
+  private int mTiffEnd;
+  private boolean mLittleEndian;
+
+  /**
+   * @param tags tag names, see the TAG_ constants, or null for all of them
+   * @return the FIELD_ bits of the tags
+   * @throws IllegalArgumentException if one of the tags is unknown
+   */
+  static int getFields(@Nullable ReadableArray tags) {
+    if (tags == null) {
+      return ALL_FIELDS;
+    }
+    int fields = 0;
+    for (int i = 0; i < tags.size(); i++) {
+      fields |= getField(tags.getString(i));
+    }
+    return fields;
+  }
+
+  /**
+   * @throws IllegalArgumentException if the tag is unknown
+   */
+  static int getField(@Nullable String tag) {
+    for (int i = 0; i < TAGS.length; i++) {
+      if (TAGS[i].equals(tag)) {
+        return 1 << i;
+      }
+    }
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < TAGS.length; i++) {
+      expected.append(i == 0 ? "'" : i == TAGS.length - 1 ? "' or '" : "', '").append(TAGS[i]);
+    }
+    throw new IllegalArgumentException(
+            "Invalid EXIF tag: '" + tag + "'. Expected one of " + expected + "'.");
+  }
+
+  /**
+   * @param input  a stream at the start of the image, not closed
+   * @param fields the FIELD_ bits of the tags to read
+   * @param result cleared, then set to the tags found
+   * @return false if the image is not a JPEG, true otherwise even if it has no EXIF
+   * @throws IOException if the stream can't be read
+   */
+  boolean read(InputStream input, int fields, Result result) throws IOException {
+    result.clear();
+    if (!readFully(input, mHeader, 2) || (mHeader[0] & 0xFF) != 0xFF
+            || (mHeader[1] & 0xFF) != MARKER_SOI) {
+      return false;
+    }
+    mFields = fields;
+    int skipped = 0;
+    while (skipped <= MAX_SKIPPED_BYTES) {
+      int marker = readMarker(input);
+      if (marker < 0 || marker == MARKER_SOS || marker == MARKER_EOI) {
+        // Image data or end of file: metadata segments all come before
+        return true;
+      }
+      if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+        // Markers without a segment
+        continue;
+      }
+      if (!readFully(input, mHeader, 2)) {
+        return true;
+      }
+      int length = (((mHeader[0] & 0xFF) << 8) | (mHeader[1] & 0xFF)) - 2;
+      if (length < 0) {
+        return true;
+      }
+      if (marker == MARKER_APP1 && length >= 14) {
+        if (!readFully(input, mSegment, length)) {
+          return true;
+        }
+        if (mSegment[0] == 'E' && mSegment[1] == 'x' && mSegment[2] == 'i' && mSegment[3] == 'f'
+                && mSegment[4] == 0 && mSegment[5] == 0) {
+          parseTiff(6, length, result);
+          return true;
+        }
+        // Another APP1 segment, e.g. XMP: the EXIF one may still follow
+      } else if (!skipFully(input, length)) {
+        return true;
+      }
+      skipped += length + 4;
+    }
+    return true;
+  }
+
+  /**
+   * @return the marker byte following 0xFF fill bytes, or -1 at the end of the stream or if the
+   * stream is not at a marker
+   */
+  private static int readMarker(InputStream input) throws IOException {
+    int b = input.read();
+    if (b != 0xFF) {
+      return -1;
+    }
+    do {
+      b = input.read();
+    } while (b == 0xFF);
+    return b;
+  }
+
+  private void parseTiff(int start, int end, Result result) {
+    mTiffStart = start;
+    mTiffEnd = end;
+    if (end - start < 8) {
+      return;
+    }
+    if (mSegment[start] == 'I' && mSegment[start + 1] == 'I') {
+      mLittleEndian = true;
+    } else if (mSegment[start] == 'M' && mSegment[start + 1] == 'M') {
+      mLittleEndian = false;
+    } else {
+      return;
+    }
+    if (readUnsignedShort(start + 2) != 42) {
+      return;
+    }
+    long exifIfd = -1;
+    long gpsIfd = -1;
+    int ifd0 = getOffset(readInt(start + 4));
+    int entries = getEntryCount(ifd0);
+    for (int i = 0; i < entries; i++) {
+      int entry = ifd0 + 2 + i * 12;
+      int tag = readUnsignedShort(entry);
+      switch (tag) {
+        case TAG_IFD0_MAKE:
+          if ((mFields & FIELD_MAKE) != 0) {
+            result.make = getString(entry);
+          }
+          break;
+        case TAG_IFD0_MODEL:
+          if ((mFields & FIELD_MODEL) != 0) {
+            result.model = getString(entry);
+          }
+          break;
+        case TAG_IFD0_EXIF_POINTER:
+          exifIfd = getLong(entry);
+          break;
+        case TAG_IFD0_GPS_POINTER:
+          gpsIfd = getLong(entry);
+          break;
+        default:
+          break;
+      }
+    }
+
+    int exifFields = FIELD_EXPOSURE_TIME | FIELD_F_NUMBER | FIELD_ISO | FIELD_FOCAL_LENGTH
+            | FIELD_DATE_TIME_ORIGINAL;
+    if ((mFields & exifFields) != 0 && exifIfd >= 0) {
+      parseExifIfd(getOffset(exifIfd), result);
+    }
+    if ((mFields & FIELD_LOCATION) != 0 && gpsIfd >= 0) {
+      parseGpsIfd(getOffset(gpsIfd), result);
+    }
+  }
+
+  private void parseExifIfd(int ifd, Result result) {
+    int entries = getEntryCount(ifd);
+    for (int i = 0; i < entries; i++) {
+      int entry = ifd + 2 + i * 12;
+      int tag = readUnsignedShort(entry);
+      if (tag == TAG_EXIF_EXPOSURE_TIME && (mFields & FIELD_EXPOSURE_TIME) != 0) {
+        result.exposureTime = getRational(entry, 0);
+      } else if (tag == TAG_EXIF_F_NUMBER && (mFields & FIELD_F_NUMBER) != 0) {
+        result.fNumber = getRational(entry, 0);
+      } else if (tag == TAG_EXIF_ISO && (mFields & FIELD_ISO) != 0) {
+        long iso = getLong(entry);
+        result.iso = iso >= 0 && iso <= Integer.MAX_VALUE ? (int) iso : -1;
+      } else if (tag == TAG_EXIF_FOCAL_LENGTH && (mFields & FIELD_FOCAL_LENGTH) != 0) {
+        result.focalLength = getRational(entry, 0);
+      } else if (tag == TAG_EXIF_DATE_TIME_ORIGINAL && (mFields & FIELD_DATE_TIME_ORIGINAL) != 0) {
+        result.dateTimeOriginal = getString(entry);
+      } else if (tag == TAG_EXIF_OFFSET_TIME_ORIGINAL && (mFields & FIELD_DATE_TIME_ORIGINAL) != 0) {
+        result.offsetTimeOriginal = getString(entry);
+      }
+    }
+  }
+
+  private void parseGpsIfd(int ifd, Result result) {
+    String latitudeRef = null;
+    String longitudeRef = null;
+    double latitude = Double.NaN;
+    double longitude = Double.NaN;
+    int altitudeRef = 0;
+    double altitude = Double.NaN;
+    int entries = getEntryCount(ifd);
+    for (int i = 0; i < entries; i++) {
+      int entry = ifd + 2 + i * 12;
+      switch (readUnsignedShort(entry)) {
+        case TAG_GPS_LATITUDE_REF:
+          latitudeRef = getString(entry);
+          break;
+        case TAG_GPS_LATITUDE:
+          latitude = getDegrees(entry);
+          break;
+        case TAG_GPS_LONGITUDE_REF:
+          longitudeRef = getString(entry);
+          break;
+        case TAG_GPS_LONGITUDE:
+          longitude = getDegrees(entry);
+          break;
+        case TAG_GPS_ALTITUDE_REF:
+          long ref = getLong(entry);
+          altitudeRef = ref == 1 ? 1 : 0;
+          break;
+        case TAG_GPS_ALTITUDE:
+          altitude = getRational(entry, 0);
+          break;
+        default:
+          break;
+      }
+    }
+    // Like ExifInterface, a coordinate needs its reference to be known
+    if (latitudeRef == null || longitudeRef == null
+            || Double.isNaN(latitude) || Double.isNaN(longitude)) {
+      return;
+    }
+    result.latitude = latitudeRef.startsWith("S") ? -latitude : latitude;
+    result.longitude = longitudeRef.startsWith("W") ? -longitude : longitude;
+    if (!Double.isNaN(altitude)) {
+      result.altitude = altitudeRef == 1 ? -altitude : altitude;
+    }
+  }
+
+  /**
+   * @return the number of entries of the IFD at offset, 0 if it is out of the segment
+   */
+  private int getEntryCount(int offset) {
+    if (offset < 0 || offset + 2 > mTiffEnd) {
+      return 0;
+    }
+    int count = readUnsignedShort(offset);
+    return Math.max(0, Math.min(count, (mTiffEnd - offset - 2) / 12));
+  }
+
+  /**
+   * @return the position in the segment of a TIFF offset, or -1 if it is out of the segment
+   */
+  private int getOffset(long tiffOffset) {
+    long offset = mTiffStart + tiffOffset;
+    return tiffOffset >= 0 && offset < mTiffEnd ? (int) offset : -1;
+  }
+
+  /**
+   * @return the position in the segment of the value of an entry, or -1 if it is out of the
+   * segment
+   */
+  private int getValueOffset(int entry, int size) {
+    if (size <= 4) {
+      return entry + 8;
+    }
+    int offset = getOffset(readInt(entry + 8) & 0xFFFFFFFFL);
+    return offset >= 0 && offset + size <= mTiffEnd ? offset : -1;
+  }
+
+  private @Nullable String getString(int entry) {
+    int type = readUnsignedShort(entry + 2);
+    long count = readInt(entry + 4) & 0xFFFFFFFFL;
+    if ((type != TYPE_ASCII && type != TYPE_UNDEFINED) || count == 0 || count > mTiffEnd) {
+      return null;
+    }
+    int offset = getValueOffset(entry, (int) count);
+    if (offset < 0) {
+      return null;
+    }
+    int end = offset + (int) count;
+    // Trailing NULs and padding
+    while (end > offset && (mSegment[end - 1] == 0 || mSegment[end - 1] == ' ')) {
+      end--;
+    }
+    if (end == offset) {
+      return null;
+    }
+    char[] chars = new char[end - offset];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = (char) (mSegment[offset + i] & 0xFF);
+    }
+    return new String(chars);
+  }
+
+  /**
+   * @return the first value of an integer entry, or -1 if it has another type
+   */
+  private long getLong(int entry) {
+    int type = readUnsignedShort(entry + 2);
+    long count = readInt(entry + 4) & 0xFFFFFFFFL;
+    if (count == 0) {
+      return -1;
+    }
+    switch (type) {
+      case TYPE_BYTE:
+        return mSegment[entry + 8] & 0xFF;
+      case TYPE_SHORT:
+        return readUnsignedShort(entry + 8);
+      case TYPE_LONG:
+        return readInt(entry + 8) & 0xFFFFFFFFL;
+      case TYPE_SLONG:
+        return readInt(entry + 8);
+      default:
+        return -1;
+    }
+  }
+
+  /**
+   * @return the index-th value of a rational entry, or NaN if missing
+   */
+  private double getRational(int entry, int index) {
+    int type = readUnsignedShort(entry + 2);
+    long count = readInt(entry + 4) & 0xFFFFFFFFL;
+    if ((type != TYPE_RATIONAL && type != TYPE_SRATIONAL) || index >= count) {
+      return Double.NaN;
+    }
+    int offset = getValueOffset(entry, (int) Math.min(count * 8, Integer.MAX_VALUE));
+    if (offset < 0) {
+      return Double.NaN;
+    }
+    offset += index * 8;
+    double numerator;
+    double denominator;
+    if (type == TYPE_RATIONAL) {
+      numerator = readInt(offset) & 0xFFFFFFFFL;
+      denominator = readInt(offset + 4) & 0xFFFFFFFFL;
+    } else {
+      numerator = readInt(offset);
+      denominator = readInt(offset + 4);
+    }
+    return denominator != 0 ? numerator / denominator : Double.NaN;
+  }
+
+  /**
+   * @return degrees, minutes and seconds as degrees, or NaN if malformed
+   */
+  private double getDegrees(int entry) {
+    double degrees = getRational(entry, 0);
+    double minutes = getRational(entry, 1);
+    double seconds = getRational(entry, 2);
+    return degrees + minutes / 60 + seconds / 3600;
+  }
+
+  private int readUnsignedShort(int offset) {
+    int a = mSegment[offset] & 0xFF;
+    int b = mSegment[offset + 1] & 0xFF;
+    return mLittleEndian ? (b << 8) | a : (a << 8) | b;
+  }
+
+  private int readInt(int offset) {
+    int a = mSegment[offset] & 0xFF;
+    int b = mSegment[offset + 1] & 0xFF;
+    int c = mSegment[offset + 2] & 0xFF;
+    int d = mSegment[offset + 3] & 0xFF;
+    return mLittleEndian
+            ? (d << 24) | (c << 16) | (b << 8) | a
+            : (a << 24) | (b << 16) | (c << 8) | d;
+  }
+
+  private static boolean readFully(InputStream input, byte[] buffer, int length) throws IOException {
+    int read = 0;
+    while (read < length) {
+      int n = input.read(buffer, read, length - read);
+      if (n < 0) {
+        return false;
+      }
+      read += n;
+    }
+    return true;
+  }
+
+  private static boolean skipFully(InputStream input, long length) throws IOException {
+    while (length > 0) {
+      long n = input.skip(length);
+      if (n <= 0) {
+        // skip may stop short without being at the end, read tells them apart
+        if (input.read() < 0) {
+          return false;
+        }
+        n = 1;
+      }
+      length -= n;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,123 @@
+package com.reactnativecommunity.cameraroll;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Free file names for saves written directly to a directory, before scoped storage. A name that
+ * is taken gets a {@code _0}, {@code _1}, ... suffix before its extension.
+ *
+ * Probing suffixes one {@code createNewFile} at a time costs a system call per file already
+ * saved under the same name, so a burst of saves all named {@code image.jpg} is quadratic. Instead,
+ * each directory is listed once, the highest suffix used for every name is kept, and the next one
+ * is handed out. The file is still created with {@code createNewFile}, which only fails when
+ * another app took the name since, in which case the following suffix is tried.
+ */
+class FileNameAllocator {
+
+  /** The suffix of the name without one, which comes before {@code _0}. */
+  private static final int NO_SUFFIX = -1;
+
+  private final Map<String, Directory> mDirectories = new HashMap<>();
+
+  private static class Directory {
+    /** By base name and extension, the highest suffix handed out. */
+    private final Map<String, Integer> mHighestSuffixes = new HashMap<>();
+
+    private Directory(File directory) {
+      String[] names = directory.list();
+      if (names == null) {
+        return;
+      }
+      for (String name : names) {
+        String base = getBase(name);
+        String extension = name.substring(base.length());
+        use(key(base, extension), NO_SUFFIX);
+        // "a_1.jpg" is both the second suffix of "a.jpg" and the plain name of "a_1.jpg"
+        int underscore = base.lastIndexOf('_');
+        if (underscore >= 0 && isSuffix(base, underscore + 1)) {
+          try {
+            use(key(base.substring(0, underscore), extension),
+                    Integer.parseInt(base.substring(underscore + 1)));
+          } catch (NumberFormatException e) {
+            // Too many digits to be a suffix we handed out
+          }
+        }
+      }
+    }
+
+    private void use(String key, int suffix) {
+      Integer highest = mHighestSuffixes.get(key);
+      if (highest == null || highest < suffix) {
+        mHighestSuffixes.put(key, suffix);
+      }
+    }
+
+    private synchronized int next(String key) {
+      Integer highest = mHighestSuffixes.get(key);
+      int suffix = highest == null ? NO_SUFFIX : highest + 1;
+      mHighestSuffixes.put(key, suffix);
+      return suffix;
+    }
+  }
+
+  /**
+   * Creates an empty file named fileName in directory, or named with the lowest suffix not yet
+   * used for that name. Safe to call concurrently.
+   *
+   * @return the file created
+   * @throws IOException if the file can't be created
+   */
+  File create(File directory, String fileName) throws IOException {
+    Directory names = getDirectory(directory);
+    String base = getBase(fileName);
+    String extension = fileName.substring(base.length());
+    String key = key(base, extension);
+    while (true) {
+      int suffix = names.next(key);
+      File file = new File(
+              directory,
+              suffix == NO_SUFFIX ? fileName : base + "_" + suffix + extension);
+      if (file.createNewFile()) {
+        return file;
+      }
+    }
+  }
+
+  private synchronized Directory getDirectory(File directory) {
+    String path = directory.getAbsolutePath();
+    Directory names = mDirectories.get(path);
+    if (names == null) {
+      names = new Directory(directory);
+      mDirectories.put(path, names);
+    }
+    return names;
+  }
+
+  /**
+   * @return the name without its extension, split the way saves always have
+   */
+  private static String getBase(String name) {
+    int dot = name.lastIndexOf('.');
+    return dot >= 0 ? name.substring(0, dot) : name;
+  }
+
+  private static boolean isSuffix(String base, int start) {
+    if (start == base.length()) {
+      return false;
+    }
+    for (int i = start; i < base.length(); i++) {
+      char c = base.charAt(i);
+      if (c < '0' || c > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String key(String base, String extension) {
+    return base + '/' + extension;
+  }
+}
@@ -0,0 +1,255 @@
+package com.reactnativecommunity.cameraroll;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The located assets of the media library, sorted along a Z-order curve so that a bounding box
+ * maps to a few contiguous ranges of the arrays.
+ *
+ * Latitudes and longitudes are quantized to 31 bits each and their bits interleaved into a 62 bit
+ * cell key, longitude first: the assets of any quadtree cell then sit next to each other. A box
+ * is covered with up to 9 x 9 cells of the level at which it spans a few cells, each found with a
+ * binary search, and the assets of those cells are then checked against the box itself.
+ *
+ * Immutable, so a query can run while the next version is built.
+ */
+class GeoIndex {
+
+  static final GeoIndex EMPTY = new GeoIndex(new long[0], new double[0], new double[0], new long[0], new boolean[0], 0);
+
+  /** The most tiles of the covering level along one side of a box. */
+  private static final int COVER_TILES = 8;
+
+  private final int mSize;
+  private final long[] mCells;
+  private final long[] mIds;
+  private final double[] mLatitudes;
+  private final double[] mLongitudes;
+  private final long[] mTimes;
+  private final boolean[] mVideos;
+
+  /** The assets in a tile of a {@link #cluster} call. */
+  static class Cluster {
+    int count;
+    double latitude;
+    double longitude;
+    /** The entry of the most recent asset of the tile. */
+    int representative = -1;
+  }
+
+  /**
+   * @param times  when the assets were added, to pick the most recent ones first
+   * @param videos whether each asset is a video
+   */
+  GeoIndex(long[] ids, double[] latitudes, double[] longitudes, long[] times, boolean[] videos, int count) {
+    long[] keys = new long[count];
+    for (int i = 0; i < count; i++) {
+      keys[i] = getCell(latitudes[i], longitudes[i]);
+    }
+    // Sort the entries by cell, through an order of indexes
+    Integer[] order = new Integer[count];
+    for (int i = 0; i < count; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+
+    mSize = count;
+    mCells = new long[count];
+    mIds = new long[count];
+    mLatitudes = new double[count];
+    mLongitudes = new double[count];
+    mTimes = new long[count];
+    mVideos = new boolean[count];
+    for (int i = 0; i < count; i++) {
+      int from = order[i];
+      mCells[i] = keys[from];
+      mIds[i] = ids[from];
+      mLatitudes[i] = latitudes[from];
+      mLongitudes[i] = longitudes[from];
+      mTimes[i] = times[from];
+      mVideos[i] = videos[from];
+    }
+  }
+
+  int size() {
+    return mSize;
+  }
+
+  long getId(int entry) {
+    return mIds[entry];
+  }
+
+  double getLatitude(int entry) {
+    return mLatitudes[entry];
+  }
+
+  double getLongitude(int entry) {
+    return mLongitudes[entry];
+  }
+
+  long getTime(int entry) {
+    return mTimes[entry];
+  }
+
+  boolean isVideo(int entry) {
+    return mVideos[entry];
+  }
+
+  /**
+   * Finds the assets inside a box, bounds included. A box whose minLng is larger than its maxLng
+   * crosses the antimeridian.
+   *
+   * @return the entries of the assets, in no particular order
+   */
+  int[] query(double minLat, double maxLat, double minLng, double maxLng) {
+    int[] entries = new int[16];
+    int[] count = new int[1];
+    if (minLng > maxLng) {
+      entries = queryBox(minLat, maxLat, minLng, 180, entries, count);
+      entries = queryBox(minLat, maxLat, -180, maxLng, entries, count);
+    } else {
+      entries = queryBox(minLat, maxLat, minLng, maxLng, entries, count);
+    }
+    return Arrays.copyOf(entries, count[0]);
+  }
+
+  /**
+   * Orders entries most recent first.
+   */
+  void sortByTime(int[] entries) {
+    long[] keys = new long[entries.length];
+    for (int i = 0; i < entries.length; i++) {
+      // Times are in seconds and entries below 2^31, so the key keeps both
+      keys[i] = Math.max(0, mTimes[entries[i]]) << 31 | entries[i];
+    }
+    Arrays.sort(keys);
+    for (int i = 0; i < entries.length; i++) {
+      entries[i] = (int) (keys[entries.length - 1 - i] & Integer.MAX_VALUE);
+    }
+  }
+
+  /**
+   * Groups entries by tile of a grid splitting the world into 2^zoom by 2^zoom tiles of equal
+   * degrees, like the tiles of a map at that zoom level in the east-west direction.
+   *
+   * @return the non-empty tiles, largest first, each at the mean position of its assets
+   */
+  List<Cluster> cluster(int[] entries, int zoom) {
+    double tiles = 1L << zoom;
+    Map<Long, Cluster> clusters = new HashMap<>();
+    for (int entry : entries) {
+      long x = Math.min((long) tiles - 1, (long) ((mLongitudes[entry] + 180) / 360 * tiles));
+      long y = Math.min((long) tiles - 1, (long) ((90 - mLatitudes[entry]) / 180 * tiles));
+      Long tile = y << 32 | x;
+      Cluster cluster = clusters.get(tile);
+      if (cluster == null) {
+        cluster = new Cluster();
+        clusters.put(tile, cluster);
+      }
+      cluster.count++;
+      cluster.latitude += mLatitudes[entry];
+      cluster.longitude += mLongitudes[entry];
+      if (cluster.representative < 0 || mTimes[entry] > mTimes[cluster.representative]) {
+        cluster.representative = entry;
+      }
+    }
+    List<Cluster> result = new ArrayList<>(clusters.values());
+    for (Cluster cluster : result) {
+      cluster.latitude /= cluster.count;
+      cluster.longitude /= cluster.count;
+    }
+    Collections.sort(result, (a, b) -> Integer.compare(b.count, a.count));
+    return result;
+  }
+
+  private int[] queryBox(double minLat, double maxLat, double minLng, double maxLng, int[] entries, int[] count) {
+    long minX = quantizeLongitude(minLng);
+    long maxX = quantizeLongitude(maxLng);
+    long minY = quantizeLatitude(minLat);
+    long maxY = quantizeLatitude(maxLat);
+    if (minX > maxX || minY > maxY) {
+      return entries;
+    }
+    // The level at which the box spans at most COVER_TILES + 1 tiles along each side
+    long span = Math.max(maxX - minX, maxY - minY) + 1;
+    int shift = Math.max(0, 64 - Long.numberOfLeadingZeros((span - 1) / COVER_TILES));
+    for (long tileY = minY >>> shift; tileY <= maxY >>> shift; tileY++) {
+      for (long tileX = minX >>> shift; tileX <= maxX >>> shift; tileX++) {
+        long mask = (1L << shift) - 1;
+        long from = interleave(tileX << shift, tileY << shift);
+        long to = interleave(tileX << shift | mask, tileY << shift | mask);
+        for (int entry = lowerBound(from); entry < mSize && mCells[entry] <= to; entry++) {
+          if (mLatitudes[entry] >= minLat && mLatitudes[entry] <= maxLat
+                  && mLongitudes[entry] >= minLng && mLongitudes[entry] <= maxLng) {
+            if (count[0] == entries.length) {
+              entries = Arrays.copyOf(entries, entries.length * 2);
+            }
+            entries[count[0]++] = entry;
+          }
+        }
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * @return the first entry whose cell is not before the given one
+   */
+  private int lowerBound(long cell) {
+    int low = 0;
+    int high = mSize;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (mCells[middle] < cell) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  static long getCell(double latitude, double longitude) {
+    return interleave(quantizeLongitude(longitude), quantizeLatitude(latitude));
+  }
+
+  private static long quantizeLongitude(double longitude) {
+    return quantize((longitude + 180) / 360);
+  }
+
+  private static long quantizeLatitude(double latitude) {
+    return quantize((latitude + 90) / 180);
+  }
+
+  /**
+   * @return the fraction, clamped to [0, 1], scaled to a 31 bit value
+   */
+  private static long quantize(double fraction) {
+    return Math.max(0, Math.min(Integer.MAX_VALUE, (long) (fraction * (1L << 31))));
+  }
+
+  /**
+   * @return the bits of x and y interleaved, x taking the even bits
+   */
+  static long interleave(long x, long y) {
+    return spread(x) | spread(y) << 1;
+  }
+
+  /**
+   * @return the 32 low bits of value moved to the even bits
+   */
+  private static long spread(long value) {
+    value &= 0xFFFFFFFFL;
+    value = (value | value << 16) & 0x0000FFFF0000FFFFL;
+    value = (value | value << 8) & 0x00FF00FF00FF00FFL;
+    value = (value | value << 4) & 0x0F0F0F0F0F0F0F0FL;
+    value = (value | value << 2) & 0x3333333333333333L;
+    value = (value | value << 1) & 0x5555555555555555L;
+    return value;
+  }
+}
@@ -0,0 +1,244 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.util.AtomicFile;
+
+import com.facebook.common.logging.FLog;
+import com.facebook.react.common.ReactConstants;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hashes computed by earlier runs, keyed by MediaStore {@code _ID} and valid as long as the
+ * asset's {@code DATE_MODIFIED} and {@code SIZE} haven't changed, so that a run only hashes what
+ * is new. Every hash of a store has the same length.
+ *
+ * Entries are kept as parallel arrays sorted by id and written to a single file. New entries are
+ * merged in by {@link #save}, and found by {@link #get} until then.
+ */
+class HashStore {
+
+  private static final int MAGIC = 0x43524853; // CRHS
+  private static final int VERSION = 2;
+
+  private final AtomicFile mFile;
+  private final int mHashLength;
+  private boolean mLoaded;
+
+  private long[] mIds = new long[0];
+  private long[] mModified = new long[0];
+  private long[] mSizes = new long[0];
+  private byte[] mHashes = new byte[0];
+
+  private long[] mNewIds = new long[64];
+  private long[] mNewModified = new long[64];
+  private long[] mNewSizes = new long[64];
+  private byte[] mNewHashes;
+  private int mNewCount;
+  /** The index of the entry put last for each id since the last save. */
+  private final Map<Long, Integer> mNewIndexes = new HashMap<>();
+
+  /**
+   * @param hashLength the length in bytes of every hash of the store
+   */
+  HashStore(File file, int hashLength) {
+    mFile = new AtomicFile(file);
+    mHashLength = hashLength;
+    mNewHashes = new byte[64 * hashLength];
+  }
+
+  /**
+   * Reads the file on first use. A missing or unreadable file starts an empty store.
+   */
+  synchronized void load() {
+    if (mLoaded) {
+      return;
+    }
+    mLoaded = true;
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(mFile.openRead()))) {
+      if (input.readInt() != MAGIC || input.readInt() != VERSION || input.readInt() != mHashLength) {
+        return;
+      }
+      int count = input.readInt();
+      long[] ids = new long[count];
+      long[] modified = new long[count];
+      long[] sizes = new long[count];
+      byte[] hashes = new byte[count * mHashLength];
+      for (int i = 0; i < count; i++) {
+        ids[i] = input.readLong();
+        modified[i] = input.readLong();
+        sizes[i] = input.readLong();
+        input.readFully(hashes, i * mHashLength, mHashLength);
+      }
+      mIds = ids;
+      mModified = modified;
+      mSizes = sizes;
+      mHashes = hashes;
+    } catch (FileNotFoundException e) {
+      // nothing hashed yet
+    } catch (IOException e) {
+      FLog.w(ReactConstants.TAG, "Could not read " + mFile.getBaseFile().getName() + ", starting over", e);
+    }
+  }
+
+  /**
+   * @param out receives the hash when found
+   * @return whether a hash is stored for this version of the asset
+   */
+  synchronized boolean get(long id, long dateModified, long size, byte[] out) {
+    Integer newIndex = mNewIndexes.get(id);
+    if (newIndex != null) {
+      if (mNewModified[newIndex] != dateModified || mNewSizes[newIndex] != size) {
+        return false;
+      }
+      System.arraycopy(mNewHashes, newIndex * mHashLength, out, 0, mHashLength);
+      return true;
+    }
+    int index = Arrays.binarySearch(mIds, id);
+    if (index < 0 || mModified[index] != dateModified || mSizes[index] != size) {
+      return false;
+    }
+    System.arraycopy(mHashes, index * mHashLength, out, 0, mHashLength);
+    return true;
+  }
+
+  synchronized void put(long id, long dateModified, long size, byte[] hash) {
+    if (mNewCount == mNewIds.length) {
+      mNewIds = Arrays.copyOf(mNewIds, mNewCount * 2);
+      mNewModified = Arrays.copyOf(mNewModified, mNewCount * 2);
+      mNewSizes = Arrays.copyOf(mNewSizes, mNewCount * 2);
+      mNewHashes = Arrays.copyOf(mNewHashes, mNewCount * 2 * mHashLength);
+    }
+    mNewIds[mNewCount] = id;
+    mNewModified[mNewCount] = dateModified;
+    mNewSizes[mNewCount] = size;
+    System.arraycopy(hash, 0, mNewHashes, mNewCount * mHashLength, mHashLength);
+    mNewIndexes.put(id, mNewCount);
+    mNewCount++;
+  }
+
+  /**
+   * For stores of 8 byte hashes, like {@link #get(long, long, long, byte[])}.
+   *
+   * @param scratch an 8 byte array to read the hash into
+   */
+  boolean getLong(long id, long dateModified, long size, long[] out, byte[] scratch) {
+    if (!get(id, dateModified, size, scratch)) {
+      return false;
+    }
+    long value = 0;
+    for (int i = 0; i < 8; i++) {
+      value = value << 8 | (scratch[i] & 0xff);
+    }
+    out[0] = value;
+    return true;
+  }
+
+  /**
+   * For stores of 8 byte hashes, like {@link #put(long, long, long, byte[])}.
+   */
+  void putLong(long id, long dateModified, long size, long hash) {
+    byte[] bytes = new byte[8];
+    for (int i = 7; i >= 0; i--) {
+      bytes[i] = (byte) hash;
+      hash >>>= 8;
+    }
+    put(id, dateModified, size, bytes);
+  }
+
+  /**
+   * @return whether enough entries were put since the last save to be worth rewriting the file for:
+   * a quarter of the stored ones, and at least minEntries. Saving a store that fills a page at a
+   * time only then keeps the bytes written proportional to its size, rather than to its square.
+   */
+  synchronized boolean isWorthSaving(int minEntries) {
+    return mNewCount >= Math.max(minEntries, mIds.length / 4);
+  }
+
+  /**
+   * Merges the entries put since the last save, replacing older versions of the same assets, and
+   * writes the store if anything changed.
+   */
+  synchronized void save() throws IOException {
+    if (mNewCount == 0) {
+      return;
+    }
+    Integer[] order = new Integer[mNewCount];
+    for (int i = 0; i < mNewCount; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Long.compare(mNewIds[a], mNewIds[b]));
+
+    int capacity = mIds.length + mNewCount;
+    long[] ids = new long[capacity];
+    long[] modified = new long[capacity];
+    long[] sizes = new long[capacity];
+    byte[] hashes = new byte[capacity * mHashLength];
+    int size = 0;
+    int old = 0;
+    int added = 0;
+    while (old < mIds.length || added < mNewCount) {
+      int next = added < mNewCount ? order[added] : -1;
+      if (next < 0 || (old < mIds.length && mIds[old] < mNewIds[next])) {
+        ids[size] = mIds[old];
+        modified[size] = mModified[old];
+        sizes[size] = mSizes[old];
+        System.arraycopy(mHashes, old * mHashLength, hashes, size * mHashLength, mHashLength);
+        old++;
+      } else {
+        if (old < mIds.length && mIds[old] == mNewIds[next]) {
+          old++;
+        }
+        // The last one put wins when an asset was hashed twice
+        if (size > 0 && ids[size - 1] == mNewIds[next]) {
+          size--;
+        }
+        ids[size] = mNewIds[next];
+        modified[size] = mNewModified[next];
+        sizes[size] = mNewSizes[next];
+        System.arraycopy(mNewHashes, next * mHashLength, hashes, size * mHashLength, mHashLength);
+        added++;
+      }
+      size++;
+    }
+    mIds = Arrays.copyOf(ids, size);
+    mModified = Arrays.copyOf(modified, size);
+    mSizes = Arrays.copyOf(sizes, size);
+    mHashes = Arrays.copyOf(hashes, size * mHashLength);
+    mNewCount = 0;
+    mNewIndexes.clear();
+
+    File parent = mFile.getBaseFile().getParentFile();
+    if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException("Could not create " + parent);
+    }
+    FileOutputStream stream = mFile.startWrite();
+    try {
+      DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream));
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeInt(mHashLength);
+      output.writeInt(size);
+      for (int i = 0; i < size; i++) {
+        output.writeLong(mIds[i]);
+        output.writeLong(mModified[i]);
+        output.writeLong(mSizes[i]);
+        output.write(mHashes, i * mHashLength, mHashLength);
+      }
+      output.flush();
+      mFile.finishWrite(stream);
+    } catch (IOException e) {
+      mFile.failWrite(stream);
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,356 @@
+package com.reactnativecommunity.cameraroll;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the width and height of an image from its container header, for images MediaStore hasn't
+ * measured. Only a few small reads at the start of the file are made: the first bytes for PNG,
+ * GIF and WebP, the segment headers up to the frame header for JPEG, and the box headers up to the
+ * item properties for HEIF and AVIF, where decoding the bounds with {@code BitmapFactory} may parse
+ * much more of the file.
+ *
+ * The size is the one stored, before any EXIF orientation or HEIF rotation, as with
+ * {@code BitmapFactory}. Reads are positional, so the channel's position is left as it was.
+ * Not thread safe: it reuses its buffers between images.
+ */
+class ImageSizeSniffer {
+
+  private static final int HEADER_LENGTH = 32;
+  /** JPEG segments are followed this far into the file looking for the frame header. */
+  private static final long MAX_JPEG_SCAN = 1024 * 1024;
+  /** The largest HEIF meta box read, in practice a few kilobytes. */
+  private static final int MAX_META_LENGTH = 256 * 1024;
+  private static final int MAX_TOP_LEVEL_BOXES = 16;
+
+  private static final String[] HEIF_BRANDS = {
+          "heic", "heix", "hevc", "hevx", "heim", "heis", "hevm", "hevs", "mif1", "msf1", "avif", "avis",
+  };
+
+  private final ByteBuffer mHeader = ByteBuffer.allocate(HEADER_LENGTH);
+  private ByteBuffer mMeta = ByteBuffer.allocate(16 * 1024);
+
+  /**
+   * @param channel the image file
+   * @param start   where the image starts in the channel
+   * @param size    set to the width and height
+   * @return false if the format is not recognized or the header is malformed, in which case the
+   * image should be measured some other way
+   * @throws IOException if the channel can't be read
+   */
+  boolean sniff(FileChannel channel, long start, int[] size) throws IOException {
+    ByteBuffer header = read(channel, start, mHeader, HEADER_LENGTH);
+    int length = header.limit();
+    if (length >= 24 && header.getInt(0) == 0x89504E47 && header.getInt(4) == 0x0D0A1A0A
+            && header.getInt(12) == 0x49484452) {
+      // PNG: IHDR always comes first
+      return set(size, header.getInt(16), header.getInt(20));
+    }
+    if (length >= 10 && header.get(0) == 'G' && header.get(1) == 'I' && header.get(2) == 'F') {
+      header.order(ByteOrder.LITTLE_ENDIAN);
+      int width = header.getShort(6) & 0xFFFF;
+      int height = header.getShort(8) & 0xFFFF;
+      header.order(ByteOrder.BIG_ENDIAN);
+      return set(size, width, height);
+    }
+    if (length >= 30 && header.getInt(0) == 0x52494646 && header.getInt(8) == 0x57454250) {
+      return sniffWebp(header, size);
+    }
+    if (length >= 4 && (header.getShort(0) & 0xFFFF) == 0xFFD8) {
+      return sniffJpeg(channel, start, size);
+    }
+    if (length >= 12 && header.getInt(4) == 0x66747970 && isHeif(header)) {
+      return sniffHeif(channel, start, size);
+    }
+    return false;
+  }
+
+  private static boolean sniffWebp(ByteBuffer header, int[] size) {
+    header.order(ByteOrder.LITTLE_ENDIAN);
+    try {
+      switch (header.getInt(12)) {
+        case 0x20385056: // "VP8 ": lossy, the key frame header follows a 3 byte frame tag
+          if ((header.get(23) & 0xFF) != 0x9D || (header.get(24) & 0xFF) != 0x01
+                  || (header.get(25) & 0xFF) != 0x2A) {
+            return false;
+          }
+          return set(size, header.getShort(26) & 0x3FFF, header.getShort(28) & 0x3FFF);
+        case 0x4C385056: { // "VP8L": lossless, 14 bit sizes minus one after a signature byte
+          if ((header.get(20) & 0xFF) != 0x2F) {
+            return false;
+          }
+          int bits = header.getInt(21);
+          return set(size, (bits & 0x3FFF) + 1, ((bits >>> 14) & 0x3FFF) + 1);
+        }
+        case 0x58385056: // "VP8X": extended, 24 bit canvas sizes minus one
+          return set(size, getUnsignedInt24(header, 24) + 1, getUnsignedInt24(header, 27) + 1);
+        default:
+          return false;
+      }
+    } finally {
+      header.order(ByteOrder.BIG_ENDIAN);
+    }
+  }
+
+  private static int getUnsignedInt24(ByteBuffer buffer, int offset) {
+    return (buffer.get(offset) & 0xFF)
+            | (buffer.get(offset + 1) & 0xFF) << 8
+            | (buffer.get(offset + 2) & 0xFF) << 16;
+  }
+
+  /**
+   * Follows the segment lengths from the start of the file to the first frame header, reading
+   * only the headers of the segments in between, e.g. not their EXIF or ICC profile.
+   */
+  private boolean sniffJpeg(FileChannel channel, long start, int[] size) throws IOException {
+    long position = 2;
+    while (position < MAX_JPEG_SCAN) {
+      ByteBuffer segment = read(channel, start + position, mHeader, 9);
+      if (segment.limit() < 4 || (segment.get(0) & 0xFF) != 0xFF) {
+        return false;
+      }
+      int marker = segment.get(1) & 0xFF;
+      if (marker == 0xFF) {
+        // Fill byte
+        position++;
+        continue;
+      }
+      if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+        position += 2;
+        continue;
+      }
+      if (marker == 0xD9 || marker == 0xDA) {
+        // End of image or image data without a frame header
+        return false;
+      }
+      // Start of frame, except DHT (C4), JPG (C8) and DAC (CC), which share the range
+      if (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+        if (segment.limit() < 9) {
+          return false;
+        }
+        return set(size, segment.getShort(7) & 0xFFFF, segment.getShort(5) & 0xFFFF);
+      }
+      int length = segment.getShort(2) & 0xFFFF;
+      if (length < 2) {
+        return false;
+      }
+      position += 2 + length;
+    }
+    return false;
+  }
+
+  private static boolean isHeif(ByteBuffer header) {
+    int boxSize = header.getInt(0);
+    int end = Math.min(header.limit(), boxSize);
+    // The major brand, then the compatible brands after the minor version
+    for (int offset = 8; offset + 4 <= end; offset += offset == 8 ? 8 : 4) {
+      for (String brand : HEIF_BRANDS) {
+        if (header.get(offset) == brand.charAt(0) && header.get(offset + 1) == brand.charAt(1)
+                && header.get(offset + 2) == brand.charAt(2)
+                && header.get(offset + 3) == brand.charAt(3)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Finds the meta box among the top level boxes, then the image spatial extents (ispe) property
+   * of the primary item in it. A grid image has one for the whole image and one per tile, and
+   * thumbnails have their own, hence the lookup of the primary item's properties.
+   */
+  private boolean sniffHeif(FileChannel channel, long start, int[] size) throws IOException {
+    long position = 0;
+    long channelSize = channel.size() - start;
+    for (int i = 0; i < MAX_TOP_LEVEL_BOXES && position + 8 <= channelSize; i++) {
+      ByteBuffer box = read(channel, start + position, mHeader, 16);
+      if (box.limit() < 8) {
+        return false;
+      }
+      long boxSize = box.getInt(0) & 0xFFFFFFFFL;
+      int type = box.getInt(4);
+      int headerLength = 8;
+      if (boxSize == 1) {
+        if (box.limit() < 16) {
+          return false;
+        }
+        boxSize = box.getLong(8);
+        headerLength = 16;
+      } else if (boxSize == 0) {
+        boxSize = channelSize - position;
+      }
+      if (boxSize < headerLength) {
+        return false;
+      }
+      if (type == 0x6D657461) { // "meta"
+        long contentLength = boxSize - headerLength;
+        if (contentLength > MAX_META_LENGTH) {
+          return false;
+        }
+        if (mMeta.capacity() < contentLength) {
+          mMeta = ByteBuffer.allocate((int) contentLength);
+        }
+        ByteBuffer meta = read(channel, start + position + headerLength, mMeta, (int) contentLength);
+        return sniffHeifMeta(meta, size);
+      }
+      position += boxSize;
+    }
+    return false;
+  }
+
+  private static boolean sniffHeifMeta(ByteBuffer meta, int[] size) {
+    long primaryItem = -1;
+    int iprp = -1;
+    int iprpEnd = -1;
+    // meta is a full box: skip its version and flags
+    for (int offset = 4; offset + 8 <= meta.limit(); ) {
+      int boxSize = meta.getInt(offset);
+      int type = meta.getInt(offset + 4);
+      if (boxSize < 8 || offset + boxSize > meta.limit()) {
+        break;
+      }
+      if (type == 0x7069746D && boxSize >= 14) { // "pitm"
+        int version = meta.get(offset + 8) & 0xFF;
+        primaryItem = version == 0
+                ? meta.getShort(offset + 12) & 0xFFFF
+                : meta.getInt(offset + 12) & 0xFFFFFFFFL;
+      } else if (type == 0x69707270) { // "iprp"
+        iprp = offset + 8;
+        iprpEnd = offset + boxSize;
+      }
+      offset += boxSize;
+    }
+
+    int ipco = -1;
+    int ipcoEnd = -1;
+    int ipma = -1;
+    int ipmaEnd = -1;
+    for (int offset = iprp; iprp >= 0 && offset + 8 <= iprpEnd; ) {
+      int boxSize = meta.getInt(offset);
+      int type = meta.getInt(offset + 4);
+      if (boxSize < 8 || offset + boxSize > iprpEnd) {
+        break;
+      }
+      if (type == 0x6970636F) { // "ipco"
+        ipco = offset + 8;
+        ipcoEnd = offset + boxSize;
+      } else if (type == 0x69706D61) { // "ipma"
+        ipma = offset + 8;
+        ipmaEnd = offset + boxSize;
+      }
+      offset += boxSize;
+    }
+    if (ipco < 0) {
+      return false;
+    }
+    int primaryIndex = ipma >= 0 && primaryItem >= 0
+            ? findIspe(meta, ipma, ipmaEnd, ipco, ipcoEnd, primaryItem)
+            : -1;
+
+    // The primary item's ispe, or the largest one when it can't be told
+    int index = 0;
+    long bestArea = -1;
+    int width = 0;
+    int height = 0;
+    for (int offset = ipco; offset + 8 <= ipcoEnd; ) {
+      int boxSize = meta.getInt(offset);
+      if (boxSize < 8 || offset + boxSize > ipcoEnd) {
+        break;
+      }
+      index++;
+      if (meta.getInt(offset + 4) == 0x69737065 && boxSize >= 20) { // "ispe"
+        int w = meta.getInt(offset + 12);
+        int h = meta.getInt(offset + 16);
+        if (index == primaryIndex) {
+          return set(size, w, h);
+        }
+        long area = (long) w * h;
+        if (area > bestArea) {
+          bestArea = area;
+          width = w;
+          height = h;
+        }
+      }
+      offset += boxSize;
+    }
+    return bestArea >= 0 && set(size, width, height);
+  }
+
+  /**
+   * @return the 1-based index in ipco of the ispe that ipma associates with item, or -1
+   */
+  private static int findIspe(
+          ByteBuffer meta,
+          int ipma,
+          int ipmaEnd,
+          int ipco,
+          int ipcoEnd,
+          long item) {
+    if (ipmaEnd - ipma < 8) {
+      return -1;
+    }
+    int version = meta.get(ipma) & 0xFF;
+    boolean wideIndexes = (meta.get(ipma + 3) & 1) != 0;
+    long entries = meta.getInt(ipma + 4) & 0xFFFFFFFFL;
+    int idLength = version < 1 ? 2 : 4;
+    int indexLength = wideIndexes ? 2 : 1;
+    int offset = ipma + 8;
+    for (long i = 0; i < entries && offset + idLength + 1 <= ipmaEnd; i++) {
+      long itemId = version < 1 ? meta.getShort(offset) & 0xFFFF : meta.getInt(offset) & 0xFFFFFFFFL;
+      int associations = meta.get(offset + idLength) & 0xFF;
+      offset += idLength + 1;
+      for (int j = 0; j < associations && offset + indexLength <= ipmaEnd; j++) {
+        // The top bit marks the property as essential
+        int propertyIndex = wideIndexes ? meta.getShort(offset) & 0x7FFF : meta.get(offset) & 0x7F;
+        offset += indexLength;
+        if (itemId == item && isIspe(meta, ipco, ipcoEnd, propertyIndex)) {
+          return propertyIndex;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private static boolean isIspe(ByteBuffer meta, int ipco, int ipcoEnd, int propertyIndex) {
+    int index = 0;
+    for (int offset = ipco; offset + 8 <= ipcoEnd; ) {
+      int boxSize = meta.getInt(offset);
+      if (boxSize < 8 || offset + boxSize > ipcoEnd) {
+        return false;
+      }
+      if (++index == propertyIndex) {
+        return meta.getInt(offset + 4) == 0x69737065;
+      }
+      offset += boxSize;
+    }
+    return false;
+  }
+
+  private static boolean set(int[] size, int width, int height) {
+    if (width <= 0 || height <= 0) {
+      return false;
+    }
+    size[0] = width;
+    size[1] = height;
+    return true;
+  }
+
+  /**
+   * @return buffer with up to length bytes read at position, from 0 to its limit
+   */
+  private static ByteBuffer read(FileChannel channel, long position, ByteBuffer buffer, int length)
+          throws IOException {
+    buffer.clear();
+    buffer.limit(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        break;
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+}
@@ -0,0 +1,245 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.os.Build;
+
+import com.facebook.common.logging.FLog;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.common.ReactConstants;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.annotation.Nullable;
+
+/**
+ * Resizes and re-encodes an image while it is saved, so that a large camera image is written once
+ * at the size the app wants instead of copied verbatim and downsized afterwards. The image is
+ * decoded subsampled to no less than the target size, scaled and encoded straight into the output.
+ *
+ * JPEG output keeps the orientation, location and date tags of the source, written with
+ * {@link #writeExif} once the image is encoded. Other formats have no EXIF support on older
+ * Android versions, so their pixels are rotated upright instead and the tags are dropped.
+ */
+class ImageTranscoder {
+
+  static final String FORMAT_JPEG = "jpeg";
+  static final String FORMAT_PNG = "png";
+  static final String FORMAT_WEBP = "webp";
+  static final String FORMAT_HEIF = "heif";
+
+  private static final double DEFAULT_QUALITY = 0.9;
+
+  private static final String[] EXIF_TAGS = {
+          ExifInterface.TAG_ORIENTATION,
+          ExifInterface.TAG_DATETIME,
+          ExifInterface.TAG_DATETIME_DIGITIZED,
+          ExifInterface.TAG_DATETIME_ORIGINAL,
+          ExifInterface.TAG_MAKE,
+          ExifInterface.TAG_MODEL,
+          ExifInterface.TAG_GPS_LATITUDE,
+          ExifInterface.TAG_GPS_LATITUDE_REF,
+          ExifInterface.TAG_GPS_LONGITUDE,
+          ExifInterface.TAG_GPS_LONGITUDE_REF,
+          ExifInterface.TAG_GPS_ALTITUDE,
+          ExifInterface.TAG_GPS_ALTITUDE_REF,
+          ExifInterface.TAG_GPS_DATESTAMP,
+          ExifInterface.TAG_GPS_TIMESTAMP,
+  };
+
+  private final int mMaxDimension;
+  private final String mFormat;
+  private final int mQuality;
+  private final String[] mExifValues = new String[EXIF_TAGS.length];
+
+  private ImageTranscoder(int maxDimension, String format, int quality) {
+    mMaxDimension = maxDimension;
+    mFormat = format;
+    mQuality = quality;
+  }
+
+  /**
+   * @param options        the options of a saveToCameraRoll call
+   * @param sourceMimeType the MIME type of the image to save, if known
+   * @return the transcoder for the options, or null when they ask for the file to be saved as is
+   * @throws IllegalArgumentException if one of the options has an invalid value
+   */
+  static @Nullable ImageTranscoder fromOptions(ReadableMap options, @Nullable String sourceMimeType) {
+    boolean hasMaxDimension = options.hasKey("maxDimension") && !options.isNull("maxDimension");
+    boolean hasFormat = options.hasKey("format") && !options.isNull("format");
+    boolean hasQuality = options.hasKey("quality") && !options.isNull("quality");
+    if (!hasMaxDimension && !hasFormat && !hasQuality) {
+      return null;
+    }
+
+    int maxDimension = hasMaxDimension ? options.getInt("maxDimension") : 0;
+    if (maxDimension < 0) {
+      throw new IllegalArgumentException(
+              "Invalid maxDimension: " + maxDimension + ". Expected a positive number.");
+    }
+    String format = hasFormat ? options.getString("format") : getFormat(sourceMimeType);
+    if (FORMAT_HEIF.equals(format)) {
+      throw new IllegalArgumentException("Encoding HEIF images is not supported on Android.");
+    }
+    if (!FORMAT_JPEG.equals(format) && !FORMAT_PNG.equals(format) && !FORMAT_WEBP.equals(format)) {
+      throw new IllegalArgumentException(
+              "Invalid format: '" + format + "'. Expected one of '" + FORMAT_JPEG + "', '"
+                      + FORMAT_PNG + "' or '" + FORMAT_WEBP + "'.");
+    }
+    double quality = hasQuality ? options.getDouble("quality") : DEFAULT_QUALITY;
+    if (quality < 0 || quality > 1) {
+      throw new IllegalArgumentException(
+              "Invalid quality: " + quality + ". Expected a number from 0 to 1.");
+    }
+    return new ImageTranscoder(maxDimension, format, (int) Math.round(quality * 100));
+  }
+
+  /**
+   * @return the format to re-encode an image of the given type in when no format is asked for:
+   * its own if it can be encoded, JPEG otherwise
+   */
+  private static String getFormat(@Nullable String mimeType) {
+    if ("image/png".equals(mimeType)) {
+      return FORMAT_PNG;
+    }
+    if ("image/webp".equals(mimeType)) {
+      return FORMAT_WEBP;
+    }
+    return FORMAT_JPEG;
+  }
+
+  String getMimeType() {
+    return "image/" + mFormat;
+  }
+
+  /**
+   * @return name with its extension replaced by the one of the output format
+   */
+  String getFileName(String name) {
+    int dot = name.lastIndexOf('.');
+    String base = dot > 0 ? name.substring(0, dot) : name;
+    return base + (FORMAT_JPEG.equals(mFormat) ? ".jpg" : "." + mFormat);
+  }
+
+  /**
+   * Whether {@link #writeExif} has tags to write once the image is encoded.
+   */
+  boolean keepsExif() {
+    return FORMAT_JPEG.equals(mFormat);
+  }
+
+  /**
+   * @throws IOException if the source can't be decoded or the output can't be written
+   */
+  void transcode(File source, OutputStream output) throws IOException {
+    String path = source.getAbsolutePath();
+    int orientation = readExif(path);
+
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inJustDecodeBounds = true;
+    BitmapFactory.decodeFile(path, options);
+    int width = options.outWidth;
+    int height = options.outHeight;
+    if (width <= 0 || height <= 0) {
+      throw new IOException("Could not decode " + source.getName());
+    }
+
+    // Subsample as far as possible while staying at least as large as the target
+    int longest = Math.max(width, height);
+    int sampleSize = 1;
+    while (mMaxDimension > 0 && longest / (sampleSize * 2) >= mMaxDimension) {
+      sampleSize *= 2;
+    }
+    options.inJustDecodeBounds = false;
+    options.inSampleSize = sampleSize;
+    Bitmap decoded = BitmapFactory.decodeFile(path, options);
+    if (decoded == null) {
+      throw new IOException("Could not decode " + source.getName());
+    }
+
+    Matrix matrix = new Matrix();
+    int decodedLongest = Math.max(decoded.getWidth(), decoded.getHeight());
+    if (mMaxDimension > 0 && decodedLongest > mMaxDimension) {
+      float scale = (float) mMaxDimension / decodedLongest;
+      matrix.postScale(scale, scale);
+    }
+    if (!keepsExif()) {
+      matrix.postRotate(getRotation(orientation));
+    }
+    Bitmap bitmap = matrix.isIdentity()
+            ? decoded
+            : Bitmap.createBitmap(decoded, 0, 0, decoded.getWidth(), decoded.getHeight(), matrix, true);
+    try {
+      if (!bitmap.compress(getCompressFormat(), mQuality, output)) {
+        throw new IOException("Could not encode " + source.getName() + " as " + mFormat);
+      }
+    } finally {
+      if (bitmap != decoded) {
+        bitmap.recycle();
+      }
+      decoded.recycle();
+    }
+  }
+
+  /**
+   * Copies the tags read from the source by {@link #transcode} into the encoded image.
+   */
+  void writeExif(ExifInterface target) throws IOException {
+    for (int i = 0; i < EXIF_TAGS.length; i++) {
+      if (mExifValues[i] != null) {
+        target.setAttribute(EXIF_TAGS[i], mExifValues[i]);
+      }
+    }
+    target.saveAttributes();
+  }
+
+  /**
+   * @return the EXIF orientation of the image, keeping the tags to copy
+   */
+  private int readExif(String path) {
+    try {
+      ExifInterface exif = new ExifInterface(path);
+      for (int i = 0; i < EXIF_TAGS.length; i++) {
+        mExifValues[i] = exif.getAttribute(EXIF_TAGS[i]);
+      }
+      return exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+    } catch (IOException e) {
+      // Not every format has EXIF
+      FLog.w(ReactConstants.TAG, "Could not read EXIF of " + path, e);
+      return ExifInterface.ORIENTATION_NORMAL;
+    }
+  }
+
+  private static int getRotation(int orientation) {
+    switch (orientation) {
+      case ExifInterface.ORIENTATION_ROTATE_90:
+        return 90;
+      case ExifInterface.ORIENTATION_ROTATE_180:
+        return 180;
+      case ExifInterface.ORIENTATION_ROTATE_270:
+        return 270;
+      default:
+        return 0;
+    }
+  }
+
+  @SuppressWarnings("deprecation")
+  private Bitmap.CompressFormat getCompressFormat() {
+    if (FORMAT_PNG.equals(mFormat)) {
+      return Bitmap.CompressFormat.PNG;
+    }
+    if (FORMAT_WEBP.equals(mFormat)) {
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+        return mQuality == 100
+                ? Bitmap.CompressFormat.WEBP_LOSSLESS
+                : Bitmap.CompressFormat.WEBP_LOSSY;
+      }
+      return Bitmap.CompressFormat.WEBP;
+    }
+    return Bitmap.CompressFormat.JPEG;
+  }
+}
@@ -0,0 +1,270 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.provider.MediaStore;
+import android.provider.MediaStore.Images;
+
+import com.facebook.common.logging.FLog;
+import com.facebook.react.common.ReactConstants;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Indexes where the photos and videos of the media library were taken, for
+ * {@code getAssetsInRegion}, on a background thread.
+ *
+ * Coordinates are read from each file once, like the "location" include of {@code getPhotos}
+ * does, and kept in a {@link HashStore}, which keys them by id, date modified and size so that
+ * edited assets are read again. A run lists the library, takes what the store knows, publishes
+ * that as a {@link GeoIndex} right away, then reads the other assets, most recently added first,
+ * publishing the index as it grows. The store is saved in batches as they are read, since each
+ * save rewrites it whole.
+ *
+ * A run starts on the first {@link #update} call, and on the first one after MediaStore reported
+ * a change.
+ */
+class LocationIndexer {
+
+  interface Listener {
+    /**
+     * Called on the indexing thread each time a new index is published.
+     *
+     * @param located the number of assets with a location in the index
+     * @param pending the number of assets left to read
+     */
+    void onProgress(int located, int pending);
+  }
+
+  private static final long PUBLISH_INTERVAL_MS = 1000;
+  private static final int SAVE_BATCH = 500;
+  /** Stored for assets without a location, out of the range of packed coordinates. */
+  private static final long NO_LOCATION = Long.MIN_VALUE;
+  private static final double E7 = 1e7;
+
+  private final ContentResolver mResolver;
+  private final HashStore mStore;
+  private final Listener mListener;
+  private final ExecutorService mExecutor;
+  private final ContentObserver mObserver;
+
+  private volatile GeoIndex mIndex = GeoIndex.EMPTY;
+  private volatile int mPending;
+  private volatile boolean mStale = true;
+  private boolean mRunning;
+
+  LocationIndexer(ContentResolver resolver, HashStore store, Listener listener) {
+    mResolver = resolver;
+    mStore = store;
+    mListener = listener;
+    mExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(() -> {
+      Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+      runnable.run();
+    }, "CameraRollLocations"));
+    mObserver = new ContentObserver(null) {
+      @Override
+      public void onChange(boolean selfChange) {
+        mStale = true;
+      }
+    };
+    mResolver.registerContentObserver(Uri.parse("content://" + MediaStore.AUTHORITY), true, mObserver);
+  }
+
+  /**
+   * @return the latest index published, possibly still missing assets, see {@link #getPending}
+   */
+  GeoIndex getIndex() {
+    return mIndex;
+  }
+
+  /**
+   * @return the number of assets the latest index is missing because they haven't been read yet
+   */
+  int getPending() {
+    return mPending;
+  }
+
+  synchronized boolean isIndexing() {
+    return mRunning;
+  }
+
+  /**
+   * Starts a run if the library changed since the last one, unless one is running.
+   */
+  synchronized void update() {
+    if (mRunning || !mStale) {
+      return;
+    }
+    mRunning = true;
+    mStale = false;
+    mExecutor.execute(this::run);
+  }
+
+  void release() {
+    mResolver.unregisterContentObserver(mObserver);
+    mExecutor.shutdownNow();
+  }
+
+  private void run() {
+    try {
+      index();
+    } catch (RuntimeException e) {
+      // e.g. a SecurityException without the permission to read media: try again on next update
+      mStale = true;
+      FLog.w(ReactConstants.TAG, "Could not index locations", e);
+    } finally {
+      synchronized (this) {
+        mRunning = false;
+      }
+    }
+  }
+
+  private void index() {
+    mStore.load();
+    StringBuilder selection = new StringBuilder("1");
+    MediaQuery.appendAssetType(selection, MediaQuery.ASSET_TYPE_ALL);
+    Cursor media = mResolver.query(
+            MediaStore.Files.getContentUri("external"),
+            MediaRowCodec.getProjection(Build.VERSION.SDK_INT),
+            selection.toString(),
+            null,
+            MediaStore.MediaColumns.DATE_ADDED + " DESC");
+    if (media == null) {
+      mStale = true;
+      FLog.w(ReactConstants.TAG, "Could not index locations: no cursor");
+      return;
+    }
+    try {
+      int count = media.getCount();
+      int idIndex = media.getColumnIndex(Images.Media._ID);
+      int mimeTypeIndex = media.getColumnIndex(Images.Media.MIME_TYPE);
+      int dateAddedIndex = media.getColumnIndex(MediaStore.MediaColumns.DATE_ADDED);
+      int dateModifiedIndex = media.getColumnIndex(MediaStore.MediaColumns.DATE_MODIFIED);
+      int sizeIndex = media.getColumnIndex(MediaStore.MediaColumns.SIZE);
+
+      Assets assets = new Assets(count);
+      int[] pending = new int[count];
+      int pendingCount = 0;
+      long[] stored = new long[1];
+      byte[] scratch = new byte[8];
+      while (media.moveToNext()) {
+        long id = media.getLong(idIndex);
+        if (mStore.getLong(id, media.getLong(dateModifiedIndex), media.getLong(sizeIndex), stored, scratch)) {
+          assets.add(media, id, mimeTypeIndex, dateAddedIndex, stored[0]);
+        } else {
+          pending[pendingCount++] = media.getPosition();
+        }
+      }
+      publish(assets, pendingCount);
+
+      MediaRowCodec codec = new MediaRowCodec(
+              mResolver,
+              media,
+              Collections.singleton(MediaRowCodec.INCLUDE_LOCATION));
+      double[] coordinates = new double[2];
+      long publishedAt = SystemClock.elapsedRealtime();
+      for (int i = 0; i < pendingCount; i++) {
+        if (Thread.currentThread().isInterrupted()) {
+          save();
+          return;
+        }
+        media.moveToPosition(pending[i]);
+        long id = media.getLong(idIndex);
+        long start = PerformanceStats.begin(PerformanceStats.STAGE_LOCATION_INDEX);
+        long value;
+        try {
+          value = codec.readCoordinates(media, coordinates) ? pack(coordinates) : NO_LOCATION;
+        } finally {
+          PerformanceStats.end(PerformanceStats.STAGE_LOCATION_INDEX, start);
+        }
+        mStore.putLong(id, media.getLong(dateModifiedIndex), media.getLong(sizeIndex), value);
+        assets.add(media, id, mimeTypeIndex, dateAddedIndex, value);
+        PerformanceStats.addRows(PerformanceStats.STAGE_LOCATION_INDEX, 1);
+
+        long now = SystemClock.elapsedRealtime();
+        if (now - publishedAt >= PUBLISH_INTERVAL_MS) {
+          publishedAt = now;
+          if (mStore.isWorthSaving(SAVE_BATCH)) {
+            save();
+          }
+          publish(assets, pendingCount - i - 1);
+        }
+      }
+      save();
+      publish(assets, 0);
+    } finally {
+      media.close();
+    }
+  }
+
+  private void publish(Assets assets, int pending) {
+    mIndex = new GeoIndex(assets.ids, assets.latitudes, assets.longitudes, assets.times, assets.videos, assets.size);
+    mPending = pending;
+    mListener.onProgress(assets.size, pending);
+  }
+
+  private void save() {
+    try {
+      mStore.save();
+    } catch (IOException e) {
+      FLog.w(ReactConstants.TAG, "Could not save the location index", e);
+    }
+  }
+
+  /**
+   * @return the coordinates as two 32 bit fixed point numbers with 7 decimals, about 1cm
+   */
+  static long pack(double[] coordinates) {
+    long latitude = Math.round(coordinates[0] * E7);
+    long longitude = Math.round(coordinates[1] * E7);
+    return latitude << 32 | (longitude & 0xFFFFFFFFL);
+  }
+
+  /**
+   * The located assets read so far, as the parallel arrays {@link GeoIndex} is built from.
+   */
+  private static class Assets {
+    final long[] ids;
+    final double[] latitudes;
+    final double[] longitudes;
+    final long[] times;
+    final boolean[] videos;
+    int size;
+
+    Assets(int capacity) {
+      ids = new long[capacity];
+      latitudes = new double[capacity];
+      longitudes = new double[capacity];
+      times = new long[capacity];
+      videos = new boolean[capacity];
+    }
+
+    void add(Cursor media, long id, int mimeTypeIndex, int dateAddedIndex, long value) {
+      if (value == NO_LOCATION) {
+        return;
+      }
+      double latitude = (value >> 32) / E7;
+      double longitude = (int) value / E7;
+      // Coordinates of 0, 0 are what some cameras write when they have no fix
+      if (latitude == 0 && longitude == 0
+              || latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+        return;
+      }
+      String mimeType = media.getString(mimeTypeIndex);
+      ids[size] = id;
+      latitudes[size] = latitude;
+      longitudes[size] = longitude;
+      times[size] = media.getLong(dateAddedIndex);
+      videos[size] = mimeType != null && mimeType.startsWith("video");
+      size++;
+    }
+  }
+}
@@ -0,0 +1,201 @@
+package com.reactnativecommunity.cameraroll;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * Lays a {@code getPhotos} page out as one array per field rather than one map per asset, for the
+ * {@code columns} option. Handing a page to JS then converts a few flat arrays instead of a tree of
+ * maps per asset, and the JS side only builds the node of an asset once it is read.
+ *
+ * Uris aren't sent, since they are the id appended to the image or video prefix. Mime types and
+ * album names repeat across a page, so each row holds an index into a table of the distinct ones.
+ * Subtypes are sent as the bits of {@link MediaSubTypes}, with their names in order.
+ * Arrays for fields that weren't asked for are left out.
+ */
+class MediaPageColumns {
+
+  private final boolean mIncludeImageSize;
+  private final boolean mIncludePlayableDuration;
+  private final boolean mIncludeFilename;
+  private final boolean mIncludeFileSize;
+  private final boolean mIncludeFileExtension;
+  private final boolean mIncludeOrientation;
+  private final boolean mIncludeAlbums;
+  private final boolean mIncludeSourceType;
+  private final boolean mIncludeLocation;
+  private final boolean mIncludeExif;
+
+  private int mCount;
+  private final WritableArray mIds = Arguments.createArray();
+  private final WritableArray mTypeIndexes = Arguments.createArray();
+  private final WritableArray mTypes = Arguments.createArray();
+  private final @Nullable WritableArray mExtensions;
+  private final Map<String, Integer> mTypeTable = new HashMap<>();
+  private final @Nullable WritableArray mGroupIndexes;
+  private final @Nullable WritableArray mGroups;
+  private final Map<String, Integer> mGroupTable = new HashMap<>();
+  private final WritableArray mTimestamps = Arguments.createArray();
+  private final WritableArray mModificationTimestamps = Arguments.createArray();
+  private final WritableArray mSubTypes = Arguments.createArray();
+  private final @Nullable WritableArray mWidths;
+  private final @Nullable WritableArray mHeights;
+  private final @Nullable WritableArray mPlayableDurations;
+  private final @Nullable WritableArray mFilenames;
+  private final @Nullable WritableArray mFileSizes;
+  private final @Nullable WritableArray mOrientations;
+  private final @Nullable WritableArray mLocations;
+  private final @Nullable WritableArray mExifs;
+
+  /**
+   * @param include the fields included in the rows, see the INCLUDE_ constants of
+   *                {@link MediaRowCodec}
+   */
+  MediaPageColumns(Set<String> include) {
+    mIncludeImageSize = include.contains(MediaRowCodec.INCLUDE_IMAGE_SIZE);
+    mIncludePlayableDuration = include.contains(MediaRowCodec.INCLUDE_PLAYABLE_DURATION);
+    mIncludeFilename = include.contains(MediaRowCodec.INCLUDE_FILENAME);
+    mIncludeFileSize = include.contains(MediaRowCodec.INCLUDE_FILE_SIZE);
+    mIncludeFileExtension = include.contains(MediaRowCodec.INCLUDE_FILE_EXTENSION);
+    mIncludeOrientation = include.contains(MediaRowCodec.INCLUDE_ORIENTATION);
+    mIncludeAlbums = include.contains(MediaRowCodec.INCLUDE_ALBUMS);
+    mIncludeSourceType = include.contains(MediaRowCodec.INCLUDE_SOURCE_TYPE);
+    mIncludeLocation = include.contains(MediaRowCodec.INCLUDE_LOCATION);
+    mIncludeExif = include.contains(MediaRowCodec.INCLUDE_EXIF);
+
+    mExtensions = mIncludeFileExtension ? Arguments.createArray() : null;
+    mGroupIndexes = mIncludeAlbums ? Arguments.createArray() : null;
+    mGroups = mIncludeAlbums ? Arguments.createArray() : null;
+    mWidths = mIncludeImageSize ? Arguments.createArray() : null;
+    mHeights = mIncludeImageSize ? Arguments.createArray() : null;
+    mPlayableDurations = mIncludePlayableDuration ? Arguments.createArray() : null;
+    mFilenames = mIncludeFilename ? Arguments.createArray() : null;
+    mFileSizes = mIncludeFileSize ? Arguments.createArray() : null;
+    mOrientations = mIncludeOrientation ? Arguments.createArray() : null;
+    mLocations = mIncludeLocation ? Arguments.createArray() : null;
+    mExifs = mIncludeExif ? Arguments.createArray() : null;
+  }
+
+  void add(MediaRowCodec.Row row) {
+    mCount++;
+    mIds.pushDouble(row.id);
+
+    Integer type = mTypeTable.get(row.mimeType);
+    if (type == null) {
+      type = mTypeTable.size();
+      mTypeTable.put(row.mimeType, type);
+      pushStringOrNull(mTypes, row.mimeType);
+      if (mExtensions != null) {
+        pushStringOrNull(mExtensions, row.extension);
+      }
+    }
+    mTypeIndexes.pushInt(type);
+
+    if (mGroupIndexes != null) {
+      Integer group = mGroupTable.get(row.groupName);
+      if (group == null) {
+        group = mGroupTable.size();
+        mGroupTable.put(row.groupName, group);
+        pushStringOrNull(mGroups, row.groupName);
+      }
+      mGroupIndexes.pushInt(group);
+    }
+
+    mTimestamps.pushDouble(row.timestamp);
+    mModificationTimestamps.pushDouble(row.modificationTimestamp);
+    mSubTypes.pushInt(row.subTypes);
+    if (mWidths != null) {
+      mWidths.pushInt(row.width);
+      mHeights.pushInt(row.height);
+    }
+    if (mPlayableDurations != null) {
+      if (row.playableDuration != null) {
+        mPlayableDurations.pushInt(row.playableDuration);
+      } else {
+        mPlayableDurations.pushNull();
+      }
+    }
+    if (mFilenames != null) {
+      pushStringOrNull(mFilenames, row.filename);
+    }
+    if (mFileSizes != null) {
+      mFileSizes.pushDouble(row.fileSize);
+    }
+    if (mOrientations != null) {
+      mOrientations.pushInt(row.orientation);
+    }
+    if (mLocations != null) {
+      pushMapOrNull(mLocations, row.location);
+    }
+    if (mExifs != null) {
+      pushMapOrNull(mExifs, row.exif);
+    }
+  }
+
+  /**
+   * @return the columns, to be read once
+   */
+  WritableMap toMap() {
+    WritableMap columns = Arguments.createMap();
+    columns.putInt("count", mCount);
+    columns.putString("imageUriPrefix", MediaRowCodec.IMAGE_URI_PREFIX);
+    columns.putString("videoUriPrefix", MediaRowCodec.VIDEO_URI_PREFIX);
+    if (mIncludeSourceType) {
+      columns.putString("sourceType", MediaRowCodec.SOURCE_TYPE_USER_LIBRARY);
+    } else {
+      columns.putNull("sourceType");
+    }
+    columns.putArray("id", mIds);
+    columns.putArray("typeIndex", mTypeIndexes);
+    columns.putArray("types", mTypes);
+    putIfIncluded(columns, "extensions", mExtensions);
+    putIfIncluded(columns, "groupIndex", mGroupIndexes);
+    putIfIncluded(columns, "groups", mGroups);
+    columns.putArray("timestamp", mTimestamps);
+    columns.putArray("modificationTimestamp", mModificationTimestamps);
+    columns.putArray("subTypes", mSubTypes);
+    WritableArray subTypeNames = Arguments.createArray();
+    for (String name : MediaSubTypes.NAMES) {
+      subTypeNames.pushString(name);
+    }
+    columns.putArray("subTypeNames", subTypeNames);
+    putIfIncluded(columns, "width", mWidths);
+    putIfIncluded(columns, "height", mHeights);
+    putIfIncluded(columns, "playableDuration", mPlayableDurations);
+    putIfIncluded(columns, "filename", mFilenames);
+    putIfIncluded(columns, "fileSize", mFileSizes);
+    putIfIncluded(columns, "orientation", mOrientations);
+    putIfIncluded(columns, "location", mLocations);
+    putIfIncluded(columns, "exif", mExifs);
+    return columns;
+  }
+
+  private static void putIfIncluded(WritableMap columns, String key, @Nullable WritableArray column) {
+    if (column != null) {
+      columns.putArray(key, column);
+    }
+  }
+
+  private static void pushStringOrNull(WritableArray column, @Nullable String value) {
+    if (value != null) {
+      column.pushString(value);
+    } else {
+      column.pushNull();
+    }
+  }
+
+  private static void pushMapOrNull(WritableArray column, @Nullable WritableMap map) {
+    if (map != null) {
+      column.pushMap(map);
+    } else {
+      column.pushNull();
+    }
+  }
+}
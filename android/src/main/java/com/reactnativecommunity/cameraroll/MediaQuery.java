@@ -0,0 +1,302 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.os.Build;
+import android.provider.MediaStore;
+import android.provider.MediaStore.Images;
+import android.text.TextUtils;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * The filters of a {@code getPhotos} call, translated into a MediaStore selection and sort order.
+ * Every method that walks the same media as {@code getPhotos} builds its query from here, so that
+ * positions and cursors line up between them.
+ */
+class MediaQuery {
+
+  static final String ASSET_TYPE_PHOTOS = "Photos";
+  static final String ASSET_TYPE_VIDEOS = "Videos";
+  static final String ASSET_TYPE_ALL = "All";
+
+  private static final String TIME_COLUMN_DATE_ADDED = "dateAdded";
+  private static final String TIME_COLUMN_DATE_TAKEN = "dateTaken";
+  private static final String TIME_COLUMN_DATE_MODIFIED = "dateModified";
+
+  private static final String SELECTION_BUCKET = Images.Media.BUCKET_DISPLAY_NAME + " = ?";
+
+  final String selection;
+  final String[] selectionArgs;
+  final String sortOrder;
+  /**
+   * The column results are sorted on, most recent first. DATE_TAKEN is in milliseconds, the
+   * others in seconds.
+   */
+  final String sortColumn;
+  /**
+   * The column that orders rows with the same {@link #sortColumn} value, also most recent first.
+   */
+  final String tieBreakColumn;
+  /**
+   * Whether the sort order ends on {@code _ID}, so that the sort column value and the id of a row
+   * pin down where it stands, see {@link #appendSeek}. The legacy order doesn't.
+   */
+  final boolean seekable;
+  /**
+   * Identifies the set and order of media this query returns, e.g. to match a prefetched page.
+   */
+  final String key;
+
+  private MediaQuery(
+          String selection,
+          String[] selectionArgs,
+          String sortOrder,
+          String sortColumn,
+          boolean seekable) {
+    this.selection = selection;
+    this.selectionArgs = selectionArgs;
+    this.sortOrder = sortOrder;
+    this.sortColumn = sortColumn;
+    this.tieBreakColumn = seekable ? Images.Media._ID : Images.Media.DATE_MODIFIED;
+    this.seekable = seekable;
+    this.key = selection + '\u0000' + Arrays.toString(selectionArgs) + '\u0000' + sortOrder;
+  }
+
+  /**
+   * @param params           the params of a {@code getPhotos} call, see
+   *                         {@link CameraRollModule#getPhotos}
+   * @param defaultAssetType the asset type to use when params don't specify one
+   * @throws IllegalArgumentException if one of the filters has an invalid value
+   */
+  static MediaQuery fromParams(ReadableMap params, String defaultAssetType) {
+    String groupName = params.hasKey("groupName") ? params.getString("groupName") : null;
+    ReadableArray albumIds = params.hasKey("albumIds") ? params.getArray("albumIds") : null;
+    ReadableArray excludeAlbumIds = params.hasKey("excludeAlbumIds")
+            ? params.getArray("excludeAlbumIds")
+            : null;
+    String assetType = params.hasKey("assetType") ? params.getString("assetType") : defaultAssetType;
+    long fromTime = params.hasKey("fromTime") ? (long) params.getDouble("fromTime") : 0;
+    long toTime = params.hasKey("toTime") ? (long) params.getDouble("toTime") : 0;
+    String timeColumn = getTimeColumn(params.hasKey("timeColumn") ? params.getString("timeColumn") : null);
+    ReadableArray mimeTypes = params.hasKey("mimeTypes")
+            ? params.getArray("mimeTypes")
+            : null;
+    int subTypes = getSubTypes(params.hasKey("subTypes") ? params.getArray("subTypes") : null);
+    int excludeSubTypes = getSubTypes(
+            params.hasKey("excludeSubTypes") ? params.getArray("excludeSubTypes") : null);
+
+    StringBuilder selection = new StringBuilder("1");
+    List<String> selectionArgs = new ArrayList<>();
+    if (!TextUtils.isEmpty(groupName)) {
+      selection.append(" AND " + SELECTION_BUCKET);
+      selectionArgs.add(groupName);
+    }
+    appendAlbumIds(selection, selectionArgs, albumIds, false);
+    appendAlbumIds(selection, selectionArgs, excludeAlbumIds, true);
+    appendAssetType(selection, assetType);
+
+    if (mimeTypes != null && mimeTypes.size() > 0) {
+      selection.append(" AND " + Images.Media.MIME_TYPE + " IN (");
+      for (int i = 0; i < mimeTypes.size(); i++) {
+        selection.append("?,");
+        selectionArgs.add(mimeTypes.getString(i));
+      }
+      selection.replace(selection.length() - 1, selection.length(), ")");
+    }
+    if ((subTypes | excludeSubTypes) != 0) {
+      // Only read when needed: Build can't initialize in the JVM benchmarks
+      int sdkInt = Build.VERSION.SDK_INT;
+      MediaSubTypes.appendFilter(selection, selectionArgs, subTypes, false, sdkInt);
+      MediaSubTypes.appendFilter(selection, selectionArgs, excludeSubTypes, true, sdkInt);
+    }
+
+    appendTimeRange(selection, selectionArgs, timeColumn, fromTime, toTime);
+
+    return new MediaQuery(
+            selection.toString(),
+            selectionArgs.toArray(new String[selectionArgs.size()]),
+            getSortOrder(timeColumn),
+            timeColumn != null ? timeColumn : Images.Media.DATE_ADDED,
+            timeColumn != null);
+  }
+
+  /**
+   * @throws IllegalArgumentException if assetType is not one of the ASSET_TYPE_ constants
+   */
+  static void appendAssetType(StringBuilder selection, String assetType) {
+    if (assetType.equals(ASSET_TYPE_PHOTOS)) {
+      selection.append(" AND " + MediaStore.Files.FileColumns.MEDIA_TYPE + " = "
+              + MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE);
+    } else if (assetType.equals(ASSET_TYPE_VIDEOS)) {
+      selection.append(" AND " + MediaStore.Files.FileColumns.MEDIA_TYPE + " = "
+              + MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO);
+    } else if (assetType.equals(ASSET_TYPE_ALL)) {
+      selection.append(" AND " + MediaStore.Files.FileColumns.MEDIA_TYPE + " IN ("
+              + MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO + ","
+              + MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE + ")");
+    } else {
+      throw new IllegalArgumentException(
+              "Invalid filter option: '" + assetType + "'. Expected one of '"
+                      + ASSET_TYPE_PHOTOS + "', '" + ASSET_TYPE_VIDEOS + "' or '" + ASSET_TYPE_ALL + "'.");
+    }
+  }
+
+  /**
+   * Maps the {@code subTypes} and {@code excludeSubTypes} options of {@code getPhotos} to
+   * {@link MediaSubTypes} bits.
+   *
+   * @throws IllegalArgumentException if one of the names is not a subtype MediaStore can filter on
+   */
+  static int getSubTypes(@Nullable ReadableArray names) {
+    if (names == null) {
+      return 0;
+    }
+    int subTypes = 0;
+    for (int i = 0; i < names.size(); i++) {
+      String name = names.getString(i);
+      int subType = MediaSubTypes.getSubType(name);
+      if ((subType & MediaSubTypes.QUERYABLE) == 0) {
+        throw new IllegalArgumentException(
+                "Invalid subtype: '" + name + "'. Expected one of 'PhotoScreenshot', "
+                        + "'VideoScreenRecording', 'PhotoBurst' or 'Download'.");
+      }
+      subTypes |= subType;
+    }
+    return subTypes;
+  }
+
+  /**
+   * Appends a {@code BUCKET_ID IN (...)} filter, or {@code NOT IN} when excluding. Bucket ids are
+   * unique per folder, unlike the display names {@code groupName} matches on.
+   */
+  static void appendAlbumIds(
+          StringBuilder selection,
+          List<String> selectionArgs,
+          @Nullable ReadableArray albumIds,
+          boolean exclude) {
+    if (albumIds == null || albumIds.size() == 0) {
+      return;
+    }
+    selection.append(" AND " + Images.Media.BUCKET_ID + (exclude ? " NOT IN (" : " IN ("));
+    for (int i = 0; i < albumIds.size(); i++) {
+      selection.append("?,");
+      selectionArgs.add(albumIds.getString(i));
+    }
+    selection.replace(selection.length() - 1, selection.length(), ")");
+  }
+
+  /**
+   * Maps the {@code timeColumn} option of {@code getPhotos} to the MediaStore column that is used
+   * both to filter on fromTime/toTime and to sort the results.
+   *
+   * @return the column name, or null when no column was requested and the legacy behaviour applies
+   */
+  static @Nullable String getTimeColumn(@Nullable String timeColumn) {
+    if (timeColumn == null) {
+      return null;
+    }
+    switch (timeColumn) {
+      case TIME_COLUMN_DATE_ADDED:
+        return MediaStore.MediaColumns.DATE_ADDED;
+      case TIME_COLUMN_DATE_TAKEN:
+        return Images.Media.DATE_TAKEN;
+      case TIME_COLUMN_DATE_MODIFIED:
+        return MediaStore.MediaColumns.DATE_MODIFIED;
+      default:
+        throw new IllegalArgumentException(
+                "Invalid time column: '" + timeColumn + "'. Expected one of '" + TIME_COLUMN_DATE_ADDED
+                        + "', '" + TIME_COLUMN_DATE_TAKEN + "' or '" + TIME_COLUMN_DATE_MODIFIED + "'.");
+    }
+  }
+
+  /**
+   * Appends the fromTime (exclusive) and toTime (inclusive) filters, both in milliseconds.
+   *
+   * When a time column is given, the range is a plain comparison on that one column so that
+   * SQLite can answer it with an index range scan. Without one, we keep the legacy clause that
+   * falls back from DATE_TAKEN to DATE_ADDED, which can't use any index.
+   */
+  static void appendTimeRange(
+          StringBuilder selection,
+          List<String> selectionArgs,
+          @Nullable String timeColumn,
+          long fromTime,
+          long toTime) {
+    if (timeColumn == null) {
+      if (fromTime > 0) {
+        long addedDate = fromTime / 1000;
+        selection.append(" AND (" + Images.Media.DATE_TAKEN + " > ? OR ( " + Images.Media.DATE_TAKEN
+                + " IS NULL AND " + Images.Media.DATE_ADDED + "> ? ))");
+        selectionArgs.add(fromTime + "");
+        selectionArgs.add(addedDate + "");
+      }
+      if (toTime > 0) {
+        long addedDate = toTime / 1000;
+        selection.append(" AND (" + Images.Media.DATE_TAKEN + " <= ? OR ( " + Images.Media.DATE_TAKEN
+                + " IS NULL AND " + Images.Media.DATE_ADDED + " <= ? ))");
+        selectionArgs.add(toTime + "");
+        selectionArgs.add(addedDate + "");
+      }
+      return;
+    }
+
+    long divisor = getMillisDivisor(timeColumn);
+    if (fromTime > 0) {
+      selection.append(" AND " + timeColumn + " > ?");
+      selectionArgs.add(fromTime / divisor + "");
+    }
+    if (toTime > 0) {
+      selection.append(" AND " + timeColumn + " <= ?");
+      selectionArgs.add(toTime / divisor + "");
+    }
+  }
+
+  /**
+   * @return the sort order matching {@link #appendTimeRange}, most recent first
+   */
+  static String getSortOrder(@Nullable String timeColumn) {
+    if (timeColumn == null) {
+      return Images.Media.DATE_ADDED + " DESC, " + Images.Media.DATE_MODIFIED + " DESC";
+    }
+    return timeColumn + " DESC, " + Images.Media._ID + " DESC";
+  }
+
+  /**
+   * Appends a filter for the rows that come after the given one in the order of
+   * {@link #getSortOrder} with a time column, so that the next rows can be queried without an
+   * OFFSET that SQLite has to step over. SQLite sorts NULLs first, so they come last here.
+   *
+   * @param value the sort column value of the row, or null if it has none
+   * @param id    the id of the row
+   */
+  static void appendSeek(
+          StringBuilder selection,
+          List<String> selectionArgs,
+          String sortColumn,
+          @Nullable Long value,
+          long id) {
+    if (value == null) {
+      selection.append(" AND " + sortColumn + " IS NULL AND " + Images.Media._ID + " < ?");
+    } else {
+      selection.append(" AND (" + sortColumn + " < ? OR " + sortColumn + " IS NULL OR ("
+              + sortColumn + " = ? AND " + Images.Media._ID + " < ?))");
+      selectionArgs.add(value + "");
+      selectionArgs.add(value + "");
+    }
+    selectionArgs.add(id + "");
+  }
+
+  /**
+   * @return what to divide a millisecond timestamp by to compare it with the given column. Date
+   * taken is in milliseconds, date added and date modified in seconds.
+   */
+  static long getMillisDivisor(String timeColumn) {
+    return Images.Media.DATE_TAKEN.equals(timeColumn) ? 1 : 1000;
+  }
+}
@@ -0,0 +1,888 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.content.ContentResolver;
+import android.content.res.AssetFileDescriptor;
+import android.database.Cursor;
+import android.graphics.BitmapFactory;
+import android.media.ExifInterface;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
+import android.provider.MediaStore;
+import android.provider.MediaStore.Images;
+
+import com.facebook.common.logging.FLog;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.common.ReactConstants;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+/**
+ * Converts MediaStore rows into {@code getPhotos} edges. A codec is built once per cursor, which
+ * resolves the column indexes and the include flags up front, so that converting a row only reads
+ * its columns and writes the node. Not thread safe: it reuses scratch buffers between rows.
+ */
+class MediaRowCodec {
+
+  static final String INCLUDE_FILENAME = "filename";
+  static final String INCLUDE_FILE_SIZE = "fileSize";
+  static final String INCLUDE_FILE_EXTENSION = "fileExtension";
+  static final String INCLUDE_LOCATION = "location";
+  static final String INCLUDE_IMAGE_SIZE = "imageSize";
+  static final String INCLUDE_PLAYABLE_DURATION = "playableDuration";
+  static final String INCLUDE_ORIENTATION = "orientation";
+  static final String INCLUDE_ALBUMS = "albums";
+  static final String INCLUDE_SOURCE_TYPE = "sourceType";
+  static final String INCLUDE_EXIF = "exif";
+  /** Also check JPEGs for the motion photo flag, see {@link MediaSubTypes}. */
+  static final String INCLUDE_SUB_TYPES = "subTypes";
+  /**
+   * Prefixes the EXIF tags to include, e.g. "exif:make", added to the include set next to
+   * {@link #INCLUDE_EXIF}. All tags are read when there are none.
+   */
+  static final String INCLUDE_EXIF_TAG_PREFIX = "exif:";
+
+  static final Set<String> INCLUDE_ALL = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+          INCLUDE_LOCATION,
+          INCLUDE_FILENAME,
+          INCLUDE_FILE_SIZE,
+          INCLUDE_FILE_EXTENSION,
+          INCLUDE_IMAGE_SIZE,
+          INCLUDE_PLAYABLE_DURATION,
+          INCLUDE_ORIENTATION,
+          INCLUDE_ALBUMS,
+          INCLUDE_SOURCE_TYPE,
+          INCLUDE_SUB_TYPES)));
+
+  private static final String[] BASE_PROJECTION = {
+          Images.Media._ID,
+          Images.Media.MIME_TYPE,
+          Images.Media.BUCKET_DISPLAY_NAME,
+          Images.Media.DATE_TAKEN,
+          MediaStore.MediaColumns.DATE_ADDED,
+          MediaStore.MediaColumns.DATE_MODIFIED,
+          MediaStore.MediaColumns.WIDTH,
+          MediaStore.MediaColumns.HEIGHT,
+          MediaStore.MediaColumns.SIZE,
+          MediaStore.MediaColumns.DATA,
+          MediaStore.MediaColumns.ORIENTATION,
+  };
+
+  // Same as ContentUris.withAppendedId(EXTERNAL_CONTENT_URI, id).toString(), without building a Uri.
+  // Spelled out as constants since initializing MediaStore needs a device, which the JVM
+  // benchmarks don't have.
+  static final String IMAGE_URI_PREFIX = "content://" + MediaStore.AUTHORITY + "/external/images/media/";
+  static final String VIDEO_URI_PREFIX = "content://" + MediaStore.AUTHORITY + "/external/video/media/";
+  static final String SOURCE_TYPE_USER_LIBRARY = "UserLibrary";
+
+  /** The signed latitude and longitude at the start of an ISO 6709 location. */
+  private static final Pattern GEO_TAG = Pattern.compile("([+-]\\d+(?:\\.\\d+)?)([+-]\\d+(?:\\.\\d+)?)");
+
+  // Spelled out as they were only added as constants in later versions
+  private static final String TAG_DATETIME_ORIGINAL = "DateTimeOriginal";
+  private static final String TAG_OFFSET_TIME_ORIGINAL = "OffsetTimeOriginal";
+  // Spelled out as the constants of the framework ExifInterface that name them are deprecated
+  private static final String TAG_F_NUMBER = "FNumber";
+  private static final String TAG_ISO_SPEED_RATINGS = "ISOSpeedRatings";
+
+  private final ContentResolver mResolver;
+  private final int mSdkInt;
+
+  private final int mIdIndex;
+  private final int mMimeTypeIndex;
+  private final int mGroupNameIndex;
+  private final int mDateTakenIndex;
+  private final int mDateAddedIndex;
+  private final int mDateModifiedIndex;
+  private final int mWidthIndex;
+  private final int mHeightIndex;
+  private final int mSizeIndex;
+  private final int mDataIndex;
+  private final int mOrientationIndex;
+  private final int mDurationIndex;
+  private final int mResolutionIndex;
+  private final int mDisplayNameIndex;
+  private final int mRelativePathIndex;
+  private final int mIsDownloadIndex;
+
+  private final boolean mIncludeLocation;
+  private final boolean mIncludeFilename;
+  private final boolean mIncludeFileSize;
+  private final boolean mIncludeFileExtension;
+  private final boolean mIncludeImageSize;
+  private final boolean mIncludePlayableDuration;
+  private final boolean mIncludeOrientation;
+  private final boolean mIncludeAlbums;
+  private final boolean mIncludeSourceType;
+  private final boolean mIncludeExif;
+  private final boolean mIncludeSubTypes;
+  /** The ExifHeaderReader fields to read for images, 0 if none. */
+  private final int mExifFields;
+
+  private final Row mRow = new Row();
+  private final StringBuilder mUriBuilder = new StringBuilder(64);
+  private final float[] mLatLong = new float[2];
+  private final double[] mGeoTag = new double[2];
+  private final BitmapFactory.Options mBoundsOptions = new BitmapFactory.Options();
+  private final ImageSizeSniffer mSizeSniffer = new ImageSizeSniffer();
+  private final int[] mSize = new int[2];
+  private final @Nullable ExifHeaderReader mExifReader;
+  private final ExifHeaderReader.Result mExif = new ExifHeaderReader.Result();
+  private final @Nullable MotionPhotoReader mMotionPhotoReader;
+  private final byte[] mMotionPhoto = new byte[1];
+  private @Nullable HashStore mSubTypeStore;
+  // Cleared once opening the original fails, which it does without ACCESS_MEDIA_LOCATION
+  private boolean mRequireOriginal = true;
+  // pages are mostly a single mime type, so remembering the last lookup avoids most of them
+  private @Nullable String mLastMimeType;
+  private @Nullable String mLastExtension;
+
+  /**
+   * @param media   a cursor over {@link #getProjection} for this device
+   * @param include the fields to include even though they may be expensive, see the INCLUDE_
+   *                constants
+   */
+  MediaRowCodec(ContentResolver resolver, Cursor media, Set<String> include) {
+    this(resolver, media, include, Build.VERSION.SDK_INT);
+  }
+
+  /**
+   * @param sdkInt the API level the cursor was queried on. Passed in rather than read from Build,
+   *               which needs a device to initialize, for the JVM benchmarks.
+   */
+  MediaRowCodec(ContentResolver resolver, Cursor media, Set<String> include, int sdkInt) {
+    mResolver = resolver;
+    mSdkInt = sdkInt;
+
+    mIdIndex = media.getColumnIndex(Images.Media._ID);
+    mMimeTypeIndex = media.getColumnIndex(Images.Media.MIME_TYPE);
+    mGroupNameIndex = media.getColumnIndex(Images.Media.BUCKET_DISPLAY_NAME);
+    mDateTakenIndex = media.getColumnIndex(Images.Media.DATE_TAKEN);
+    mDateAddedIndex = media.getColumnIndex(MediaStore.MediaColumns.DATE_ADDED);
+    mDateModifiedIndex = media.getColumnIndex(MediaStore.MediaColumns.DATE_MODIFIED);
+    mWidthIndex = media.getColumnIndex(MediaStore.MediaColumns.WIDTH);
+    mHeightIndex = media.getColumnIndex(MediaStore.MediaColumns.HEIGHT);
+    mSizeIndex = media.getColumnIndex(MediaStore.MediaColumns.SIZE);
+    mDataIndex = media.getColumnIndex(MediaStore.MediaColumns.DATA);
+    mOrientationIndex = media.getColumnIndex(MediaStore.MediaColumns.ORIENTATION);
+    mDurationIndex = media.getColumnIndex(MetadataColumns.DURATION);
+    mResolutionIndex = media.getColumnIndex(MetadataColumns.RESOLUTION);
+    mDisplayNameIndex = media.getColumnIndex(MediaStore.MediaColumns.DISPLAY_NAME);
+    mRelativePathIndex = media.getColumnIndex(MediaSubTypes.RELATIVE_PATH);
+    mIsDownloadIndex = media.getColumnIndex(MediaSubTypes.IS_DOWNLOAD);
+
+    mIncludeLocation = include.contains(INCLUDE_LOCATION);
+    mIncludeFilename = include.contains(INCLUDE_FILENAME);
+    mIncludeFileSize = include.contains(INCLUDE_FILE_SIZE);
+    mIncludeFileExtension = include.contains(INCLUDE_FILE_EXTENSION);
+    mIncludeImageSize = include.contains(INCLUDE_IMAGE_SIZE);
+    mIncludePlayableDuration = include.contains(INCLUDE_PLAYABLE_DURATION);
+    mIncludeOrientation = include.contains(INCLUDE_ORIENTATION);
+    mIncludeAlbums = include.contains(INCLUDE_ALBUMS);
+    mIncludeSourceType = include.contains(INCLUDE_SOURCE_TYPE);
+    mIncludeExif = include.contains(INCLUDE_EXIF);
+    mIncludeSubTypes = include.contains(INCLUDE_SUB_TYPES);
+    mMotionPhotoReader = mIncludeSubTypes ? new MotionPhotoReader() : null;
+
+    int exifFields = mIncludeLocation ? ExifHeaderReader.FIELD_LOCATION : 0;
+    if (mIncludeExif) {
+      int tagFields = 0;
+      for (String item : include) {
+        if (item.startsWith(INCLUDE_EXIF_TAG_PREFIX)) {
+          tagFields |= ExifHeaderReader.getField(item.substring(INCLUDE_EXIF_TAG_PREFIX.length()));
+        }
+      }
+      exifFields |= tagFields != 0 ? tagFields : ExifHeaderReader.ALL_FIELDS;
+    }
+    mExifFields = exifFields;
+    mExifReader = exifFields != 0 ? new ExifHeaderReader() : null;
+
+    // Only get the dimensions, without actually loading the bitmap
+    mBoundsOptions.inJustDecodeBounds = true;
+  }
+
+  /**
+   * @param store where to cache whether images are motion photos, as one byte set to 1 or 0, so
+   *              that their files are only read once per version; loaded, and saved by the caller
+   */
+  void setSubTypeStore(@Nullable HashStore store) {
+    mSubTypeStore = store;
+  }
+
+  /**
+   * @return the columns a codec reads on this API level, to query media with
+   */
+  static String[] getProjection(int sdkInt) {
+    return concat(
+            BASE_PROJECTION,
+            concat(MetadataColumns.getProjection(sdkInt), MediaSubTypes.getProjection(sdkInt)));
+  }
+
+  /**
+   * The fields of one row of media, as {@link #read} leaves them. Fields that weren't asked for
+   * are left null, or at their last value for primitives: check the include set.
+   */
+  static class Row {
+    long id;
+    @Nullable String mimeType;
+    boolean isVideo;
+    String uri;
+    int width;
+    int height;
+    @Nullable Integer playableDuration;
+    @Nullable String filename;
+    long fileSize;
+    @Nullable String extension;
+    int orientation;
+    @Nullable String groupName;
+    /** In seconds, with milliseconds as decimals. */
+    double timestamp;
+    /** In seconds. */
+    long modificationTimestamp;
+    @Nullable WritableMap location;
+    @Nullable WritableMap exif;
+    /** {@link MediaSubTypes} bits. */
+    int subTypes;
+  }
+
+  /**
+   * @return the edge for the current row of media, or null if we couldn't fetch all the
+   * information we were asked to include
+   */
+  @Nullable WritableMap convert(Cursor media) {
+    Row row = read(media);
+    if (row == null) {
+      return null;
+    }
+
+    WritableMap image = Arguments.createMap();
+    image.putString("uri", row.uri);
+    if (mIncludeImageSize) {
+      image.putInt("width", row.width);
+      image.putInt("height", row.height);
+    } else {
+      image.putNull("width");
+      image.putNull("height");
+    }
+    if (row.playableDuration != null) {
+      image.putInt("playableDuration", row.playableDuration);
+    } else {
+      image.putNull("playableDuration");
+    }
+    if (row.filename != null) {
+      image.putString("filename", row.filename);
+    } else {
+      image.putNull("filename");
+    }
+    if (mIncludeFileSize) {
+      image.putDouble("fileSize", row.fileSize);
+    } else {
+      image.putNull("fileSize");
+    }
+    if (mIncludeFileExtension) {
+      image.putString("extension", row.extension);
+    } else {
+      image.putNull("extension");
+    }
+    if (mIncludeOrientation) {
+      image.putInt("orientation", row.orientation);
+    } else {
+      image.putNull("orientation");
+    }
+
+    WritableMap node = Arguments.createMap();
+    node.putMap("image", image);
+    node.putString("id", Long.toString(row.id));
+    node.putString("type", row.mimeType);
+    WritableArray subTypes = Arguments.createArray();
+    for (int i = 0; i < MediaSubTypes.NAMES.length; i++) {
+      if ((row.subTypes & (1 << i)) != 0) {
+        subTypes.pushString(MediaSubTypes.NAMES[i]);
+      }
+    }
+    node.putArray("subTypes", subTypes);
+    if (mIncludeSourceType) {
+      node.putString("sourceType", SOURCE_TYPE_USER_LIBRARY);
+    } else {
+      node.putNull("sourceType");
+    }
+    WritableArray groupName = Arguments.createArray();
+    if (mIncludeAlbums) {
+      groupName.pushString(row.groupName);
+    }
+    node.putArray("group_name", groupName);
+    node.putDouble("timestamp", row.timestamp);
+    node.putDouble("modificationTimestamp", row.modificationTimestamp);
+    if (row.location != null) {
+      node.putMap("location", row.location);
+    } else {
+      node.putNull("location");
+    }
+    if (row.exif != null) {
+      node.putMap("exif", row.exif);
+    } else {
+      node.putNull("exif");
+    }
+
+    WritableMap edge = Arguments.createMap();
+    edge.putMap("node", node);
+    return edge;
+  }
+
+  /**
+   * Reads the current row of media, and the files it points at for the fields that need them.
+   *
+   * @return the row, reused by the next call, or null if we couldn't fetch all the information we
+   * were asked to include
+   */
+  @Nullable Row read(Cursor media) {
+    Row row = mRow;
+    row.id = mIdIndex >= 0 ? media.getLong(mIdIndex) : -1;
+    row.mimeType = media.getString(mMimeTypeIndex);
+    row.isVideo = row.mimeType != null && row.mimeType.startsWith("video");
+    // Content uris are returned rather than file paths: they play from SD cards too, and they are
+    // read-only and mask the real source of the item
+    mUriBuilder.setLength(0);
+    row.uri = mUriBuilder.append(row.isVideo ? VIDEO_URI_PREFIX : IMAGE_URI_PREFIX).append(row.id).toString();
+
+    if (!readImageSize(media, row) || !readPlayableDuration(media, row)) {
+      return null;
+    }
+    readImageInfo(media, row);
+    readBasicNodeInfo(media, row);
+    readSubTypes(media, row);
+    boolean hasExif = !row.isVideo && mExifReader != null && readExif(media, row.uri);
+    row.location = readLocation(media, row.isVideo, hasExif);
+    row.exif = createExif(hasExif);
+    return row;
+  }
+
+  private void readBasicNodeInfo(Cursor media, Row row) {
+    row.groupName = mIncludeAlbums ? media.getString(mGroupNameIndex) : null;
+
+    long dateTaken = media.getLong(mDateTakenIndex);
+    if (dateTaken == 0L) {
+      //date added is in seconds, date taken in milliseconds, thus the multiplication
+      dateTaken = media.getLong(mDateAddedIndex) * 1000;
+    }
+    row.timestamp = dateTaken / 1000d;
+    row.modificationTimestamp = media.getLong(mDateModifiedIndex);
+  }
+
+  private void readSubTypes(Cursor media, Row row) {
+    int subTypes = MediaSubTypes.classify(
+            row.isVideo,
+            media.getString(mRelativePathIndex >= 0 ? mRelativePathIndex : mDataIndex),
+            mDisplayNameIndex >= 0 ? media.getString(mDisplayNameIndex) : null,
+            mIsDownloadIndex >= 0 && media.getInt(mIsDownloadIndex) != 0,
+            mSdkInt);
+    if (mIncludeSubTypes && "image/jpeg".equals(row.mimeType) && isMotionPhoto(media, row)) {
+      subTypes |= MediaSubTypes.MOTION_PHOTO;
+    }
+    row.subTypes = subTypes;
+  }
+
+  /**
+   * @return whether the image of the row is a motion photo, from the store when it has already been
+   * read
+   */
+  private boolean isMotionPhoto(Cursor media, Row row) {
+    long modified = media.getLong(mDateModifiedIndex);
+    long size = media.getLong(mSizeIndex);
+    if (mSubTypeStore != null && mSubTypeStore.get(row.id, modified, size, mMotionPhoto)) {
+      return mMotionPhoto[0] != 0;
+    }
+    boolean motionPhoto;
+    try (InputStream input = mResolver.openInputStream(Uri.parse(row.uri))) {
+      if (input == null) {
+        return false;
+      }
+      motionPhoto = mMotionPhotoReader.isMotionPhoto(new BufferedInputStream(input));
+    } catch (IOException | SecurityException e) {
+      FLog.w(ReactConstants.TAG, "Could not read the metadata of " + row.uri, e);
+      return false;
+    }
+    if (mSubTypeStore != null) {
+      mMotionPhoto[0] = (byte) (motionPhoto ? 1 : 0);
+      mSubTypeStore.put(row.id, modified, size, mMotionPhoto);
+    }
+    return motionPhoto;
+  }
+
+  private void readImageInfo(Cursor media, Row row) {
+    String path = mIncludeFilename ? media.getString(mDataIndex) : null;
+    row.filename = path != null ? path.substring(path.lastIndexOf('/') + 1) : null;
+    if (mIncludeFileSize) {
+      row.fileSize = media.getLong(mSizeIndex);
+    }
+    row.extension = mIncludeFileExtension ? getExtension(row.mimeType) : null;
+    if (mIncludeOrientation) {
+      row.orientation = media.isNull(mOrientationIndex) ? 0 : media.getInt(mOrientationIndex);
+    }
+  }
+
+  private @Nullable String getExtension(@Nullable String mimeType) {
+    if (mimeType == null || !mimeType.equals(mLastMimeType)) {
+      mLastMimeType = mimeType;
+      mLastExtension = Utils.getExtension(mimeType);
+    }
+    return mLastExtension;
+  }
+
+  /**
+   * @return Whether we succeeded in fetching the playableDuration
+   */
+  private boolean readPlayableDuration(Cursor media, Row row) {
+    row.playableDuration = null;
+    if (!mIncludePlayableDuration || !row.isVideo) {
+      return true;
+    }
+    if (MetadataColumns.isIndexed(INCLUDE_PLAYABLE_DURATION, true, mSdkInt)
+            && mDurationIndex >= 0) {
+      long duration = media.getLong(mDurationIndex);
+      if (duration > 0) {
+        row.playableDuration = (int) (duration / 1000);
+        PerformanceStats.addRows(PerformanceStats.STAGE_METADATA_COLUMNS, 1);
+        return true;
+      }
+    }
+    PerformanceStats.addSkip(PerformanceStats.STAGE_METADATA_COLUMNS);
+    String uri = row.uri;
+
+    boolean success = true;
+    @Nullable Integer playableDuration = null;
+    Uri photoUri = Uri.parse(uri);
+    @Nullable AssetFileDescriptor photoDescriptor = null;
+    try {
+      photoDescriptor = openAsset(photoUri);
+    } catch (FileNotFoundException e) {
+      success = false;
+      FLog.e(ReactConstants.TAG, "Could not open asset file " + uri, e);
+    }
+
+    if (photoDescriptor != null) {
+      long retrieverStart = PerformanceStats.begin(PerformanceStats.STAGE_METADATA_RETRIEVER);
+      MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+      try {
+        retriever.setDataSource(photoDescriptor.getFileDescriptor());
+      } catch (RuntimeException e) {
+        // Do nothing. We can't handle this, and this is usually a system problem
+      }
+      try {
+        int timeInMillisecond = Integer.parseInt(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION));
+        playableDuration = timeInMillisecond / 1000;
+      } catch (NumberFormatException e) {
+        success = false;
+        PerformanceStats.addFailure(PerformanceStats.STAGE_METADATA_RETRIEVER);
+        FLog.e(
+                ReactConstants.TAG,
+                "Number format exception occurred while trying to fetch video metadata for " + uri,
+                e);
+      }
+      try {
+        retriever.release();
+      } catch (Exception e) { // Use general Exception here, see: https://developer.android.com/reference/android/media/MediaMetadataRetriever#release()
+        // Do nothing. We can't handle this, and this is usually a system problem
+      }
+      PerformanceStats.end(PerformanceStats.STAGE_METADATA_RETRIEVER, retrieverStart);
+
+      try {
+        photoDescriptor.close();
+      } catch (IOException e) {
+        // Do nothing. We can't handle this, and this is usually a system problem
+      }
+    }
+
+    row.playableDuration = playableDuration;
+    return success;
+  }
+
+  /**
+   * @return Whether we succeeded in fetching the width and height
+   */
+  private boolean readImageSize(Cursor media, Row row) {
+    if (!mIncludeImageSize) {
+      return true;
+    }
+    String uri = row.uri;
+    boolean isVideo = row.isVideo;
+
+    boolean success = true;
+
+    int width = media.getInt(mWidthIndex);
+    int height = media.getInt(mHeightIndex);
+    if ((width <= 0 || height <= 0) && isVideo && mResolutionIndex >= 0
+            && MetadataColumns.parseResolution(media.getString(mResolutionIndex), mSize)) {
+      width = mSize[0];
+      height = mSize[1];
+    }
+
+    /* If the columns don't contain the size information, read the media file */
+    if (width > 0 && height > 0) {
+      PerformanceStats.addRows(PerformanceStats.STAGE_METADATA_COLUMNS, 1);
+    } else {
+      PerformanceStats.addSkip(PerformanceStats.STAGE_METADATA_COLUMNS);
+      Uri photoUri = Uri.parse(uri);
+      @Nullable AssetFileDescriptor mediaDescriptor = null;
+      try {
+        mediaDescriptor = openAsset(photoUri);
+      } catch (FileNotFoundException e) {
+        success = false;
+        FLog.e(ReactConstants.TAG, "Could not open asset file " + uri, e);
+      }
+      if (mediaDescriptor != null) {
+        if (isVideo) {
+          long retrieverStart = PerformanceStats.begin(PerformanceStats.STAGE_METADATA_RETRIEVER);
+          MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+          try {
+            retriever.setDataSource(mediaDescriptor.getFileDescriptor());
+          } catch (RuntimeException e) {
+            // Do nothing. We can't handle this, and this is usually a system problem
+          }
+          try {
+            width = Integer.parseInt(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
+            height = Integer.parseInt(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT));
+          } catch (NumberFormatException e) {
+            success = false;
+            PerformanceStats.addFailure(PerformanceStats.STAGE_METADATA_RETRIEVER);
+            FLog.e(
+                    ReactConstants.TAG,
+                    "Number format exception occurred while trying to fetch video metadata for " + uri,
+                    e);
+          }
+          try {
+            retriever.release();
+          } catch (Exception e) { // Use general Exception here, see: https://developer.android.com/reference/android/media/MediaMetadataRetriever#release()
+            // Do nothing. We can't handle this, and this is usually a system problem
+          }
+          PerformanceStats.end(PerformanceStats.STAGE_METADATA_RETRIEVER, retrieverStart);
+        } else if (sniffImageSize(mediaDescriptor)) {
+          width = mSize[0];
+          height = mSize[1];
+        } else {
+          long decodeStart = PerformanceStats.begin(PerformanceStats.STAGE_DECODE_BOUNDS);
+          BitmapFactory.decodeFileDescriptor(mediaDescriptor.getFileDescriptor(), null, mBoundsOptions);
+          width = mBoundsOptions.outWidth;
+          height = mBoundsOptions.outHeight;
+          if (width <= 0 || height <= 0) {
+            PerformanceStats.addFailure(PerformanceStats.STAGE_DECODE_BOUNDS);
+          }
+          PerformanceStats.end(PerformanceStats.STAGE_DECODE_BOUNDS, decodeStart);
+        }
+
+        try {
+          mediaDescriptor.close();
+        } catch (IOException e) {
+          FLog.e(ReactConstants.TAG, "Can't close media descriptor " + uri, e);
+        }
+      }
+    }
+
+    if (!media.isNull(mOrientationIndex)) {
+      int orientation = media.getInt(mOrientationIndex);
+      if (orientation >= 0 && orientation % 180 != 0) {
+        int temp = width;
+        width = height;
+        height = temp;
+      }
+    }
+
+    row.width = width;
+    row.height = height;
+    return success;
+  }
+
+  /**
+   * Reads the size of an image from its container header into mSize, which takes a few small
+   * reads where decoding the bounds may parse much of the file.
+   *
+   * @return false if the format isn't one the sniffer knows, to decode the bounds instead
+   */
+  private boolean sniffImageSize(AssetFileDescriptor descriptor) {
+    long start = PerformanceStats.begin(PerformanceStats.STAGE_SNIFF_SIZE);
+    try {
+      // Not closed: that would close the descriptor, which the caller does
+      FileChannel channel = new FileInputStream(descriptor.getFileDescriptor()).getChannel();
+      if (mSizeSniffer.sniff(channel, descriptor.getStartOffset(), mSize)) {
+        PerformanceStats.addRows(PerformanceStats.STAGE_SNIFF_SIZE, 1);
+        return true;
+      }
+    } catch (IOException e) {
+      FLog.w(ReactConstants.TAG, "Could not read the image header", e);
+    } finally {
+      PerformanceStats.end(PerformanceStats.STAGE_SNIFF_SIZE, start);
+    }
+    PerformanceStats.addFailure(PerformanceStats.STAGE_SNIFF_SIZE);
+    return false;
+  }
+
+  private @Nullable WritableMap readLocation(Cursor media, boolean isVideo, boolean hasExif) {
+    if (!mIncludeLocation || !readCoordinates(media, isVideo, hasExif, mGeoTag)) {
+      return null;
+    }
+    WritableMap location = Arguments.createMap();
+    location.putDouble("latitude", mGeoTag[0]);
+    location.putDouble("longitude", mGeoTag[1]);
+    return location;
+  }
+
+  /**
+   * Reads where the asset of the current row was taken, without the rest of the row, e.g. to
+   * index locations. The codec must have been created to include "location".
+   *
+   * @param out receives the latitude and longitude
+   * @return whether the asset has a location
+   */
+  boolean readCoordinates(Cursor media, double[] out) {
+    String mimeType = media.getString(mMimeTypeIndex);
+    boolean isVideo = mimeType != null && mimeType.startsWith("video");
+    boolean hasExif = !isVideo
+            && mExifReader != null
+            && readExif(media, IMAGE_URI_PREFIX + media.getLong(mIdIndex));
+    return readCoordinates(media, isVideo, hasExif, out);
+  }
+
+  private boolean readCoordinates(Cursor media, boolean isVideo, boolean hasExif, double[] out) {
+    boolean found = false;
+    if (isVideo) {
+      Uri photoUri = Uri.parse("file://" + media.getString(mDataIndex));
+      @Nullable AssetFileDescriptor photoDescriptor = null;
+      try {
+        photoDescriptor = openAsset(photoUri);
+      } catch (FileNotFoundException e) {
+        FLog.e(ReactConstants.TAG, "Could not open asset file " + photoUri.toString(), e);
+      }
+
+      if (photoDescriptor != null) {
+        long retrieverStart = PerformanceStats.begin(PerformanceStats.STAGE_METADATA_RETRIEVER);
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+          retriever.setDataSource(photoDescriptor.getFileDescriptor());
+        } catch (RuntimeException e) {
+          // Do nothing. We can't handle this, and this is usually a system problem
+        }
+        try {
+          String videoGeoTag = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_LOCATION);
+          found = videoGeoTag != null && parseGeoTag(videoGeoTag, out);
+        } catch (NumberFormatException e) {
+          found = false;
+          PerformanceStats.addFailure(PerformanceStats.STAGE_METADATA_RETRIEVER);
+          FLog.e(ReactConstants.TAG, "Number format exception occurred while trying to fetch video metadata for " + photoUri.toString(), e);
+        }
+        try {
+          retriever.release();
+        } catch (Exception e) { // Use general Exception here, see: https://developer.android.com/reference/android/media/MediaMetadataRetriever#release()
+          // Do nothing. We can't handle this, and this is usually a system problem
+        }
+        PerformanceStats.end(PerformanceStats.STAGE_METADATA_RETRIEVER, retrieverStart);
+
+        try {
+          photoDescriptor.close();
+        } catch (IOException e) {
+          // Do nothing. We can't handle this, and this is usually a system problem
+        }
+      }
+    } else if (hasExif && mExif.hasLocation()) {
+      // location details are no longer indexed for privacy reasons using string Media.LATITUDE, Media.LONGITUDE
+      // we read them from the EXIF of the image, see readExif
+      out[0] = mExif.latitude;
+      out[1] = mExif.longitude;
+      found = true;
+    }
+    return found;
+  }
+
+  private @Nullable WritableMap createExif(boolean hasExif) {
+    if (!mIncludeExif || !hasExif) {
+      return null;
+    }
+    WritableMap exif = Arguments.createMap();
+    if (mExif.make != null) {
+      exif.putString("make", mExif.make);
+    }
+    if (mExif.model != null) {
+      exif.putString("model", mExif.model);
+    }
+    putIfKnown(exif, "exposureTime", mExif.exposureTime);
+    putIfKnown(exif, "fNumber", mExif.fNumber);
+    if (mExif.iso >= 0) {
+      exif.putInt("iso", mExif.iso);
+    }
+    putIfKnown(exif, "focalLength", mExif.focalLength);
+    String captureTime = mExif.getCaptureTime();
+    if (captureTime != null) {
+      exif.putString("dateTimeOriginal", captureTime);
+    }
+    if ((mExifFields & ExifHeaderReader.FIELD_LOCATION) != 0 && mExif.hasLocation()) {
+      exif.putDouble("latitude", mExif.latitude);
+      exif.putDouble("longitude", mExif.longitude);
+      putIfKnown(exif, "altitude", mExif.altitude);
+    }
+    return exif;
+  }
+
+  private static void putIfKnown(WritableMap map, String key, double value) {
+    if (!Double.isNaN(value)) {
+      map.putDouble(key, value);
+    }
+  }
+
+  /**
+   * Reads the EXIF tags of the image at uri into mExif. JPEGs are read up to their EXIF segment
+   * only. Other formats go through ExifInterface, which reads them from a file descriptor so that
+   * it seeks to the metadata rather than reading the file.
+   *
+   * @return whether the tags could be read
+   */
+  private boolean readExif(Cursor media, String uri) {
+    long start = PerformanceStats.begin(PerformanceStats.STAGE_EXIF);
+    try {
+      Uri imageUri = Uri.parse(uri);
+      try (InputStream input = openExifStream(imageUri)) {
+        if (mExifReader.read(new BufferedInputStream(input), mExifFields, mExif)) {
+          return true;
+        }
+      }
+      readExifInterface(media, getExifUri(imageUri));
+      return true;
+    } catch (IOException | SecurityException e) {
+      PerformanceStats.addFailure(PerformanceStats.STAGE_EXIF);
+      FLog.e(ReactConstants.TAG, "Could not read the metadata of " + uri, e);
+      return false;
+    } finally {
+      PerformanceStats.end(PerformanceStats.STAGE_EXIF, start);
+    }
+  }
+
+  /**
+   * @return the URI to read the tags from: since Q, the location is redacted unless the original
+   * is asked for
+   */
+  private Uri getExifUri(Uri uri) {
+    if (mSdkInt >= Build.VERSION_CODES.Q
+            && mRequireOriginal
+            && (mExifFields & ExifHeaderReader.FIELD_LOCATION) != 0) {
+      return MediaStore.setRequireOriginal(uri);
+    }
+    return uri;
+  }
+
+  private InputStream openExifStream(Uri uri) throws IOException {
+    Uri exifUri = getExifUri(uri);
+    InputStream input;
+    try {
+      input = mResolver.openInputStream(exifUri);
+    } catch (SecurityException | UnsupportedOperationException e) {
+      if (exifUri.equals(uri)) {
+        throw e;
+      }
+      // No ACCESS_MEDIA_LOCATION: read the redacted image, and stop asking for the original
+      mRequireOriginal = false;
+      input = mResolver.openInputStream(uri);
+    }
+    if (input == null) {
+      throw new FileNotFoundException("Could not open " + uri);
+    }
+    return input;
+  }
+
+  private void readExifInterface(Cursor media, Uri uri) throws IOException {
+    ExifInterface exif;
+    ParcelFileDescriptor descriptor = null;
+    try {
+      if (mSdkInt >= Build.VERSION_CODES.N) {
+        descriptor = mResolver.openFileDescriptor(uri, "r");
+        if (descriptor == null) {
+          throw new FileNotFoundException("Could not open " + uri);
+        }
+        exif = new ExifInterface(descriptor.getFileDescriptor());
+      } else {
+        exif = new ExifInterface(media.getString(mDataIndex));
+      }
+
+      mExif.clear();
+      if ((mExifFields & ExifHeaderReader.FIELD_MAKE) != 0) {
+        mExif.make = exif.getAttribute(ExifInterface.TAG_MAKE);
+      }
+      if ((mExifFields & ExifHeaderReader.FIELD_MODEL) != 0) {
+        mExif.model = exif.getAttribute(ExifInterface.TAG_MODEL);
+      }
+      if ((mExifFields & ExifHeaderReader.FIELD_EXPOSURE_TIME) != 0) {
+        mExif.exposureTime = exif.getAttributeDouble(ExifInterface.TAG_EXPOSURE_TIME, Double.NaN);
+      }
+      if ((mExifFields & ExifHeaderReader.FIELD_F_NUMBER) != 0) {
+        mExif.fNumber = exif.getAttributeDouble(TAG_F_NUMBER, Double.NaN);
+      }
+      if ((mExifFields & ExifHeaderReader.FIELD_ISO) != 0) {
+        mExif.iso = exif.getAttributeInt(TAG_ISO_SPEED_RATINGS, -1);
+      }
+      if ((mExifFields & ExifHeaderReader.FIELD_FOCAL_LENGTH) != 0) {
+        mExif.focalLength = exif.getAttributeDouble(ExifInterface.TAG_FOCAL_LENGTH, Double.NaN);
+      }
+      if ((mExifFields & ExifHeaderReader.FIELD_DATE_TIME_ORIGINAL) != 0) {
+        mExif.dateTimeOriginal = exif.getAttribute(TAG_DATETIME_ORIGINAL);
+        mExif.offsetTimeOriginal = exif.getAttribute(TAG_OFFSET_TIME_ORIGINAL);
+      }
+      if ((mExifFields & ExifHeaderReader.FIELD_LOCATION) != 0 && exif.getLatLong(mLatLong)) {
+        mExif.latitude = mLatLong[0];
+        mExif.longitude = mLatLong[1];
+        mExif.altitude = exif.getAltitude(Double.NaN);
+      }
+    } finally {
+      if (descriptor != null) {
+        descriptor.close();
+      }
+    }
+  }
+
+  /**
+   * Reads the latitude and longitude out of a video location tag in ISO 6709, e.g.
+   * "+37.4219-122.0840/" or "-33.8688+151.2093+058.000/", keeping the sign of each: a minus is
+   * south of the equator or west of Greenwich.
+   *
+   * @return false if the tag doesn't start with both coordinates
+   */
+  static boolean parseGeoTag(String geoTag, double[] latLong) {
+    Matcher matcher = GEO_TAG.matcher(geoTag);
+    if (!matcher.lookingAt()) {
+      return false;
+    }
+    latLong[0] = Double.parseDouble(matcher.group(1));
+    latLong[1] = Double.parseDouble(matcher.group(2));
+    return true;
+  }
+
+  private AssetFileDescriptor openAsset(Uri uri) throws FileNotFoundException {
+    long start = PerformanceStats.begin(PerformanceStats.STAGE_OPEN_ASSET);
+    try {
+      return mResolver.openAssetFileDescriptor(uri, "r");
+    } catch (FileNotFoundException e) {
+      PerformanceStats.addFailure(PerformanceStats.STAGE_OPEN_ASSET);
+      throw e;
+    } finally {
+      PerformanceStats.end(PerformanceStats.STAGE_OPEN_ASSET, start);
+    }
+  }
+
+  private static String[] concat(String[] first, String[] second) {
+    String[] result = Arrays.copyOf(first, first.length + second.length);
+    System.arraycopy(second, 0, result, first.length, second.length);
+    return result;
+  }
+}
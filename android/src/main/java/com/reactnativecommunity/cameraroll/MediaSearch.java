@@ -0,0 +1,203 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.MediaStore;
+import android.provider.MediaStore.Images;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * Keeps a {@link SearchIndex} of the photos and videos of the media library in step with
+ * MediaStore for {@code searchAssets}.
+ *
+ * The index is built in one pass over the library on the first search. After MediaStore reports a
+ * change, the next search first reads the rows changed since the last pass, by generation from
+ * Android 11 on and by date modified before, then counts the rows: when the count doesn't match
+ * the index, assets were deleted or missed, and the ids are read to find out which.
+ */
+class MediaSearch {
+
+  /** Stays well below SQLite's limit on the number of bound arguments. */
+  private static final int IDS_PER_QUERY = 500;
+  private static final String[] PROJECTION = {
+          Images.Media._ID,
+          Images.Media.DISPLAY_NAME,
+          Images.Media.BUCKET_DISPLAY_NAME,
+          Images.Media.DATE_ADDED,
+          getChangeColumn(),
+  };
+
+  private final ContentResolver mResolver;
+  private final ContentObserver mObserver;
+  private final String mSelection;
+  private final SearchIndex mIndex = new SearchIndex();
+
+  private volatile boolean mChanged;
+  private boolean mBuilt;
+  /** The largest change column value read so far. */
+  private long mChangeMark;
+
+  MediaSearch(ContentResolver resolver) {
+    mResolver = resolver;
+    StringBuilder selection = new StringBuilder("1");
+    MediaQuery.appendAssetType(selection, MediaQuery.ASSET_TYPE_ALL);
+    mSelection = selection.toString();
+    mObserver = new ContentObserver(null) {
+      @Override
+      public void onChange(boolean selfChange) {
+        mChanged = true;
+      }
+    };
+    mResolver.registerContentObserver(Uri.parse("content://" + MediaStore.AUTHORITY), true, mObserver);
+  }
+
+  /**
+   * Brings the index up to date, then searches it, see {@link SearchIndex#search}.
+   *
+   * @return the matches, or null if MediaStore could not be queried
+   * @throws SecurityException if the app may not read media
+   */
+  synchronized @Nullable SearchIndex.Result search(String query, int offset, int limit) {
+    if (!sync()) {
+      return null;
+    }
+    long start = PerformanceStats.begin(PerformanceStats.STAGE_SEARCH);
+    try {
+      SearchIndex.Result result = mIndex.search(query, offset, limit);
+      PerformanceStats.addRows(PerformanceStats.STAGE_SEARCH, result.total);
+      return result;
+    } finally {
+      PerformanceStats.end(PerformanceStats.STAGE_SEARCH, start);
+    }
+  }
+
+  void release() {
+    mResolver.unregisterContentObserver(mObserver);
+  }
+
+  /**
+   * @return whether the index could be brought up to date
+   */
+  private boolean sync() {
+    if (mBuilt && !mChanged) {
+      return true;
+    }
+    // Changes reported from here on are read by the next sync
+    mChanged = false;
+    long start = PerformanceStats.begin(PerformanceStats.STAGE_SEARCH_INDEX);
+    boolean synced = false;
+    try {
+      if (!mBuilt) {
+        synced = mBuilt = readRows(mSelection, null);
+      } else {
+        // Rows whose date modified equals the mark may have been written after the last pass
+        String changed = mSelection + " AND " + getChangeColumn()
+                + (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R ? " > ?" : " >= ?");
+        synced = readRows(changed, new String[]{Long.toString(mChangeMark)}) && removeDeleted();
+      }
+      return synced;
+    } finally {
+      if (!synced) {
+        // Try again on the next search, rows already read are put again
+        mChanged = true;
+      }
+      PerformanceStats.end(PerformanceStats.STAGE_SEARCH_INDEX, start);
+    }
+  }
+
+  /**
+   * Puts the matching rows into the index.
+   */
+  private boolean readRows(String selection, @Nullable String[] selectionArgs) {
+    Cursor media = mResolver.query(
+            MediaStore.Files.getContentUri("external"),
+            PROJECTION,
+            selection,
+            selectionArgs,
+            null);
+    if (media == null) {
+      PerformanceStats.addFailure(PerformanceStats.STAGE_SEARCH_INDEX);
+      return false;
+    }
+    try {
+      while (media.moveToNext()) {
+        mIndex.put(media.getLong(0), media.getString(1), media.getString(2), media.getLong(3));
+        mChangeMark = Math.max(mChangeMark, media.getLong(4));
+      }
+      PerformanceStats.addRows(PerformanceStats.STAGE_SEARCH_INDEX, media.getCount());
+    } finally {
+      media.close();
+    }
+    return true;
+  }
+
+  /**
+   * Drops deleted assets from the index, and adds the ones a pass by date modified missed, e.g.
+   * files moved in with an older date.
+   */
+  private boolean removeDeleted() {
+    Cursor media = mResolver.query(
+            MediaStore.Files.getContentUri("external"),
+            new String[]{Images.Media._ID},
+            mSelection,
+            null,
+            null);
+    if (media == null) {
+      PerformanceStats.addFailure(PerformanceStats.STAGE_SEARCH_INDEX);
+      return false;
+    }
+    long[] ids;
+    int count;
+    List<Long> missing = new ArrayList<>();
+    try {
+      count = media.getCount();
+      if (count == mIndex.size()) {
+        // Every row read has been put, so none can be missing nor left over
+        return true;
+      }
+      ids = new long[count];
+      int size = 0;
+      while (media.moveToNext()) {
+        long id = media.getLong(0);
+        ids[size++] = id;
+        if (!mIndex.contains(id)) {
+          missing.add(id);
+        }
+      }
+      count = size;
+    } finally {
+      media.close();
+    }
+    Arrays.sort(ids, 0, count);
+    mIndex.retain(ids, count);
+
+    for (int from = 0; from < missing.size(); from += IDS_PER_QUERY) {
+      int to = Math.min(missing.size(), from + IDS_PER_QUERY);
+      StringBuilder selection = new StringBuilder(Images.Media._ID + " IN (");
+      String[] selectionArgs = new String[to - from];
+      for (int i = from; i < to; i++) {
+        selection.append(i > from ? ",?" : "?");
+        selectionArgs[i - from] = Long.toString(missing.get(i));
+      }
+      selection.append(")");
+      if (!readRows(selection.toString(), selectionArgs)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String getChangeColumn() {
+    return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+            ? MediaStore.MediaColumns.GENERATION_MODIFIED
+            : MediaStore.MediaColumns.DATE_MODIFIED;
+  }
+}
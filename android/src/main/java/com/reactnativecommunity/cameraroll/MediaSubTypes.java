@@ -0,0 +1,190 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.os.Build;
+import android.provider.MediaStore;
+
+import java.util.List;
+import java.util.Locale;
+
+import javax.annotation.Nullable;
+
+/**
+ * The subtypes of assets on Android, as bits, told apart from MediaStore columns alone so that
+ * {@code getPhotos} can filter on them inside its query, except for motion photos whose flag is in
+ * the XMP of the file, see {@link MotionPhotoReader}.
+ *
+ * <ul>
+ *   <li>PhotoScreenshot, VideoScreenRecording: in a folder named like the ones screenshots and
+ *   screen recordings are saved in, e.g. Pictures/Screenshots or DCIM/Screen recordings.</li>
+ *   <li>PhotoBurst: with BURST in the file name, as Pixel and Huawei name the shots of a burst.</li>
+ *   <li>Download: IS_DOWNLOAD from Android 10 on, in a Download folder before.</li>
+ *   <li>PhotoLive: a motion photo, the Android counterpart of Live Photos.</li>
+ * </ul>
+ *
+ * Folders are matched on RELATIVE_PATH from Android 10 on, on DATA before; both ignoring case, as
+ * SQLite's LIKE does.
+ */
+final class MediaSubTypes {
+
+  static final int SCREENSHOT = 1;
+  static final int SCREEN_RECORDING = 1 << 1;
+  static final int BURST = 1 << 2;
+  static final int DOWNLOAD = 1 << 3;
+  static final int MOTION_PHOTO = 1 << 4;
+
+  /** The subtype names, in the order of their bits. */
+  static final String[] NAMES = {
+          "PhotoScreenshot",
+          "VideoScreenRecording",
+          "PhotoBurst",
+          "Download",
+          "PhotoLive",
+  };
+
+  /** The subtypes that can be filtered on in a query. */
+  static final int QUERYABLE = SCREENSHOT | SCREEN_RECORDING | BURST | DOWNLOAD;
+
+  private static final String[] SCREENSHOT_FOLDERS = {"Screenshots", "Screenshot", "ScreenCapture"};
+  private static final String[] SCREEN_RECORDING_FOLDERS = {
+          "Screen recordings", "Screen recording", "ScreenRecords", "ScreenRecorder", "ScreenRecording",
+  };
+  private static final String DOWNLOAD_FOLDER = "Download";
+  private static final String BURST_NAME = "BURST";
+
+  // Spelled out as they were only added as constants in Android 10
+  static final String RELATIVE_PATH = "relative_path";
+  static final String IS_DOWNLOAD = "is_download";
+
+  private MediaSubTypes() {
+  }
+
+  /**
+   * @return the columns {@link #classify} needs on top of the ones MediaRowCodec reads anyway
+   */
+  static String[] getProjection(int sdkInt) {
+    return sdkInt >= Build.VERSION_CODES.Q
+            ? new String[]{MediaStore.MediaColumns.DISPLAY_NAME, RELATIVE_PATH, IS_DOWNLOAD}
+            : new String[]{MediaStore.MediaColumns.DISPLAY_NAME};
+  }
+
+  /**
+   * @param path       RELATIVE_PATH from Android 10 on, DATA before
+   * @param isDownload IS_DOWNLOAD, ignored before Android 10
+   * @return the subtype bits the columns of a row tell, all but {@link #MOTION_PHOTO}
+   */
+  static int classify(
+          boolean isVideo,
+          @Nullable String path,
+          @Nullable String displayName,
+          boolean isDownload,
+          int sdkInt) {
+    String folders = getFolders(path, sdkInt);
+    int subTypes = 0;
+    if (!isVideo && containsFolder(folders, SCREENSHOT_FOLDERS)) {
+      subTypes |= SCREENSHOT;
+    }
+    if (isVideo && containsFolder(folders, SCREEN_RECORDING_FOLDERS)) {
+      subTypes |= SCREEN_RECORDING;
+    }
+    if (!isVideo && displayName != null && displayName.toUpperCase(Locale.ROOT).contains(BURST_NAME)) {
+      subTypes |= BURST;
+    }
+    if (sdkInt >= Build.VERSION_CODES.Q
+            ? isDownload
+            : containsFolder(folders, new String[]{DOWNLOAD_FOLDER})) {
+      subTypes |= DOWNLOAD;
+    }
+    return subTypes;
+  }
+
+  /**
+   * @return the subtype bit of a name, or 0 if it is not one of {@link #NAMES}
+   */
+  static int getSubType(String name) {
+    for (int i = 0; i < NAMES.length; i++) {
+      if (NAMES[i].equals(name)) {
+        return 1 << i;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Appends a filter keeping the assets that have any of the given subtypes, or dropping them when
+   * excluding, to match {@link #classify}.
+   *
+   * @param subTypes {@link #QUERYABLE} bits
+   */
+  static void appendFilter(
+          StringBuilder selection,
+          List<String> selectionArgs,
+          int subTypes,
+          boolean exclude,
+          int sdkInt) {
+    if (subTypes == 0) {
+      return;
+    }
+    // Null columns are compared as empty strings, so that NOT drops no row it shouldn't
+    String folders = sdkInt >= Build.VERSION_CODES.Q
+            ? "('/' || IFNULL(" + RELATIVE_PATH + ", ''))"
+            : "IFNULL(" + MediaStore.MediaColumns.DATA + ", '')";
+    selection.append(exclude ? " AND NOT (0" : " AND (0");
+    if ((subTypes & SCREENSHOT) != 0) {
+      selection.append(" OR (" + MediaStore.Files.FileColumns.MEDIA_TYPE + " = "
+              + MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE + " AND (0");
+      appendFolders(selection, selectionArgs, folders, SCREENSHOT_FOLDERS);
+      selection.append("))");
+    }
+    if ((subTypes & SCREEN_RECORDING) != 0) {
+      selection.append(" OR (" + MediaStore.Files.FileColumns.MEDIA_TYPE + " = "
+              + MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO + " AND (0");
+      appendFolders(selection, selectionArgs, folders, SCREEN_RECORDING_FOLDERS);
+      selection.append("))");
+    }
+    if ((subTypes & BURST) != 0) {
+      selection.append(" OR (" + MediaStore.Files.FileColumns.MEDIA_TYPE + " = "
+              + MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE + " AND IFNULL("
+              + MediaStore.MediaColumns.DISPLAY_NAME + ", '') LIKE ?)");
+      selectionArgs.add("%" + BURST_NAME + "%");
+    }
+    if ((subTypes & DOWNLOAD) != 0) {
+      if (sdkInt >= Build.VERSION_CODES.Q) {
+        selection.append(" OR IFNULL(" + IS_DOWNLOAD + ", 0) = 1");
+      } else {
+        appendFolders(selection, selectionArgs, folders, new String[]{DOWNLOAD_FOLDER});
+      }
+    }
+    selection.append(")");
+  }
+
+  private static void appendFolders(
+          StringBuilder selection,
+          List<String> selectionArgs,
+          String folders,
+          String[] names) {
+    for (String name : names) {
+      selection.append(" OR ").append(folders).append(" LIKE ?");
+      selectionArgs.add("%/" + name + "/%");
+    }
+  }
+
+  /**
+   * @return the path with a leading slash and lower cased, so that each folder sits between two
+   * slashes
+   */
+  private static String getFolders(@Nullable String path, int sdkInt) {
+    if (path == null) {
+      return "";
+    }
+    return (sdkInt >= Build.VERSION_CODES.Q ? "/" + path : path).toLowerCase(Locale.ROOT);
+  }
+
+  private static boolean containsFolder(String folders, String[] names) {
+    for (String name : names) {
+      if (folders.contains("/" + name.toLowerCase(Locale.ROOT) + "/")) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,90 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.os.Build;
+
+import javax.annotation.Nullable;
+
+/**
+ * Which include fields MediaStore keeps in its own columns, per API level, so that
+ * {@link MediaRowCodec} serves them from the row and only opens a file when the column is missing
+ * or left at 0, e.g. for a file MediaStore hasn't scanned yet.
+ *
+ * <ul>
+ *   <li>imageSize: WIDTH and HEIGHT on every level. Older versions only filled them for images,
+ *   and RESOLUTION, a "1920x1080" string, for videos, so it is read too before Android 10, which
+ *   deprecated it.</li>
+ *   <li>playableDuration: the DURATION of videos, in milliseconds, on every level.</li>
+ *   <li>orientation: the ORIENTATION of images on every level, and of videos from Android 10 on.
+ *   It is always read from the column, videos being left at 0 before.</li>
+ *   <li>timestamp: DATE_TAKEN of images and videos on every level, all media from Android 10 on.
+ *   Rows without one fall back to DATE_ADDED rather than to the file.</li>
+ * </ul>
+ *
+ * Location and exif are left out: their columns were only ever filled for images, and are no
+ * longer filled from Android 10 on.
+ */
+final class MetadataColumns {
+
+  // Spelled out since Video.VideoColumns needs a device to initialize, see MediaRowCodec
+  static final String DURATION = "duration";
+  static final String RESOLUTION = "resolution";
+
+  private MetadataColumns() {
+  }
+
+  /**
+   * @return the columns {@link MediaRowCodec} reads on this API level on top of the basic ones
+   */
+  static String[] getProjection(int sdkInt) {
+    return hasResolution(sdkInt) ? new String[]{DURATION, RESOLUTION} : new String[]{DURATION};
+  }
+
+  /**
+   * @return whether MediaStore may have the field in its columns for this kind of media, before
+   * opening the file
+   */
+  static boolean isIndexed(String include, boolean isVideo, int sdkInt) {
+    switch (include) {
+      case MediaRowCodec.INCLUDE_IMAGE_SIZE:
+        return true;
+      case MediaRowCodec.INCLUDE_PLAYABLE_DURATION:
+        return isVideo;
+      case MediaRowCodec.INCLUDE_ORIENTATION:
+        return !isVideo || sdkInt >= Build.VERSION_CODES.Q;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * @return whether the RESOLUTION column holds the size of videos
+   */
+  static boolean hasResolution(int sdkInt) {
+    return sdkInt < Build.VERSION_CODES.Q;
+  }
+
+  /**
+   * Parses a RESOLUTION value, e.g. "1920x1080" or "1920 x 1080".
+   *
+   * @return whether out now holds a width and a height above 0
+   */
+  static boolean parseResolution(@Nullable String resolution, int[] out) {
+    if (resolution == null) {
+      return false;
+    }
+    int separator = resolution.indexOf('x');
+    if (separator < 0) {
+      separator = resolution.indexOf('X');
+    }
+    if (separator < 0) {
+      return false;
+    }
+    try {
+      out[0] = Integer.parseInt(resolution.substring(0, separator).trim());
+      out[1] = Integer.parseInt(resolution.substring(separator + 1).trim());
+    } catch (NumberFormatException e) {
+      return false;
+    }
+    return out[0] > 0 && out[1] > 0;
+  }
+}
@@ -0,0 +1,159 @@
+package com.reactnativecommunity.cameraroll;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tells motion photos apart by the flag in the XMP segment of their JPEG: {@code MotionPhoto} as
+ * written by current Pixel and Samsung cameras, or {@code MicroVideo} by older Pixels, set to 1
+ * either as an attribute or as an element. The segments before it are skipped, so that it costs a
+ * few kilobytes of reads per photo.
+ *
+ * Only JPEG is handled. Not thread safe: it reuses its segment buffer between reads.
+ */
+class MotionPhotoReader {
+
+  private static final int MAX_SKIPPED_BYTES = 256 * 1024;
+  private static final int MAX_SEGMENT_LENGTH = 0xFFFF;
+
+  private static final int MARKER_SOI = 0xD8;
+  private static final int MARKER_EOI = 0xD9;
+  private static final int MARKER_SOS = 0xDA;
+  private static final int MARKER_APP1 = 0xE1;
+
+  private static final byte[] XMP_NAMESPACE = "http://ns.adobe.com/xap/1.0/\0".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[][] FLAGS = {
+          "MotionPhoto".getBytes(StandardCharsets.US_ASCII),
+          "MicroVideo".getBytes(StandardCharsets.US_ASCII),
+  };
+
+  private final byte[] mHeader = new byte[2];
+  private final byte[] mSegment = new byte[MAX_SEGMENT_LENGTH];
+
+  /**
+   * @param input a stream at the start of the image, not closed
+   * @return whether the image is a JPEG flagged as a motion photo
+   * @throws IOException if the stream can't be read
+   */
+  boolean isMotionPhoto(InputStream input) throws IOException {
+    if (!readFully(input, mHeader, 2) || (mHeader[0] & 0xFF) != 0xFF
+            || (mHeader[1] & 0xFF) != MARKER_SOI) {
+      return false;
+    }
+    int skipped = 0;
+    while (skipped <= MAX_SKIPPED_BYTES) {
+      int marker = readMarker(input);
+      if (marker < 0 || marker == MARKER_SOS || marker == MARKER_EOI) {
+        // Image data or end of file: metadata segments all come before
+        return false;
+      }
+      if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+        // Markers without a segment
+        continue;
+      }
+      if (!readFully(input, mHeader, 2)) {
+        return false;
+      }
+      int length = (((mHeader[0] & 0xFF) << 8) | (mHeader[1] & 0xFF)) - 2;
+      if (length < 0) {
+        return false;
+      }
+      if (marker == MARKER_APP1 && length > XMP_NAMESPACE.length) {
+        if (!readFully(input, mSegment, length)) {
+          return false;
+        }
+        if (startsWith(mSegment, XMP_NAMESPACE)) {
+          return hasFlag(length);
+        }
+        // Another APP1 segment, e.g. EXIF: the XMP one may still follow
+      } else if (!skipFully(input, length)) {
+        return false;
+      }
+      skipped += length + 4;
+    }
+    return false;
+  }
+
+  /**
+   * @return whether a flag of the XMP in mSegment is set to 1, e.g. {@code GCamera:MotionPhoto="1"}
+   * or {@code <Camera:MotionPhoto>1</Camera:MotionPhoto>}
+   */
+  private boolean hasFlag(int length) {
+    for (int i = XMP_NAMESPACE.length; i < length; i++) {
+      for (byte[] flag : FLAGS) {
+        if (!matches(mSegment, i, length, flag)) {
+          continue;
+        }
+        int value = i + flag.length;
+        while (value < length && (mSegment[value] == '=' || mSegment[value] == '"'
+                || mSegment[value] == '\'' || mSegment[value] == '>' || mSegment[value] == ' ')) {
+          value++;
+        }
+        if (value < length && mSegment[value] == '1'
+                && (value + 1 == length || !Character.isDigit(mSegment[value + 1]))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean matches(byte[] buffer, int offset, int length, byte[] token) {
+    if (offset + token.length > length) {
+      return false;
+    }
+    for (int i = 0; i < token.length; i++) {
+      if (buffer[offset + i] != token[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean startsWith(byte[] buffer, byte[] prefix) {
+    return matches(buffer, 0, buffer.length, prefix);
+  }
+
+  /**
+   * @return the marker byte following 0xFF fill bytes, or -1 at the end of the stream or if the
+   * stream is not at a marker
+   */
+  private static int readMarker(InputStream input) throws IOException {
+    int b = input.read();
+    if (b != 0xFF) {
+      return -1;
+    }
+    do {
+      b = input.read();
+    } while (b == 0xFF);
+    return b;
+  }
+
+  private static boolean readFully(InputStream input, byte[] buffer, int length) throws IOException {
+    int read = 0;
+    while (read < length) {
+      int n = input.read(buffer, read, length - read);
+      if (n < 0) {
+        return false;
+      }
+      read += n;
+    }
+    return true;
+  }
+
+  private static boolean skipFully(InputStream input, long length) throws IOException {
+    while (length > 0) {
+      long n = input.skip(length);
+      if (n <= 0) {
+        // skip may stop short without being at the end, read tells them apart
+        if (input.read() < 0) {
+          return false;
+        }
+        n = 1;
+      }
+      length -= n;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,245 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import javax.annotation.Nullable;
+
+/**
+ * Reads the rows of a {@code getPhotos} page out of several MediaStore volumes, e.g. the primary
+ * storage and an SD card. Each volume is queried with the same selection and order, all of them at
+ * once and in chunks, see {@link ChunkedMediaQuery}, and their rows are merged into that order as
+ * they are read.
+ *
+ * A single offset can't be mapped back onto the volumes, so the page cursor holds the position
+ * reached in each of them, see {@link #getPosition}.
+ */
+class MultiVolumeQuery implements Closeable {
+
+  private static final String POSITION_PREFIX = "v:";
+
+  private final Source[] mSources;
+  private final int mRowCount;
+  private boolean mStarted;
+  private boolean mFailed;
+  /** The source of the row returned last, to move past it on the next call. */
+  private @Nullable Source mPending;
+
+  private static class Source {
+    final String volume;
+    final ChunkedMediaQuery chunks;
+    final int offset;
+    int consumed;
+    /** Positioned on the next row of the volume, null before the first chunk and once exhausted. */
+    @Nullable Cursor cursor;
+    boolean exhausted;
+    int sortIndex = -1;
+    int tieBreakIndex = -1;
+    long sortValue;
+    long tieBreak;
+
+    Source(String volume, ChunkedMediaQuery chunks, int offset) {
+      this.volume = volume;
+      this.chunks = chunks;
+      this.offset = offset;
+    }
+  }
+
+  /**
+   * Starts querying the first chunk of every volume.
+   *
+   * @param offsets  the position to start at in each volume, as parsed by {@link #parsePosition};
+   *                 volumes missing from it start at their first row
+   * @param rowCount the number of rows to read at most, which may all come from one volume
+   * @param executor the executor to query chunks on, see {@link ChunkedMediaQuery}
+   */
+  MultiVolumeQuery(
+          ContentResolver resolver,
+          MediaQuery query,
+          List<String> volumes,
+          Map<String, Integer> offsets,
+          int rowCount,
+          int chunkSize,
+          Executor executor) {
+    mSources = new Source[volumes.size()];
+    mRowCount = rowCount;
+    for (int i = 0; i < mSources.length; i++) {
+      String volume = volumes.get(i);
+      Integer offset = offsets.get(volume);
+      int start = offset != null ? offset : 0;
+      mSources[i] = new Source(
+              volume,
+              new ChunkedMediaQuery(resolver, volume, query, start, rowCount, chunkSize, executor),
+              start);
+    }
+    for (Source source : mSources) {
+      source.chunks.start();
+    }
+  }
+
+  /**
+   * Moves past the row returned last, to the row that comes next across all volumes. Rows that
+   * compare equal come in the order the volumes were given in.
+   *
+   * @return a cursor positioned on the next row, valid until the next call, or null once all rows
+   * have been read or when MediaStore returned no cursor, see {@link #hasFailed}
+   */
+  @Nullable Cursor next() {
+    if (!mStarted) {
+      mStarted = true;
+      for (Source source : mSources) {
+        advance(source);
+      }
+    } else if (mPending != null) {
+      advance(mPending);
+    }
+    mPending = null;
+    if (mFailed) {
+      return null;
+    }
+
+    Source next = null;
+    for (Source source : mSources) {
+      if (!source.exhausted && (next == null || compare(source, next) < 0)) {
+        next = source;
+      }
+    }
+    if (next == null) {
+      return null;
+    }
+    next.consumed++;
+    mPending = next;
+    return next.cursor;
+  }
+
+  /**
+   * @return whether a volume has rows past the one returned last, or may have once rowCount of its
+   * rows have been read
+   */
+  boolean hasMore() {
+    if (mPending != null) {
+      advance(mPending);
+      mPending = null;
+    }
+    for (Source source : mSources) {
+      if (!source.exhausted || source.consumed >= mRowCount) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return whether MediaStore returned no cursor for one of the volumes
+   */
+  boolean hasFailed() {
+    return mFailed;
+  }
+
+  /**
+   * @return the page cursor of the row after the one returned last, e.g.
+   * "v:external_primary=120,1234-5678=30"
+   */
+  String getPosition() {
+    StringBuilder position = new StringBuilder(POSITION_PREFIX);
+    for (int i = 0; i < mSources.length; i++) {
+      if (i > 0) {
+        position.append(',');
+      }
+      position.append(mSources[i].volume).append('=').append(mSources[i].offset + mSources[i].consumed);
+    }
+    return position.toString();
+  }
+
+  /**
+   * @param after a cursor returned by {@link #getPosition}, or null or empty to start at the first
+   *              row of each volume
+   * @return the position to start at in each volume
+   * @throws IllegalArgumentException if after isn't such a cursor
+   */
+  static Map<String, Integer> parsePosition(@Nullable String after) {
+    Map<String, Integer> offsets = new HashMap<>();
+    if (after == null || after.isEmpty()) {
+      return offsets;
+    }
+    if (!after.startsWith(POSITION_PREFIX)) {
+      throw new IllegalArgumentException(invalidPosition(after));
+    }
+    for (String entry : after.substring(POSITION_PREFIX.length()).split(",")) {
+      int separator = entry.lastIndexOf('=');
+      if (separator <= 0) {
+        throw new IllegalArgumentException(invalidPosition(after));
+      }
+      int offset;
+      try {
+        offset = Integer.parseInt(entry.substring(separator + 1));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException(invalidPosition(after));
+      }
+      if (offset < 0) {
+        throw new IllegalArgumentException(invalidPosition(after));
+      }
+      offsets.put(entry.substring(0, separator), offset);
+    }
+    return offsets;
+  }
+
+  private static String invalidPosition(String after) {
+    return "Invalid cursor: '" + after + "'. Expected the end_cursor of a getPhotos call with volumes.";
+  }
+
+  @Override
+  public void close() {
+    for (Source source : mSources) {
+      source.chunks.close();
+    }
+  }
+
+  private void advance(Source source) {
+    if (source.cursor != null && source.cursor.moveToNext()) {
+      readSortKey(source);
+      return;
+    }
+    Cursor chunk;
+    while ((chunk = source.chunks.next()) != null) {
+      if (chunk.moveToNext()) {
+        source.cursor = chunk;
+        readSortKey(source);
+        return;
+      }
+    }
+    source.cursor = null;
+    source.exhausted = true;
+    if (source.chunks.hasFailed()) {
+      mFailed = true;
+    }
+  }
+
+  private void readSortKey(Source source) {
+    Cursor cursor = source.cursor;
+    if (source.sortIndex < 0) {
+      MediaQuery query = source.chunks.getQuery();
+      source.sortIndex = cursor.getColumnIndex(query.sortColumn);
+      source.tieBreakIndex = cursor.getColumnIndex(query.tieBreakColumn);
+    }
+    // Both are sorted descending, where SQLite puts NULLs last
+    source.sortValue = cursor.isNull(source.sortIndex) ? Long.MIN_VALUE : cursor.getLong(source.sortIndex);
+    source.tieBreak = cursor.isNull(source.tieBreakIndex) ? Long.MIN_VALUE : cursor.getLong(source.tieBreakIndex);
+  }
+
+  /**
+   * @return a negative number if the next row of a comes before the next row of b
+   */
+  private static int compare(Source a, Source b) {
+    if (a.sortValue != b.sortValue) {
+      return a.sortValue > b.sortValue ? -1 : 1;
+    }
+    return Long.compare(b.tieBreak, a.tieBreak);
+  }
+}
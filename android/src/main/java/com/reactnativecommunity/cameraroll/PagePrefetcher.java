@@ -0,0 +1,172 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Process;
+import android.os.SystemClock;
+import android.provider.MediaStore;
+
+import com.facebook.common.logging.FLog;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.common.ReactConstants;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+import javax.annotation.Nullable;
+
+/**
+ * Holds at most one speculatively fetched {@code getPhotos} page, built on a low priority thread
+ * while JS renders the current one. The page is handed out once to a request with the same key,
+ * and dropped when it expires, when a request with another key arrives, or when MediaStore
+ * reports a change.
+ */
+class PagePrefetcher {
+
+  private static final long TTL_MS = 10_000;
+
+  private final ContentResolver mResolver;
+  private final ExecutorService mExecutor;
+  private final ContentObserver mObserver;
+
+  private @Nullable Entry mEntry;
+
+  private long mRequests;
+  private long mHits;
+  private long mScheduled;
+  private long mWasted;
+  private long mInvalidations;
+
+  private static class Entry {
+    final String key;
+    final FutureTask<CameraRollModule.MediaPage> task;
+    final long expiresAt;
+
+    Entry(String key, FutureTask<CameraRollModule.MediaPage> task, long expiresAt) {
+      this.key = key;
+      this.task = task;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  PagePrefetcher(ContentResolver resolver) {
+    mResolver = resolver;
+    mExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(() -> {
+      Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+      runnable.run();
+    }, "CameraRollPrefetch"));
+    mObserver = new ContentObserver(null) {
+      @Override
+      public void onChange(boolean selfChange) {
+        invalidate();
+      }
+    };
+    mResolver.registerContentObserver(Uri.parse("content://" + MediaStore.AUTHORITY), true, mObserver);
+  }
+
+  /**
+   * Hands out the prefetched page if it was built for this key and is still fresh, waiting for it
+   * if it is still being built. Any other page is dropped, since the caller has moved on.
+   *
+   * @param counted whether the request counts towards the hit rate, i.e. it opted into prefetching
+   *                itself, so that calls which never did don't show up as misses
+   * @return the page, or null when the caller has to query it itself
+   */
+  @Nullable CameraRollModule.MediaPage take(String key, boolean counted) {
+    Entry entry;
+    synchronized (this) {
+      if (counted) {
+        mRequests++;
+      }
+      entry = mEntry;
+      mEntry = null;
+      if (entry == null) {
+        return null;
+      }
+      if (!entry.key.equals(key) || SystemClock.elapsedRealtime() > entry.expiresAt) {
+        entry.task.cancel(false);
+        mWasted++;
+        return null;
+      }
+    }
+
+    try {
+      CameraRollModule.MediaPage page = entry.task.get();
+      if (page != null && counted) {
+        synchronized (this) {
+          mHits++;
+        }
+      }
+      return page;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      FLog.w(ReactConstants.TAG, "Could not prefetch media", e.getCause());
+    }
+    return null;
+  }
+
+  /**
+   * Starts building the page for key in the background, replacing any page not handed out yet.
+   */
+  void prefetch(String key, Callable<CameraRollModule.MediaPage> query) {
+    FutureTask<CameraRollModule.MediaPage> task = new FutureTask<>(query);
+    synchronized (this) {
+      if (mEntry != null) {
+        mEntry.task.cancel(false);
+        mWasted++;
+      }
+      mEntry = new Entry(key, task, SystemClock.elapsedRealtime() + TTL_MS);
+      mScheduled++;
+    }
+    mExecutor.execute(task);
+  }
+
+  /**
+   * Drops the prefetched page, e.g. because the media it lists has changed.
+   */
+  synchronized void invalidate() {
+    if (mEntry != null) {
+      mEntry.task.cancel(false);
+      mEntry = null;
+      mWasted++;
+      mInvalidations++;
+    }
+  }
+
+  synchronized WritableMap getStats() {
+    return createStats(mRequests, mHits, mScheduled, mWasted, mInvalidations);
+  }
+
+  static WritableMap getEmptyStats() {
+    return createStats(0, 0, 0, 0, 0);
+  }
+
+  private static WritableMap createStats(
+          long requests,
+          long hits,
+          long scheduled,
+          long wasted,
+          long invalidations) {
+    WritableMap stats = Arguments.createMap();
+    stats.putDouble("requests", requests);
+    stats.putDouble("hits", hits);
+    stats.putDouble("misses", requests - hits);
+    stats.putDouble("scheduled", scheduled);
+    stats.putDouble("wasted", wasted);
+    stats.putDouble("invalidations", invalidations);
+    stats.putDouble("hitRate", requests > 0 ? (double) hits / requests : 0);
+    return stats;
+  }
+
+  void release() {
+    mResolver.unregisterContentObserver(mObserver);
+    invalidate();
+    mExecutor.shutdownNow();
+  }
+}
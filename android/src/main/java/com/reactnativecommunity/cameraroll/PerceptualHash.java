@@ -0,0 +1,228 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.content.ContentResolver;
+import android.content.res.AssetFileDescriptor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+/**
+ * 64 bit perceptual hashes of images, which stay close (in Hamming distance) when an image is
+ * re-encoded, resized or slightly edited. Hashes are computed from a small grid of luminance
+ * values, so images are decoded heavily subsampled.
+ *
+ * <ul>
+ *   <li>dHash compares each pixel of a 9x9 grid with its right neighbour. It is the cheapest.</li>
+ *   <li>
+ *     pHash thresholds the 8x8 lowest frequencies of the DCT of a 32x32 grid against their
+ *     median. It tolerates edits such as brightness and contrast changes better.
+ *   </li>
+ * </ul>
+ *
+ * Not thread safe: use one instance per thread.
+ */
+class PerceptualHash {
+
+  static final String ALGORITHM_DHASH = "dHash";
+  static final String ALGORITHM_PHASH = "pHash";
+
+  private static final int DHASH_SIZE = 9;
+  private static final int PHASH_SIZE = 32;
+  private static final int PHASH_FREQUENCIES = 8;
+  /** How much larger than the grid the decoded image should be, so that scaling it averages. */
+  private static final int OVERSAMPLING = 4;
+
+  /** COSINES[u][x] = cos((2x + 1) u pi / 2N), for the frequencies pHash keeps. */
+  private static final double[][] COSINES = new double[PHASH_FREQUENCIES][PHASH_SIZE];
+
+  static {
+    for (int u = 0; u < PHASH_FREQUENCIES; u++) {
+      for (int x = 0; x < PHASH_SIZE; x++) {
+        COSINES[u][x] = Math.cos((2 * x + 1) * u * Math.PI / (2 * PHASH_SIZE));
+      }
+    }
+  }
+
+  private final boolean mPHash;
+  private final int mSize;
+  private final BitmapFactory.Options mOptions = new BitmapFactory.Options();
+  private final int[] mPixels;
+  private final double[] mLuminance;
+  private final double[] mRotated;
+  private final double[] mRows;
+  private final double[] mFrequencies = new double[PHASH_FREQUENCIES * PHASH_FREQUENCIES];
+  private final double[] mSorted = new double[PHASH_FREQUENCIES * PHASH_FREQUENCIES - 1];
+
+  /**
+   * @throws IllegalArgumentException if algorithm is not one of the ALGORITHM_ constants
+   */
+  PerceptualHash(String algorithm) {
+    checkAlgorithm(algorithm);
+    mPHash = ALGORITHM_PHASH.equals(algorithm);
+    mSize = mPHash ? PHASH_SIZE : DHASH_SIZE;
+    mPixels = new int[mSize * mSize];
+    mLuminance = new double[mSize * mSize];
+    mRotated = new double[mSize * mSize];
+    mRows = new double[mSize * PHASH_FREQUENCIES];
+    mOptions.inPreferredConfig = Bitmap.Config.RGB_565;
+  }
+
+  /**
+   * @throws IllegalArgumentException if algorithm is not one of the ALGORITHM_ constants
+   */
+  static void checkAlgorithm(String algorithm) {
+    if (!ALGORITHM_PHASH.equals(algorithm) && !ALGORITHM_DHASH.equals(algorithm)) {
+      throw new IllegalArgumentException(
+              "Invalid algorithm: '" + algorithm + "'. Expected one of '"
+                      + ALGORITHM_DHASH + "' or '" + ALGORITHM_PHASH + "'.");
+    }
+  }
+
+  /**
+   * Decodes the image subsampled to a few times the size of the grid and hashes it.
+   *
+   * @param width       the width of the image as MediaStore knows it, or 0 if unknown
+   * @param height      the height of the image as MediaStore knows it, or 0 if unknown
+   * @param orientation the clockwise rotation to display the image upright, in degrees
+   * @throws IOException if the image can't be opened or decoded
+   */
+  long hash(ContentResolver resolver, Uri uri, int width, int height, int orientation)
+          throws IOException {
+    if (width <= 0 || height <= 0) {
+      mOptions.inJustDecodeBounds = true;
+      mOptions.inSampleSize = 1;
+      decode(resolver, uri);
+      width = mOptions.outWidth;
+      height = mOptions.outHeight;
+      if (width <= 0 || height <= 0) {
+        throw new IOException("Could not read the size of " + uri);
+      }
+    }
+
+    int sampleSize = 1;
+    int target = mSize * OVERSAMPLING;
+    while (Math.min(width, height) / (sampleSize * 2) >= target) {
+      sampleSize *= 2;
+    }
+    mOptions.inJustDecodeBounds = false;
+    mOptions.inSampleSize = sampleSize;
+    Bitmap bitmap = decode(resolver, uri);
+    if (bitmap == null) {
+      throw new IOException("Could not decode " + uri);
+    }
+    Bitmap grid = Bitmap.createScaledBitmap(bitmap, mSize, mSize, true);
+    grid.getPixels(mPixels, 0, mSize, 0, 0, mSize, mSize);
+    if (grid != bitmap) {
+      grid.recycle();
+    }
+    bitmap.recycle();
+    return hash(mPixels, orientation);
+  }
+
+  private @Nullable Bitmap decode(ContentResolver resolver, Uri uri) throws IOException {
+    try (AssetFileDescriptor descriptor = resolver.openAssetFileDescriptor(uri, "r")) {
+      if (descriptor == null) {
+        throw new IOException("Could not open " + uri);
+      }
+      return BitmapFactory.decodeFileDescriptor(descriptor.getFileDescriptor(), null, mOptions);
+    }
+  }
+
+  /**
+   * @param pixels      the ARGB pixels of the grid, row by row
+   * @param orientation the clockwise rotation to display the grid upright, in degrees
+   */
+  long hash(int[] pixels, int orientation) {
+    for (int i = 0; i < mLuminance.length; i++) {
+      int pixel = pixels[i];
+      mLuminance[i] = 0.299 * ((pixel >> 16) & 0xff)
+              + 0.587 * ((pixel >> 8) & 0xff)
+              + 0.114 * (pixel & 0xff);
+    }
+    double[] luminance = rotate(mLuminance, orientation);
+    return mPHash ? pHash(luminance) : dHash(luminance);
+  }
+
+  /**
+   * @return the grid turned upright, so that a rotated copy hashes like its original
+   */
+  private double[] rotate(double[] grid, int orientation) {
+    int turns = ((orientation / 90) % 4 + 4) % 4;
+    if (turns == 0) {
+      return grid;
+    }
+    int n = mSize;
+    for (int y = 0; y < n; y++) {
+      for (int x = 0; x < n; x++) {
+        int target;
+        if (turns == 1) {
+          target = x * n + (n - 1 - y);
+        } else if (turns == 2) {
+          target = (n - 1 - y) * n + (n - 1 - x);
+        } else {
+          target = (n - 1 - x) * n + y;
+        }
+        mRotated[target] = grid[y * n + x];
+      }
+    }
+    return mRotated;
+  }
+
+  private long dHash(double[] luminance) {
+    long hash = 0;
+    int bit = 0;
+    for (int y = 0; y < DHASH_SIZE - 1; y++) {
+      for (int x = 0; x < DHASH_SIZE - 1; x++) {
+        if (luminance[y * DHASH_SIZE + x] < luminance[y * DHASH_SIZE + x + 1]) {
+          hash |= 1L << bit;
+        }
+        bit++;
+      }
+    }
+    return hash;
+  }
+
+  private long pHash(double[] luminance) {
+    // The DCT is separable: transform the rows, then the columns of the result, keeping only the
+    // lowest frequencies of each.
+    for (int y = 0; y < PHASH_SIZE; y++) {
+      for (int u = 0; u < PHASH_FREQUENCIES; u++) {
+        double sum = 0;
+        for (int x = 0; x < PHASH_SIZE; x++) {
+          sum += luminance[y * PHASH_SIZE + x] * COSINES[u][x];
+        }
+        mRows[y * PHASH_FREQUENCIES + u] = sum;
+      }
+    }
+    for (int v = 0; v < PHASH_FREQUENCIES; v++) {
+      for (int u = 0; u < PHASH_FREQUENCIES; u++) {
+        double sum = 0;
+        for (int y = 0; y < PHASH_SIZE; y++) {
+          sum += mRows[y * PHASH_FREQUENCIES + u] * COSINES[v][y];
+        }
+        mFrequencies[v * PHASH_FREQUENCIES + u] = sum;
+      }
+    }
+
+    // The median leaves out the average brightness, which would skew it
+    System.arraycopy(mFrequencies, 1, mSorted, 0, mSorted.length);
+    Arrays.sort(mSorted);
+    double median = mSorted[mSorted.length / 2];
+    long hash = 0;
+    for (int i = 0; i < mFrequencies.length; i++) {
+      if (mFrequencies[i] > median) {
+        hash |= 1L << i;
+      }
+    }
+    return hash;
+  }
+
+  static int distance(long a, long b) {
+    return Long.bitCount(a ^ b);
+  }
+}
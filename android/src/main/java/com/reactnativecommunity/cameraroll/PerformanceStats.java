@@ -0,0 +1,244 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.os.SystemClock;
+import android.os.Trace;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timings and counters for the named stages of every CameraRoll operation, so that a slow call can
+ * be attributed to the MediaStore query, the cursor walk, the per asset file reads or handing the
+ * result to the bridge.
+ *
+ * Recording is off by default. While it is off, {@link #begin} returns after a single volatile
+ * read and the other methods do nothing. Stages can additionally be emitted as
+ * {@link android.os.Trace} sections, which show up in Perfetto and systrace captures.
+ *
+ * Usage:
+ * <pre>
+ * long start = PerformanceStats.begin(PerformanceStats.STAGE_PHOTOS_QUERY);
+ * try {
+ *   ...
+ * } finally {
+ *   PerformanceStats.end(PerformanceStats.STAGE_PHOTOS_QUERY, start);
+ * }
+ * </pre>
+ */
+class PerformanceStats {
+
+  /**
+   * {@code ContentResolver#query} for a getPhotos page. Cursors are filled lazily, so reading the
+   * rows out of MediaStore counts towards the convert stage.
+   */
+  static final int STAGE_PHOTOS_QUERY = 0;
+  /** Walking a getPhotos cursor into nodes, including the per asset stages below. */
+  static final int STAGE_PHOTOS_CONVERT = 1;
+  /** Handing a getPhotos response to the bridge. */
+  static final int STAGE_PHOTOS_RESOLVE = 2;
+  static final int STAGE_ALBUMS_QUERY = 3;
+  static final int STAGE_ALBUMS_CONVERT = 4;
+  static final int STAGE_HISTOGRAM_QUERY = 5;
+  static final int STAGE_HISTOGRAM_CONVERT = 6;
+  /** {@code ContentResolver#openAssetFileDescriptor} for a single asset. */
+  static final int STAGE_OPEN_ASSET = 7;
+  /** Reading duration, size or location of a video with {@code MediaMetadataRetriever}. */
+  static final int STAGE_METADATA_RETRIEVER = 8;
+  /** Reading the location of an image from its EXIF header. */
+  static final int STAGE_EXIF = 9;
+  /** Decoding the bounds of an image whose size MediaStore doesn't know. */
+  static final int STAGE_DECODE_BOUNDS = 10;
+  /** Copying a file into the media collection in saveToCameraRoll. */
+  static final int STAGE_SAVE_COPY = 11;
+  /** Inserting, publishing or scanning a saved file, up to the promise being settled. */
+  static final int STAGE_SAVE_PUBLISH = 12;
+  static final int STAGE_DELETE = 13;
+  /** Decoding and hashing one image in findDuplicates. */
+  static final int STAGE_DUPLICATES_HASH = 14;
+  /** Grouping the hashes of a findDuplicates run. */
+  static final int STAGE_DUPLICATES_GROUP = 15;
+  /** Reading and hashing the bytes of one asset in hashAssets. */
+  static final int STAGE_CONTENT_HASH = 16;
+  /** Copying one asset in exportAssets. */
+  static final int STAGE_EXPORT_COPY = 17;
+  /** Reading one byte range of an asset opened with openAssetReader. */
+  static final int STAGE_READ_CHUNK = 18;
+  /** Decoding, resizing and encoding an image in saveToCameraRoll, in place of the copy. */
+  static final int STAGE_SAVE_TRANSCODE = 19;
+  /** Decoding and scaling one frame in getVideoFrames. */
+  static final int STAGE_VIDEO_FRAME_EXTRACT = 20;
+  /** Encoding one frame of getVideoFrames to its file. */
+  static final int STAGE_VIDEO_FRAME_ENCODE = 21;
+  /** Reading the size of an image from its header, before falling back to decodeBounds. */
+  static final int STAGE_SNIFF_SIZE = 22;
+  /** Building or updating the index of searchAssets from MediaStore. */
+  static final int STAGE_SEARCH_INDEX = 23;
+  /** Looking up the matches of a searchAssets call in its index. */
+  static final int STAGE_SEARCH = 24;
+  /** Reading the coordinates of one asset for the index of getAssetsInRegion. */
+  static final int STAGE_LOCATION_INDEX = 25;
+  /** Looking up and clustering the assets of a getAssetsInRegion call in its index. */
+  static final int STAGE_REGION_QUERY = 26;
+  /**
+   * Not timed: rows counts the imageSize and playableDuration fields served from MediaStore
+   * columns, skips the ones that had to be read from the file, see {@link MetadataColumns}.
+   */
+  static final int STAGE_METADATA_COLUMNS = 27;
+
+  private static final String[] STAGE_NAMES = {
+          "getPhotos.query",
+          "getPhotos.convert",
+          "getPhotos.resolve",
+          "getAlbums.query",
+          "getAlbums.convert",
+          "getDateHistogram.query",
+          "getDateHistogram.convert",
+          "openAssetFileDescriptor",
+          "mediaMetadataRetriever",
+          "exif",
+          "decodeBounds",
+          "save.copy",
+          "save.publish",
+          "delete",
+          "findDuplicates.hash",
+          "findDuplicates.group",
+          "hashAssets.hash",
+          "exportAssets.copy",
+          "readChunk",
+          "save.transcode",
+          "getVideoFrames.extract",
+          "getVideoFrames.encode",
+          "sniffSize",
+          "searchAssets.index",
+          "searchAssets.search",
+          "getAssetsInRegion.index",
+          "getAssetsInRegion.query",
+          "metadataColumns",
+  };
+  private static final String[] SECTION_NAMES = new String[STAGE_NAMES.length];
+
+  static {
+    for (int i = 0; i < STAGE_NAMES.length; i++) {
+      SECTION_NAMES[i] = "CameraRoll." + STAGE_NAMES[i];
+    }
+  }
+
+  private static final int FIELD_CALLS = 0;
+  private static final int FIELD_TOTAL_NS = 1;
+  private static final int FIELD_MAX_NS = 2;
+  private static final int FIELD_ROWS = 3;
+  private static final int FIELD_BYTES = 4;
+  private static final int FIELD_FAILURES = 5;
+  private static final int FIELD_SKIPS = 6;
+  private static final int FIELD_COUNT = 7;
+
+  private static final AtomicLongArray sValues = new AtomicLongArray(STAGE_NAMES.length * FIELD_COUNT);
+
+  private static volatile boolean sEnabled;
+  private static volatile boolean sTrace;
+
+  private PerformanceStats() {
+  }
+
+  static void setEnabled(boolean enabled, boolean trace) {
+    sTrace = enabled && trace;
+    sEnabled = enabled;
+  }
+
+  /**
+   * @return a token to pass to {@link #end}, 0 when recording is off. Traced stages get a negative
+   * token, so that a section is closed exactly when it was opened even if tracing is toggled in
+   * between.
+   */
+  static long begin(int stage) {
+    if (!sEnabled) {
+      return 0;
+    }
+    if (sTrace) {
+      Trace.beginSection(SECTION_NAMES[stage]);
+      return -SystemClock.elapsedRealtimeNanos();
+    }
+    return SystemClock.elapsedRealtimeNanos();
+  }
+
+  /**
+   * Like {@link #begin}, for a stage that ends on another thread. Trace sections can't span
+   * threads, so the stage is timed but never traced.
+   */
+  static long beginAsync(int stage) {
+    return sEnabled ? SystemClock.elapsedRealtimeNanos() : 0;
+  }
+
+  static void end(int stage, long token) {
+    if (token == 0) {
+      return;
+    }
+    long start = token;
+    if (token < 0) {
+      Trace.endSection();
+      start = -token;
+    }
+    long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+    int base = stage * FIELD_COUNT;
+    sValues.incrementAndGet(base + FIELD_CALLS);
+    sValues.addAndGet(base + FIELD_TOTAL_NS, elapsed);
+    long max;
+    do {
+      max = sValues.get(base + FIELD_MAX_NS);
+    } while (elapsed > max && !sValues.compareAndSet(base + FIELD_MAX_NS, max, elapsed));
+  }
+
+  static void addRows(int stage, long rows) {
+    add(stage, FIELD_ROWS, rows);
+  }
+
+  static void addBytes(int stage, long bytes) {
+    add(stage, FIELD_BYTES, bytes);
+  }
+
+  static void addFailure(int stage) {
+    add(stage, FIELD_FAILURES, 1);
+  }
+
+  static void addSkip(int stage) {
+    add(stage, FIELD_SKIPS, 1);
+  }
+
+  private static void add(int stage, int field, long value) {
+    if (sEnabled) {
+      sValues.addAndGet(stage * FIELD_COUNT + field, value);
+    }
+  }
+
+  /**
+   * @param reset whether to zero every counter once read, e.g. to measure one screen at a time
+   */
+  static WritableMap getStats(boolean reset) {
+    WritableMap stages = Arguments.createMap();
+    for (int stage = 0; stage < STAGE_NAMES.length; stage++) {
+      int base = stage * FIELD_COUNT;
+      long[] values = new long[FIELD_COUNT];
+      for (int field = 0; field < FIELD_COUNT; field++) {
+        values[field] = reset ? sValues.getAndSet(base + field, 0) : sValues.get(base + field);
+      }
+      WritableMap stats = Arguments.createMap();
+      stats.putDouble("calls", values[FIELD_CALLS]);
+      stats.putDouble("totalNs", values[FIELD_TOTAL_NS]);
+      stats.putDouble("maxNs", values[FIELD_MAX_NS]);
+      stats.putDouble("averageNs", values[FIELD_CALLS] > 0 ? values[FIELD_TOTAL_NS] / values[FIELD_CALLS] : 0);
+      stats.putDouble("rows", values[FIELD_ROWS]);
+      stats.putDouble("bytes", values[FIELD_BYTES]);
+      stats.putDouble("failures", values[FIELD_FAILURES]);
+      stats.putDouble("skips", values[FIELD_SKIPS]);
+      stages.putMap(STAGE_NAMES[stage], stats);
+    }
+
+    WritableMap result = Arguments.createMap();
+    result.putBoolean("enabled", sEnabled);
+    result.putBoolean("trace", sTrace);
+    result.putMap("stages", stages);
+    return result;
+  }
+}
@@ -0,0 +1,352 @@
+package com.reactnativecommunity.cameraroll;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * An in-memory index of the file and album names of the media library, answering substring
+ * searches without going through MediaStore.
+ *
+ * Entries are kept as parallel arrays and only ever appended: updating an entry removes it and
+ * appends the new version. Each trigram (three consecutive characters) of a file name maps to the
+ * entries containing it, in increasing order, so a search for three characters or more only
+ * checks the entries found under every trigram of the query. Album names repeat across entries,
+ * so they are kept once in a table that is scanned instead. Removed entries are skipped until
+ * they make up half of the index, which is then rebuilt.
+ *
+ * Not thread safe.
+ */
+class SearchIndex {
+
+  /** The file name starts with the query. */
+  static final int SCORE_NAME_PREFIX = 3;
+  /** The query starts a word of the file name, e.g. "2023" in "IMG_2023.jpg". */
+  static final int SCORE_NAME_WORD = 2;
+  static final int SCORE_NAME = 1;
+  /** Only the album name contains the query. */
+  static final int SCORE_ALBUM = 0;
+
+  private static final int MIN_COMPACT_REMOVED = 1024;
+  private static final int INDEX_BITS = 24;
+  private static final int TIME_BITS = 31;
+
+  private int mSize;
+  private int mRemovedCount;
+  private long[] mIds = new long[64];
+  private long[] mTimes = new long[64];
+  private String[] mNames = new String[64];
+  private int[] mGroups = new int[64];
+  private final BitSet mRemoved = new BitSet();
+  private final Map<Long, Integer> mIndexes = new HashMap<>();
+
+  private final List<String> mGroupNames = new ArrayList<>();
+  private final Map<String, Integer> mGroupIndexes = new HashMap<>();
+
+  private final Map<Long, Postings> mPostings = new HashMap<>();
+
+  /** The entries containing a trigram, in increasing order. */
+  private static class Postings {
+    int[] entries = new int[4];
+    int size;
+
+    void add(int entry) {
+      if (size == entries.length) {
+        entries = Arrays.copyOf(entries, size * 2);
+      }
+      entries[size++] = entry;
+    }
+  }
+
+  /** A page of search results. */
+  static class Result {
+    /** The ids of the matches on the page, best first. */
+    final long[] ids;
+    /** The number of matches across all pages. */
+    final int total;
+
+    Result(long[] ids, int total) {
+      this.ids = ids;
+      this.total = total;
+    }
+  }
+
+  /**
+   * @return the number of entries in the index
+   */
+  int size() {
+    return mSize - mRemovedCount;
+  }
+
+  boolean contains(long id) {
+    return mIndexes.containsKey(id);
+  }
+
+  /**
+   * Adds an asset, or replaces the entry of an asset with the same id.
+   *
+   * @param time the time the asset was added, in seconds, to rank recent assets first
+   */
+  void put(long id, @Nullable String name, @Nullable String group, long time) {
+    remove(id);
+    if (mSize == 1 << INDEX_BITS) {
+      compact();
+    }
+    if (mSize == mIds.length) {
+      int capacity = mSize * 2;
+      mIds = Arrays.copyOf(mIds, capacity);
+      mTimes = Arrays.copyOf(mTimes, capacity);
+      mNames = Arrays.copyOf(mNames, capacity);
+      mGroups = Arrays.copyOf(mGroups, capacity);
+    }
+    int entry = mSize++;
+    String normalized = normalize(name);
+    mIds[entry] = id;
+    mTimes[entry] = time;
+    mNames[entry] = normalized;
+    mGroups[entry] = getGroup(group);
+    mIndexes.put(id, entry);
+    addTrigrams(entry, normalized);
+  }
+
+  void remove(long id) {
+    Integer entry = mIndexes.remove(id);
+    if (entry != null) {
+      mRemoved.set(entry);
+      mRemovedCount++;
+      mNames[entry] = null;
+      if (mRemovedCount >= MIN_COMPACT_REMOVED && mRemovedCount * 2 >= mSize) {
+        compact();
+      }
+    }
+  }
+
+  /**
+   * Removes the entries whose ids are not given, e.g. after assets were deleted.
+   *
+   * @param ids the ids to keep, in increasing order
+   */
+  void retain(long[] ids, int count) {
+    List<Long> removed = new ArrayList<>();
+    for (Long id : mIndexes.keySet()) {
+      if (Arrays.binarySearch(ids, 0, count, id) < 0) {
+        removed.add(id);
+      }
+    }
+    for (long id : removed) {
+      remove(id);
+    }
+  }
+
+  /**
+   * Finds the assets whose file or album name contains the query, ignoring case. Matches are
+   * ranked by where the query was found, see the SCORE_ constants, then most recent first.
+   *
+   * @param offset the number of matches to skip
+   * @param limit  the number of matches to return at most
+   */
+  Result search(String query, int offset, int limit) {
+    String normalized = normalize(query);
+    if (normalized.isEmpty()) {
+      return new Result(new long[0], 0);
+    }
+
+    long[] keys = new long[16];
+    int count = 0;
+    BitSet matched = new BitSet(mSize);
+    if (normalized.length() >= 3) {
+      int[] candidates = findCandidates(normalized);
+      for (int i = 0; candidates != null && i < candidates.length; i++) {
+        int entry = candidates[i];
+        int score = scoreName(mNames[entry], normalized);
+        if (score >= 0) {
+          matched.set(entry);
+          keys = append(keys, count++, getKey(entry, score));
+        }
+      }
+    } else {
+      for (int entry = 0; entry < mSize; entry++) {
+        if (mNames[entry] != null) {
+          int score = scoreName(mNames[entry], normalized);
+          if (score >= 0) {
+            matched.set(entry);
+            keys = append(keys, count++, getKey(entry, score));
+          }
+        }
+      }
+    }
+
+    boolean[] groups = new boolean[mGroupNames.size()];
+    boolean anyGroup = false;
+    for (int group = 0; group < groups.length; group++) {
+      groups[group] = mGroupNames.get(group).contains(normalized);
+      anyGroup |= groups[group];
+    }
+    if (anyGroup) {
+      for (int entry = 0; entry < mSize; entry++) {
+        if (mNames[entry] != null && groups[mGroups[entry]] && !matched.get(entry)) {
+          keys = append(keys, count++, getKey(entry, SCORE_ALBUM));
+        }
+      }
+    }
+
+    // Keys sort by score, then time, then entry, so the best matches come last
+    Arrays.sort(keys, 0, count);
+    int from = Math.max(0, count - offset - limit);
+    int to = Math.max(0, count - offset);
+    long[] ids = new long[to - from];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = mIds[(int) (keys[to - 1 - i] & ((1 << INDEX_BITS) - 1))];
+    }
+    return new Result(ids, count);
+  }
+
+  /**
+   * @return the live entries under every trigram of the query, in increasing order, or null if
+   * one of its trigrams is in no name
+   */
+  private @Nullable int[] findCandidates(String query) {
+    List<Postings> lists = new ArrayList<>();
+    for (int i = 0; i + 3 <= query.length(); i++) {
+      Postings postings = mPostings.get(getTrigram(query, i));
+      if (postings == null) {
+        return null;
+      }
+      if (!lists.contains(postings)) {
+        lists.add(postings);
+      }
+    }
+    // Intersect starting from the shortest list, so that the candidates only shrink
+    Postings shortest = lists.get(0);
+    for (Postings postings : lists) {
+      if (postings.size < shortest.size) {
+        shortest = postings;
+      }
+    }
+    int[] candidates = new int[shortest.size];
+    int count = 0;
+    for (int i = 0; i < shortest.size; i++) {
+      int entry = shortest.entries[i];
+      if (!mRemoved.get(entry)) {
+        candidates[count++] = entry;
+      }
+    }
+    for (Postings postings : lists) {
+      if (postings == shortest) {
+        continue;
+      }
+      int kept = 0;
+      int from = 0;
+      for (int i = 0; i < count; i++) {
+        int position = Arrays.binarySearch(postings.entries, from, postings.size, candidates[i]);
+        if (position >= 0) {
+          candidates[kept++] = candidates[i];
+          from = position + 1;
+        } else {
+          from = -position - 1;
+        }
+      }
+      count = kept;
+    }
+    return Arrays.copyOf(candidates, count);
+  }
+
+  /**
+   * @return the SCORE_ of the best place the query is found in the name, or -1 if it isn't
+   */
+  static int scoreName(String name, String query) {
+    int index = name.indexOf(query);
+    if (index < 0) {
+      return -1;
+    }
+    if (index == 0) {
+      return SCORE_NAME_PREFIX;
+    }
+    while (index > 0) {
+      if (!Character.isLetterOrDigit(name.charAt(index - 1))) {
+        return SCORE_NAME_WORD;
+      }
+      index = name.indexOf(query, index + 1);
+    }
+    return SCORE_NAME;
+  }
+
+  private long getKey(int entry, int score) {
+    long time = Math.max(0, Math.min(mTimes[entry], (1L << TIME_BITS) - 1));
+    return (long) score << (TIME_BITS + INDEX_BITS) | time << INDEX_BITS | entry;
+  }
+
+  private static long[] append(long[] keys, int count, long key) {
+    if (count == keys.length) {
+      keys = Arrays.copyOf(keys, count * 2);
+    }
+    keys[count] = key;
+    return keys;
+  }
+
+  private int getGroup(@Nullable String group) {
+    String normalized = normalize(group);
+    Integer index = mGroupIndexes.get(normalized);
+    if (index == null) {
+      index = mGroupNames.size();
+      mGroupNames.add(normalized);
+      mGroupIndexes.put(normalized, index);
+    }
+    return index;
+  }
+
+  private void addTrigrams(int entry, String name) {
+    for (int i = 0; i + 3 <= name.length(); i++) {
+      long trigram = getTrigram(name, i);
+      Postings postings = mPostings.get(trigram);
+      if (postings == null) {
+        postings = new Postings();
+        mPostings.put(trigram, postings);
+      }
+      // A trigram repeated in a name is only listed once
+      if (postings.size == 0 || postings.entries[postings.size - 1] != entry) {
+        postings.add(entry);
+      }
+    }
+  }
+
+  private static long getTrigram(String text, int index) {
+    return (long) text.charAt(index) << 32 | (long) text.charAt(index + 1) << 16 | text.charAt(index + 2);
+  }
+
+  /**
+   * Drops the removed entries, renumbering the others in the same order.
+   */
+  private void compact() {
+    int size = 0;
+    for (int entry = 0; entry < mSize; entry++) {
+      if (!mRemoved.get(entry)) {
+        mIds[size] = mIds[entry];
+        mTimes[size] = mTimes[entry];
+        mNames[size] = mNames[entry];
+        mGroups[size] = mGroups[entry];
+        size++;
+      }
+    }
+    Arrays.fill(mNames, size, mSize, null);
+    mSize = size;
+    mRemoved.clear();
+    mRemovedCount = 0;
+    mIndexes.clear();
+    mPostings.clear();
+    for (int entry = 0; entry < mSize; entry++) {
+      mIndexes.put(mIds[entry], entry);
+      addTrigrams(entry, mNames[entry]);
+    }
+  }
+
+  static String normalize(@Nullable String text) {
+    return text != null ? text.trim().toLowerCase(Locale.ROOT) : "";
+  }
+}
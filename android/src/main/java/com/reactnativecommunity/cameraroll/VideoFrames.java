@@ -0,0 +1,269 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.content.ContentResolver;
+import android.content.res.AssetFileDescriptor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Build;
+
+import com.facebook.common.logging.FLog;
+import com.facebook.react.common.ReactConstants;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+import javax.annotation.Nullable;
+
+/**
+ * Frames of one video at several times, e.g. for the thumbnails of a trim or scrub bar. The video
+ * is opened and handed to {@link MediaMetadataRetriever} once for all of them, frames are
+ * retrieved already scaled down, and encoded to JPEG files on other threads while the next frame
+ * is retrieved.
+ *
+ * Frame files are named after the asset, its modification date, the size, the seek option and
+ * the time, so a later call for the same frames reuses them, and a modified video gets new ones.
+ */
+class VideoFrames {
+
+  static final String OPTION_CLOSEST_SYNC = "closestSync";
+  static final String OPTION_CLOSEST = "closest";
+  static final String OPTION_PREVIOUS_SYNC = "previousSync";
+  static final String OPTION_NEXT_SYNC = "nextSync";
+
+  private static final int JPEG_QUALITY = 80;
+
+  static class Frame {
+    final long timeMs;
+    final @Nullable File file;
+    final int width;
+    final int height;
+    final boolean cached;
+    final @Nullable String error;
+
+    private Frame(long timeMs, @Nullable File file, int width, int height, boolean cached, @Nullable String error) {
+      this.timeMs = timeMs;
+      this.file = file;
+      this.width = width;
+      this.height = height;
+      this.cached = cached;
+      this.error = error;
+    }
+  }
+
+  private final File mDirectory;
+  private final long mId;
+  private final long mDateModified;
+  private final int mMaxSize;
+  private final String mOption;
+
+  /**
+   * @param directory    where frame files are kept
+   * @param dateModified the DATE_MODIFIED of the video, so that frames of an older version aren't
+   *                     reused
+   * @param maxSize      the largest width or height of a frame
+   * @param option       one of the OPTION_ constants
+   */
+  VideoFrames(File directory, long id, long dateModified, int maxSize, String option) {
+    mDirectory = directory;
+    mId = id;
+    mDateModified = dateModified;
+    mMaxSize = maxSize;
+    mOption = option;
+  }
+
+  /**
+   * @throws IllegalArgumentException if option is not one of the OPTION_ constants
+   */
+  static int getRetrieverOption(String option) {
+    switch (option) {
+      case OPTION_CLOSEST_SYNC:
+        return MediaMetadataRetriever.OPTION_CLOSEST_SYNC;
+      case OPTION_CLOSEST:
+        return MediaMetadataRetriever.OPTION_CLOSEST;
+      case OPTION_PREVIOUS_SYNC:
+        return MediaMetadataRetriever.OPTION_PREVIOUS_SYNC;
+      case OPTION_NEXT_SYNC:
+        return MediaMetadataRetriever.OPTION_NEXT_SYNC;
+      default:
+        throw new IllegalArgumentException(
+                "Invalid option: '" + option + "'. Expected one of '" + OPTION_CLOSEST_SYNC
+                        + "', '" + OPTION_CLOSEST + "', '" + OPTION_PREVIOUS_SYNC + "' or '"
+                        + OPTION_NEXT_SYNC + "'.");
+    }
+  }
+
+  private File getFile(long timeMs) {
+    return new File(
+            mDirectory,
+            mId + "-" + mDateModified + "-" + mMaxSize + "-" + mOption + "-" + timeMs + ".jpg");
+  }
+
+  /**
+   * @param timesMs  the times of the frames, in milliseconds from the start of the video
+   * @param encoders the pool to encode frames on
+   * @param workers  the number of threads of encoders
+   * @return the frames, in the order of timesMs
+   * @throws IOException if the video can't be opened
+   */
+  Frame[] get(ContentResolver resolver, Uri uri, long[] timesMs, ExecutorService encoders, int workers)
+          throws IOException, InterruptedException {
+    Frame[] frames = new Frame[timesMs.length];
+    List<Integer> missing = new ArrayList<>();
+    BitmapFactory.Options bounds = new BitmapFactory.Options();
+    bounds.inJustDecodeBounds = true;
+    for (int i = 0; i < timesMs.length; i++) {
+      File file = getFile(timesMs[i]);
+      if (file.isFile()) {
+        BitmapFactory.decodeFile(file.getPath(), bounds);
+        if (bounds.outWidth > 0) {
+          frames[i] = new Frame(timesMs[i], file, bounds.outWidth, bounds.outHeight, true, null);
+          continue;
+        }
+      }
+      missing.add(i);
+    }
+    if (missing.isEmpty()) {
+      return frames;
+    }
+    if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+      throw new IOException("Could not create " + mDirectory);
+    }
+    // In time order, so that the decoder mostly seeks forward
+    Collections.sort(missing, (a, b) -> Long.compare(timesMs[a], timesMs[b]));
+
+    long openStart = PerformanceStats.begin(PerformanceStats.STAGE_OPEN_ASSET);
+    AssetFileDescriptor descriptor;
+    try {
+      descriptor = resolver.openAssetFileDescriptor(uri, "r");
+    } finally {
+      PerformanceStats.end(PerformanceStats.STAGE_OPEN_ASSET, openStart);
+    }
+    if (descriptor == null) {
+      throw new IOException("Could not open " + uri);
+    }
+    MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+    // Bounds the decoded frames waiting to be encoded
+    Semaphore pending = new Semaphore(workers * 2);
+    CountDownLatch encoded = new CountDownLatch(missing.size());
+    try {
+      if (descriptor.getDeclaredLength() != AssetFileDescriptor.UNKNOWN_LENGTH) {
+        retriever.setDataSource(
+                descriptor.getFileDescriptor(),
+                descriptor.getStartOffset(),
+                descriptor.getDeclaredLength());
+      } else {
+        retriever.setDataSource(descriptor.getFileDescriptor());
+      }
+      int option = getRetrieverOption(mOption);
+      for (int i : missing) {
+        long timeMs = timesMs[i];
+        Bitmap bitmap = null;
+        String error = null;
+        long start = PerformanceStats.begin(PerformanceStats.STAGE_VIDEO_FRAME_EXTRACT);
+        try {
+          bitmap = getFrame(retriever, timeMs * 1000, option);
+          PerformanceStats.addRows(PerformanceStats.STAGE_VIDEO_FRAME_EXTRACT, 1);
+        } catch (RuntimeException e) {
+          error = e.getMessage();
+        } finally {
+          PerformanceStats.end(PerformanceStats.STAGE_VIDEO_FRAME_EXTRACT, start);
+        }
+        if (bitmap == null) {
+          PerformanceStats.addFailure(PerformanceStats.STAGE_VIDEO_FRAME_EXTRACT);
+          frames[i] = new Frame(
+                  timeMs, null, 0, 0, false, error != null ? error : "No frame at " + timeMs + " ms");
+          encoded.countDown();
+          continue;
+        }
+
+        pending.acquire();
+        final Bitmap frame = bitmap;
+        encoders.execute(() -> {
+          try {
+            frames[i] = encode(frame, timeMs);
+          } finally {
+            frame.recycle();
+            pending.release();
+            encoded.countDown();
+          }
+        });
+      }
+      encoded.await();
+    } finally {
+      try {
+        retriever.release();
+      } catch (Exception e) { // Use general Exception here, see: https://developer.android.com/reference/android/media/MediaMetadataRetriever#release()
+        // Do nothing. We can't handle this, and this is usually a system problem
+      }
+      descriptor.close();
+    }
+    return frames;
+  }
+
+  private @Nullable Bitmap getFrame(MediaMetadataRetriever retriever, long timeUs, int option) {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+      // Scaled while decoding, without a full size bitmap
+      return retriever.getScaledFrameAtTime(timeUs, option, mMaxSize, mMaxSize);
+    }
+    Bitmap frame = retriever.getFrameAtTime(timeUs, option);
+    if (frame == null) {
+      return null;
+    }
+    int longest = Math.max(frame.getWidth(), frame.getHeight());
+    if (longest <= mMaxSize) {
+      return frame;
+    }
+    float scale = (float) mMaxSize / longest;
+    Bitmap scaled = Bitmap.createScaledBitmap(
+            frame,
+            Math.max(1, Math.round(frame.getWidth() * scale)),
+            Math.max(1, Math.round(frame.getHeight() * scale)),
+            true);
+    if (scaled != frame) {
+      frame.recycle();
+    }
+    return scaled;
+  }
+
+  /**
+   * Writes to a temporary file renamed once complete, so that concurrent calls for the same frame
+   * never read a partial file.
+   */
+  private Frame encode(Bitmap bitmap, long timeMs) {
+    File file = getFile(timeMs);
+    long start = PerformanceStats.begin(PerformanceStats.STAGE_VIDEO_FRAME_ENCODE);
+    File temporary = null;
+    try {
+      temporary = File.createTempFile(file.getName(), ".tmp", mDirectory);
+      try (OutputStream output = new FileOutputStream(temporary)) {
+        if (!bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, output)) {
+          throw new IOException("Could not encode the frame at " + timeMs + " ms");
+        }
+      }
+      if (!temporary.renameTo(file)) {
+        throw new IOException("Could not create " + file);
+      }
+      PerformanceStats.addRows(PerformanceStats.STAGE_VIDEO_FRAME_ENCODE, 1);
+      PerformanceStats.addBytes(PerformanceStats.STAGE_VIDEO_FRAME_ENCODE, file.length());
+      return new Frame(timeMs, file, bitmap.getWidth(), bitmap.getHeight(), false, null);
+    } catch (IOException e) {
+      PerformanceStats.addFailure(PerformanceStats.STAGE_VIDEO_FRAME_ENCODE);
+      if (temporary != null && temporary.exists() && !temporary.delete()) {
+        FLog.w(ReactConstants.TAG, "Could not delete " + temporary);
+      }
+      return new Frame(timeMs, null, 0, 0, false, e.getMessage());
+    } finally {
+      PerformanceStats.end(PerformanceStats.STAGE_VIDEO_FRAME_ENCODE, start);
+    }
+  }
+}
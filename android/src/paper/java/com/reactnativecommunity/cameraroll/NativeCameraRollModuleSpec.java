@@ -50,4 +50,64 @@ public abstract class NativeCameraRollModuleSpec extends ReactContextBaseJavaMod
   @ReactMethod
   @DoNotStrip
   public abstract void getPhotoThumbnail(String internalID, ReadableMap options, Promise promise);
+
+  @ReactMethod
+  @DoNotStrip
+  public abstract void getDateHistogram(ReadableMap params, Promise promise);
+
+  @ReactMethod
+  @DoNotStrip
+  public abstract void getPrefetchStats(Promise promise);
+
+  @ReactMethod
+  @DoNotStrip
+  public abstract void searchAssets(String query, ReadableMap options, Promise promise);
+
+  @ReactMethod
+  @DoNotStrip
+  public abstract void getAssetsInRegion(ReadableMap params, Promise promise);
+
+  @ReactMethod
+  @DoNotStrip
+  public abstract void getVolumes(Promise promise);
+
+  @ReactMethod
+  @DoNotStrip
+  public abstract void setPerformanceStatsEnabled(boolean enabled, boolean trace);
+
+  @ReactMethod
+  @DoNotStrip
+  public abstract void getPerformanceStats(ReadableMap params, Promise promise);
+
+  @ReactMethod
+  @DoNotStrip
+  public abstract void findDuplicates(ReadableMap params, Promise promise);
+
+  @ReactMethod
+  @DoNotStrip
+  public abstract void hashAssets(ReadableArray ids, ReadableMap options, Promise promise);
+
+  @ReactMethod
+  @DoNotStrip
+  public abstract void exportAssets(ReadableArray ids, String destDir, ReadableMap options, Promise promise);
+
+  @ReactMethod
+  @DoNotStrip
+  public abstract void cancelExportAssets(String requestId);
+
+  @ReactMethod
+  @DoNotStrip
+  public abstract void openAssetReader(String id, Promise promise);
+
+  @ReactMethod
+  @DoNotStrip
+  public abstract void readChunk(double handle, double offset, double length, Promise promise);
+
+  @ReactMethod
+  @DoNotStrip
+  public abstract void closeAssetReader(double handle, Promise promise);
+
+  @ReactMethod
+  @DoNotStrip
+  public abstract void getVideoFrames(String id, ReadableArray timestampsMs, ReadableMap options, Promise promise);
 }
@@ -0,0 +1,62 @@
+package com.reactnativecommunity.cameraroll;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks XXH64 against the reference implementation, and that hashing a stream piece by piece
+ * gives the hash of all of it at once.
+ */
+public class ContentHashTest {
+
+  @Test
+  public void matchesKnownHashes() {
+    assertEquals(0xef46db3751d8e999L, hash(""));
+    assertEquals(0xd24ec4f1a98c6e5bL, hash("a"));
+    assertEquals(0x44bc2cf5ad770999L, hash("abc"));
+    assertEquals(0xfbcea83c8a378bf1L, hash("Nobody inspects the spammish repetition"));
+  }
+
+  @Test
+  public void hashesStreamsLikeWholeInputs() {
+    byte[] input = new byte[1000];
+    new Random(42).nextBytes(input);
+    ContentHash.XxHash64 xxHash = new ContentHash.XxHash64();
+    for (int length : new int[]{0, 1, 4, 8, 31, 32, 33, 64, 100, 1000}) {
+      xxHash.reset();
+      xxHash.update(ByteBuffer.wrap(input, 0, length));
+      long expected = xxHash.digest();
+
+      // Splits across the 32 byte stripes and the 8 and 4 byte tail reads
+      for (int piece : new int[]{1, 3, 7, 13, 32, 33}) {
+        xxHash.reset();
+        for (int offset = 0; offset < length; offset += piece) {
+          xxHash.update(ByteBuffer.wrap(input, offset, Math.min(piece, length - offset)));
+        }
+        assertEquals("length " + length + " in pieces of " + piece, expected, xxHash.digest());
+      }
+    }
+  }
+
+  @Test
+  public void leavesTheByteOrderOfInputsAlone() {
+    ByteBuffer input = ByteBuffer.wrap(
+            "Nobody inspects the spammish repetition".getBytes(StandardCharsets.US_ASCII));
+    ContentHash.XxHash64 xxHash = new ContentHash.XxHash64();
+    xxHash.update(input);
+    assertEquals(0xfbcea83c8a378bf1L, xxHash.digest());
+    assertEquals(ByteOrder.BIG_ENDIAN, input.order());
+  }
+
+  private static long hash(String input) {
+    ContentHash.XxHash64 xxHash = new ContentHash.XxHash64();
+    xxHash.update(ByteBuffer.wrap(input.getBytes(StandardCharsets.US_ASCII)));
+    return xxHash.digest();
+  }
+}
@@ -0,0 +1,128 @@
+package com.reactnativecommunity.cameraroll;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Groups hashes up to the distance given and no further, transitively, leaving out assets without
+ * a near duplicate.
+ */
+public class DuplicateGrouperTest {
+
+  @Test
+  public void groupsUpToTheDistanceGiven() {
+    // 6 differing bits, one in each of 6 of the 7 chunks at distance 6
+    long sixApart = 1L | 1L << 10 | 1L << 19 | 1L << 28 | 1L << 37 | 1L << 46;
+    long sevenApart = sixApart | 1L << 63;
+    assertGroups(group(new long[]{0, sixApart}, 6), new int[]{0, 1});
+    assertGroups(group(new long[]{0, sevenApart}, 6));
+    assertGroups(group(new long[]{0, sevenApart}, 7), new int[]{0, 1});
+  }
+
+  @Test
+  public void groupsIdenticalHashesAtDistanceZero() {
+    assertGroups(group(new long[]{5, 6, 5, 5}, 0), new int[]{0, 2, 3});
+  }
+
+  @Test
+  public void groupsChainsTransitively() {
+    long a = 0;
+    long b = 0x3FL;
+    long c = 0xFFFL;
+    // a and c are 12 bits apart, but both within 6 of b
+    assertGroups(group(new long[]{c, a, b}, 6), new int[]{0, 1, 2});
+    assertGroups(group(new long[]{a, c}, 6));
+  }
+
+  @Test
+  public void leavesSingletonsOut() {
+    long[] hashes = {0xFFFFFFFF00000000L, 0, 0x00000000FFFFFFFFL, 1, 0x5555555555555555L};
+    assertGroups(group(hashes, 4), new int[]{1, 3});
+  }
+
+  @Test
+  public void findsTheSameGroupsAsComparingEveryPair() {
+    Random random = new Random(42);
+    for (int run = 0; run < 20; run++) {
+      int maxDistance = random.nextInt(12);
+      long[] hashes = new long[300];
+      for (int i = 0; i < hashes.length; i++) {
+        if (i > 0 && random.nextBoolean()) {
+          // A near duplicate of an earlier hash
+          hashes[i] = hashes[random.nextInt(i)];
+          for (int flips = random.nextInt(maxDistance + 3); flips > 0; flips--) {
+            hashes[i] ^= 1L << random.nextInt(Long.SIZE);
+          }
+        } else {
+          hashes[i] = random.nextLong();
+        }
+      }
+      List<int[]> expected = groupByEveryPair(hashes, maxDistance);
+      List<int[]> actual = DuplicateGrouper.group(hashes, hashes.length, maxDistance);
+      assertTrue(expected.size() > 0);
+      assertGroups(actual, expected.toArray(new int[0][]));
+    }
+  }
+
+  private static List<int[]> group(long[] hashes, int maxDistance) {
+    return DuplicateGrouper.group(hashes, hashes.length, maxDistance);
+  }
+
+  private static void assertGroups(List<int[]> actual, int[]... expected) {
+    assertEquals(expected.length, actual.size());
+    for (int i = 0; i < expected.length; i++) {
+      assertArrayEquals(expected[i], actual.get(i));
+    }
+  }
+
+  /**
+   * @return the groups found by labelling the connected components of every pair within reach
+   */
+  private static List<int[]> groupByEveryPair(long[] hashes, int maxDistance) {
+    int[] labels = new int[hashes.length];
+    for (int i = 0; i < labels.length; i++) {
+      labels[i] = i;
+    }
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (int a = 0; a < hashes.length; a++) {
+        for (int b = a + 1; b < hashes.length; b++) {
+          if (Long.bitCount(hashes[a] ^ hashes[b]) <= maxDistance && labels[a] != labels[b]) {
+            int label = Math.min(labels[a], labels[b]);
+            labels[a] = label;
+            labels[b] = label;
+            changed = true;
+          }
+        }
+      }
+    }
+    List<int[]> groups = new ArrayList<>();
+    for (int first = 0; first < hashes.length; first++) {
+      if (labels[first] != first) {
+        continue;
+      }
+      List<Integer> members = new ArrayList<>();
+      for (int i = first; i < hashes.length; i++) {
+        if (labels[i] == first) {
+          members.add(i);
+        }
+      }
+      if (members.size() > 1) {
+        int[] group = new int[members.size()];
+        for (int i = 0; i < group.length; i++) {
+          group[i] = members.get(i);
+        }
+        groups.add(group);
+      }
+    }
+    return groups;
+  }
+}
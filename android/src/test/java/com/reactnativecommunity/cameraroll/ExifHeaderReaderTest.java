@@ -0,0 +1,286 @@
+package com.reactnativecommunity.cameraroll;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Reads tags out of JPEGs written here, with the segments a camera puts before and after EXIF.
+ */
+public class ExifHeaderReaderTest {
+
+  private static final double DELTA = 1e-9;
+  private static final int IMAGE_DATA_LENGTH = 1 << 20;
+
+  @Test
+  public void readsEveryTag() throws IOException {
+    for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+      ExifHeaderReader.Result result = new ExifHeaderReader.Result();
+      assertTrue(new ExifHeaderReader().read(
+              new ByteArrayInputStream(jpeg(camera(order))), ExifHeaderReader.ALL_FIELDS, result));
+
+      assertEquals("Google", result.make);
+      assertEquals("Pixel 7", result.model);
+      assertEquals(1 / 120.0, result.exposureTime, DELTA);
+      assertEquals(1.85, result.fNumber, DELTA);
+      assertEquals(400, result.iso);
+      assertEquals(6.81, result.focalLength, DELTA);
+      assertEquals("2023-05-01T12:34:56+02:00", result.getCaptureTime());
+      assertEquals(48 + 51 / 60.0 + 29.5 / 3600, result.latitude, DELTA);
+      assertEquals(-(2 + 17 / 60.0 + 40.2 / 3600), result.longitude, DELTA);
+      assertEquals(-3.5, result.altitude, DELTA);
+    }
+  }
+
+  @Test
+  public void readsOnlyTheRequestedTags() throws IOException {
+    ExifHeaderReader.Result result = new ExifHeaderReader.Result();
+    assertTrue(new ExifHeaderReader().read(
+            new ByteArrayInputStream(jpeg(camera(ByteOrder.BIG_ENDIAN))),
+            ExifHeaderReader.FIELD_LOCATION | ExifHeaderReader.FIELD_MODEL,
+            result));
+
+    assertNull(result.make);
+    assertEquals("Pixel 7", result.model);
+    assertTrue(Double.isNaN(result.exposureTime));
+    assertEquals(-1, result.iso);
+    assertNull(result.getCaptureTime());
+    assertTrue(result.hasLocation());
+  }
+
+  @Test
+  public void stopsAfterTheExifSegment() throws IOException {
+    byte[] jpeg = jpeg(camera(ByteOrder.BIG_ENDIAN));
+    CountingInputStream input = new CountingInputStream(new ByteArrayInputStream(jpeg));
+    new ExifHeaderReader().read(input, ExifHeaderReader.ALL_FIELDS, new ExifHeaderReader.Result());
+    assertTrue(input.count < 2 * 1024);
+    assertTrue(jpeg.length > IMAGE_DATA_LENGTH);
+  }
+
+  @Test
+  public void returnsFalseForOtherFormats() throws IOException {
+    byte[] png = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    assertFalse(new ExifHeaderReader().read(
+            new ByteArrayInputStream(png), ExifHeaderReader.ALL_FIELDS, new ExifHeaderReader.Result()));
+  }
+
+  @Test
+  public void readsNothingWithoutExif() throws IOException {
+    ExifHeaderReader.Result result = new ExifHeaderReader.Result();
+    result.make = "stale";
+    assertTrue(new ExifHeaderReader().read(
+            new ByteArrayInputStream(jpeg(null)), ExifHeaderReader.ALL_FIELDS, result));
+    assertNull(result.make);
+    assertFalse(result.hasLocation());
+  }
+
+  @Test
+  public void ignoresOffsetsOutOfTheSegment() throws IOException {
+    Tiff tiff = new Tiff(ByteOrder.LITTLE_ENDIAN);
+    tiff.ifd0.add(new Entry(0x010F, 2, 40, 0x7FFFFFF0));
+    tiff.ifd0.add(new Entry(0x8769, 4, 1, 0x7FFFFFF0));
+    tiff.ifd0.add(new Entry(0x8825, 4, 1, -8));
+    ExifHeaderReader.Result result = new ExifHeaderReader.Result();
+    assertTrue(new ExifHeaderReader().read(
+            new ByteArrayInputStream(jpeg(tiff.toBytes())), ExifHeaderReader.ALL_FIELDS, result));
+    assertNull(result.make);
+    assertFalse(result.hasLocation());
+
+    // Cut short in the middle of the EXIF segment
+    byte[] jpeg = jpeg(camera(ByteOrder.BIG_ENDIAN));
+    byte[] truncated = new byte[300];
+    System.arraycopy(jpeg, 0, truncated, 0, truncated.length);
+    assertTrue(new ExifHeaderReader().read(
+            new ByteArrayInputStream(truncated), ExifHeaderReader.ALL_FIELDS, result));
+    assertNull(result.make);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsUnknownTags() {
+    ExifHeaderReader.getField("shutterCount");
+  }
+
+  private static byte[] camera(ByteOrder order) {
+    Tiff tiff = new Tiff(order);
+    tiff.ifd0.add(tiff.ascii(0x010F, "Google"));
+    tiff.ifd0.add(tiff.ascii(0x0110, "Pixel 7"));
+    Entry exifPointer = new Entry(0x8769, 4, 1, 0);
+    Entry gpsPointer = new Entry(0x8825, 4, 1, 0);
+    tiff.ifd0.add(exifPointer);
+    tiff.ifd0.add(gpsPointer);
+
+    List<Entry> exif = new ArrayList<>();
+    exif.add(tiff.rationals(0x829A, 1, 120));
+    exif.add(tiff.rationals(0x829D, 185, 100));
+    exif.add(new Entry(0x8827, 3, 1, order == ByteOrder.BIG_ENDIAN ? 400 << 16 : 400));
+    exif.add(tiff.ascii(0x9003, "2023:05:01 12:34:56"));
+    exif.add(tiff.ascii(0x9011, "+02:00"));
+    exif.add(tiff.rationals(0x920A, 681, 100));
+
+    List<Entry> gps = new ArrayList<>();
+    gps.add(tiff.ascii(1, "N"));
+    gps.add(tiff.rationals(2, 48, 1, 51, 1, 295, 10));
+    gps.add(tiff.ascii(3, "W"));
+    gps.add(tiff.rationals(4, 2, 1, 17, 1, 402, 10));
+    gps.add(new Entry(5, 1, 1, order == ByteOrder.BIG_ENDIAN ? 1 << 24 : 1));
+    gps.add(tiff.rationals(6, 7, 2));
+
+    exifPointer.value = tiff.ifd(exif);
+    gpsPointer.value = tiff.ifd(gps);
+    return tiff.toBytes();
+  }
+
+  /**
+   * @return a JPEG with a JFIF segment, an XMP segment, the EXIF segment if any and image data
+   */
+  private static byte[] jpeg(byte[] tiff) throws IOException {
+    ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+    jpeg.write(new byte[]{(byte) 0xFF, (byte) 0xD8});
+    segment(jpeg, 0xE0, "JFIF\0".getBytes(StandardCharsets.US_ASCII), new byte[500]);
+    segment(jpeg, 0xE1, "http://ns.adobe.com/xap/1.0/\0".getBytes(StandardCharsets.US_ASCII), new byte[200]);
+    if (tiff != null) {
+      segment(jpeg, 0xE1, "Exif\0\0".getBytes(StandardCharsets.US_ASCII), tiff);
+    }
+    segment(jpeg, 0xDB, new byte[0], new byte[64]);
+    jpeg.write(new byte[]{(byte) 0xFF, (byte) 0xDA, 0, 2});
+    jpeg.write(new byte[IMAGE_DATA_LENGTH]);
+    jpeg.write(new byte[]{(byte) 0xFF, (byte) 0xD9});
+    return jpeg.toByteArray();
+  }
+
+  private static void segment(ByteArrayOutputStream jpeg, int marker, byte[] header, byte[] body)
+          throws IOException {
+    int length = 2 + header.length + body.length;
+    jpeg.write(new byte[]{(byte) 0xFF, (byte) marker, (byte) (length >> 8), (byte) length});
+    jpeg.write(header);
+    jpeg.write(body);
+  }
+
+  private static class Entry {
+    final int tag;
+    final int type;
+    final int count;
+    int value;
+
+    Entry(int tag, int type, int count, int value) {
+      this.tag = tag;
+      this.type = type;
+      this.count = count;
+      this.value = value;
+    }
+  }
+
+  /**
+   * Lays out IFD0 first and then the data and the IFDs in the order they are added.
+   */
+  private static class Tiff {
+    final ByteOrder order;
+    final List<Entry> ifd0 = new ArrayList<>();
+    final ByteArrayOutputStream data = new ByteArrayOutputStream();
+    /** Where data starts: after the header and an IFD0 of up to 8 entries. */
+    static final int DATA_START = 8 + 2 + 8 * 12 + 4;
+
+    Tiff(ByteOrder order) {
+      this.order = order;
+    }
+
+    Entry ascii(int tag, String value) {
+      byte[] bytes = (value + "\0").getBytes(StandardCharsets.US_ASCII);
+      if (bytes.length <= 4) {
+        byte[] inline = new byte[4];
+        System.arraycopy(bytes, 0, inline, 0, bytes.length);
+        return new Entry(tag, 2, bytes.length, ByteBuffer.wrap(inline).order(order).getInt());
+      }
+      return new Entry(tag, 2, bytes.length, append(bytes));
+    }
+
+    Entry rationals(int tag, int... values) {
+      ByteBuffer buffer = ByteBuffer.allocate(values.length * 4).order(order);
+      for (int value : values) {
+        buffer.putInt(value);
+      }
+      return new Entry(tag, 5, values.length / 2, append(buffer.array()));
+    }
+
+    int ifd(List<Entry> entries) {
+      return append(ifdBytes(entries));
+    }
+
+    private byte[] ifdBytes(List<Entry> entries) {
+      ByteBuffer buffer = ByteBuffer.allocate(2 + entries.size() * 12 + 4).order(order);
+      buffer.putShort((short) entries.size());
+      for (Entry entry : entries) {
+        buffer.putShort((short) entry.tag);
+        buffer.putShort((short) entry.type);
+        buffer.putInt(entry.count);
+        buffer.putInt(entry.value);
+      }
+      buffer.putInt(0);
+      return buffer.array();
+    }
+
+    private int append(byte[] bytes) {
+      int offset = DATA_START + data.size();
+      data.write(bytes, 0, bytes.length);
+      return offset;
+    }
+
+    byte[] toBytes() {
+      ByteBuffer buffer = ByteBuffer.allocate(DATA_START + data.size()).order(order);
+      buffer.put(order == ByteOrder.BIG_ENDIAN ? new byte[]{'M', 'M'} : new byte[]{'I', 'I'});
+      buffer.putShort((short) 42);
+      buffer.putInt(8);
+      buffer.put(ifdBytes(ifd0));
+      buffer.position(DATA_START);
+      buffer.put(data.toByteArray());
+      return buffer.array();
+    }
+  }
+
+  private static class CountingInputStream extends FilterInputStream {
+    long count;
+
+    CountingInputStream(InputStream input) {
+      super(input);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        count++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      int n = super.read(buffer, offset, length);
+      if (n > 0) {
+        count += n;
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      count += skipped;
+      return skipped;
+    }
+  }
+}
@@ -0,0 +1,498 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.content.ContentProvider;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.ParcelFileDescriptor;
+import android.provider.MediaStore;
+import android.provider.MediaStore.Files.FileColumns;
+import android.text.TextUtils;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Random;
+
+import javax.annotation.Nullable;
+
+/**
+ * A MediaStore stand-in backed by an in-memory SQLite table, for running CameraRollModule off
+ * device. It serves the files, images and video collections of the external volume and their
+ * items, with the columns, selection, sort order and paging (both the {@code QUERY_ARG_LIMIT}
+ * bundle and the legacy {@code limit=} query parameter) the module relies on. Rows live on the
+ * primary volume unless moved with {@link #moveToVolume}; like MediaStore, the "external" volume
+ * covers all of them.
+ *
+ * Register it with {@code Robolectric.setupContentProvider(FakeMediaProvider.class,
+ * MediaStore.AUTHORITY)} and fill it with {@link #seed}.
+ */
+public class FakeMediaProvider extends ContentProvider {
+
+  private static final String TABLE = "files";
+  /** Where the bytes of a row live, since _data holds a device path. Not a MediaStore column. */
+  private static final String COLUMN_BACKING_FILE = "backing_file";
+
+  /** The first buckets get most of the media, like on a real phone; the rest are a long tail. */
+  private static final String[] BUCKET_NAMES = {
+          "Camera", "Screenshots", "WhatsApp Images", "Download", "WhatsApp Video", "Instagram",
+          "Telegram", "Snapchat", "Pictures", "Movies",
+  };
+  private static final int BUCKET_COUNT = 60;
+  private static final long SEEDED_YEARS_MS = 5L * 365 * 24 * 60 * 60 * 1000;
+  private static final int IMAGE_POOL_SIZE = 32;
+  private static final int VIDEO_POOL_SIZE = 8;
+
+  private SQLiteDatabase mDatabase;
+  private File mMediaDir;
+
+  @Override
+  public boolean onCreate() {
+    mDatabase = SQLiteDatabase.create(null);
+    mDatabase.execSQL("CREATE TABLE " + TABLE + " ("
+            + FileColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + FileColumns.MEDIA_TYPE + " INTEGER, "
+            + FileColumns.BUCKET_ID + " TEXT, "
+            + FileColumns.BUCKET_DISPLAY_NAME + " TEXT, "
+            + FileColumns.MIME_TYPE + " TEXT, "
+            + FileColumns.DATE_TAKEN + " INTEGER, "
+            + FileColumns.DATE_ADDED + " INTEGER, "
+            + FileColumns.DATE_MODIFIED + " INTEGER, "
+            + FileColumns.WIDTH + " INTEGER, "
+            + FileColumns.HEIGHT + " INTEGER, "
+            + FileColumns.SIZE + " INTEGER, "
+            + FileColumns.DATA + " TEXT, "
+            + FileColumns.ORIENTATION + " INTEGER, "
+            + MetadataColumns.DURATION + " INTEGER, "
+            + MetadataColumns.RESOLUTION + " TEXT, "
+            + FileColumns.IS_PENDING + " INTEGER DEFAULT 0, "
+            + MediaSubTypes.IS_DOWNLOAD + " INTEGER DEFAULT 0, "
+            + FileColumns.RELATIVE_PATH + " TEXT, "
+            + FileColumns.DISPLAY_NAME + " TEXT, "
+            + FileColumns.VOLUME_NAME + " TEXT DEFAULT '" + MediaStore.VOLUME_EXTERNAL_PRIMARY + "', "
+            + COLUMN_BACKING_FILE + " TEXT)");
+    // The indexes MediaStore keeps on the columns getPhotos filters and sorts on
+    mDatabase.execSQL("CREATE INDEX bucket_index ON " + TABLE + " (" + FileColumns.BUCKET_ID + ")");
+    mDatabase.execSQL("CREATE INDEX media_type_index ON " + TABLE + " (" + FileColumns.MEDIA_TYPE + ")");
+    mDatabase.execSQL("CREATE INDEX date_added_index ON " + TABLE + " (" + FileColumns.DATE_ADDED + ")");
+    mDatabase.execSQL("CREATE INDEX date_taken_index ON " + TABLE + " (" + FileColumns.DATE_TAKEN + ")");
+    mDatabase.execSQL("CREATE INDEX date_modified_index ON " + TABLE + " (" + FileColumns.DATE_MODIFIED + ")");
+    mMediaDir = new File(getContext().getCacheDir(), "fake-media");
+    return true;
+  }
+
+  /**
+   * Adds media rows, spread over the last five years and over buckets with a Zipf-like
+   * distribution. Rows share a small pool of generated files, so the files stay cheap to create
+   * while per asset reads still hit real bytes. About one image in fifty has no recorded size, as
+   * MediaStore leaves it for files it hasn't scanned yet, so that fetching sizes decodes the file.
+   *
+   * @param images     the number of image rows
+   * @param videos     the number of video rows
+   * @param randomSeed makes runs comparable with each other
+   * @return the time (in milliseconds) rows are dated back from
+   */
+  public long seed(int images, int videos, long randomSeed) throws IOException {
+    Random random = new Random(randomSeed);
+    File[] imagePool = new File[IMAGE_POOL_SIZE];
+    for (int i = 0; i < imagePool.length; i++) {
+      imagePool[i] = writeFile("pool/IMG_" + i + ".jpg", createJpeg(random, 4032, 3024));
+    }
+    File[] videoPool = new File[VIDEO_POOL_SIZE];
+    for (int i = 0; i < videoPool.length; i++) {
+      videoPool[i] = writeFile("pool/VID_" + i + ".mp4", createMp4(random));
+    }
+
+    double[] bucketWeights = new double[BUCKET_COUNT];
+    double totalWeight = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      totalWeight += 1 / Math.pow(i + 1, 1.1);
+      bucketWeights[i] = totalWeight;
+    }
+
+    long now = System.currentTimeMillis();
+    SQLiteStatement insert = mDatabase.compileStatement("INSERT INTO " + TABLE + " ("
+            + FileColumns.MEDIA_TYPE + ", " + FileColumns.BUCKET_ID + ", "
+            + FileColumns.BUCKET_DISPLAY_NAME + ", " + FileColumns.MIME_TYPE + ", "
+            + FileColumns.DATE_TAKEN + ", " + FileColumns.DATE_ADDED + ", "
+            + FileColumns.DATE_MODIFIED + ", " + FileColumns.WIDTH + ", " + FileColumns.HEIGHT + ", "
+            + FileColumns.SIZE + ", " + FileColumns.DATA + ", " + FileColumns.ORIENTATION + ", "
+            + FileColumns.RELATIVE_PATH + ", " + FileColumns.DISPLAY_NAME + ", "
+            + COLUMN_BACKING_FILE + ", " + MetadataColumns.DURATION + ", " + MetadataColumns.RESOLUTION
+            + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+    mDatabase.beginTransaction();
+    try {
+      for (int i = 0; i < images + videos; i++) {
+        boolean isVideo = random.nextInt(images + videos) < videos;
+        int bucket = pickBucket(bucketWeights, random.nextDouble() * totalWeight);
+        String bucketName = bucket < BUCKET_NAMES.length ? BUCKET_NAMES[bucket] : "Folder " + bucket;
+        String relativePath = (bucket == 0 ? "DCIM/" : "Pictures/") + bucketName + "/";
+        String displayName = (isVideo ? "VID_" : "IMG_") + i + (isVideo ? ".mp4" : ".jpg");
+        File file = isVideo ? videoPool[i % VIDEO_POOL_SIZE] : imagePool[i % IMAGE_POOL_SIZE];
+        long taken = now - (long) (random.nextDouble() * SEEDED_YEARS_MS);
+        long added = (taken + random.nextInt(10 * 60 * 1000)) / 1000;
+        boolean unscanned = !isVideo && random.nextInt(50) == 0;
+
+        insert.clearBindings();
+        insert.bindLong(1, isVideo ? FileColumns.MEDIA_TYPE_VIDEO : FileColumns.MEDIA_TYPE_IMAGE);
+        insert.bindString(2, Integer.toString(relativePath.toLowerCase().hashCode()));
+        insert.bindString(3, bucketName);
+        insert.bindString(4, isVideo ? "video/mp4" : "image/jpeg");
+        // Screenshots and downloads often have no date taken
+        if (bucket != 1 && bucket != 3) {
+          insert.bindLong(5, taken);
+        }
+        insert.bindLong(6, added);
+        insert.bindLong(7, added);
+        insert.bindLong(8, unscanned ? 0 : isVideo ? 1920 : 4032);
+        insert.bindLong(9, unscanned ? 0 : isVideo ? 1080 : 3024);
+        insert.bindLong(10, file.length());
+        insert.bindString(11, "/storage/emulated/0/" + relativePath + displayName);
+        insert.bindLong(12, isVideo ? 0 : random.nextInt(4) * 90);
+        insert.bindString(13, relativePath);
+        insert.bindString(14, displayName);
+        insert.bindString(15, file.getAbsolutePath());
+        if (isVideo) {
+          insert.bindLong(16, (1 + i % 120) * 1000L);
+          insert.bindString(17, "1920x1080");
+        }
+        insert.executeInsert();
+      }
+      mDatabase.setTransactionSuccessful();
+    } finally {
+      mDatabase.endTransaction();
+      insert.close();
+    }
+    return now;
+  }
+
+  /**
+   * Moves every nth row to another volume, the way an SD card holds part of a library.
+   *
+   * @return the number of rows moved
+   */
+  public int moveToVolume(String volume, int everyNth) {
+    ContentValues values = new ContentValues();
+    values.put(FileColumns.VOLUME_NAME, volume);
+    return mDatabase.update(TABLE, values, FileColumns._ID + " % " + everyNth + " = 0", null);
+  }
+
+  /**
+   * @return a JPEG of the given size holding only its headers and some filler, which is all a
+   * bounds decode reads
+   */
+  static byte[] createJpeg(Random random, int width, int height) {
+    byte[] filler = new byte[1024 + random.nextInt(7 * 1024)];
+    random.nextBytes(filler);
+    byte[] jpeg = new byte[2 + 18 + 19 + 4 + filler.length + 2];
+    int i = 0;
+    // SOI, then an APP0 JFIF segment
+    for (int b : new int[]{0xFF, 0xD8, 0xFF, 0xE0, 0x00, 0x10, 'J', 'F', 'I', 'F', 0x00, 0x01, 0x01,
+            0x00, 0x00, 0x01, 0x00, 0x01, 0x00, 0x00}) {
+      jpeg[i++] = (byte) b;
+    }
+    // SOF0 with three components
+    for (int b : new int[]{0xFF, 0xC0, 0x00, 0x11, 0x08, height >> 8, height, width >> 8, width,
+            0x03, 0x01, 0x22, 0x00, 0x02, 0x11, 0x01, 0x03, 0x11, 0x01}) {
+      jpeg[i++] = (byte) b;
+    }
+    // A comment segment carrying the filler
+    int commentLength = filler.length + 2;
+    for (int b : new int[]{0xFF, 0xFE, commentLength >> 8, commentLength}) {
+      jpeg[i++] = (byte) b;
+    }
+    System.arraycopy(filler, 0, jpeg, i, filler.length);
+    i += filler.length;
+    jpeg[i++] = (byte) 0xFF;
+    jpeg[i] = (byte) 0xD9;
+    return jpeg;
+  }
+
+  /**
+   * @return an MP4 made of an ftyp box and an mdat box of filler
+   */
+  static byte[] createMp4(Random random) {
+    byte[] filler = new byte[16 * 1024 + random.nextInt(48 * 1024)];
+    random.nextBytes(filler);
+    byte[] mp4 = new byte[24 + 8 + filler.length];
+    int i = 0;
+    for (int b : new int[]{0x00, 0x00, 0x00, 0x18, 'f', 't', 'y', 'p', 'i', 's', 'o', 'm', 0x00, 0x00,
+            0x02, 0x00, 'i', 's', 'o', 'm', 'm', 'p', '4', '2'}) {
+      mp4[i++] = (byte) b;
+    }
+    int mdatLength = filler.length + 8;
+    for (int b : new int[]{mdatLength >> 24, mdatLength >> 16, mdatLength >> 8, mdatLength,
+            'm', 'd', 'a', 't'}) {
+      mp4[i++] = (byte) b;
+    }
+    System.arraycopy(filler, 0, mp4, i, filler.length);
+    return mp4;
+  }
+
+  private static int pickBucket(double[] cumulativeWeights, double value) {
+    for (int i = 0; i < cumulativeWeights.length; i++) {
+      if (value < cumulativeWeights[i]) {
+        return i;
+      }
+    }
+    return cumulativeWeights.length - 1;
+  }
+
+  private File writeFile(String path, byte[] content) throws IOException {
+    File file = new File(mMediaDir, path);
+    if (!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()) {
+      throw new IOException("Could not create " + file.getParent());
+    }
+    try (OutputStream output = new FileOutputStream(file)) {
+      output.write(content);
+    }
+    return file;
+  }
+
+  @Override
+  public @Nullable Cursor query(
+          Uri uri,
+          @Nullable String[] projection,
+          @Nullable Bundle queryArgs,
+          @Nullable CancellationSignal cancellationSignal) {
+    if (queryArgs == null) {
+      return query(uri, projection, null, null, null);
+    }
+    String limit = null;
+    if (queryArgs.containsKey(ContentResolver.QUERY_ARG_LIMIT)) {
+      limit = queryArgs.getInt(ContentResolver.QUERY_ARG_OFFSET, 0) + ","
+              + queryArgs.getInt(ContentResolver.QUERY_ARG_LIMIT);
+    }
+    return query(
+            uri,
+            projection,
+            queryArgs.getString(ContentResolver.QUERY_ARG_SQL_SELECTION),
+            queryArgs.getStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS),
+            queryArgs.getString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER),
+            limit);
+  }
+
+  @Override
+  public @Nullable Cursor query(
+          Uri uri,
+          @Nullable String[] projection,
+          @Nullable String selection,
+          @Nullable String[] selectionArgs,
+          @Nullable String sortOrder) {
+    // The legacy paging passes "limit=offset,count", which SQLite takes as is
+    return query(uri, projection, selection, selectionArgs, sortOrder, uri.getQueryParameter("limit"));
+  }
+
+  private Cursor query(
+          Uri uri,
+          @Nullable String[] projection,
+          @Nullable String selection,
+          @Nullable String[] selectionArgs,
+          @Nullable String sortOrder,
+          @Nullable String limit) {
+    Cursor cursor = mDatabase.query(
+            TABLE,
+            projection,
+            scope(uri, selection),
+            selectionArgs,
+            null,
+            null,
+            sortOrder,
+            limit);
+    cursor.setNotificationUri(getContext().getContentResolver(), uri);
+    return cursor;
+  }
+
+  /**
+   * @return the selection restricted to the rows the given collection or item URI covers. Like
+   * MediaStore, pending rows are only visible through their item URI.
+   */
+  private static String scope(Uri uri, @Nullable String selection) {
+    long id = getId(uri);
+    String scope;
+    if (id >= 0) {
+      scope = FileColumns._ID + " = " + id;
+    } else {
+      scope = FileColumns.IS_PENDING + " = 0";
+      int mediaType = getMediaType(uri);
+      if (mediaType != FileColumns.MEDIA_TYPE_NONE) {
+        scope += " AND " + FileColumns.MEDIA_TYPE + " = " + mediaType;
+      }
+      String volume = uri.getPathSegments().get(0);
+      if (!MediaStore.VOLUME_EXTERNAL.equals(volume)) {
+        scope += " AND " + FileColumns.VOLUME_NAME + " = " + DatabaseUtils.sqlEscapeString(volume);
+      }
+    }
+    return and(scope, selection);
+  }
+
+  private static String and(String scope, @Nullable String selection) {
+    return TextUtils.isEmpty(selection) ? scope : scope + " AND (" + selection + ")";
+  }
+
+  /**
+   * @return the id of an item URI, -1 for a collection
+   */
+  private static long getId(Uri uri) {
+    String last = uri.getLastPathSegment();
+    if (last == null || !TextUtils.isDigitsOnly(last)) {
+      return -1;
+    }
+    return Long.parseLong(last);
+  }
+
+  private static int getMediaType(Uri uri) {
+    List<String> segments = uri.getPathSegments();
+    String type = segments.size() > 1 ? segments.get(1) : null;
+    if ("images".equals(type)) {
+      return FileColumns.MEDIA_TYPE_IMAGE;
+    } else if ("video".equals(type)) {
+      return FileColumns.MEDIA_TYPE_VIDEO;
+    }
+    return FileColumns.MEDIA_TYPE_NONE;
+  }
+
+  @Override
+  public @Nullable String getType(Uri uri) {
+    long id = getId(uri);
+    if (id < 0) {
+      return null;
+    }
+    try (Cursor cursor = query(uri, new String[]{FileColumns.MIME_TYPE}, null, null, null)) {
+      return cursor.moveToFirst() ? cursor.getString(0) : null;
+    }
+  }
+
+  @Override
+  public @Nullable Uri insert(Uri uri, @Nullable ContentValues values) {
+    ContentValues row = values != null ? new ContentValues(values) : new ContentValues();
+    int mediaType = getMediaType(uri);
+    String relativePath = row.getAsString(FileColumns.RELATIVE_PATH);
+    if (relativePath == null) {
+      relativePath = mediaType == FileColumns.MEDIA_TYPE_VIDEO ? "Movies/" : "Pictures/";
+    } else if (!relativePath.endsWith("/")) {
+      relativePath += "/";
+    }
+    String displayName = row.getAsString(FileColumns.DISPLAY_NAME);
+    if (displayName == null) {
+      displayName = Long.toString(System.nanoTime());
+    }
+    String[] folders = relativePath.split("/");
+    long now = System.currentTimeMillis();
+
+    row.put(FileColumns.MEDIA_TYPE, mediaType);
+    row.put(FileColumns.RELATIVE_PATH, relativePath);
+    row.put(FileColumns.BUCKET_ID, Integer.toString(relativePath.toLowerCase().hashCode()));
+    row.put(FileColumns.BUCKET_DISPLAY_NAME, folders[folders.length - 1]);
+    row.put(FileColumns.DATE_TAKEN, now);
+    row.put(FileColumns.DATE_ADDED, now / 1000);
+    row.put(FileColumns.DATE_MODIFIED, now / 1000);
+    row.put(FileColumns.WIDTH, 0);
+    row.put(FileColumns.HEIGHT, 0);
+    row.put(FileColumns.SIZE, 0);
+    long id = mDatabase.insert(TABLE, null, row);
+    if (id < 0) {
+      return null;
+    }
+    // Saved media never share a file, even when saved under the same name
+    ContentValues paths = new ContentValues();
+    paths.put(FileColumns.DATA, "/storage/emulated/0/" + relativePath + displayName);
+    paths.put(COLUMN_BACKING_FILE, new File(mMediaDir, "saved/" + id + "_" + displayName).getAbsolutePath());
+    mDatabase.update(TABLE, paths, FileColumns._ID + " = " + id, null);
+
+    Uri itemUri = ContentUris.withAppendedId(uri, id);
+    getContext().getContentResolver().notifyChange(itemUri, null);
+    return itemUri;
+  }
+
+  @Override
+  public int update(
+          Uri uri,
+          @Nullable ContentValues values,
+          @Nullable String selection,
+          @Nullable String[] selectionArgs) {
+    if (values == null || values.size() == 0) {
+      return 0;
+    }
+    int count = mDatabase.update(TABLE, values, scopeWritable(uri, selection), selectionArgs);
+    if (count > 0) {
+      getContext().getContentResolver().notifyChange(uri, null);
+    }
+    return count;
+  }
+
+  @Override
+  public int delete(Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
+    int count = mDatabase.delete(TABLE, scopeWritable(uri, selection), selectionArgs);
+    if (count > 0) {
+      getContext().getContentResolver().notifyChange(uri, null);
+    }
+    return count;
+  }
+
+  /**
+   * Like {@link #scope}, but including pending rows, which their owner may update or delete.
+   */
+  private static String scopeWritable(Uri uri, @Nullable String selection) {
+    long id = getId(uri);
+    int mediaType = getMediaType(uri);
+    String scope;
+    if (id >= 0) {
+      scope = FileColumns._ID + " = " + id;
+    } else if (mediaType != FileColumns.MEDIA_TYPE_NONE) {
+      scope = FileColumns.MEDIA_TYPE + " = " + mediaType;
+    } else {
+      scope = "1";
+    }
+    return and(scope, selection);
+  }
+
+  @Override
+  public @Nullable ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+    long id = getId(uri);
+    if (id < 0) {
+      throw new FileNotFoundException("Not an item: " + uri);
+    }
+    String path;
+    try (Cursor cursor = mDatabase.query(
+            TABLE,
+            new String[]{COLUMN_BACKING_FILE},
+            FileColumns._ID + " = " + id,
+            null,
+            null,
+            null,
+            null)) {
+      if (!cursor.moveToFirst() || cursor.isNull(0)) {
+        throw new FileNotFoundException("No such item: " + uri);
+      }
+      path = cursor.getString(0);
+    }
+    File file = new File(path);
+    int fileMode = ParcelFileDescriptor.parseMode(mode);
+    // Also set for MODE_READ_WRITE
+    if ((fileMode & ParcelFileDescriptor.MODE_WRITE_ONLY) != 0) {
+      File parent = file.getParentFile();
+      if (!parent.isDirectory() && !parent.mkdirs()) {
+        throw new FileNotFoundException("Could not create " + parent);
+      }
+    }
+    return ParcelFileDescriptor.open(file, fileMode);
+  }
+
+  /**
+   * @return the number of rows, pending ones included
+   */
+  public long count() {
+    return DatabaseUtils.queryNumEntries(mDatabase, TABLE);
+  }
+}
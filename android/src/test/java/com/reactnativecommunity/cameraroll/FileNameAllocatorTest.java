@@ -0,0 +1,103 @@
+package com.reactnativecommunity.cameraroll;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Saves of many files under the same name into one directory, as a burst of pre-Q saves to an
+ * album does.
+ */
+public class FileNameAllocatorTest {
+
+  private static final int CONCURRENT_SAVES = 1000;
+  private static final int THREADS = 16;
+  private static final long TIMEOUT_SECONDS = 60;
+
+  @Rule
+  public TemporaryFolder mFolder = new TemporaryFolder();
+
+  @Test
+  public void concurrentSavesGetDistinctNames() throws Exception {
+    File directory = mFolder.newFolder("Album");
+    FileNameAllocator allocator = new FileNameAllocator();
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<File>> saves = new ArrayList<>();
+    try {
+      for (int i = 0; i < CONCURRENT_SAVES; i++) {
+        saves.add(executor.submit((Callable<File>) () -> {
+          start.await();
+          return allocator.create(directory, "image.jpg");
+        }));
+      }
+      start.countDown();
+      Set<String> names = new HashSet<>();
+      for (Future<File> save : saves) {
+        File file = save.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertEquals(directory, file.getParentFile());
+        assertTrue(file.isFile());
+        assertTrue("Handed out twice: " + file, names.add(file.getName()));
+      }
+      // Suffixes are handed out without gaps
+      assertTrue(names.contains("image.jpg"));
+      for (int i = 0; i < CONCURRENT_SAVES - 1; i++) {
+        assertTrue(names.contains("image_" + i + ".jpg"));
+      }
+      assertEquals(CONCURRENT_SAVES, directory.list().length);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void continuesAfterExistingFiles() throws IOException {
+    File directory = mFolder.newFolder("DCIM");
+    touch(directory, "image.jpg");
+    touch(directory, "image_4.jpg");
+    touch(directory, "image_x.jpg");
+    touch(directory, "video.mp4");
+    touch(directory, "README");
+
+    FileNameAllocator allocator = new FileNameAllocator();
+    assertEquals("image_5.jpg", allocator.create(directory, "image.jpg").getName());
+    assertEquals("image_6.jpg", allocator.create(directory, "image.jpg").getName());
+    assertEquals("image_4_0.jpg", allocator.create(directory, "image_4.jpg").getName());
+    assertEquals("image.png", allocator.create(directory, "image.png").getName());
+    assertEquals("video_0.mp4", allocator.create(directory, "video.mp4").getName());
+    assertEquals("README_0", allocator.create(directory, "README").getName());
+    assertEquals("photo.jpg", allocator.create(directory, "photo.jpg").getName());
+  }
+
+  @Test
+  public void skipsNamesTakenSinceListed() throws IOException {
+    File directory = mFolder.newFolder("Pictures");
+    FileNameAllocator allocator = new FileNameAllocator();
+    assertEquals("image.jpg", allocator.create(directory, "image.jpg").getName());
+
+    // Created by another app after the directory was listed
+    touch(directory, "image_0.jpg");
+    touch(directory, "image_1.jpg");
+    assertEquals("image_2.jpg", allocator.create(directory, "image.jpg").getName());
+  }
+
+  private static void touch(File directory, String name) throws IOException {
+    assertTrue(new File(directory, name).createNewFile());
+  }
+}
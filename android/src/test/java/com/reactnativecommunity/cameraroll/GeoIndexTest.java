@@ -0,0 +1,170 @@
+package com.reactnativecommunity.cameraroll;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Box queries and clusters of located assets, checked against a scan of every asset.
+ */
+public class GeoIndexTest {
+
+  private static final int ASSETS = 20_000;
+
+  @Test
+  public void findsTheAssetsInsideBoxes() {
+    Random random = new Random(42);
+    double[] latitudes = new double[ASSETS];
+    double[] longitudes = new double[ASSETS];
+    GeoIndex index = createIndex(random, latitudes, longitudes);
+
+    for (int run = 0; run < 500; run++) {
+      // From whole continents down to a few streets
+      double size = Math.pow(10, 1 - random.nextInt(5)) * random.nextDouble();
+      double minLat = -90 + random.nextDouble() * 180;
+      double maxLat = Math.min(90, minLat + size);
+      double minLng = -180 + random.nextDouble() * 360;
+      double maxLng = minLng + size * 2;
+      if (maxLng > 180) {
+        maxLng -= 360;
+      }
+      assertArrayEquals(
+              scan(latitudes, longitudes, minLat, maxLat, minLng, maxLng),
+              ids(index, index.query(minLat, maxLat, minLng, maxLng)));
+    }
+    assertEquals(ASSETS, index.query(-90, 90, -180, 180).length);
+  }
+
+  @Test
+  public void findsAssetsOnTheBounds() {
+    GeoIndex index = new GeoIndex(
+            new long[]{1, 2, 3, 4},
+            new double[]{-90, 90, 0, 45.5},
+            new double[]{-180, 180, 0, -73.25},
+            new long[]{1, 2, 3, 4},
+            new boolean[4],
+            4);
+    assertArrayEquals(new long[]{1, 2, 3, 4}, ids(index, index.query(-90, 90, -180, 180)));
+    assertArrayEquals(new long[]{4}, ids(index, index.query(45.5, 45.5, -73.25, -73.25)));
+    assertArrayEquals(new long[]{1, 2}, ids(index, index.query(-90, 90, 179, -179)));
+  }
+
+  @Test
+  public void indexesVideoGeoTagsWithTheirSigns() {
+    String[] geoTags = {
+            "+37.4219-122.0840/", "-33.8688+151.2093+058.000/", "-22.9068-043.1729/", "+48.8584+002.2945/",
+    };
+    double[] latitudes = new double[geoTags.length];
+    double[] longitudes = new double[geoTags.length];
+    double[] latLong = new double[2];
+    for (int i = 0; i < geoTags.length; i++) {
+      assertTrue(MediaRowCodec.parseGeoTag(geoTags[i], latLong));
+      latitudes[i] = latLong[0];
+      longitudes[i] = latLong[1];
+    }
+    assertArrayEquals(new double[]{37.4219, -33.8688, -22.9068, 48.8584}, latitudes, 0);
+    assertArrayEquals(new double[]{-122.084, 151.2093, -43.1729, 2.2945}, longitudes, 0);
+    assertFalse(MediaRowCodec.parseGeoTag("+37.4219/", latLong));
+    assertFalse(MediaRowCodec.parseGeoTag("", latLong));
+
+    GeoIndex index = new GeoIndex(
+            new long[]{1, 2, 3, 4}, latitudes, longitudes, new long[]{1, 2, 3, 4}, new boolean[4], 4);
+    // One box per quarter of the world
+    assertArrayEquals(new long[]{1}, ids(index, index.query(0, 90, -180, 0)));
+    assertArrayEquals(new long[]{2}, ids(index, index.query(-90, 0, 0, 180)));
+    assertArrayEquals(new long[]{3}, ids(index, index.query(-90, 0, -180, 0)));
+    assertArrayEquals(new long[]{4}, ids(index, index.query(0, 90, 0, 180)));
+  }
+
+  @Test
+  public void clustersByTile() {
+    Random random = new Random(7);
+    double[] latitudes = new double[ASSETS];
+    double[] longitudes = new double[ASSETS];
+    GeoIndex index = createIndex(random, latitudes, longitudes);
+    int[] entries = index.query(-60, 60, -120, 120);
+
+    for (int zoom = 0; zoom <= 12; zoom += 3) {
+      List<GeoIndex.Cluster> clusters = index.cluster(entries, zoom);
+      int total = 0;
+      double tileWidth = 360.0 / (1 << zoom);
+      for (GeoIndex.Cluster cluster : clusters) {
+        total += cluster.count;
+        // The centroid and the most recent asset fall in the same tile
+        int representative = cluster.representative;
+        assertEquals(
+                (long) ((cluster.longitude + 180) / tileWidth),
+                (long) ((index.getLongitude(representative) + 180) / tileWidth));
+        assertTrue(clusters.get(0).count >= cluster.count);
+      }
+      assertEquals(entries.length, total);
+    }
+    assertEquals(1, index.cluster(entries, 0).size());
+  }
+
+  @Test
+  public void sortsMostRecentFirst() {
+    Random random = new Random(3);
+    GeoIndex index = createIndex(random, new double[ASSETS], new double[ASSETS]);
+    int[] entries = index.query(-45, 45, -90, 90);
+    index.sortByTime(entries);
+    for (int i = 1; i < entries.length; i++) {
+      assertTrue(index.getTime(entries[i - 1]) >= index.getTime(entries[i]));
+    }
+  }
+
+  private static GeoIndex createIndex(Random random, double[] latitudes, double[] longitudes) {
+    long[] ids = new long[ASSETS];
+    long[] times = new long[ASSETS];
+    for (int i = 0; i < ASSETS; i++) {
+      ids[i] = i;
+      // Half of the assets around a few cities, the others anywhere
+      if (i % 2 == 0) {
+        int city = random.nextInt(4);
+        latitudes[i] = -30 + city * 20 + random.nextGaussian() * 0.05;
+        longitudes[i] = -150 + city * 100 + random.nextGaussian() * 0.05;
+      } else {
+        latitudes[i] = -90 + random.nextDouble() * 180;
+        longitudes[i] = -180 + random.nextDouble() * 360;
+      }
+      times[i] = random.nextInt(2_000_000_000);
+    }
+    return new GeoIndex(ids, latitudes, longitudes, times, new boolean[ASSETS], ASSETS);
+  }
+
+  private static long[] scan(
+          double[] latitudes,
+          double[] longitudes,
+          double minLat,
+          double maxLat,
+          double minLng,
+          double maxLng) {
+    long[] ids = new long[latitudes.length];
+    int count = 0;
+    for (int i = 0; i < latitudes.length; i++) {
+      boolean inLongitude = minLng <= maxLng
+              ? longitudes[i] >= minLng && longitudes[i] <= maxLng
+              : longitudes[i] >= minLng || longitudes[i] <= maxLng;
+      if (latitudes[i] >= minLat && latitudes[i] <= maxLat && inLongitude) {
+        ids[count++] = i;
+      }
+    }
+    return Arrays.copyOf(ids, count);
+  }
+
+  private static long[] ids(GeoIndex index, int[] entries) {
+    long[] ids = new long[entries.length];
+    for (int i = 0; i < entries.length; i++) {
+      ids[i] = index.getId(entries[i]);
+    }
+    Arrays.sort(ids);
+    return ids;
+  }
+}
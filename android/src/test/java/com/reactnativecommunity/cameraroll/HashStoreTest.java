@@ -0,0 +1,83 @@
+package com.reactnativecommunity.cameraroll;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Finds entries before and after they are saved, and only for the version of the asset they were
+ * put for.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class HashStoreTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final long[] mOut = new long[1];
+  private final byte[] mScratch = new byte[8];
+
+  @Test
+  public void findsEntriesBeforeTheyAreSaved() throws IOException {
+    HashStore store = newStore();
+    store.putLong(1, 100, 10, 0x0102030405060708L);
+    assertTrue(store.getLong(1, 100, 10, mOut, mScratch));
+    assertEquals(0x0102030405060708L, mOut[0]);
+    assertFalse(store.getLong(1, 101, 10, mOut, mScratch));
+    assertFalse(store.getLong(1, 100, 11, mOut, mScratch));
+    assertFalse(store.getLong(2, 100, 10, mOut, mScratch));
+  }
+
+  @Test
+  public void findsTheEntryPutLast() throws IOException {
+    HashStore store = newStore();
+    store.putLong(1, 100, 10, 1);
+    store.save();
+    store.putLong(1, 200, 20, 2);
+    store.putLong(1, 300, 30, 3);
+    // An older version of the asset is no longer found once another was put
+    assertFalse(store.getLong(1, 100, 10, mOut, mScratch));
+    assertTrue(store.getLong(1, 300, 30, mOut, mScratch));
+    assertEquals(3, mOut[0]);
+
+    store.save();
+    assertFalse(store.getLong(1, 200, 20, mOut, mScratch));
+    assertTrue(store.getLong(1, 300, 30, mOut, mScratch));
+    assertEquals(3, mOut[0]);
+  }
+
+  @Test
+  public void readsSavedEntriesBack() throws IOException {
+    HashStore store = newStore();
+    for (long id = 50; id > 0; id--) {
+      store.putLong(id, id * 1000, id, -id);
+    }
+    assertFalse(store.isWorthSaving(51));
+    assertTrue(store.isWorthSaving(50));
+    store.save();
+    assertFalse(store.isWorthSaving(1));
+
+    HashStore loaded = newStore();
+    for (long id = 1; id <= 50; id++) {
+      assertTrue(loaded.getLong(id, id * 1000, id, mOut, mScratch));
+      assertEquals(-id, mOut[0]);
+    }
+  }
+
+  private HashStore newStore() {
+    HashStore store = new HashStore(new File(folder.getRoot(), "store"), 8);
+    store.load();
+    return store;
+  }
+}
@@ -0,0 +1,288 @@
+package com.reactnativecommunity.cameraroll;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the sniffed sizes against a corpus of images: JPEG, PNG and GIF written by ImageIO at a
+ * range of sizes, whose size ImageIO reads back as the reference, and WebP, HEIF and AVIF headers
+ * laid out as encoders write them.
+ */
+public class ImageSizeSnifferTest {
+
+  private static final int[][] SIZES = {
+          {1, 1}, {7, 3}, {64, 64}, {640, 480}, {480, 640}, {1023, 17}, {3000, 2000},
+  };
+
+  @Rule
+  public TemporaryFolder mFolder = new TemporaryFolder();
+
+  private final ImageSizeSniffer mSniffer = new ImageSizeSniffer();
+
+  @Test
+  public void matchesImageIo() throws IOException {
+    for (int[] size : SIZES) {
+      BufferedImage image = new BufferedImage(size[0], size[1], BufferedImage.TYPE_INT_RGB);
+      for (String format : new String[]{"jpeg", "png", "gif"}) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(image, format, output));
+        assertSniffed(output.toByteArray(), format, size);
+      }
+      assertSniffed(progressiveJpeg(image), "progressive jpeg", size);
+    }
+  }
+
+  @Test
+  public void skipsJpegMetadataSegments() throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ImageIO.write(new BufferedImage(4032, 3024, BufferedImage.TYPE_INT_RGB), "jpeg", output);
+    byte[] jpeg = output.toByteArray();
+
+    // EXIF with a thumbnail and an ICC profile before the frame header, as cameras write them
+    ByteArrayOutputStream camera = new ByteArrayOutputStream();
+    camera.write(jpeg, 0, 2);
+    camera.write(segment(0xE1, 60_000));
+    camera.write(segment(0xE2, 50_000));
+    camera.write(new byte[]{(byte) 0xFF, (byte) 0xFF});
+    camera.write(jpeg, 2, jpeg.length - 2);
+    assertSniffed(camera.toByteArray(), "camera jpeg", new int[]{4032, 3024});
+  }
+
+  @Test
+  public void readsWebp() throws IOException {
+    ByteBuffer lossy = riff(30, 0x20385056);
+    lossy.put(23, (byte) 0x9D).put(24, (byte) 0x01).put(25, (byte) 0x2A);
+    lossy.putShort(26, (short) 1920).putShort(28, (short) (1080 | 0x4000));
+    assertSniffed(lossy.array(), "VP8", new int[]{1920, 1080});
+
+    ByteBuffer lossless = riff(30, 0x4C385056);
+    lossless.put(20, (byte) 0x2F);
+    lossless.putInt(21, (800 - 1) | (600 - 1) << 14);
+    assertSniffed(lossless.array(), "VP8L", new int[]{800, 600});
+
+    ByteBuffer extended = riff(30, 0x58385056);
+    int width = 20000 - 1;
+    int height = 9000 - 1;
+    extended.put(24, (byte) width).put(25, (byte) (width >> 8)).put(26, (byte) (width >> 16));
+    extended.put(27, (byte) height).put(28, (byte) (height >> 8)).put(29, (byte) (height >> 16));
+    assertSniffed(extended.array(), "VP8X", new int[]{20000, 9000});
+  }
+
+  @Test
+  public void readsThePrimaryItemOfHeif() throws IOException {
+    // A 4032x3024 grid of 512x512 tiles, with a thumbnail, its ispe listed first
+    Box ipco = new Box("ipco")
+            .add(new Box("ispe").fullBox(0).putInt(320).putInt(240))
+            .add(new Box("ispe").fullBox(0).putInt(512).putInt(512))
+            .add(new Box("hvcC").put(new byte[23]))
+            .add(new Box("ispe").fullBox(0).putInt(4032).putInt(3024));
+    Box ipma = new Box("ipma").fullBox(0).putInt(3)
+            .putShort(1).put((byte) 1).put((byte) 4)
+            .putShort(2).put((byte) 2).put((byte) (0x80 | 2)).put((byte) 3)
+            .putShort(50).put((byte) 2).put((byte) 1).put((byte) (0x80 | 3));
+    byte[] heic = heif("heic", 1, new Box("iprp").add(ipco).add(ipma));
+    assertSniffed(heic, "heic", new int[]{4032, 3024});
+
+    // 32 bit item ids and 15 bit property indexes
+    Box wideIpma = new Box("ipma").fullBox(1 << 24 | 1).putInt(1)
+            .putInt(70000).put((byte) 1).putShort(4);
+    byte[] wide = heif("mif1", 70000, new Box("iprp").add(ipco).add(wideIpma), true);
+    assertSniffed(wide, "wide ipma", new int[]{4032, 3024});
+  }
+
+  @Test
+  public void readsAvifWithoutItemAssociations() throws IOException {
+    Box ipco = new Box("ipco")
+            .add(new Box("ispe").fullBox(0).putInt(96).putInt(64))
+            .add(new Box("ispe").fullBox(0).putInt(2048).putInt(1536));
+    // No ipma: the largest extents are the image's
+    assertSniffed(heif("avif", 1, new Box("iprp").add(ipco)), "avif", new int[]{2048, 1536});
+  }
+
+  @Test
+  public void declinesWhatItCantRead() throws IOException {
+    assertFalse(sniff(new byte[0]));
+    assertFalse(sniff("BM not a format it reads".getBytes(StandardCharsets.US_ASCII)));
+
+    // Cut before the JPEG frame header
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ImageIO.write(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB), "jpeg", output);
+    byte[] jpeg = output.toByteArray();
+    byte[] truncated = new byte[40];
+    System.arraycopy(jpeg, 0, truncated, 0, truncated.length);
+    assertFalse(sniff(truncated));
+
+    // An MP4 has an ftyp box too
+    ByteBuffer mp4 = ByteBuffer.allocate(32);
+    mp4.putInt(24).put("ftypisom".getBytes(StandardCharsets.US_ASCII)).putInt(0x200)
+            .put("isomiso2mp41".getBytes(StandardCharsets.US_ASCII));
+    assertFalse(sniff(mp4.array()));
+  }
+
+  private void assertSniffed(byte[] image, String format, int[] expected) throws IOException {
+    int[] size = new int[2];
+    File file = write(image);
+    try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+      assertTrue(format + " " + expected[0] + "x" + expected[1],
+              mSniffer.sniff(input.getChannel(), 0, size));
+    }
+    assertArrayEquals(format, expected, size);
+
+    // At an offset, as an AssetFileDescriptor over part of a file is
+    byte[] prefixed = new byte[100 + image.length];
+    System.arraycopy(image, 0, prefixed, 100, image.length);
+    try (RandomAccessFile input = new RandomAccessFile(write(prefixed), "r")) {
+      FileChannel channel = input.getChannel();
+      assertTrue(mSniffer.sniff(channel, 100, size));
+      assertArrayEquals(format, expected, size);
+      assertTrue(channel.position() == 0);
+    }
+  }
+
+  private boolean sniff(byte[] image) throws IOException {
+    try (RandomAccessFile input = new RandomAccessFile(write(image), "r")) {
+      return mSniffer.sniff(input.getChannel(), 0, new int[2]);
+    }
+  }
+
+  private File write(byte[] bytes) throws IOException {
+    File file = mFolder.newFile();
+    Files.write(file.toPath(), bytes);
+    return file;
+  }
+
+  private static byte[] progressiveJpeg(BufferedImage image) throws IOException {
+    ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+      writer.setOutput(stream);
+      ImageWriteParam param = writer.getDefaultWriteParam();
+      param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+      writer.write(null, new IIOImage(image, null, null), param);
+    } finally {
+      writer.dispose();
+    }
+    return output.toByteArray();
+  }
+
+  private static byte[] segment(int marker, int length) {
+    byte[] segment = new byte[2 + length];
+    segment[0] = (byte) 0xFF;
+    segment[1] = (byte) marker;
+    segment[2] = (byte) (length >> 8);
+    segment[3] = (byte) length;
+    return segment;
+  }
+
+  private static ByteBuffer riff(int length, int chunk) {
+    ByteBuffer riff = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    riff.put("RIFF".getBytes(StandardCharsets.US_ASCII)).putInt(length - 8)
+            .put("WEBP".getBytes(StandardCharsets.US_ASCII)).putInt(chunk).putInt(length - 20);
+    return riff;
+  }
+
+  private static byte[] heif(String brand, int primaryItem, Box iprp) throws IOException {
+    return heif(brand, primaryItem, iprp, false);
+  }
+
+  /**
+   * @param largeMeta whether to write the meta box with a 64 bit size
+   */
+  private static byte[] heif(String brand, int primaryItem, Box iprp, boolean largeMeta)
+          throws IOException {
+    Box ftyp = new Box("ftyp").put(brand.getBytes(StandardCharsets.US_ASCII)).putInt(0)
+            .put("mif1".getBytes(StandardCharsets.US_ASCII))
+            .put(brand.getBytes(StandardCharsets.US_ASCII));
+    Box pitm = primaryItem > 0xFFFF
+            ? new Box("pitm").fullBox(1 << 24).putInt(primaryItem)
+            : new Box("pitm").fullBox(0).putShort(primaryItem);
+    Box meta = new Box("meta").fullBox(0)
+            .add(new Box("hdlr").fullBox(0).putInt(0).put("pict".getBytes(StandardCharsets.US_ASCII))
+                    .put(new byte[13]))
+            .add(pitm)
+            .add(new Box("iloc").fullBox(0).put(new byte[40]))
+            .add(iprp);
+    ByteArrayOutputStream file = new ByteArrayOutputStream();
+    file.write(ftyp.toBytes());
+    file.write(largeMeta ? meta.toLargeBytes() : meta.toBytes());
+    file.write(new Box("mdat").put(new byte[4096]).toBytes());
+    return file.toByteArray();
+  }
+
+  /** An ISO base media file format box. */
+  private static class Box {
+    private final String mType;
+    private final ByteArrayOutputStream mContent = new ByteArrayOutputStream();
+
+    Box(String type) {
+      mType = type;
+    }
+
+    Box fullBox(int versionAndFlags) {
+      return putInt(versionAndFlags);
+    }
+
+    Box put(byte b) {
+      mContent.write(b);
+      return this;
+    }
+
+    Box put(byte[] bytes) {
+      mContent.write(bytes, 0, bytes.length);
+      return this;
+    }
+
+    Box putShort(int value) {
+      return put(ByteBuffer.allocate(2).putShort((short) value).array());
+    }
+
+    Box putInt(int value) {
+      return put(ByteBuffer.allocate(4).putInt(value).array());
+    }
+
+    Box add(Box child) {
+      return put(child.toBytes());
+    }
+
+    byte[] toBytes() {
+      byte[] content = mContent.toByteArray();
+      return ByteBuffer.allocate(8 + content.length)
+              .putInt(8 + content.length)
+              .put(mType.getBytes(StandardCharsets.US_ASCII))
+              .put(content)
+              .array();
+    }
+
+    byte[] toLargeBytes() {
+      byte[] content = mContent.toByteArray();
+      return ByteBuffer.allocate(16 + content.length)
+              .putInt(1)
+              .put(mType.getBytes(StandardCharsets.US_ASCII))
+              .putLong(16 + content.length)
+              .put(content)
+              .array();
+    }
+  }
+}
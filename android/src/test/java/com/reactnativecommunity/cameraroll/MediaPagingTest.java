@@ -0,0 +1,307 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.provider.MediaStore;
+import android.provider.MediaStore.Images;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Pages through a {@link FakeMediaProvider} in chunks, across volumes and under a time budget, and
+ * checks that every asset comes back once and in the order of a single query.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33, shadows = ShadowArguments.class, instrumentedPackages = "com.facebook.react.bridge")
+public class MediaPagingTest {
+
+  private static final int IMAGES = 200;
+  private static final int VIDEOS = 40;
+  private static final String SD_CARD = "1234-5678";
+  private static final List<String> VOLUMES = Arrays.asList(MediaStore.VOLUME_EXTERNAL_PRIMARY, SD_CARD);
+  private static final long TIMEOUT_SECONDS = 30;
+
+  private FakeMediaProvider mProvider;
+  private ContentResolver mResolver;
+  private ExecutorService mExecutor;
+  private CameraRollModule mModule;
+
+  @Before
+  public void setUp() throws IOException {
+    mProvider = Robolectric.setupContentProvider(FakeMediaProvider.class, "media");
+    mProvider.seed(IMAGES, VIDEOS, 42);
+    mResolver = RuntimeEnvironment.getApplication().getContentResolver();
+    mExecutor = Executors.newFixedThreadPool(2);
+    mModule = new CameraRollModule(new ReactApplicationContext(RuntimeEnvironment.getApplication()));
+  }
+
+  @After
+  public void tearDown() {
+    mModule.invalidate();
+    mExecutor.shutdownNow();
+  }
+
+  @Test
+  public void seeksLikeASingleQuery() {
+    // Saved in the same second, so that they tie on their dates and only their ids order them
+    for (int i = 0; i < 30; i++) {
+      ContentValues values = new ContentValues();
+      values.put(MediaStore.MediaColumns.DISPLAY_NAME, "SAVED_" + i + ".jpg");
+      mResolver.insert(Images.Media.EXTERNAL_CONTENT_URI, values);
+    }
+    int rows = IMAGES + VIDEOS + 30;
+    // Date taken is NULL for some rows, which sort last
+    for (String timeColumn : new String[]{"dateAdded", "dateTaken"}) {
+      MediaQuery query = query("timeColumn", timeColumn);
+      assertTrue(query.seekable);
+      List<Long> expected = readIds(query, 0, rows + 1, 0);
+      assertEquals(rows, expected.size());
+      assertEquals(rows, new HashSet<>(expected).size());
+      for (int chunkSize : new int[]{1, 7, 50}) {
+        assertEquals(timeColumn + " in chunks of " + chunkSize,
+                expected, readIds(query, 0, rows + 1, chunkSize));
+        assertEquals(timeColumn + " from 13 in chunks of " + chunkSize,
+                expected.subList(13, 53), readIds(query, 13, 40, chunkSize));
+      }
+    }
+  }
+
+  @Test
+  public void chunksByOffsetWithoutATimeColumn() {
+    MediaQuery query = query();
+    assertFalse(query.seekable);
+    List<Long> expected = readIds(query, 0, IMAGES + VIDEOS, 0);
+    assertEquals(IMAGES + VIDEOS, new HashSet<>(expected).size());
+    for (int chunkSize : new int[]{1, 7, 50}) {
+      assertEquals(expected, readIds(query, 0, IMAGES + VIDEOS, chunkSize));
+      assertEquals(expected.subList(100, 140), readIds(query, 100, 40, chunkSize));
+    }
+  }
+
+  @Test
+  public void mergesVolumesInTheOrderOfASingleQuery() {
+    assertTrue(mProvider.moveToVolume(SD_CARD, 3) > 0);
+    for (String timeColumn : new String[]{null, "dateAdded", "dateTaken"}) {
+      MediaQuery query = timeColumn != null ? query("timeColumn", timeColumn) : query();
+      // "external" covers both volumes
+      List<Long> expected = readIds(query, 0, IMAGES + VIDEOS, 0);
+      for (int chunkSize : new int[]{0, 7}) {
+        assertEquals(timeColumn + " in chunks of " + chunkSize,
+                expected, readVolumeIds(query, 25, chunkSize));
+      }
+    }
+  }
+
+  @Test
+  public void holdsThePositionInEachVolume() {
+    assertTrue(mProvider.moveToVolume(SD_CARD, 3) > 0);
+    MediaQuery query = query("timeColumn", "dateAdded");
+    List<Long> expected = readIds(query, 0, IMAGES + VIDEOS, 0);
+    String position;
+    try (MultiVolumeQuery volumes = new MultiVolumeQuery(
+            mResolver, query, VOLUMES, MultiVolumeQuery.parsePosition(null), 26, 7, mExecutor)) {
+      for (int i = 0; i < 25; i++) {
+        assertEquals((long) expected.get(i), getId(volumes.next()));
+      }
+      assertTrue(volumes.hasMore());
+      position = volumes.getPosition();
+    }
+    assertTrue(position, position.matches("v:external_primary=\\d+,1234-5678=\\d+"));
+    Map<String, Integer> offsets = MultiVolumeQuery.parsePosition(position);
+    assertEquals(25, offsets.get(MediaStore.VOLUME_EXTERNAL_PRIMARY) + offsets.get(SD_CARD));
+
+    // A volume missing from the cursor starts at its first row
+    try (MultiVolumeQuery volumes = new MultiVolumeQuery(
+            mResolver, query, VOLUMES, MultiVolumeQuery.parsePosition("v:" + SD_CARD + "=0"), 1, 0, mExecutor)) {
+      assertEquals((long) expected.get(0), getId(volumes.next()));
+    }
+  }
+
+  @Test
+  public void parsesVolumePositions() {
+    assertTrue(MultiVolumeQuery.parsePosition(null).isEmpty());
+    assertTrue(MultiVolumeQuery.parsePosition("").isEmpty());
+    Map<String, Integer> offsets = MultiVolumeQuery.parsePosition("v:external_primary=120,1234-5678=0");
+    assertEquals(2, offsets.size());
+    assertEquals(120, (int) offsets.get("external_primary"));
+    assertEquals(0, (int) offsets.get("1234-5678"));
+
+    for (String invalid : new String[]{
+            "120", "x:a=1", "v:", "v:a", "v:=1", "v:a=", "v:a=x", "v:a=-1", "v:a=1,,b=2",
+            "v:a=99999999999"}) {
+      try {
+        MultiVolumeQuery.parsePosition(invalid);
+        fail("Parsed " + invalid);
+      } catch (IllegalArgumentException e) {
+        assertTrue(e.getMessage(), e.getMessage().startsWith("Invalid cursor: '" + invalid + "'"));
+      }
+    }
+  }
+
+  @Test
+  public void rejectsVolumeCursorsWithoutVolumes() throws Exception {
+    JavaOnlyMap params = JavaOnlyMap.of("first", 10, "after", "v:external_primary=10");
+    try {
+      getPhotos(params);
+      fail("Resolved with a volume cursor");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause().getMessage(), e.getCause().getMessage().contains("Invalid cursor"));
+    }
+  }
+
+  @Test
+  public void resumesAfterTheLastRowReadOnceTheBudgetRunsOut() throws Exception {
+    for (String timeColumn : new String[]{null, "dateAdded"}) {
+      JavaOnlyMap params = JavaOnlyMap.of("assetType", "All", "first", 10, "chunkSize", 3);
+      if (timeColumn != null) {
+        params.putString("timeColumn", timeColumn);
+      }
+      List<String> expected = scroll(params);
+      assertEquals(IMAGES + VIDEOS, expected.size());
+
+      // A nanosecond runs out after the first row of every page
+      JavaOnlyMap budgeted = JavaOnlyMap.of("timeBudgetMs", 1e-6);
+      budgeted.merge(params);
+      ReadableMap first = getPhotos(budgeted);
+      assertEquals(1, first.getArray("edges").size());
+      assertTrue(first.getMap("timing").getBoolean("budgetExhausted"));
+      assertEquals("1", first.getMap("page_info").getString("end_cursor"));
+      assertEquals(expected, scroll(budgeted));
+    }
+  }
+
+  private static MediaQuery query(Object... keysAndValues) {
+    JavaOnlyMap params = JavaOnlyMap.of(keysAndValues);
+    return MediaQuery.fromParams(params, MediaQuery.ASSET_TYPE_ALL);
+  }
+
+  private List<Long> readIds(MediaQuery query, int offset, int rowCount, int chunkSize) {
+    List<Long> ids = new ArrayList<>();
+    try (ChunkedMediaQuery chunks = new ChunkedMediaQuery(
+            mResolver, MediaStore.VOLUME_EXTERNAL, query, offset, rowCount, chunkSize, mExecutor)) {
+      Cursor chunk;
+      while ((chunk = chunks.next()) != null) {
+        assertTrue(chunkSize == 0 || chunk.getCount() <= chunkSize);
+        while (chunk.moveToNext()) {
+          ids.add(getId(chunk));
+        }
+      }
+      assertFalse(chunks.hasFailed());
+    }
+    return ids;
+  }
+
+  /**
+   * @return the ids of all rows of the volumes, read a page at a time like getPhotos does
+   */
+  private List<Long> readVolumeIds(MediaQuery query, int pageSize, int chunkSize) {
+    List<Long> ids = new ArrayList<>();
+    String after = null;
+    do {
+      try (MultiVolumeQuery volumes = new MultiVolumeQuery(
+              mResolver,
+              query,
+              VOLUMES,
+              MultiVolumeQuery.parsePosition(after),
+              pageSize + 1,
+              chunkSize,
+              mExecutor)) {
+        Cursor row;
+        for (int i = 0; i < pageSize && (row = volumes.next()) != null; i++) {
+          ids.add(getId(row));
+        }
+        assertFalse(volumes.hasFailed());
+        after = volumes.hasMore() ? volumes.getPosition() : null;
+      }
+    } while (after != null);
+    return ids;
+  }
+
+  private static long getId(@Nullable Cursor row) {
+    assertTrue(row != null);
+    return row.getLong(row.getColumnIndex(Images.Media._ID));
+  }
+
+  /**
+   * @return the ids of every page, following end_cursor
+   */
+  private List<String> scroll(JavaOnlyMap params) throws Exception {
+    List<String> ids = new ArrayList<>();
+    String after = null;
+    do {
+      JavaOnlyMap page = new JavaOnlyMap();
+      page.merge(params);
+      if (after != null) {
+        page.putString("after", after);
+      }
+      ReadableMap response = getPhotos(page);
+      ReadableArray edges = response.getArray("edges");
+      for (int i = 0; i < edges.size(); i++) {
+        ids.add(edges.getMap(i).getMap("node").getString("id"));
+      }
+      ReadableMap pageInfo = response.getMap("page_info");
+      after = pageInfo.getBoolean("has_next_page") ? pageInfo.getString("end_cursor") : null;
+    } while (after != null);
+    return ids;
+  }
+
+  private ReadableMap getPhotos(ReadableMap params) throws Exception {
+    CompletableFuture<Object> result = new CompletableFuture<>();
+    mModule.getPhotos(params, newPromise(result));
+    return (ReadableMap) result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+  }
+
+  /**
+   * @return a promise completing the given future, exceptionally with the message when rejected
+   */
+  private static Promise newPromise(CompletableFuture<Object> result) {
+    return (Promise) Proxy.newProxyInstance(
+            Promise.class.getClassLoader(),
+            new Class<?>[]{Promise.class},
+            (proxy, method, args) -> {
+              if (method.getName().equals("resolve")) {
+                result.complete(args != null ? args[0] : null);
+              } else if (method.getName().startsWith("reject")) {
+                result.completeExceptionally(new AssertionError(
+                        "Rejected: " + (args != null ? Arrays.toString(args) : "")));
+              } else if (method.getDeclaringClass() == Object.class) {
+                return method.invoke(result, args);
+              }
+              return null;
+            });
+  }
+}
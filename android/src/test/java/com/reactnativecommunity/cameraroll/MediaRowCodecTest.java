@@ -0,0 +1,57 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.database.MatrixCursor;
+import android.os.Build;
+import android.provider.MediaStore;
+import android.provider.MediaStore.Images;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Reads the orientation of rows, which MediaStore leaves NULL for files it has no rotation for.
+ */
+public class MediaRowCodecTest {
+
+  private static final int SDK_INT = Build.VERSION_CODES.Q;
+
+  @Test
+  public void readsOrientations() {
+    MatrixCursor media = new MatrixCursor(MediaRowCodec.getProjection(SDK_INT));
+    addImage(media, 1, 90);
+    addImage(media, 2, null);
+    addImage(media, 3, 0);
+    MediaRowCodec codec = new MediaRowCodec(
+            null,
+            media,
+            Collections.singleton(MediaRowCodec.INCLUDE_ORIENTATION),
+            SDK_INT);
+
+    int[] expected = {90, 0, 0};
+    for (int orientation : expected) {
+      media.moveToNext();
+      MediaRowCodec.Row row = codec.read(media);
+      assertNotNull(row);
+      assertEquals(orientation, row.orientation);
+    }
+  }
+
+  private static void addImage(MatrixCursor media, long id, Integer orientation) {
+    media.newRow()
+            .add(Images.Media._ID, id)
+            .add(Images.Media.MIME_TYPE, "image/jpeg")
+            .add(Images.Media.BUCKET_DISPLAY_NAME, "Camera")
+            .add(Images.Media.DATE_TAKEN, 1_700_000_000_000L)
+            .add(MediaStore.MediaColumns.DATE_ADDED, 1_700_000_000L)
+            .add(MediaStore.MediaColumns.DATE_MODIFIED, 1_700_000_000L)
+            .add(MediaStore.MediaColumns.WIDTH, 4032)
+            .add(MediaStore.MediaColumns.HEIGHT, 3024)
+            .add(MediaStore.MediaColumns.SIZE, 1024)
+            .add(MediaStore.MediaColumns.DATA, "/storage/emulated/0/DCIM/Camera/IMG_" + id + ".jpg")
+            .add(MediaStore.MediaColumns.ORIENTATION, orientation);
+  }
+}
@@ -0,0 +1,397 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.net.Uri;
+import android.webkit.MimeTypeMap;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nullable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Runs scripted workloads through {@link CameraRollModule} against a {@link FakeMediaProvider}
+ * seeded with a synthetic library, and reports the p50/p99 latency and the throughput of each
+ * operation so that changes to the module can be compared run over run.
+ *
+ * Skipped unless a library size is given, as it takes minutes at realistic sizes:
+ * <pre>
+ * ./gradlew test --tests '*MediaStoreLoadTest' -PcameraRollLoadRows=100000
+ * </pre>
+ * Other properties: cameraRollLoadVideoRatio (0.15), cameraRollLoadPageSize (50),
+ * cameraRollLoadSeed (42) and cameraRollLoadOutput, the JSON report
+ * (build/reports/cameraroll-load.json).
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33, shadows = ShadowArguments.class, instrumentedPackages = "com.facebook.react.bridge")
+public class MediaStoreLoadTest {
+
+  private static final long TIMEOUT_SECONDS = 60;
+  private static final int ALBUM_SWITCHES = 200;
+  private static final int TIME_RANGES = 200;
+  private static final int CONCURRENT_SAVES = 200;
+  private static final int LARGE_PAGE_SIZE = 5_000;
+  private static final int LARGE_PAGES = 20;
+  private static final ReadableArray INCLUDE = JavaOnlyArray.of("filename", "fileSize", "imageSize");
+
+  private final Map<String, Recorder> mRecorders = new LinkedHashMap<>();
+  private FakeMediaProvider mProvider;
+  private CameraRollModule mModule;
+  private int mRows;
+  private int mPageSize;
+  private long mNow;
+  private Random mRandom;
+
+  @Before
+  public void setUp() throws IOException {
+    String rows = System.getProperty("cameraRollLoadRows");
+    assumeTrue("Set cameraRollLoadRows to run the load benchmark", rows != null);
+    mRows = Integer.parseInt(rows);
+    mPageSize = Integer.parseInt(System.getProperty("cameraRollLoadPageSize", "50"));
+    double videoRatio = Double.parseDouble(System.getProperty("cameraRollLoadVideoRatio", "0.15"));
+    long seed = Long.parseLong(System.getProperty("cameraRollLoadSeed", "42"));
+    mRandom = new Random(seed);
+
+    shadowOf(MimeTypeMap.getSingleton()).addExtensionMimeTypeMapping("jpg", "image/jpeg");
+    shadowOf(MimeTypeMap.getSingleton()).addExtensionMimeTypeMapping("mp4", "video/mp4");
+    mProvider = Robolectric.setupContentProvider(FakeMediaProvider.class, "media");
+    int videos = (int) (mRows * videoRatio);
+    mNow = mProvider.seed(mRows - videos, videos, seed);
+    mModule = new CameraRollModule(new ReactApplicationContext(RuntimeEnvironment.getApplication()));
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (mModule == null) {
+      return;
+    }
+    mModule.invalidate();
+    report();
+  }
+
+  @Test
+  public void runWorkloads() throws Exception {
+    fullScroll();
+    albumSwitches();
+    timeRanges();
+    largePages();
+    savesDuringScroll();
+  }
+
+  /**
+   * Pages through the whole library, the way a grid scrolled to the bottom does.
+   */
+  private void fullScroll() throws Exception {
+    assertEquals(mRows, scroll("getPhotos.scroll", JavaOnlyMap.of("assetType", "All")));
+  }
+
+  /**
+   * Lists the albums, then opens the first page of one album after another. Albums are picked
+   * uniformly, so that the long tail of small albums gets opened as often as the big ones.
+   */
+  private void albumSwitches() throws Exception {
+    ReadableArray albums = (ReadableArray) call("getAlbums", promise ->
+            mModule.getAlbums(JavaOnlyMap.of("assetType", "All"), promise));
+    assertTrue(albums.size() > 0);
+    for (int i = 0; i < ALBUM_SWITCHES; i++) {
+      String albumId = albums.getMap(mRandom.nextInt(albums.size())).getString("id");
+      call("getPhotos.album", promise -> mModule.getPhotos(page(
+              "assetType", "All",
+              "albumIds", JavaOnlyArray.of(albumId)), promise));
+    }
+  }
+
+  /**
+   * Opens the first page of a day, a month or a year at random, both with the legacy filter and
+   * with a single time column.
+   */
+  private void timeRanges() throws Exception {
+    long[] spans = {TimeUnit.DAYS.toMillis(1), TimeUnit.DAYS.toMillis(30), TimeUnit.DAYS.toMillis(365)};
+    for (int i = 0; i < TIME_RANGES; i++) {
+      long span = spans[i % spans.length];
+      long toTime = mNow - (long) (mRandom.nextDouble() * TimeUnit.DAYS.toMillis(5 * 365));
+      double fromTime = toTime - span;
+      call("getPhotos.timeRange", promise -> mModule.getPhotos(page(
+              "assetType", "All",
+              "fromTime", fromTime,
+              "toTime", (double) toTime), promise));
+      call("getPhotos.timeRange.dateTaken", promise -> mModule.getPhotos(page(
+              "assetType", "All",
+              "fromTime", fromTime,
+              "toTime", (double) toTime,
+              "timeColumn", "dateTaken"), promise));
+    }
+  }
+
+  /**
+   * Fetches pages of {@value #LARGE_PAGE_SIZE} assets in a single query and in chunks, both with
+   * the legacy order and with a time column, and checks that both return the same assets.
+   */
+  private void largePages() throws Exception {
+    for (int i = 0; i < LARGE_PAGES; i++) {
+      String after = Integer.toString(mRandom.nextInt(Math.max(1, mRows - LARGE_PAGE_SIZE)));
+      for (String timeColumn : new String[]{null, "dateAdded"}) {
+        String suffix = timeColumn != null ? ".dateAdded" : "";
+        ReadableMap single = largePage("getPhotos.large.single" + suffix, after, timeColumn, 0);
+        ReadableMap chunked = largePage("getPhotos.large.chunked" + suffix, after, timeColumn, null);
+        assertEquals(ids(single), ids(chunked));
+        assertEquals(single.getMap("page_info").toHashMap(), chunked.getMap("page_info").toHashMap());
+      }
+    }
+  }
+
+  private ReadableMap largePage(
+          String operation,
+          String after,
+          @Nullable String timeColumn,
+          @Nullable Integer chunkSize) throws Exception {
+    JavaOnlyMap params = JavaOnlyMap.of("assetType", "All", "first", LARGE_PAGE_SIZE, "after", after);
+    params.putArray("include", INCLUDE);
+    if (timeColumn != null) {
+      params.putString("timeColumn", timeColumn);
+    }
+    if (chunkSize != null) {
+      params.putInt("chunkSize", chunkSize);
+    }
+    return (ReadableMap) call(operation, promise -> mModule.getPhotos(params, promise));
+  }
+
+  private static List<String> ids(ReadableMap page) {
+    ReadableArray edges = page.getArray("edges");
+    List<String> ids = new ArrayList<>(edges.size());
+    for (int i = 0; i < edges.size(); i++) {
+      ids.add(edges.getMap(i).getMap("node").getString("id"));
+    }
+    return ids;
+  }
+
+  /**
+   * Scrolls through the library while saving new photos from another thread, as when an app
+   * imports media while its grid is open.
+   */
+  private void savesDuringScroll() throws Exception {
+    File sources = new File(RuntimeEnvironment.getApplication().getCacheDir(), "saves");
+    assertTrue(sources.isDirectory() || sources.mkdirs());
+    List<File> files = new ArrayList<>();
+    for (int i = 0; i < 16; i++) {
+      File file = new File(sources, "IMPORT_" + i + ".jpg");
+      try (OutputStream output = new FileOutputStream(file)) {
+        output.write(FakeMediaProvider.createJpeg(mRandom, 1920, 1080));
+      }
+      files.add(file);
+    }
+
+    AtomicBoolean scrolling = new AtomicBoolean(true);
+    ExecutorService saver = Executors.newSingleThreadExecutor();
+    try {
+      Future<Integer> saves = saver.submit(() -> {
+        int saved = 0;
+        while (scrolling.get() && saved < CONCURRENT_SAVES) {
+          String uri = Uri.fromFile(files.get(saved % files.size())).toString();
+          call("saveToCameraRoll", promise ->
+                  mModule.saveToCameraRoll(uri, JavaOnlyMap.of("album", "Imports"), promise));
+          saved++;
+        }
+        return saved;
+      });
+      try {
+        int scrolled = scroll("getPhotos.scrollDuringSaves", JavaOnlyMap.of("assetType", "All"));
+        assertTrue(scrolled >= mRows);
+      } finally {
+        scrolling.set(false);
+      }
+      assertTrue(saves.get(TIMEOUT_SECONDS, TimeUnit.SECONDS) > 0);
+    } finally {
+      saver.shutdownNow();
+    }
+  }
+
+  /**
+   * @return the number of assets returned until the last page
+   */
+  private int scroll(String operation, JavaOnlyMap filters) throws Exception {
+    int count = 0;
+    String after = null;
+    do {
+      JavaOnlyMap params = page();
+      params.merge(filters);
+      if (after != null) {
+        params.putString("after", after);
+      }
+      ReadableMap response = (ReadableMap) call(operation, promise -> mModule.getPhotos(params, promise));
+      count += response.getArray("edges").size();
+      ReadableMap pageInfo = response.getMap("page_info");
+      after = pageInfo.getBoolean("has_next_page") ? pageInfo.getString("end_cursor") : null;
+    } while (after != null);
+    return count;
+  }
+
+  private JavaOnlyMap page(Object... keysAndValues) {
+    JavaOnlyMap params = JavaOnlyMap.of(keysAndValues);
+    params.putInt("first", mPageSize);
+    params.putArray("include", INCLUDE);
+    return params;
+  }
+
+  private interface Call {
+    void start(Promise promise);
+  }
+
+  /**
+   * Runs one operation to completion and records how long it took.
+   *
+   * @return what the promise was resolved with
+   */
+  private Object call(String operation, Call call)
+          throws InterruptedException, ExecutionException, TimeoutException {
+    CompletableFuture<Object> result = new CompletableFuture<>();
+    long start = System.nanoTime();
+    call.start(newPromise(result));
+    Object value = result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    recorder(operation).record(System.nanoTime() - start);
+    return value;
+  }
+
+  private synchronized Recorder recorder(String operation) {
+    Recorder recorder = mRecorders.get(operation);
+    if (recorder == null) {
+      recorder = new Recorder();
+      mRecorders.put(operation, recorder);
+    }
+    return recorder;
+  }
+
+  /**
+   * @return a promise completing the given future, exceptionally when rejected
+   */
+  private static Promise newPromise(CompletableFuture<Object> result) {
+    return (Promise) Proxy.newProxyInstance(
+            Promise.class.getClassLoader(),
+            new Class<?>[]{Promise.class},
+            (proxy, method, args) -> {
+              if (method.getName().equals("resolve")) {
+                result.complete(args != null ? args[0] : null);
+              } else if (method.getName().startsWith("reject")) {
+                result.completeExceptionally(new AssertionError(
+                        "Rejected: " + (args != null ? Arrays.toString(args) : "")));
+              } else if (method.getDeclaringClass() == Object.class) {
+                return method.invoke(result, args);
+              }
+              return null;
+            });
+  }
+
+  private synchronized void report() throws IOException {
+    StringBuilder json = new StringBuilder("{\n  \"rows\": " + mRows + ",\n  \"pageSize\": "
+            + mPageSize + ",\n  \"operations\": {");
+    String separator = "\n";
+    System.out.println(String.format(Locale.US, "%-32s %8s %10s %10s %10s %10s",
+            "operation", "calls", "p50 ms", "p99 ms", "max ms", "ops/s"));
+    for (Map.Entry<String, Recorder> entry : mRecorders.entrySet()) {
+      Recorder recorder = entry.getValue();
+      double p50 = recorder.percentile(0.50) / 1e6;
+      double p99 = recorder.percentile(0.99) / 1e6;
+      double max = recorder.percentile(1) / 1e6;
+      double throughput = recorder.throughput();
+      System.out.println(String.format(Locale.US, "%-32s %8d %10.2f %10.2f %10.2f %10.1f",
+              entry.getKey(), recorder.count(), p50, p99, max, throughput));
+      json.append(separator).append(String.format(Locale.US,
+              "    \"%s\": {\"calls\": %d, \"p50Ms\": %.3f, \"p99Ms\": %.3f, \"maxMs\": %.3f, "
+                      + "\"opsPerSecond\": %.2f}",
+              entry.getKey(), recorder.count(), p50, p99, max, throughput));
+      separator = ",\n";
+    }
+    json.append("\n  }\n}\n");
+
+    File output = new File(System.getProperty(
+            "cameraRollLoadOutput", "build/reports/cameraroll-load.json"));
+    File parent = output.getAbsoluteFile().getParentFile();
+    if (!parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException("Could not create " + parent);
+    }
+    try (Writer writer = Files.newBufferedWriter(output.toPath(), StandardCharsets.UTF_8)) {
+      writer.write(json.toString());
+    }
+    System.out.println("Wrote " + output.getAbsolutePath());
+  }
+
+  /**
+   * The latencies of one operation. Throughput is over the time between the start of the first
+   * call and the end of the last one, so it reflects calls overlapping with other operations.
+   */
+  private static class Recorder {
+    private long[] mLatencies = new long[1024];
+    private int mCount;
+    private long mFirstStart = Long.MAX_VALUE;
+    private long mLastEnd;
+
+    synchronized void record(long latencyNs) {
+      long end = System.nanoTime();
+      mFirstStart = Math.min(mFirstStart, end - latencyNs);
+      mLastEnd = end;
+      if (mCount == mLatencies.length) {
+        mLatencies = Arrays.copyOf(mLatencies, mCount * 2);
+      }
+      mLatencies[mCount++] = latencyNs;
+    }
+
+    synchronized int count() {
+      return mCount;
+    }
+
+    /**
+     * @return the latency in nanoseconds at the given quantile, by nearest rank
+     */
+    synchronized long percentile(double quantile) {
+      long[] sorted = Arrays.copyOf(mLatencies, mCount);
+      Arrays.sort(sorted);
+      int rank = (int) Math.ceil(quantile * mCount);
+      return sorted[Math.max(0, Math.min(mCount - 1, rank - 1))];
+    }
+
+    synchronized double throughput() {
+      return mCount / ((mLastEnd - mFirstStart) / 1e9);
+    }
+  }
+}
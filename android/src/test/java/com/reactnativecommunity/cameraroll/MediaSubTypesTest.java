@@ -0,0 +1,109 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.os.Build;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The subtypes told from MediaStore columns before and after Android 10, and the filters that
+ * select them.
+ */
+public class MediaSubTypesTest {
+
+  private static final int M = Build.VERSION_CODES.M;
+  private static final int Q = Build.VERSION_CODES.Q;
+
+  @Test
+  public void classifiesFromRelativePaths() {
+    assertEquals(MediaSubTypes.SCREENSHOT,
+            MediaSubTypes.classify(false, "Pictures/Screenshots/", "Screenshot_20230501.png", false, Q));
+    assertEquals(MediaSubTypes.SCREENSHOT,
+            MediaSubTypes.classify(false, "DCIM/screenshots/", "a.png", false, Q));
+    assertEquals(MediaSubTypes.SCREEN_RECORDING,
+            MediaSubTypes.classify(true, "Movies/Screen recordings/", "a.mp4", false, Q));
+    assertEquals(MediaSubTypes.BURST,
+            MediaSubTypes.classify(false, "DCIM/Camera/", "00000IMG_00000_BURST20230501_COVER.jpg", false, Q));
+    assertEquals(MediaSubTypes.DOWNLOAD,
+            MediaSubTypes.classify(false, "Pictures/", "a.jpg", true, Q));
+    // The folder tells nothing of downloads from Android 10 on
+    assertEquals(0, MediaSubTypes.classify(false, "Download/", "a.jpg", false, Q));
+    assertEquals(0, MediaSubTypes.classify(false, "DCIM/Camera/", "IMG_1.jpg", false, Q));
+    assertEquals(0, MediaSubTypes.classify(false, null, null, false, Q));
+  }
+
+  @Test
+  public void classifiesFromPathsBeforeAndroid10() {
+    assertEquals(MediaSubTypes.SCREENSHOT, MediaSubTypes.classify(
+            false, "/storage/emulated/0/Pictures/Screenshots/a.png", "a.png", false, M));
+    assertEquals(MediaSubTypes.DOWNLOAD, MediaSubTypes.classify(
+            false, "/storage/emulated/0/Download/a.jpg", "a.jpg", true, M));
+    assertEquals(MediaSubTypes.DOWNLOAD | MediaSubTypes.SCREEN_RECORDING, MediaSubTypes.classify(
+            true, "/storage/emulated/0/Download/ScreenRecorder/a.mp4", "a.mp4", false, M));
+    // A folder only matches as a whole
+    assertEquals(0, MediaSubTypes.classify(
+            false, "/storage/emulated/0/Pictures/Screenshots old/a.png", "a.png", false, M));
+  }
+
+  @Test
+  public void keepsSubTypesToTheirMediaType() {
+    assertEquals(0, MediaSubTypes.classify(true, "Pictures/Screenshots/", "a.mp4", false, Q));
+    assertEquals(0, MediaSubTypes.classify(false, "Movies/Screen recordings/", "a.jpg", false, Q));
+    assertEquals(0, MediaSubTypes.classify(true, "DCIM/Camera/", "BURST.mp4", false, Q));
+  }
+
+  @Test
+  public void mapsNamesToBits() {
+    for (int i = 0; i < MediaSubTypes.NAMES.length; i++) {
+      assertEquals(1 << i, MediaSubTypes.getSubType(MediaSubTypes.NAMES[i]));
+    }
+    assertEquals(MediaSubTypes.SCREENSHOT, MediaSubTypes.getSubType("PhotoScreenshot"));
+    assertEquals(0, MediaSubTypes.getSubType("PhotoHDR"));
+    assertEquals(0, MediaSubTypes.MOTION_PHOTO & MediaSubTypes.QUERYABLE);
+  }
+
+  @Test
+  public void appendsFilters() {
+    StringBuilder selection = new StringBuilder("1");
+    List<String> selectionArgs = new ArrayList<>();
+    MediaSubTypes.appendFilter(selection, selectionArgs, 0, true, Q);
+    assertEquals("1", selection.toString());
+    assertTrue(selectionArgs.isEmpty());
+
+    MediaSubTypes.appendFilter(
+            selection, selectionArgs, MediaSubTypes.SCREENSHOT | MediaSubTypes.DOWNLOAD, true, Q);
+    assertTrue(selection.toString().startsWith("1 AND NOT (0 OR "));
+    assertTrue(selection.toString().contains("relative_path"));
+    assertTrue(selection.toString().contains("is_download"));
+    assertEquals(count(selection, '?'), selectionArgs.size());
+    assertEquals(count(selection, '('), count(selection, ')'));
+    assertTrue(selectionArgs.contains("%/Screenshots/%"));
+
+    selection = new StringBuilder("1");
+    selectionArgs.clear();
+    MediaSubTypes.appendFilter(selection, selectionArgs, MediaSubTypes.QUERYABLE, false, M);
+    assertTrue(selection.toString().startsWith("1 AND (0 OR "));
+    assertFalse(selection.toString().contains("relative_path"));
+    assertFalse(selection.toString().contains("is_download"));
+    assertEquals(count(selection, '?'), selectionArgs.size());
+    assertEquals(count(selection, '('), count(selection, ')'));
+    assertTrue(selectionArgs.contains("%/Download/%"));
+    assertTrue(selectionArgs.contains("%BURST%"));
+  }
+
+  private static int count(CharSequence text, char c) {
+    int count = 0;
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) == c) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
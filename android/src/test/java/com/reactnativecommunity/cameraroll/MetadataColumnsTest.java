@@ -0,0 +1,57 @@
+package com.reactnativecommunity.cameraroll;
+
+import android.os.Build;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The include fields served from MediaStore columns per API level, and the RESOLUTION values
+ * older versions hold for videos.
+ */
+public class MetadataColumnsTest {
+
+  private static final int M = Build.VERSION_CODES.M;
+  private static final int Q = Build.VERSION_CODES.Q;
+
+  @Test
+  public void servesFieldsFromColumnsPerApiLevel() {
+    for (int sdkInt : new int[]{M, Q}) {
+      assertTrue(MetadataColumns.isIndexed(MediaRowCodec.INCLUDE_IMAGE_SIZE, false, sdkInt));
+      assertTrue(MetadataColumns.isIndexed(MediaRowCodec.INCLUDE_IMAGE_SIZE, true, sdkInt));
+      assertTrue(MetadataColumns.isIndexed(MediaRowCodec.INCLUDE_PLAYABLE_DURATION, true, sdkInt));
+      assertFalse(MetadataColumns.isIndexed(MediaRowCodec.INCLUDE_PLAYABLE_DURATION, false, sdkInt));
+      assertTrue(MetadataColumns.isIndexed(MediaRowCodec.INCLUDE_ORIENTATION, false, sdkInt));
+      assertFalse(MetadataColumns.isIndexed(MediaRowCodec.INCLUDE_LOCATION, false, sdkInt));
+      assertFalse(MetadataColumns.isIndexed(MediaRowCodec.INCLUDE_EXIF, false, sdkInt));
+    }
+    assertFalse(MetadataColumns.isIndexed(MediaRowCodec.INCLUDE_ORIENTATION, true, M));
+    assertTrue(MetadataColumns.isIndexed(MediaRowCodec.INCLUDE_ORIENTATION, true, Q));
+  }
+
+  @Test
+  public void readsResolutionBeforeAndroid10Only() {
+    assertTrue(Arrays.asList(MetadataColumns.getProjection(M)).contains(MetadataColumns.RESOLUTION));
+    assertFalse(Arrays.asList(MetadataColumns.getProjection(Q)).contains(MetadataColumns.RESOLUTION));
+    assertTrue(Arrays.asList(MetadataColumns.getProjection(Q)).contains(MetadataColumns.DURATION));
+  }
+
+  @Test
+  public void parsesResolutions() {
+    int[] size = new int[2];
+    assertTrue(MetadataColumns.parseResolution("1920x1080", size));
+    assertArrayEquals(new int[]{1920, 1080}, size);
+    assertTrue(MetadataColumns.parseResolution("720 X 1280", size));
+    assertArrayEquals(new int[]{720, 1280}, size);
+    assertFalse(MetadataColumns.parseResolution(null, size));
+    assertFalse(MetadataColumns.parseResolution("", size));
+    assertFalse(MetadataColumns.parseResolution("0x0", size));
+    assertFalse(MetadataColumns.parseResolution("wide", size));
+    assertFalse(MetadataColumns.parseResolution("1920x", size));
+  }
+}
@@ -0,0 +1,88 @@
+package com.reactnativecommunity.cameraroll;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Finds the motion photo flag in the XMP of JPEGs written here, after the segments a camera puts
+ * before it.
+ */
+public class MotionPhotoReaderTest {
+
+  @Test
+  public void findsTheFlagAsAnAttribute() throws IOException {
+    assertTrue(isMotionPhoto(jpeg("<rdf:Description GCamera:MotionPhoto=\"1\" GCamera:MotionPhotoVersion=\"1\"/>")));
+    assertTrue(isMotionPhoto(jpeg("<rdf:Description GCamera:MicroVideo='1' GCamera:MicroVideoVersion='1'/>")));
+  }
+
+  @Test
+  public void findsTheFlagAsAnElement() throws IOException {
+    assertTrue(isMotionPhoto(jpeg("<Camera:MotionPhoto>1</Camera:MotionPhoto>")));
+  }
+
+  @Test
+  public void ignoresUnsetFlags() throws IOException {
+    assertFalse(isMotionPhoto(jpeg("<rdf:Description GCamera:MotionPhoto=\"0\"/>")));
+    assertFalse(isMotionPhoto(jpeg("<rdf:Description GCamera:MotionPhoto=\"10\"/>")));
+    assertFalse(isMotionPhoto(jpeg("<rdf:Description GCamera:MotionPhotoVersion=\"1\"/>")));
+    assertFalse(isMotionPhoto(jpeg("<rdf:Description xmp:Rating=\"1\"/>")));
+    assertFalse(isMotionPhoto(jpeg(null)));
+  }
+
+  @Test
+  public void returnsFalseForOtherFormats() throws IOException {
+    byte[] png = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    assertFalse(isMotionPhoto(png));
+    assertFalse(isMotionPhoto(new byte[0]));
+  }
+
+  @Test
+  public void returnsFalseForTruncatedFiles() throws IOException {
+    byte[] jpeg = jpeg("<rdf:Description GCamera:MotionPhoto=\"1\"/>");
+    byte[] truncated = new byte[600];
+    System.arraycopy(jpeg, 0, truncated, 0, truncated.length);
+    assertFalse(isMotionPhoto(truncated));
+  }
+
+  private static boolean isMotionPhoto(byte[] file) throws IOException {
+    return new MotionPhotoReader().isMotionPhoto(new ByteArrayInputStream(file));
+  }
+
+  /**
+   * @param xmp the XMP to write after the EXIF segment, or null for none
+   */
+  private static byte[] jpeg(String xmp) throws IOException {
+    ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+    jpeg.write(new byte[]{(byte) 0xFF, (byte) 0xD8});
+    segment(jpeg, 0xE0, "JFIF\0".getBytes(StandardCharsets.US_ASCII), new byte[500]);
+    segment(jpeg, 0xE1, "Exif\0\0".getBytes(StandardCharsets.US_ASCII), new byte[2000]);
+    if (xmp != null) {
+      segment(
+              jpeg,
+              0xE1,
+              "http://ns.adobe.com/xap/1.0/\0".getBytes(StandardCharsets.US_ASCII),
+              ("<x:xmpmeta xmlns:x=\"adobe:ns:meta/\"><rdf:RDF>" + xmp + "</rdf:RDF></x:xmpmeta>")
+                      .getBytes(StandardCharsets.US_ASCII));
+    }
+    segment(jpeg, 0xDB, new byte[0], new byte[64]);
+    jpeg.write(new byte[]{(byte) 0xFF, (byte) 0xDA, 0, 2});
+    jpeg.write(new byte[4096]);
+    jpeg.write(new byte[]{(byte) 0xFF, (byte) 0xD9});
+    return jpeg.toByteArray();
+  }
+
+  private static void segment(ByteArrayOutputStream jpeg, int marker, byte[] header, byte[] body)
+          throws IOException {
+    int length = 2 + header.length + body.length;
+    jpeg.write(new byte[]{(byte) 0xFF, (byte) marker, (byte) (length >> 8), (byte) length});
+    jpeg.write(header);
+    jpeg.write(body);
+  }
+}
@@ -0,0 +1,111 @@
+package com.reactnativecommunity.cameraroll;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Searches of the file and album names of a library, checked against a scan of every name.
+ */
+public class SearchIndexTest {
+
+  private static final String[] ALBUMS = {"Camera", "WhatsApp Images", "Screenshots", "Receipts", null};
+  private static final String[] QUERIES = {
+          "img", "IMG_2023", "2023", "whatsapp", "rec", "receipt", "_0", "jp", "x", "e", "zzz", "pxl_2024",
+  };
+
+  @Test
+  public void ranksByWhereTheQueryIsFoundThenMostRecentFirst() {
+    SearchIndex index = new SearchIndex();
+    index.put(1, "IMG_2023_01.jpg", "Camera", 100);
+    index.put(2, "receipt_2023.jpg", "Receipts", 300);
+    index.put(3, "IMG_2023_02.jpg", "Camera", 200);
+    index.put(4, "PXL2023.jpg", "Camera", 400);
+    index.put(5, "notes.png", "2023 trip", 500);
+
+    assertArrayEquals(new long[]{2, 3, 1, 4, 5}, index.search("2023", 0, 10).ids);
+    assertArrayEquals(new long[]{3, 1}, index.search("img_2023", 0, 10).ids);
+    assertArrayEquals(new long[]{2}, index.search("RECEIPT", 0, 10).ids);
+    assertArrayEquals(new long[]{5}, index.search("trip", 0, 10).ids);
+    assertEquals(0, index.search("  ", 0, 10).total);
+  }
+
+  @Test
+  public void paginates() {
+    SearchIndex index = new SearchIndex();
+    for (int i = 0; i < 25; i++) {
+      index.put(i, "IMG_" + i + ".jpg", "Camera", i);
+    }
+    SearchIndex.Result first = index.search("img", 0, 10);
+    SearchIndex.Result last = index.search("img", 20, 10);
+    assertEquals(25, first.total);
+    assertEquals(24, first.ids[0]);
+    assertEquals(15, first.ids[9]);
+    assertArrayEquals(new long[]{4, 3, 2, 1, 0}, last.ids);
+    assertEquals(0, index.search("img", 30, 10).ids.length);
+  }
+
+  @Test
+  public void followsUpdatesAndRemovals() {
+    SearchIndex index = new SearchIndex();
+    index.put(1, "beach.jpg", "Camera", 1);
+    index.put(2, "beach_2.jpg", "Camera", 2);
+    index.put(1, "mountain.jpg", "Camera", 3);
+    assertArrayEquals(new long[]{2}, index.search("beach", 0, 10).ids);
+    assertArrayEquals(new long[]{1}, index.search("mountain", 0, 10).ids);
+
+    index.retain(new long[]{1}, 1);
+    assertEquals(1, index.size());
+    assertEquals(0, index.search("beach", 0, 10).total);
+  }
+
+  @Test
+  public void matchesAScanOfEveryName() {
+    Random random = new Random(42);
+    SearchIndex index = new SearchIndex();
+    List<String> names = new ArrayList<>();
+    List<String> albums = new ArrayList<>();
+    int count = 5000;
+    for (int i = 0; i < count; i++) {
+      names.add(randomName(random));
+      albums.add(ALBUMS[random.nextInt(ALBUMS.length)]);
+      index.put(i, names.get(i), albums.get(i), random.nextInt(1000));
+    }
+    // Rename and remove enough assets to have the index rebuilt along the way
+    for (int i = 0; i < count; i++) {
+      if (i % 2 == 0) {
+        index.remove(i);
+        names.set(i, null);
+      } else {
+        names.set(i, randomName(random));
+        index.put(i, names.get(i), albums.get(i), random.nextInt(1000));
+      }
+    }
+
+    for (String query : QUERIES) {
+      String normalized = query.toLowerCase(Locale.ROOT);
+      int expected = 0;
+      for (int i = 0; i < count; i++) {
+        String album = albums.get(i);
+        if (names.get(i) != null && (names.get(i).toLowerCase(Locale.ROOT).contains(normalized)
+                || album != null && album.toLowerCase(Locale.ROOT).contains(normalized))) {
+          expected++;
+        }
+      }
+      assertEquals(query, expected, index.search(query, 0, count).total);
+    }
+  }
+
+  private static String randomName(Random random) {
+    String[] prefixes = {"IMG_", "PXL_", "VID_", "Screenshot_", "receipt-"};
+    return prefixes[random.nextInt(prefixes.length)] + (2015 + random.nextInt(10))
+            + String.format(Locale.ROOT, "%02d%02d_%06d", 1 + random.nextInt(12), 1 + random.nextInt(28),
+            random.nextInt(1000000)) + (random.nextBoolean() ? ".jpg" : ".mp4");
+  }
+}
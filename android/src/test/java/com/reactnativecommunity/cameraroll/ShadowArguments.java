@@ -0,0 +1,28 @@
+package com.reactnativecommunity.cameraroll;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+
+/**
+ * Backs the maps and arrays handed to the bridge with plain Java collections, since the native
+ * ones need the React Native libraries loaded, which only happens on a device.
+ */
+@Implements(Arguments.class)
+public class ShadowArguments {
+
+  @Implementation
+  protected static WritableMap createMap() {
+    return new JavaOnlyMap();
+  }
+
+  @Implementation
+  protected static WritableArray createArray() {
+    return new JavaOnlyArray();
+  }
+}
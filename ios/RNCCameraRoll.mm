@@ -883,6 +883,112 @@ RCT_EXPORT_METHOD(getPhotoThumbnail:(NSString *)internalId
     }, false);
 }
 
+RCT_EXPORT_METHOD(getDateHistogram:(NSDictionary *)params
+                  resolve:(RCTPromiseResolveBlock)resolve
+                  reject:(RCTPromiseRejectBlock)reject)
+{
+  reject(@"CameraRoll:getDateHistogram", @"getDateHistogram is not supported on iOS", nil);
+}
+
+RCT_EXPORT_METHOD(searchAssets:(NSString *)query
+                  options:(NSDictionary *)options
+                  resolve:(RCTPromiseResolveBlock)resolve
+                  reject:(RCTPromiseRejectBlock)reject)
+{
+  reject(@"CameraRoll:searchAssets", @"searchAssets is not supported on iOS", nil);
+}
+
+RCT_EXPORT_METHOD(getAssetsInRegion:(NSDictionary *)params
+                  resolve:(RCTPromiseResolveBlock)resolve
+                  reject:(RCTPromiseRejectBlock)reject)
+{
+  reject(@"CameraRoll:getAssetsInRegion", @"getAssetsInRegion is not supported on iOS", nil);
+}
+
+RCT_EXPORT_METHOD(getPrefetchStats:(RCTPromiseResolveBlock)resolve
+                  reject:(RCTPromiseRejectBlock)reject)
+{
+  reject(@"CameraRoll:getPrefetchStats", @"getPrefetchStats is not supported on iOS", nil);
+}
+
+RCT_EXPORT_METHOD(getVolumes:(RCTPromiseResolveBlock)resolve
+                  reject:(RCTPromiseRejectBlock)reject)
+{
+  reject(@"CameraRoll:getVolumes", @"getVolumes is not supported on iOS", nil);
+}
+
+RCT_EXPORT_METHOD(setPerformanceStatsEnabled:(BOOL)enabled
+                  trace:(BOOL)trace)
+{
+}
+
+RCT_EXPORT_METHOD(getPerformanceStats:(NSDictionary *)params
+                  resolve:(RCTPromiseResolveBlock)resolve
+                  reject:(RCTPromiseRejectBlock)reject)
+{
+  reject(@"CameraRoll:getPerformanceStats", @"getPerformanceStats is not supported on iOS", nil);
+}
+
+RCT_EXPORT_METHOD(findDuplicates:(NSDictionary *)params
+                  resolve:(RCTPromiseResolveBlock)resolve
+                  reject:(RCTPromiseRejectBlock)reject)
+{
+  reject(@"CameraRoll:findDuplicates", @"findDuplicates is not supported on iOS", nil);
+}
+
+RCT_EXPORT_METHOD(hashAssets:(NSArray<NSString *> *)ids
+                  options:(NSDictionary *)options
+                  resolve:(RCTPromiseResolveBlock)resolve
+                  reject:(RCTPromiseRejectBlock)reject)
+{
+  reject(@"CameraRoll:hashAssets", @"hashAssets is not supported on iOS", nil);
+}
+
+RCT_EXPORT_METHOD(exportAssets:(NSArray<NSString *> *)ids
+                  destDir:(NSString *)destDir
+                  options:(NSDictionary *)options
+                  resolve:(RCTPromiseResolveBlock)resolve
+                  reject:(RCTPromiseRejectBlock)reject)
+{
+  reject(@"CameraRoll:exportAssets", @"exportAssets is not supported on iOS", nil);
+}
+
+RCT_EXPORT_METHOD(cancelExportAssets:(NSString *)requestId)
+{
+}
+
+RCT_EXPORT_METHOD(openAssetReader:(NSString *)assetId
+                  resolve:(RCTPromiseResolveBlock)resolve
+                  reject:(RCTPromiseRejectBlock)reject)
+{
+  reject(@"CameraRoll:openAssetReader", @"openAssetReader is not supported on iOS", nil);
+}
+
+RCT_EXPORT_METHOD(readChunk:(double)handle
+                  offset:(double)offset
+                  length:(double)length
+                  resolve:(RCTPromiseResolveBlock)resolve
+                  reject:(RCTPromiseRejectBlock)reject)
+{
+  reject(@"CameraRoll:readChunk", @"readChunk is not supported on iOS", nil);
+}
+
+RCT_EXPORT_METHOD(closeAssetReader:(double)handle
+                  resolve:(RCTPromiseResolveBlock)resolve
+                  reject:(RCTPromiseRejectBlock)reject)
+{
+  reject(@"CameraRoll:closeAssetReader", @"closeAssetReader is not supported on iOS", nil);
+}
+
+RCT_EXPORT_METHOD(getVideoFrames:(NSString *)id
+                  timestampsMs:(NSArray<NSNumber *> *)timestampsMs
+                  options:(NSDictionary *)options
+                  resolve:(RCTPromiseResolveBlock)resolve
+                  reject:(RCTPromiseRejectBlock)reject)
+{
+  reject(@"CameraRoll:getVideoFrames", @"getVideoFrames is not supported on iOS", nil);
+}
+
 NSString *subTypeLabelForCollection(PHAssetCollection *assetCollection) {
     PHAssetCollectionSubtype subtype = assetCollection.assetCollectionSubtype;
 
@@ -48,7 +48,19 @@ export type SubTypes =
   | 'PhotoDepthEffect'
   | 'VideoStreamed'
   | 'VideoHighFrameRate'
-  | 'VideoTimelapse';
+  | 'VideoTimelapse'
+  | 'VideoScreenRecording'
+  | 'PhotoBurst'
+  | 'Download';
+
+/**
+ * The subtypes Android can filter on, see `subTypes` in `GetPhotosParams`.
+ */
+export type QueryableSubTypes =
+  | 'PhotoScreenshot'
+  | 'VideoScreenRecording'
+  | 'PhotoBurst'
+  | 'Download';
 
 export type SourceType = 'UserLibrary' | 'CloudShared';
 
@@ -61,10 +73,24 @@ export type Include =
   | 'playableDuration'
   | 'orientation'
   | 'albums'
-  | 'sourceType';
+  | 'sourceType'
+  | 'exif'
+  | 'subTypes';
+
+export type ExifTag =
+  | 'make'
+  | 'model'
+  | 'exposureTime'
+  | 'fNumber'
+  | 'iso'
+  | 'focalLength'
+  | 'dateTimeOriginal'
+  | 'location';
 
 export type AssetType = 'All' | 'Videos' | 'Photos';
 
+export type TimeColumn = 'dateAdded' | 'dateTaken' | 'dateModified';
+
 export type AlbumType = 'All' | 'Album' | 'SmartAlbum';
 
 /**
@@ -94,6 +120,19 @@ export type GetPhotosParams = {
    */
   groupName?: string;
 
+  /**
+   * Restricts the results to these albums, using the `id`s returned by
+   * `getAlbums`. Media from all of them is returned as a single ordered and
+   * paginated list. Android only.
+   */
+  albumIds?: string[];
+
+  /**
+   * Leaves out the media of these albums, using the `id`s returned by
+   * `getAlbums`. Android only.
+   */
+  excludeAlbumIds?: string[];
+
   /**
    * Include assets originating from an iCloud Shared Album. iOS only.
    */
@@ -114,16 +153,80 @@ export type GetPhotosParams = {
    */
   toTime?: number;
 
+  /**
+   * Column used by `fromTime`/`toTime` and to sort the results, most recent
+   * first. Unset keeps the legacy behaviour of filtering on date taken (or date
+   * added when it is missing) and sorting on date added. Android only.
+   */
+  timeColumn?: TimeColumn;
+
   /**
    * Filter by mimetype (e.g. image/jpeg).
    */
   mimeTypes?: Array<string>;
 
+  /**
+   * Only return assets with one of these subtypes, e.g. `['PhotoScreenshot']`.
+   * Filtered inside the media store query, from the folder, file name and
+   * download columns. Android only.
+   */
+  subTypes?: QueryableSubTypes[];
+
+  /**
+   * Leave out assets with any of these subtypes, e.g. `['PhotoScreenshot']`
+   * to hide screenshots. Android only.
+   */
+  excludeSubTypes?: QueryableSubTypes[];
+
   /**
    * Specific fields in the output that we want to include, even though they
    * might have some performance impact.
    */
   include?: Include[];
+
+  /**
+   * With `include: ['exif']`, the EXIF tags to read. Defaults to all of them.
+   * Android only.
+   */
+  exifTags?: ExifTag[];
+
+  /**
+   * Once this page is returned, fetch the next one in the background so that
+   * a following call with `after: page_info.end_cursor` and otherwise the
+   * same params resolves immediately. Android only.
+   */
+  prefetch?: boolean;
+
+  /**
+   * When `first` is larger, the number of rows queried from the media store
+   * at once, the next chunk being queried while the current one is
+   * converted. Defaults to 1000, 0 queries the whole page at once.
+   * Android only.
+   */
+  chunkSize?: number;
+
+  /**
+   * Defaults to true: the page comes back from native code as one array per
+   * field, and the `node` of each edge is built from them the first time it is
+   * read. Set to false to have every node built up front. Android only.
+   */
+  lazy?: boolean;
+
+  /**
+   * The media store volumes to read, see `getVolumes`. Each one is queried at
+   * once and their assets are merged in order; `end_cursor` then holds the
+   * position reached in each, so pass the same volumes with it. Defaults to
+   * all of them. Android only.
+   */
+  volumes?: string[];
+
+  /**
+   * Stops converting assets once this many milliseconds have passed since the
+   * page was queried, and returns the ones converted so far, at least one,
+   * with an `end_cursor` to the next. The page then reports its `timing`, so
+   * that `first` can be sized to fit the budget next time. Android only.
+   */
+  timeBudgetMs?: number;
 };
 
 export type PhotoIdentifier = {
@@ -153,9 +256,37 @@ export type PhotoIdentifier = {
       heading?: number;
       speed?: number;
     } | null;
+    /**
+     * Only set for photos if `include` contains `exif`. Tags missing from
+     * the photo are left out. Android only.
+     */
+    exif?: PhotoExif | null;
   };
 };
 
+export type PhotoExif = {
+  make?: string;
+  model?: string;
+  /**
+   * In seconds.
+   */
+  exposureTime?: number;
+  fNumber?: number;
+  iso?: number;
+  /**
+   * In millimeters.
+   */
+  focalLength?: number;
+  /**
+   * ISO 8601, with the time zone offset when the photo has one, e.g.
+   * `2023-05-01T12:34:56+02:00`.
+   */
+  dateTimeOriginal?: string;
+  latitude?: number;
+  longitude?: number;
+  altitude?: number;
+};
+
 export type PhotoConvertionOptions = {
   convertHeicImages?: boolean;
   quality?: number;
@@ -169,16 +300,63 @@ export type PhotoIdentifiersPage = {
     end_cursor?: string;
   };
   limited?: boolean;
+  /**
+   * Set when `timeBudgetMs` was given. Android only.
+   */
+  timing?: PageTiming;
 };
 
+export type PageTiming = {
+  /**
+   * Time spent on the page, from querying the media store to the last asset
+   * converted.
+   */
+  elapsedMs: number;
+  /**
+   * Average time spent converting each asset read, e.g. reading its size or
+   * location for `include`.
+   */
+  msPerRow: number;
+  /**
+   * Number of assets read, including the ones skipped.
+   */
+  rows: number;
+  /**
+   * Whether the budget ran out before `first` assets were converted.
+   */
+  budgetExhausted: boolean;
+};
+
+export type SaveImageFormat = 'jpeg' | 'png' | 'webp';
+
 export type SaveToCameraRollOptions = {
   type?: 'photo' | 'video' | 'auto';
   album?: string;
+  /**
+   * Largest width or height to save a photo at. Larger photos are decoded
+   * subsampled and scaled down while saving. Android only.
+   */
+  maxDimension?: number;
+  /**
+   * Format to re-encode a photo in while saving. Defaults to the format of the
+   * photo when it is JPEG, PNG or WebP, and JPEG otherwise. Android only.
+   */
+  format?: SaveImageFormat;
+  /**
+   * Quality to re-encode a photo with, from 0 to 1. Defaults to 0.9. Android
+   * only.
+   */
+  quality?: number;
 };
 
 export type GetAlbumsParams = {
   assetType?: AssetType;
   albumType?: AlbumType;
+  /**
+   * The media store volumes to count assets on, see `getVolumes`. Defaults to
+   * all of them. Android only.
+   */
+  volumes?: string[];
 };
 
 export type AlbumSubType =
@@ -199,6 +377,526 @@ export type Album = {
   subtype?: AlbumSubType;
 };
 
+export type SearchAssetsOptions = {
+  /**
+   * The number of matches to return. Defaults to 50.
+   */
+  first?: number;
+  /**
+   * A cursor that matches `page_info { end_cursor }` returned from a previous
+   * call to `searchAssets` with the same query.
+   */
+  after?: string;
+  /**
+   * Specific fields in the output that we want to include, as in `getPhotos`.
+   */
+  include?: Include[];
+};
+
+export type SearchAssetsPage = PhotoIdentifiersPage & {
+  /**
+   * Number of matches across all pages.
+   */
+  total: number;
+};
+
+/**
+ * Shape of the param arg for the `getAssetsInRegion` function.
+ */
+export type GetAssetsInRegionParams = {
+  /**
+   * The latitudes of the box, between -90 and 90.
+   */
+  minLat: number;
+  maxLat: number;
+  /**
+   * The longitudes of the box, between -180 and 180. A box whose `minLng` is
+   * larger than its `maxLng` crosses the antimeridian.
+   */
+  minLng: number;
+  maxLng: number;
+  /**
+   * Groups the assets into the tiles of a 2^zoom by 2^zoom grid of the world,
+   * from 0 to 30, instead of returning them one by one.
+   */
+  zoom?: number;
+  /**
+   * The most assets or clusters to return. Defaults to 500.
+   */
+  limit?: number;
+};
+
+export type RegionAsset = {
+  id: string;
+  uri: string;
+  mediaType: 'photo' | 'video';
+};
+
+export type LocatedAsset = RegionAsset & {
+  latitude: number;
+  longitude: number;
+  /**
+   * When the asset was added to the media library, in seconds.
+   */
+  timestamp: number;
+};
+
+/**
+ * The assets of a tile, at their mean position, along with the most recent
+ * of them.
+ */
+export type RegionCluster = RegionAsset & {
+  latitude: number;
+  longitude: number;
+  count: number;
+};
+
+export type AssetsInRegion = {
+  /**
+   * The assets in the box, most recent first, when no `zoom` was given.
+   */
+  assets?: LocatedAsset[];
+  /**
+   * The non-empty tiles of the box, largest first, when a `zoom` was given.
+   */
+  clusters?: RegionCluster[];
+  /**
+   * Number of assets in the box.
+   */
+  count: number;
+  /**
+   * Number of assets whose location hasn't been read yet, and which are
+   * missing from the results.
+   */
+  pending: number;
+  /**
+   * Whether the locations are being read in the background.
+   */
+  indexing: boolean;
+};
+
+export type DateHistogramGranularity = 'day' | 'month' | 'year';
+
+/**
+ * Shape of the param arg for the `getDateHistogram` function. Accepts the
+ * same filters as `getPhotos`.
+ */
+export type GetDateHistogramParams = Pick<
+  GetPhotosParams,
+  | 'groupName'
+  | 'albumIds'
+  | 'excludeAlbumIds'
+  | 'assetType'
+  | 'fromTime'
+  | 'toTime'
+  | 'timeColumn'
+  | 'mimeTypes'
+  | 'subTypes'
+  | 'excludeSubTypes'
+> & {
+  /**
+   * Size of the buckets, in local time. Defaults to 'day'.
+   */
+  granularity?: DateHistogramGranularity;
+};
+
+export type DateHistogramBucket = {
+  /**
+   * Start of the bucket, in seconds like `PhotoIdentifier.node.timestamp`.
+   */
+  timestamp: number;
+  count: number;
+  /**
+   * Pass as `after` to `getPhotos`, with the same filters, to start at the
+   * first asset of this bucket.
+   */
+  cursor: string;
+};
+
+export type DateHistogram = {
+  /**
+   * Non-empty buckets, most recent first.
+   */
+  buckets: DateHistogramBucket[];
+  /**
+   * Number of assets matching the filters, including those without a date.
+   */
+  count: number;
+};
+
+export type PrefetchStats = {
+  /**
+   * `getPhotos` calls with `prefetch` made since prefetching was first
+   * requested.
+   */
+  requests: number;
+  /**
+   * Calls served from a prefetched page.
+   */
+  hits: number;
+  misses: number;
+  /**
+   * Pages fetched ahead of time.
+   */
+  scheduled: number;
+  /**
+   * Prefetched pages dropped without being used, because they expired, a
+   * different query arrived or the media library changed.
+   */
+  wasted: number;
+  /**
+   * Prefetched pages dropped because the media library changed.
+   */
+  invalidations: number;
+  hitRate: number;
+};
+
+export type PerformanceStage =
+  | 'getPhotos.query'
+  | 'getPhotos.convert'
+  | 'getPhotos.resolve'
+  | 'getAlbums.query'
+  | 'getAlbums.convert'
+  | 'getDateHistogram.query'
+  | 'getDateHistogram.convert'
+  | 'openAssetFileDescriptor'
+  | 'mediaMetadataRetriever'
+  | 'exif'
+  | 'decodeBounds'
+  | 'save.copy'
+  | 'save.publish'
+  | 'delete'
+  | 'findDuplicates.hash'
+  | 'findDuplicates.group'
+  | 'hashAssets.hash'
+  | 'exportAssets.copy'
+  | 'readChunk'
+  | 'save.transcode'
+  | 'getVideoFrames.extract'
+  | 'getVideoFrames.encode'
+  | 'sniffSize'
+  | 'searchAssets.index'
+  | 'searchAssets.search'
+  | 'getAssetsInRegion.index'
+  | 'getAssetsInRegion.query'
+  | 'metadataColumns';
+
+export type StageStats = {
+  /**
+   * Number of times the stage ran to completion or failure.
+   */
+  calls: number;
+  totalNs: number;
+  maxNs: number;
+  averageNs: number;
+  /**
+   * Rows read or assets written by the stage.
+   */
+  rows: number;
+  /**
+   * Bytes copied by the stage.
+   */
+  bytes: number;
+  failures: number;
+  /**
+   * Rows left out of the result, e.g. assets whose size could not be read.
+   */
+  skips: number;
+};
+
+export type PerformanceStats = {
+  enabled: boolean;
+  trace: boolean;
+  stages: {[stage in PerformanceStage]: StageStats};
+};
+
+export type GetPerformanceStatsParams = {
+  /**
+   * Zero every counter once read.
+   */
+  reset?: boolean;
+};
+
+export type DuplicateHashAlgorithm = 'dHash' | 'pHash';
+
+/**
+ * Shape of the param arg for the `findDuplicates` function. Accepts the same
+ * filters as `getPhotos`; only photos are compared.
+ */
+export type FindDuplicatesParams = Pick<
+  GetPhotosParams,
+  | 'groupName'
+  | 'albumIds'
+  | 'excludeAlbumIds'
+  | 'fromTime'
+  | 'toTime'
+  | 'timeColumn'
+  | 'mimeTypes'
+  | 'subTypes'
+  | 'excludeSubTypes'
+> & {
+  /**
+   * Perceptual hash to compare photos with. 'dHash' is cheaper, 'pHash'
+   * better tolerates edits such as brightness changes. Defaults to 'pHash'.
+   */
+  algorithm?: DuplicateHashAlgorithm;
+  /**
+   * Largest number of bits, out of 64, in which the hashes of two photos of a
+   * group may differ: 0 only groups identical hashes. Defaults to 6.
+   */
+  maxDistance?: number;
+};
+
+export type DuplicateAsset = {
+  id: string;
+  uri: string;
+  width: number;
+  height: number;
+  fileSize: number;
+  /**
+   * In seconds, like `PhotoIdentifier.node.timestamp`.
+   */
+  timestamp: number;
+  /**
+   * Bits in which the hash of this photo differs from the first of its group.
+   */
+  distance: number;
+};
+
+export type DuplicateGroup = {
+  /**
+   * Two or more photos, in the order `getPhotos` returns them.
+   */
+  assets: DuplicateAsset[];
+};
+
+export type FindDuplicatesProgress = {
+  /**
+   * Photos hashed so far, including those hashed by earlier runs.
+   */
+  processed: number;
+  total: number;
+};
+
+export type FindDuplicatesListener = {
+  onProgress?: (progress: FindDuplicatesProgress) => void;
+  /**
+   * Called with batches of groups once every photo is hashed.
+   */
+  onGroups?: (groups: DuplicateGroup[]) => void;
+};
+
+export type FindDuplicatesResult = {
+  /**
+   * Photos matching the filters.
+   */
+  total: number;
+  /**
+   * Photos hashed by this run.
+   */
+  hashed: number;
+  /**
+   * Photos whose hash was kept from an earlier run.
+   */
+  cached: number;
+  /**
+   * Photos that could not be decoded, and were left out.
+   */
+  failed: number;
+  /**
+   * Videos matching the filters, which are not compared.
+   */
+  skipped: number;
+  /**
+   * Number of groups sent to `onGroups`.
+   */
+  groups: number;
+};
+
+export type ContentHashAlgorithm = 'sha256' | 'xxh64';
+
+export type HashAssetsOptions = {
+  /**
+   * 'sha256' to compare with hashes computed elsewhere, or 'xxh64', which is
+   * several times faster, to detect changes. Defaults to 'sha256'.
+   */
+  algorithm?: ContentHashAlgorithm;
+};
+
+export type AssetHash = {
+  id: string;
+  /**
+   * Lowercase hex digest of the file's bytes, or null if it could not be read.
+   */
+  hash: string | null;
+  /**
+   * Bytes hashed.
+   */
+  size: number;
+  /**
+   * Whether the hash was kept from an earlier call, the asset being unchanged
+   * since.
+   */
+  cached: boolean;
+  /**
+   * Why the asset could not be hashed, when it could not.
+   */
+  error?: string;
+};
+
+export type HashAssetsProgress = AssetHash & {
+  /**
+   * Assets hashed so far, including those that failed.
+   */
+  processed: number;
+  total: number;
+};
+
+export type HashAssetsListener = {
+  /**
+   * Called with each asset as soon as its hash is known.
+   */
+  onProgress?: (progress: HashAssetsProgress) => void;
+};
+
+/**
+ * The part of an `AbortSignal` that `exportAssets` uses.
+ */
+export type ExportAssetsSignal = {
+  readonly aborted: boolean;
+  addEventListener(type: 'abort', listener: () => void): void;
+  removeEventListener(type: 'abort', listener: () => void): void;
+};
+
+export type ExportAssetsOptions = {
+  /**
+   * Cancels the export when aborted: copies in progress are abandoned without
+   * leaving partial files, and the returned Promise is rejected. Files already
+   * copied are kept, so calling again with the same ids resumes the export.
+   */
+  signal?: ExportAssetsSignal;
+};
+
+export type ExportStatus = 'copied' | 'skipped' | 'failed';
+
+export type ExportedAsset = {
+  id: string;
+  /**
+   * Absolute path of the exported file, or null if the asset failed.
+   */
+  path: string | null;
+  /**
+   * 'skipped' when the file already existed with the same size and
+   * modification time as the asset.
+   */
+  status: ExportStatus;
+  size: number;
+  /**
+   * Why the asset could not be exported, when it could not.
+   */
+  error?: string;
+};
+
+export type ExportThroughput = {
+  /**
+   * Bytes copied so far by this call, leaving out skipped assets.
+   */
+  bytes: number;
+  durationMs: number;
+  bytesPerSecond: number;
+};
+
+export type ExportAssetsProgress = ExportedAsset &
+  ExportThroughput & {
+    processed: number;
+    total: number;
+  };
+
+export type ExportAssetsListener = {
+  /**
+   * Called with each asset as soon as it is exported.
+   */
+  onProgress?: (progress: ExportAssetsProgress) => void;
+};
+
+export type ExportAssetsResult = ExportThroughput & {
+  /**
+   * One per id, in the order of `ids`.
+   */
+  assets: ExportedAsset[];
+  copied: number;
+  skipped: number;
+  failed: number;
+};
+
+export type AssetReader = {
+  /**
+   * Passed to `readChunk` and `closeAssetReader`.
+   */
+  handle: number;
+  /**
+   * Size of the asset in bytes, or -1 if unknown.
+   */
+  size: number;
+};
+
+export type AssetChunk = {
+  /**
+   * The bytes read, in base64.
+   */
+  data: string;
+  /**
+   * Number of bytes read.
+   */
+  length: number;
+  /**
+   * Whether fewer bytes than asked for were read, the end of the asset being
+   * reached.
+   */
+  eof: boolean;
+};
+
+/**
+ * Which frame to take near a requested time: the closest key frame, the
+ * closest frame (slower, as frames after the key frame must be decoded), or
+ * the key frame before or after it.
+ */
+export type VideoFrameOption =
+  | 'closestSync'
+  | 'closest'
+  | 'previousSync'
+  | 'nextSync';
+
+export type GetVideoFramesOptions = {
+  /**
+   * Largest width or height of a frame in pixels. Defaults to 256.
+   */
+  maxSize?: number;
+  /**
+   * Defaults to `closestSync`.
+   */
+  option?: VideoFrameOption;
+};
+
+export type VideoFrame = {
+  /**
+   * The requested time, in milliseconds.
+   */
+  time: number;
+  /**
+   * `file://` URI of the frame as a JPEG, or null if it could not be
+   * extracted.
+   */
+  uri: string | null;
+  width: number;
+  height: number;
+  /**
+   * Whether the frame was extracted by an earlier call.
+   */
+  cached: boolean;
+  error?: string;
+};
+
 export type ThumbnailSize = {
   height: number;
   width: number;
@@ -220,6 +918,124 @@ export const progressUpdateEventEmitter = new NativeEventEmitter(
   isIOS ? RNCCameraRoll : undefined,
 );
 
+/**
+ * A `getPhotos` page as returned with the `columns` option: one array per
+ * field, with mime types and album names as indexes into tables of the
+ * distinct values. Arrays for fields that weren't included are left out.
+ */
+type PhotoColumns = {
+  count: number;
+  imageUriPrefix: string;
+  videoUriPrefix: string;
+  sourceType: SourceType | null;
+  id: number[];
+  typeIndex: number[];
+  types: Array<string | null>;
+  extensions?: Array<string | null>;
+  groupIndex?: number[];
+  groups?: Array<string | null>;
+  timestamp: number[];
+  modificationTimestamp: number[];
+  /** Bits, the names of which are in `subTypeNames`, lowest bit first. */
+  subTypes: number[];
+  subTypeNames: SubTypes[];
+  width?: number[];
+  height?: number[];
+  playableDuration?: Array<number | null>;
+  filename?: Array<string | null>;
+  fileSize?: number[];
+  orientation?: number[];
+  location?: Array<PhotoIdentifier['node']['location']>;
+  exif?: Array<PhotoExif | null>;
+};
+
+type PhotoColumnsPage = Omit<PhotoIdentifiersPage, 'edges'> & {
+  columns: PhotoColumns;
+};
+
+function valueAt<T>(column: Array<T> | undefined, index: number): T | null {
+  return column ? (column[index] ?? null) : null;
+}
+
+function subTypesOf(columns: PhotoColumns, index: number): SubTypes[] {
+  const bits = columns.subTypes[index] ?? 0;
+  const subTypes: SubTypes[] = [];
+  for (let i = 0; i < columns.subTypeNames.length; i++) {
+    if (bits & (1 << i)) {
+      subTypes.push(columns.subTypeNames[i] as SubTypes);
+    }
+  }
+  return subTypes;
+}
+
+function createNode(
+  columns: PhotoColumns,
+  index: number,
+): PhotoIdentifier['node'] {
+  const id = String(columns.id[index]);
+  const typeIndex = columns.typeIndex[index] ?? -1;
+  const type = valueAt(columns.types, typeIndex);
+  const isVideo = type != null && type.startsWith('video');
+  const groupIndex = valueAt(columns.groupIndex, index);
+  // The same fields, in the same order, as the nodes built natively
+  return {
+    image: {
+      uri: (isVideo ? columns.videoUriPrefix : columns.imageUriPrefix) + id,
+      width: valueAt(columns.width, index),
+      height: valueAt(columns.height, index),
+      playableDuration: valueAt(columns.playableDuration, index),
+      filename: valueAt(columns.filename, index),
+      fileSize: valueAt(columns.fileSize, index),
+      extension: valueAt(columns.extensions, typeIndex),
+      orientation: valueAt(columns.orientation, index),
+    },
+    id,
+    type,
+    subTypes: subTypesOf(columns, index),
+    sourceType: columns.sourceType,
+    group_name:
+      groupIndex != null ? [valueAt(columns.groups, groupIndex)] : [],
+    timestamp: valueAt(columns.timestamp, index),
+    modificationTimestamp: valueAt(columns.modificationTimestamp, index),
+    location: valueAt(columns.location, index),
+    exif: valueAt(columns.exif, index),
+  } as PhotoIdentifier['node'];
+}
+
+/**
+ * @returns edges whose `node` is built from the columns when first read, and
+ * then kept like any other property
+ */
+function createLazyEdges(columns: PhotoColumns): Array<PhotoIdentifier> {
+  const edges: Array<PhotoIdentifier> = new Array(columns.count);
+  for (let i = 0; i < columns.count; i++) {
+    const edge = {} as PhotoIdentifier;
+    const define = (node: PhotoIdentifier['node']) =>
+      Object.defineProperty(edge, 'node', {
+        value: node,
+        writable: true,
+        enumerable: true,
+        configurable: true,
+      });
+    Object.defineProperty(edge, 'node', {
+      get() {
+        const node = createNode(columns, i);
+        define(node);
+        return node;
+      },
+      set: define,
+      enumerable: true,
+      configurable: true,
+    });
+    edges[i] = edge;
+  }
+  return edges;
+}
+
+let findDuplicatesRequests = 0;
+let hashAssetsRequests = 0;
+let exportAssetsRequests = 0;
+
 /**
  * `CameraRoll` provides access to the local camera roll or photo library.
  *
@@ -256,7 +1072,8 @@ export class CameraRoll {
    * Saves the photo or video to the camera roll or photo library, and returns the newly created asset.
    *
    * @param tag The URI of the file you want to save to the camera roll.
-   * @param options Custom options for saving to a specific album, or overriding the media type.
+   * @param options Custom options for saving to a specific album, overriding the media type, or
+   * resizing and re-encoding a photo on Android.
    * @returns The newly created `PhotoIdentifier` from the camera roll.
    */
   static saveAsset(
@@ -264,7 +1081,7 @@ export class CameraRoll {
     options: SaveToCameraRollOptions = {},
   ): Promise<PhotoIdentifier> {
     let {type = 'auto'} = options;
-    const {album = ''} = options;
+    const {album = '', maxDimension, format, quality} = options;
     if (tag === '') throw new Error('tag must be a valid string');
 
     if (type === 'auto') {
@@ -273,7 +1090,13 @@ export class CameraRoll {
         type = 'video';
       else type = 'photo';
     }
-    return RNCCameraRoll.saveToCameraRoll(tag, {type, album});
+    return RNCCameraRoll.saveToCameraRoll(tag, {
+      type,
+      album,
+      ...(maxDimension !== undefined && {maxDimension}),
+      ...(format !== undefined && {format}),
+      ...(quality !== undefined && {quality}),
+    });
   }
 
   static saveToCameraRoll(
@@ -310,7 +1133,265 @@ export class CameraRoll {
    */
   static getPhotos(params: GetPhotosParams): Promise<PhotoIdentifiersPage> {
     params = CameraRoll.getParamsWithDefaults(params);
-    return RNCCameraRoll.getPhotos(params);
+    if (Platform.OS !== 'android' || params.lazy === false) {
+      return RNCCameraRoll.getPhotos(params);
+    }
+    const page = RNCCameraRoll.getPhotos({...params, columns: true}) as Promise<
+      PhotoIdentifiersPage | PhotoColumnsPage
+    >;
+    return page.then((result) => {
+      if (!('columns' in result)) {
+        return result;
+      }
+      const {columns, ...rest} = result;
+      return {...rest, edges: createLazyEdges(columns)};
+    });
+  }
+
+  /**
+   * Returns a Promise with a page of the photos and videos whose file or album
+   * name contains `query`, ignoring case. Names are looked up in an index kept
+   * in memory, built on the first call and kept up to date with the media
+   * library. Android only.
+   */
+  static searchAssets(
+    query: string,
+    options: SearchAssetsOptions = {},
+  ): Promise<SearchAssetsPage> {
+    return RNCCameraRoll.searchAssets(query, options);
+  }
+
+  /**
+   * Returns a Promise with the photos and videos taken inside a bounding box,
+   * or with clusters of them per tile when `zoom` is given, for map views.
+   * Locations are read once in the background and kept between sessions;
+   * until then, results only hold the assets indexed so far. Android only.
+   */
+  static getAssetsInRegion(
+    params: GetAssetsInRegionParams,
+  ): Promise<AssetsInRegion> {
+    return RNCCameraRoll.getAssetsInRegion(params);
+  }
+
+  /**
+   * Returns a Promise with the number of assets per day, month or year, in the
+   * order `getPhotos` returns them, along with the cursor of the first asset of
+   * each bucket. Android only.
+   */
+  static getDateHistogram(
+    params: GetDateHistogramParams = {},
+  ): Promise<DateHistogram> {
+    const newParams = {...params};
+    if (newParams.assetType === undefined) newParams.assetType = 'All';
+    return RNCCameraRoll.getDateHistogram(newParams);
+  }
+
+  /**
+   * Returns a Promise with counters on how often `getPhotos` calls were served
+   * from a page fetched with `prefetch`. Android only.
+   */
+  static getPrefetchStats(): Promise<PrefetchStats> {
+    return RNCCameraRoll.getPrefetchStats();
+  }
+
+  /**
+   * Returns a Promise with the media store volumes assets can be read from,
+   * e.g. `external_primary` and the id of an SD card, to pass as the `volumes`
+   * of `getPhotos` and `getAlbums`. Android only.
+   */
+  static getVolumes(): Promise<string[]> {
+    return RNCCameraRoll.getVolumes();
+  }
+
+  /**
+   * Starts or stops recording the timings and counters reported by
+   * `getPerformanceStats`. With `trace`, each stage is also emitted as a
+   * systrace section, visible in Perfetto captures. Android only.
+   */
+  static setPerformanceStatsEnabled(enabled: boolean, trace = false): void {
+    RNCCameraRoll.setPerformanceStatsEnabled(enabled, trace);
+  }
+
+  /**
+   * Returns a Promise with the time spent in each stage of the native
+   * operations, along with the rows, bytes, failures and skips it recorded.
+   * Android only.
+   */
+  static getPerformanceStats(
+    params: GetPerformanceStatsParams = {},
+  ): Promise<PerformanceStats> {
+    return RNCCameraRoll.getPerformanceStats(params);
+  }
+
+  /**
+   * Finds groups of photos that look the same, such as copies, re-encoded
+   * versions and bursts, by comparing perceptual hashes computed natively.
+   * Hashes are kept between calls, so later calls only hash new or modified
+   * photos. Progress and groups are passed to `listener` as they come, and the
+   * returned Promise resolves once every group was passed. Android only.
+   */
+  static async findDuplicates(
+    params: FindDuplicatesParams = {},
+    listener: FindDuplicatesListener = {},
+  ): Promise<FindDuplicatesResult> {
+    const requestId = `findDuplicates-${++findDuplicatesRequests}`;
+    const subscriptions = [
+      progressUpdateEventEmitter.addListener('onDuplicatesProgress', event => {
+        if (event.requestId === requestId) {
+          listener.onProgress?.({
+            processed: event.processed,
+            total: event.total,
+          });
+        }
+      }),
+      progressUpdateEventEmitter.addListener('onDuplicateGroups', event => {
+        if (event.requestId === requestId) {
+          listener.onGroups?.(event.groups);
+        }
+      }),
+    ];
+    try {
+      return await RNCCameraRoll.findDuplicates({...params, requestId});
+    } finally {
+      subscriptions.forEach(subscription => subscription.remove());
+    }
+  }
+
+  /**
+   * Hashes the bytes of the assets with the given ids, as returned by
+   * `getPhotos`. Hashes are kept between calls and reused while an asset is
+   * unchanged. Each asset is passed to `listener` as soon as it is hashed, and
+   * the returned Promise resolves with the hashes in the order of `ids`.
+   * Android only.
+   */
+  static async hashAssets(
+    ids: string[],
+    options: HashAssetsOptions = {},
+    listener: HashAssetsListener = {},
+  ): Promise<AssetHash[]> {
+    const requestId = `hashAssets-${++hashAssetsRequests}`;
+    const subscription = progressUpdateEventEmitter.addListener(
+      'onAssetHashed',
+      event => {
+        if (event.requestId === requestId) {
+          listener.onProgress?.({
+            id: event.id,
+            hash: event.hash,
+            size: event.size,
+            cached: event.cached,
+            error: event.error,
+            processed: event.processed,
+            total: event.total,
+          });
+        }
+      },
+    );
+    try {
+      return await RNCCameraRoll.hashAssets(ids, {...options, requestId});
+    } finally {
+      subscription.remove();
+    }
+  }
+
+  /**
+   * Copies the original files of the assets with the given ids, as returned by
+   * `getPhotos`, into `destDir`, a path or file:// URI such as one in the
+   * app's own storage. Files that already exist with the same size and
+   * modification time are skipped. Each asset is passed to `listener` as soon
+   * as it is exported, and the returned Promise resolves with the results in
+   * the order of `ids`. Android only.
+   */
+  static async exportAssets(
+    ids: string[],
+    destDir: string,
+    options: ExportAssetsOptions = {},
+    listener: ExportAssetsListener = {},
+  ): Promise<ExportAssetsResult> {
+    const requestId = `exportAssets-${++exportAssetsRequests}`;
+    const {signal} = options;
+    const onAbort = () => RNCCameraRoll.cancelExportAssets(requestId);
+    const subscription = progressUpdateEventEmitter.addListener(
+      'onExportProgress',
+      event => {
+        if (event.requestId === requestId) {
+          listener.onProgress?.({
+            id: event.id,
+            path: event.path,
+            status: event.status,
+            size: event.size,
+            error: event.error,
+            bytes: event.bytes,
+            durationMs: event.durationMs,
+            bytesPerSecond: event.bytesPerSecond,
+            processed: event.processed,
+            total: event.total,
+          });
+        }
+      },
+    );
+    signal?.addEventListener('abort', onAbort);
+    try {
+      const result = RNCCameraRoll.exportAssets(ids, destDir, {requestId});
+      // Native calls run in order, so the export is known by the time this runs
+      if (signal?.aborted) {
+        onAbort();
+      }
+      return (await result) as ExportAssetsResult;
+    } finally {
+      signal?.removeEventListener('abort', onAbort);
+      subscription.remove();
+    }
+  }
+
+  /**
+   * Opens the asset with the given id, as returned by `getPhotos`, for reading
+   * it a byte range at a time with `readChunk`, e.g. for resumable uploads.
+   * Opening an asset that is already open returns the same handle. Readers
+   * are closed by `closeAssetReader`, or automatically once idle for a minute.
+   * Android only.
+   */
+  static openAssetReader(id: string): Promise<AssetReader> {
+    return RNCCameraRoll.openAssetReader(id);
+  }
+
+  /**
+   * Reads `length` bytes, at most 8 MB, at `offset` of an asset opened with
+   * `openAssetReader`. Ranges of the same asset may be read concurrently.
+   * Android only.
+   */
+  static readChunk(
+    handle: number,
+    offset: number,
+    length: number,
+  ): Promise<AssetChunk> {
+    return RNCCameraRoll.readChunk(handle, offset, length);
+  }
+
+  /**
+   * Closes a reader returned by `openAssetReader`. A reader opened several
+   * times stays open until each was closed. Resolves with whether the handle
+   * was open. Android only.
+   */
+  static closeAssetReader(handle: number): Promise<boolean> {
+    return RNCCameraRoll.closeAssetReader(handle);
+  }
+
+  /**
+   * Extracts the frames of the video with the given id at the given times, in
+   * milliseconds, as JPEG files, e.g. for the thumbnails of a trim bar. The
+   * video is opened once for all of them, and frames extracted by an earlier
+   * call with the same options are reused. Resolves with one frame per time,
+   * in order. Android only.
+   */
+  static getVideoFrames(
+    id: string,
+    timestampsMs: number[],
+    options: GetVideoFramesOptions = {},
+  ): Promise<VideoFrame[]> {
+    return RNCCameraRoll.getVideoFrames(id, timestampsMs, {
+      ...(options.maxSize !== undefined && {maxSize: options.maxSize}),
+      ...(options.option !== undefined && {option: options.option}),
+    });
   }
 
   /**
@@ -75,6 +75,123 @@ type PhotoIdentifiersPage = {
     end_cursor?: string;
   };
   limited?: boolean;
+  timing?: {
+    elapsedMs: number;
+    msPerRow: number;
+    rows: number;
+    budgetExhausted: boolean;
+  };
+};
+
+type SearchAssetsPage = PhotoIdentifiersPage & {
+  total: number;
+};
+
+type RegionAsset = {
+  id: string;
+  uri: string;
+  mediaType: 'photo' | 'video';
+  latitude: number;
+  longitude: number;
+};
+
+type AssetsInRegion = {
+  assets?: Array<RegionAsset & {timestamp: number}>;
+  clusters?: Array<RegionAsset & {count: number}>;
+  count: number;
+  pending: number;
+  indexing: boolean;
+};
+
+type DateHistogram = {
+  buckets: Array<{
+    timestamp: number;
+    count: number;
+    cursor: string;
+  }>;
+  count: number;
+};
+
+type PrefetchStats = {
+  requests: number;
+  hits: number;
+  misses: number;
+  scheduled: number;
+  wasted: number;
+  invalidations: number;
+  hitRate: number;
+};
+
+type StageStats = {
+  calls: number;
+  totalNs: number;
+  maxNs: number;
+  averageNs: number;
+  rows: number;
+  bytes: number;
+  failures: number;
+  skips: number;
+};
+
+type PerformanceStats = {
+  enabled: boolean;
+  trace: boolean;
+  stages: {[stage: string]: StageStats};
+};
+
+type FindDuplicatesResult = {
+  total: number;
+  hashed: number;
+  cached: number;
+  failed: number;
+  skipped: number;
+  groups: number;
+};
+
+type AssetHash = {
+  id: string;
+  hash: string | null;
+  size: number;
+  cached: boolean;
+  error?: string;
+};
+
+type ExportedAsset = {
+  id: string;
+  path: string | null;
+  status: string;
+  size: number;
+  error?: string;
+};
+
+type ExportAssetsResult = {
+  assets: ExportedAsset[];
+  copied: number;
+  skipped: number;
+  failed: number;
+  bytes: number;
+  durationMs: number;
+  bytesPerSecond: number;
+};
+
+type AssetReader = {
+  handle: number;
+  size: number;
+};
+
+type AssetChunk = {
+  data: string;
+  length: number;
+  eof: boolean;
+};
+
+type VideoFrame = {
+  time: number;
+  uri: string | null;
+  width: number;
+  height: number;
+  cached: boolean;
+  error?: string;
 };
 
 export interface Spec extends TurboModule {
@@ -90,6 +207,29 @@ export interface Spec extends TurboModule {
     internalID: string,
     options: Object,
   ): Promise<PhotoThumbnail>;
+  getDateHistogram(params: Object): Promise<DateHistogram>;
+  searchAssets(query: string, options: Object): Promise<SearchAssetsPage>;
+  getAssetsInRegion(params: Object): Promise<AssetsInRegion>;
+  getPrefetchStats(): Promise<PrefetchStats>;
+  getVolumes(): Promise<string[]>;
+  setPerformanceStatsEnabled(enabled: boolean, trace: boolean): void;
+  getPerformanceStats(params: Object): Promise<PerformanceStats>;
+  findDuplicates(params: Object): Promise<FindDuplicatesResult>;
+  hashAssets(ids: Array<string>, options: Object): Promise<AssetHash[]>;
+  exportAssets(
+    ids: Array<string>,
+    destDir: string,
+    options: Object,
+  ): Promise<ExportAssetsResult>;
+  cancelExportAssets(requestId: string): void;
+  openAssetReader(id: string): Promise<AssetReader>;
+  readChunk(handle: number, offset: number, length: number): Promise<AssetChunk>;
+  closeAssetReader(handle: number): Promise<boolean>;
+  getVideoFrames(
+    id: string,
+    timestampsMs: Array<number>,
+    options: Object,
+  ): Promise<VideoFrame[]>;
   addListener(eventName: string): void;
   removeListeners(count: Double): void;
 }
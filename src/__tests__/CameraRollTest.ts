@@ -1,3 +1,5 @@
+import {Platform} from 'react-native';
+
 import {CameraRoll} from '../CameraRoll';
 
 import NativeModule from '../NativeCameraRollModule';
@@ -5,6 +7,16 @@ import NativeModule from '../NativeCameraRollModule';
 let mockDeletePhotos: jest.Mock;
 let mockSaveToCameraRoll: jest.Mock;
 let mockGetPhotos: jest.Mock;
+let mockGetDateHistogram: jest.Mock;
+let mockSearchAssets: jest.Mock;
+let mockGetAssetsInRegion: jest.Mock;
+let mockSetPerformanceStatsEnabled: jest.Mock;
+let mockFindDuplicates: jest.Mock;
+let mockHashAssets: jest.Mock;
+let mockExportAssets: jest.Mock;
+let mockCancelExportAssets: jest.Mock;
+let mockReadChunk: jest.Mock;
+let mockGetVideoFrames: jest.Mock;
 
 jest.mock('../NativeCameraRollModule', () => {
   mockDeletePhotos = jest.fn();
@@ -12,10 +24,32 @@ jest.mock('../NativeCameraRollModule', () => {
     Promise.resolve({node: {image: {uri: ''}}}),
   );
   mockGetPhotos = jest.fn();
+  mockGetDateHistogram = jest.fn();
+  mockSearchAssets = jest.fn();
+  mockGetAssetsInRegion = jest.fn();
+  mockSetPerformanceStatsEnabled = jest.fn();
+  mockFindDuplicates = jest.fn(() => Promise.resolve({groups: 0}));
+  mockHashAssets = jest.fn(() => Promise.resolve([]));
+  mockExportAssets = jest.fn(() => Promise.resolve({assets: []}));
+  mockCancelExportAssets = jest.fn();
+  mockReadChunk = jest.fn(() =>
+    Promise.resolve({data: '', length: 0, eof: true}),
+  );
+  mockGetVideoFrames = jest.fn(() => Promise.resolve([]));
   return {
     deletePhotos: mockDeletePhotos,
     saveToCameraRoll: mockSaveToCameraRoll,
     getPhotos: mockGetPhotos,
+    getDateHistogram: mockGetDateHistogram,
+    searchAssets: mockSearchAssets,
+    getAssetsInRegion: mockGetAssetsInRegion,
+    setPerformanceStatsEnabled: mockSetPerformanceStatsEnabled,
+    findDuplicates: mockFindDuplicates,
+    hashAssets: mockHashAssets,
+    exportAssets: mockExportAssets,
+    cancelExportAssets: mockCancelExportAssets,
+    readChunk: mockReadChunk,
+    getVideoFrames: mockGetVideoFrames,
   };
 });
 
@@ -34,8 +68,161 @@ describe('CameraRoll', () => {
     ).toMatchSnapshot();
   });
 
+  it('Should pass resize options to saveToCameraRoll', async () => {
+    await CameraRoll.saveAsset('a tag', {maxDimension: 1024, quality: 0.8});
+    expect(
+      (NativeModule.saveToCameraRoll as jest.Mock).mock.calls,
+    ).toMatchSnapshot();
+  });
+
   it('Should call getPhotos', async () => {
     await CameraRoll.getPhotos({first: 0});
     expect((NativeModule.getPhotos as jest.Mock).mock.calls).toMatchSnapshot();
   });
+
+  it('Should call getDateHistogram', async () => {
+    await CameraRoll.getDateHistogram({granularity: 'month'});
+    expect(
+      (NativeModule.getDateHistogram as jest.Mock).mock.calls,
+    ).toMatchSnapshot();
+  });
+
+  it('Should call searchAssets', async () => {
+    await CameraRoll.searchAssets('receipt', {first: 20});
+    expect(
+      (NativeModule.searchAssets as jest.Mock).mock.calls,
+    ).toMatchSnapshot();
+  });
+
+  it('Should call getAssetsInRegion', async () => {
+    const region = {minLat: 48.8, maxLat: 48.9, minLng: 2.2, maxLng: 2.4};
+    await CameraRoll.getAssetsInRegion({...region, zoom: 12});
+    expect(
+      (NativeModule.getAssetsInRegion as jest.Mock).mock.calls,
+    ).toMatchSnapshot();
+  });
+
+  it('Should call findDuplicates', async () => {
+    await CameraRoll.findDuplicates({maxDistance: 4});
+    expect(
+      (NativeModule.findDuplicates as jest.Mock).mock.calls,
+    ).toMatchSnapshot();
+  });
+
+  it('Should call hashAssets', async () => {
+    await CameraRoll.hashAssets(['1', '2'], {algorithm: 'xxh64'});
+    expect((NativeModule.hashAssets as jest.Mock).mock.calls).toMatchSnapshot();
+  });
+
+  it('Should call exportAssets', async () => {
+    await CameraRoll.exportAssets(['1'], '/data/export');
+    expect(
+      (NativeModule.exportAssets as jest.Mock).mock.calls,
+    ).toMatchSnapshot();
+  });
+
+  it('Should cancel exportAssets when aborted', async () => {
+    const signal = {
+      aborted: true,
+      addEventListener: jest.fn(),
+      removeEventListener: jest.fn(),
+    };
+    await CameraRoll.exportAssets(['1'], '/data/export', {signal});
+    expect(
+      (NativeModule.cancelExportAssets as jest.Mock).mock.calls,
+    ).toMatchSnapshot();
+  });
+
+  it('Should call getVideoFrames', async () => {
+    await CameraRoll.getVideoFrames('7', [0, 1500], {maxSize: 120});
+    expect(
+      (NativeModule.getVideoFrames as jest.Mock).mock.calls,
+    ).toMatchSnapshot();
+  });
+
+  it('Should call readChunk', async () => {
+    await CameraRoll.readChunk(1, 4194304, 1048576);
+    expect((NativeModule.readChunk as jest.Mock).mock.calls).toMatchSnapshot();
+  });
+
+  it('Should call setPerformanceStatsEnabled', () => {
+    CameraRoll.setPerformanceStatsEnabled(true);
+    expect(
+      (NativeModule.setPerformanceStatsEnabled as jest.Mock).mock.calls,
+    ).toMatchSnapshot();
+  });
+
+  it('Should build getPhotos edges from columns on Android', async () => {
+    const platform = Platform as {OS: string};
+    const os = platform.OS;
+    platform.OS = 'android';
+    mockGetPhotos.mockReturnValueOnce(
+      Promise.resolve({
+        columns: {
+          count: 2,
+          imageUriPrefix: 'content://media/external/images/media/',
+          videoUriPrefix: 'content://media/external/video/media/',
+          sourceType: null,
+          id: [12, 7],
+          typeIndex: [0, 1],
+          types: ['image/jpeg', 'video/mp4'],
+          groupIndex: [0, 0],
+          groups: ['Camera'],
+          timestamp: [1700000000.5, 1690000000],
+          modificationTimestamp: [1700000001, 1690000001],
+          subTypes: [0, 2],
+          subTypeNames: [
+            'PhotoScreenshot',
+            'VideoScreenRecording',
+            'PhotoBurst',
+            'Download',
+            'PhotoLive',
+          ],
+          width: [4032, 1920],
+          height: [3024, 1080],
+        },
+        page_info: {has_next_page: true, end_cursor: '2'},
+      }),
+    );
+    try {
+      const page = await CameraRoll.getPhotos({
+        first: 2,
+        include: ['imageSize', 'albums'],
+      });
+      expect(mockGetPhotos).toHaveBeenLastCalledWith(
+        expect.objectContaining({columns: true}),
+      );
+      expect(page.page_info).toEqual({has_next_page: true, end_cursor: '2'});
+      expect(page.edges).toHaveLength(2);
+      expect(page.edges[1]?.node.image.uri).toBe(
+        'content://media/external/video/media/7',
+      );
+      expect(page.edges[1]?.node.subTypes).toEqual(['VideoScreenRecording']);
+      expect(JSON.parse(JSON.stringify(page.edges[0]))).toEqual({
+        node: {
+          image: {
+            uri: 'content://media/external/images/media/12',
+            width: 4032,
+            height: 3024,
+            playableDuration: null,
+            filename: null,
+            fileSize: null,
+            extension: null,
+            orientation: null,
+          },
+          id: '12',
+          type: 'image/jpeg',
+          subTypes: [],
+          sourceType: null,
+          group_name: ['Camera'],
+          timestamp: 1700000000.5,
+          modificationTimestamp: 1700000001,
+          location: null,
+          exif: null,
+        },
+      });
+    } finally {
+      platform.OS = os;
+    }
+  });
 });